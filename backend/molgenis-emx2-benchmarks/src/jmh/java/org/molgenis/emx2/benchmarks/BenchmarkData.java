@@ -0,0 +1,83 @@
+package org.molgenis.emx2.benchmarks;
+
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.*;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.Table;
+
+/** Synthetic data shared by the benchmarks */
+class BenchmarkData {
+
+  private BenchmarkData() {
+    // hide
+  }
+
+  static Table createTable(Schema schema) {
+    schema.create(table("Category", column("name").setPkey()));
+    return schema.create(
+        table(
+            "Item",
+            column("id").setPkey(),
+            column("label"),
+            column("count").setType(INT),
+            column("price").setType(DECIMAL),
+            column("available").setType(BOOL),
+            column("date").setType(DATE),
+            column("tags").setType(STRING_ARRAY),
+            column("category").setType(REF).setRefTable("Category")));
+  }
+
+  static void populate(Table table, int size) {
+    Table category = table.getSchema().getTable("Category");
+    category.insert(new Row().setString("name", "a"), new Row().setString("name", "b"));
+    List<Row> rows = rows(0, size);
+    // insert in batches like an import would
+    for (int i = 0; i < size; i += 1000) {
+      table.insert(rows.subList(i, Math.min(i + 1000, size)));
+    }
+  }
+
+  static List<Row> rows(int offset, int size) {
+    List<Row> rows = new ArrayList<>(size);
+    for (int i = offset; i < offset + size; i++) {
+      rows.add(row(i));
+    }
+    return rows;
+  }
+
+  static Row row(int i) {
+    return new Row()
+        .setString("id", "id" + i)
+        .setString("label", "label " + i)
+        .setInt("count", i)
+        .setDecimal("price", i / 3.0)
+        .setBool("available", i % 2 == 0)
+        .setDate("date", LocalDate.of(2021, 1, 1).plusDays(i % 365))
+        .setStringArray("tags", new String[] {"tag" + (i % 10), "tag" + (i % 7)})
+        .setString("category", i % 2 == 0 ? "a" : "b");
+  }
+
+  /** rows as they come out of a csv file, i.e. all values as strings */
+  static List<Row> stringRows(int size) {
+    List<Row> rows = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      rows.add(
+          new Row()
+              .setString("id", "id" + i)
+              .setString("count", "" + i)
+              .setString("price", "" + i / 3.0)
+              .setString("available", i % 2 == 0 ? "true" : "false")
+              .setString("date", "2021-01-01")
+              .setString("datetime", LocalDateTime.of(2021, 1, 1, 12, 0).toString())
+              .setString("tags", "tag1,tag2,\"tag,3\""));
+    }
+    return rows;
+  }
+}
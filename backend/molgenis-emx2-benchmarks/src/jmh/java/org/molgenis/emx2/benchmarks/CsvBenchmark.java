@@ -0,0 +1,88 @@
+package org.molgenis.emx2.benchmarks;
+
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.*;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.SchemaMetadata;
+import org.molgenis.emx2.TableMetadata;
+import org.molgenis.emx2.io.readers.CsvTableReader;
+import org.molgenis.emx2.io.readers.CsvTableWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** CsvTableReader and CsvTableWriter throughput, no database needed */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CsvBenchmark {
+
+  @Param({"1000", "100000"})
+  private int size;
+
+  private List<Row> rows;
+  private List<String> columnNames;
+  private String csv;
+  private TableMetadata metadata;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    rows = BenchmarkData.stringRows(size);
+    columnNames = new ArrayList<>(rows.get(0).getColumnNames());
+    StringWriter writer = new StringWriter();
+    CsvTableWriter.write(rows, columnNames, writer, ',');
+    csv = writer.toString();
+    metadata =
+        new SchemaMetadata("CsvBenchmark")
+            .create(
+                table(
+                    "Item",
+                    column("id").setPkey(),
+                    column("count").setType(INT),
+                    column("price").setType(DECIMAL),
+                    column("available").setType(BOOL),
+                    column("date").setType(DATE),
+                    column("datetime").setType(DATETIME),
+                    column("tags").setType(STRING_ARRAY)));
+  }
+
+  @Benchmark
+  public void read(Blackhole blackhole) {
+    for (Row row : CsvTableReader.read(new StringReader(csv))) {
+      blackhole.consume(row);
+    }
+  }
+
+  @Benchmark
+  public void readTyped(Blackhole blackhole) {
+    // parses int, decimal and bool while reading, using the table metadata
+    for (Row row : CsvTableReader.read(new StringReader(csv), metadata)) {
+      blackhole.consume(row);
+    }
+  }
+
+  @Benchmark
+  public String write() throws IOException {
+    StringWriter writer = new StringWriter();
+    CsvTableWriter.write(rows, columnNames, writer, ',');
+    return writer.toString();
+  }
+
+  @Benchmark
+  public String writeWithHeaderScan() throws IOException {
+    // variant that first scans all rows for the header
+    StringWriter writer = new StringWriter();
+    CsvTableWriter.write(rows, writer, ',');
+    return writer.toString();
+  }
+}
@@ -0,0 +1,61 @@
+package org.molgenis.emx2.benchmarks;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import java.util.concurrent.TimeUnit;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.examples.PetStoreExample;
+import org.molgenis.emx2.graphql.GraphqlApiFactory;
+import org.molgenis.emx2.sql.TestDatabaseFactory;
+import org.openjdk.jmh.annotations.*;
+
+/** building the graphql api for a schema, and executing queries end to end */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GraphqlBenchmark {
+  private Schema petStore;
+  private GraphQL graphql;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Database db = TestDatabaseFactory.getTestDatabase();
+    petStore = db.dropCreateSchema("BenchmarkGraphql");
+    PetStoreExample.create(petStore.getMetadata());
+    PetStoreExample.populate(petStore);
+    graphql = new GraphqlApiFactory().createGraphqlForSchema(petStore);
+  }
+
+  @Benchmark
+  public GraphQL createGraphqlForSchema() {
+    return new GraphqlApiFactory().createGraphqlForSchema(petStore);
+  }
+
+  @Benchmark
+  public String queryPets() throws Exception {
+    return execute("{Pet{name,status,weight,category{name},tags{name}}}");
+  }
+
+  @Benchmark
+  public String queryPetsFilteredWithCount() throws Exception {
+    return execute(
+        "{Pet(filter:{category:{name:{equals:\"cat\"}}}){name,orders{quantity}},Pet_agg{count}}");
+  }
+
+  @Benchmark
+  public String querySchema() throws Exception {
+    return execute("{_schema{name,tables{name,columns{name,columnType}}}}");
+  }
+
+  private String execute(String query) throws Exception {
+    ExecutionResult result = graphql.execute(query);
+    if (!result.getErrors().isEmpty()) {
+      throw new IllegalStateException(result.getErrors().toString());
+    }
+    return GraphqlApiFactory.convertExecutionResultToJson(result);
+  }
+}
@@ -0,0 +1,62 @@
+package org.molgenis.emx2.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.molgenis.emx2.ColumnType;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.utils.TypeUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Row getters and TypeUtils conversions as used when importing string data */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RowConversionBenchmark {
+  private static final int SIZE = 1000;
+  private List<Row> stringRows;
+  private List<Row> typedRows;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    stringRows = BenchmarkData.stringRows(SIZE);
+    typedRows = BenchmarkData.rows(0, SIZE);
+  }
+
+  @Benchmark
+  public void rowGettersFromString(Blackhole blackhole) {
+    for (Row row : stringRows) {
+      blackhole.consume(row.getString("id"));
+      blackhole.consume(row.getInteger("count"));
+      blackhole.consume(row.getDecimal("price"));
+      blackhole.consume(row.getBoolean("available"));
+      blackhole.consume(row.getDate("date"));
+      blackhole.consume(row.getDateTime("datetime"));
+      blackhole.consume(row.getStringArray("tags"));
+    }
+  }
+
+  @Benchmark
+  public void rowGettersToString(Blackhole blackhole) {
+    for (Row row : typedRows) {
+      for (String name : row.getColumnNames()) {
+        blackhole.consume(row.getString(name));
+      }
+    }
+  }
+
+  @Benchmark
+  public void typeUtilsGetTypedValue(Blackhole blackhole) {
+    for (Row row : stringRows) {
+      blackhole.consume(TypeUtils.getTypedValue(row.getString("count"), ColumnType.INT));
+      blackhole.consume(TypeUtils.getTypedValue(row.getString("price"), ColumnType.DECIMAL));
+      blackhole.consume(TypeUtils.getTypedValue(row.getString("available"), ColumnType.BOOL));
+      blackhole.consume(TypeUtils.getTypedValue(row.getString("date"), ColumnType.DATE));
+      blackhole.consume(TypeUtils.getTypedValue(row.getString("datetime"), ColumnType.DATETIME));
+      blackhole.consume(TypeUtils.getTypedValue(row.getString("tags"), ColumnType.STRING_ARRAY));
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package org.molgenis.emx2.benchmarks;
+
+import static org.molgenis.emx2.FilterBean.f;
+import static org.molgenis.emx2.Operator.EQUALS;
+import static org.molgenis.emx2.SelectColumn.s;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.Table;
+import org.molgenis.emx2.examples.PetStoreExample;
+import org.molgenis.emx2.sql.TestDatabaseFactory;
+import org.openjdk.jmh.annotations.*;
+
+/** retrieveRows and retrieveJSON over the pet store and a synthetic table */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SqlQueryBenchmark {
+
+  @Param({"1000", "10000"})
+  private int size;
+
+  private Schema petStore;
+  private Table items;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Database db = TestDatabaseFactory.getTestDatabase();
+    petStore = db.dropCreateSchema("BenchmarkQueryPetStore");
+    PetStoreExample.create(petStore.getMetadata());
+    PetStoreExample.populate(petStore);
+
+    Schema schema = db.dropCreateSchema("BenchmarkQuery");
+    items = BenchmarkData.createTable(schema);
+    BenchmarkData.populate(items, size);
+  }
+
+  @Benchmark
+  public List<Row> petStoreRetrieveRows() {
+    return petStore
+        .getTable("Pet")
+        .select(s("name"), s("category"), s("status"), s("weight"), s("tags"))
+        .retrieveRows();
+  }
+
+  @Benchmark
+  public String petStoreRetrieveJSON() {
+    return petStore
+        .getTable("Pet")
+        .select(s("name"), s("category", s("name")), s("tags", s("name")), s("status"), s("weight"))
+        .retrieveJSON();
+  }
+
+  @Benchmark
+  public List<Row> retrieveRows() {
+    return items.retrieveRows();
+  }
+
+  @Benchmark
+  public List<Row> retrieveRowsFiltered() {
+    return items.query().where(f("category", f("name", EQUALS, "a"))).retrieveRows();
+  }
+
+  @Benchmark
+  public String retrieveJSON() {
+    return items
+        .select(s("id"), s("label"), s("count"), s("price"), s("tags"), s("category", s("name")))
+        .retrieveJSON();
+  }
+
+  @Benchmark
+  public String retrieveJSONPage() {
+    return items
+        .select(s("id"), s("label"), s("category", s("name")))
+        .limit(100)
+        .offset(size / 2)
+        .retrieveJSON();
+  }
+}
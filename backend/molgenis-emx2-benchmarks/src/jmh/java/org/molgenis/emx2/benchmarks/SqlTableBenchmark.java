@@ -0,0 +1,76 @@
+package org.molgenis.emx2.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.Table;
+import org.molgenis.emx2.sql.TestDatabaseFactory;
+import org.openjdk.jmh.annotations.*;
+
+/** insert, save, update and delete at different batch sizes */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SqlTableBenchmark {
+
+  @Param({"1", "100", "1000"})
+  private int batchSize;
+
+  private Table items;
+  // rows that exist in the table, for save and update
+  private List<Row> existing;
+  // rows that don't exist yet, for insert; or were just inserted, for delete
+  private List<Row> next;
+  private int offset;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Database db = TestDatabaseFactory.getTestDatabase();
+    Schema schema = db.dropCreateSchema("BenchmarkTable");
+    items = BenchmarkData.createTable(schema);
+    BenchmarkData.populate(items, batchSize);
+    existing = BenchmarkData.rows(0, batchSize);
+    offset = batchSize;
+  }
+
+  @TearDown(Level.Iteration)
+  public void removeInserted() {
+    // keep table size stable between iterations
+    items.truncate();
+    items.insert(existing);
+    offset = batchSize;
+  }
+
+  @Setup(Level.Invocation)
+  public void nextRows() {
+    next = BenchmarkData.rows(offset, batchSize);
+    offset += batchSize;
+  }
+
+  @Benchmark
+  public int insert() {
+    return items.insert(next);
+  }
+
+  @Benchmark
+  public int save() {
+    return items.save(existing);
+  }
+
+  @Benchmark
+  public int update() {
+    return items.update(existing);
+  }
+
+  @Benchmark
+  public int insertDelete() {
+    // delete needs rows to exist, so we measure the pair; subtract 'insert' for delete alone
+    items.insert(next);
+    return items.delete(next);
+  }
+}
@@ -1,5 +1,6 @@
 package org.molgenis.emx2.graphql;
 
+import static org.molgenis.emx2.graphql.GraphqlApiFactory.getDatabase;
 import static org.molgenis.emx2.graphql.GraphqlConstants.*;
 
 import graphql.Scalars;
@@ -38,7 +39,7 @@ public class GraphlAdminFieldFactory {
                     .type(Scalars.GraphQLInt)
                     .dataFetcher(
                         dataFetchingEnvironment -> {
-                          return db.countUsers();
+                          return getDatabase(dataFetchingEnvironment, db).countUsers();
                         })
                     .build())
             .build();
@@ -59,8 +60,9 @@ public class GraphlAdminFieldFactory {
                   if (args.containsKey(OFFSET)) offset = (int) args.get(OFFSET);
                 }
               }
-              result.put("users", db.getUsers(limit, offset));
-              result.put("userCount", db.countUsers());
+              Database database = getDatabase(dataFetchingEnvironment, db);
+              result.put("users", database.getUsers(limit, offset));
+              result.put("userCount", database.countUsers());
               return result;
             })
         .type(adminType)
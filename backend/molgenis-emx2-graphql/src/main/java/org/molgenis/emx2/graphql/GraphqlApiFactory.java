@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import graphql.ExecutionResult;
 import graphql.GraphQL;
 import graphql.execution.AsyncExecutionStrategy;
+import graphql.schema.DataFetchingEnvironment;
 import graphql.schema.GraphQLObjectType;
 import graphql.schema.GraphQLSchema;
 import java.io.IOException;
@@ -18,12 +19,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class GraphqlApiFactory {
+  /**
+   * Pass as local context of the ExecutionInput to let table queries put the json from the database
+   * into the result as is, instead of converting it to maps that graphql then walks. Such results
+   * can only be serialized using convertExecutionResultToJson.
+   */
+  public static final String RAW_JSON = "rawJson";
+
   private static Logger logger = LoggerFactory.getLogger(GraphqlApiFactory.class);
 
   static Iterable<Row> convertToRows(TableMetadata metadata, List<Map<String, Object>> map) {
     List<Row> rows = new ArrayList<>();
     for (Map<String, Object> object : map) {
-      Row row = new Row();
+      Row row = new Row(RowLayout.EMPTY);
       for (Column column : metadata.getColumns()) {
         if (object.containsKey(column.getName())) {
           if (column.isReference() && REF.equals(column.getColumnType())) {
@@ -111,6 +119,50 @@ public class GraphqlApiFactory {
     }
   }
 
+  /**
+   * GraphQL instances can be shared between sessions (see GraphqlSchemaCache) so data fetchers
+   * should not use the schema they were created with but the schema of the session executing the
+   * query, which is passed as context of the ExecutionInput. Falls back to the given schema if no
+   * such context was provided.
+   */
+  static Schema getSchema(DataFetchingEnvironment dataFetchingEnvironment, Schema schema) {
+    Object context = dataFetchingEnvironment.getContext();
+    if (context instanceof Schema) {
+      return (Schema) context;
+    }
+    return schema;
+  }
+
+  /** @see #getSchema(DataFetchingEnvironment, Schema) */
+  static Database getDatabase(DataFetchingEnvironment dataFetchingEnvironment, Database database) {
+    Object context = dataFetchingEnvironment.getContext();
+    if (context instanceof Schema) {
+      return ((Schema) context).getDatabase();
+    } else if (context instanceof Database) {
+      return (Database) context;
+    }
+    return database;
+  }
+
+  /** @see #getSchema(DataFetchingEnvironment, Schema) */
+  static Table getTable(DataFetchingEnvironment dataFetchingEnvironment, Table table) {
+    Object context = dataFetchingEnvironment.getContext();
+    if (!(context instanceof Schema)) {
+      return table;
+    }
+    Schema schema = (Schema) context;
+    // table might be external, i.e. from another schema
+    String schemaName = table.getMetadata().getSchemaName();
+    if (!schemaName.equals(schema.getName())) {
+      schema = schema.getDatabase().getSchema(schemaName);
+      if (schema == null) {
+        throw new GraphqlException(
+            "Graphql API error: schema " + schemaName + " unknown or permission denied");
+      }
+    }
+    return schema.getTable(table.getName());
+  }
+
   public GraphQL createGraphqlForDatabase(Database database) {
 
     GraphQLObjectType.Builder queryBuilder = GraphQLObjectType.newObject().name("Query");
@@ -199,6 +251,7 @@ public class GraphqlApiFactory {
                     .query(queryBuilder.build())
                     .mutation(mutationBuilder.build())
                     .build())
+            .queryExecutionStrategy(new GraphqlRawJsonExecutionStrategy())
             .mutationExecutionStrategy(
                 new AsyncExecutionStrategy(new GraphqlCustomExceptionHandler()))
             .build();
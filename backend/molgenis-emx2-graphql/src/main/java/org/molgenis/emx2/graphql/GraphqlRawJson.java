@@ -0,0 +1,47 @@
+package org.molgenis.emx2.graphql;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+
+/**
+ * Json produced by the database that is written to the graphql response as is, without converting
+ * it into maps and back. See GraphqlRawJsonExecutionStrategy.
+ */
+class GraphqlRawJson implements JsonSerializable {
+  private final String json;
+
+  private GraphqlRawJson(String json) {
+    this.json = json;
+  }
+
+  /**
+   * extracts the value of the root field from json like {"field":value}, returns null if the json
+   * doesn't have that form so caller can fall back to parsing
+   */
+  static GraphqlRawJson ofField(String json, String fieldName) {
+    String prefix = "{\"" + fieldName + "\":";
+    if (json == null || !json.startsWith(prefix) || !json.endsWith("}")) {
+      return null;
+    }
+    return new GraphqlRawJson(json.substring(prefix.length(), json.length() - 1));
+  }
+
+  String getJson() {
+    return json;
+  }
+
+  @Override
+  public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+    gen.writeRawValue(json);
+  }
+
+  @Override
+  public void serializeWithType(
+      JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+      throws IOException {
+    serialize(gen, serializers);
+  }
+}
@@ -0,0 +1,27 @@
+package org.molgenis.emx2.graphql;
+
+import graphql.ExecutionResultImpl;
+import graphql.execution.*;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Query execution strategy that passes GraphqlRawJson values of fields to the result as is, instead
+ * of completing them field by field. Other values are completed as usual.
+ */
+class GraphqlRawJsonExecutionStrategy extends AsyncExecutionStrategy {
+
+  @Override
+  protected FieldValueInfo completeValue(
+      ExecutionContext executionContext, ExecutionStrategyParameters parameters) {
+    Object value = parameters.getSource();
+    if (value instanceof GraphqlRawJson) {
+      return FieldValueInfo.newFieldValueInfo(FieldValueInfo.CompleteValueType.OBJECT)
+          .fieldValue(
+              CompletableFuture.completedFuture(
+                  new ExecutionResultImpl(value, Collections.emptyList())))
+          .build();
+    }
+    return super.completeValue(executionContext, parameters);
+  }
+}
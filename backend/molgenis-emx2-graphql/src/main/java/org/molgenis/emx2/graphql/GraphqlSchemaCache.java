@@ -0,0 +1,60 @@
+package org.molgenis.emx2.graphql;
+
+import graphql.GraphQL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.sql.SqlSchemaMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of GraphQL instances shared between all sessions. The GraphQL structure only depends on the
+ * schema metadata and on the role of the active user, so instances are keyed on (schema name,
+ * metadata version, role). The version is bumped on each change of the schema metadata, see
+ * SqlSchemaMetadata.getVersion. Executing queries must pass the schema of the session as context of
+ * the ExecutionInput, see GraphqlApiFactory.getSchema.
+ */
+public class GraphqlSchemaCache {
+  private static final Logger logger = LoggerFactory.getLogger(GraphqlSchemaCache.class);
+  private final Map<List<Object>, GraphQL> cache = new ConcurrentHashMap<>();
+
+  public GraphQL getGraphqlForSchema(Schema schema) {
+    String schemaName = schema.getName();
+    SqlSchemaMetadata metadata = (SqlSchemaMetadata) schema.getMetadata();
+    long version = metadata.getVersion();
+    // admin gets additional fields, see GraphqlApiFactory
+    List<Object> key = List.of(schemaName, version, metadata.getActiveUserRoles());
+    GraphQL graphql = cache.get(key);
+    if (graphql == null) {
+      // instances for older versions of this schema are not needed anymore
+      cache.keySet().removeIf(k -> k.get(0).equals(schemaName) && (long) k.get(1) < version);
+      graphql =
+          cache.computeIfAbsent(
+              key,
+              k -> {
+                logger.info(
+                    "created shared graphql for schema '{}' version {} and role '{}'",
+                    schemaName,
+                    version,
+                    k.get(2));
+                return new GraphqlApiFactory().createGraphqlForSchema(schema);
+              });
+    }
+    return graphql;
+  }
+
+  /** drops all instances for this schema, e.g. after metadata or permissions have changed */
+  public void invalidate(String schemaName) {
+    cache.keySet().removeIf(key -> key.get(0).equals(schemaName));
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  public int size() {
+    return cache.size();
+  }
+}
@@ -1,5 +1,7 @@
 package org.molgenis.emx2.graphql;
 
+import static org.molgenis.emx2.graphql.GraphqlApiFactory.getDatabase;
+import static org.molgenis.emx2.graphql.GraphqlApiFactory.getSchema;
 import static org.molgenis.emx2.graphql.GraphqlApiMutationResult.Status.FAILED;
 import static org.molgenis.emx2.graphql.GraphqlApiMutationResult.Status.SUCCESS;
 import static org.molgenis.emx2.graphql.GraphqlApiMutationResult.typeForMutationResult;
@@ -24,12 +26,13 @@ public class GraphqlSessionFieldFactory {
     // no instance
   }
 
-  public GraphQLFieldDefinition signoutField(Database database) {
+  public GraphQLFieldDefinition signoutField(Database aDatabase) {
     return GraphQLFieldDefinition.newFieldDefinition()
         .name("signout")
         .type(GraphqlApiMutationResult.typeForMutationResult)
         .dataFetcher(
             dataFetchingEnvironment -> {
+              Database database = getDatabase(dataFetchingEnvironment, aDatabase);
               String user = database.getActiveUser();
               database.setActiveUser(GraphqlConstants.ANONYMOUS);
               return new GraphqlApiMutationResult(
@@ -38,7 +41,7 @@ public class GraphqlSessionFieldFactory {
         .build();
   }
 
-  public GraphQLFieldDefinition signupField(Database database) {
+  public GraphQLFieldDefinition signupField(Database aDatabase) {
     return GraphQLFieldDefinition.newFieldDefinition()
         .name("signup")
         .type(GraphqlApiMutationResult.typeForMutationResult)
@@ -46,6 +49,7 @@ public class GraphqlSessionFieldFactory {
         .argument(GraphQLArgument.newArgument().name(PASSWORD).type(Scalars.GraphQLString))
         .dataFetcher(
             dataFetchingEnvironment -> {
+              Database database = getDatabase(dataFetchingEnvironment, aDatabase);
               String userName = dataFetchingEnvironment.getArgument(EMAIL);
               String passWord = dataFetchingEnvironment.getArgument(PASSWORD);
               if (passWord == null) {
@@ -73,7 +77,7 @@ public class GraphqlSessionFieldFactory {
         .build();
   }
 
-  public GraphQLFieldDefinition signinField(Database database) {
+  public GraphQLFieldDefinition signinField(Database aDatabase) {
     return GraphQLFieldDefinition.newFieldDefinition()
         .name("signin")
         .type(GraphqlApiMutationResult.typeForMutationResult)
@@ -81,6 +85,7 @@ public class GraphqlSessionFieldFactory {
         .argument(GraphQLArgument.newArgument().name(PASSWORD).type(Scalars.GraphQLString))
         .dataFetcher(
             dataFetchingEnvironment -> {
+              Database database = getDatabase(dataFetchingEnvironment, aDatabase);
               String userName = dataFetchingEnvironment.getArgument(EMAIL);
               String passWord = dataFetchingEnvironment.getArgument(PASSWORD);
 
@@ -96,7 +101,7 @@ public class GraphqlSessionFieldFactory {
         .build();
   }
 
-  public GraphQLFieldDefinition userQueryField(Database database, Schema schema) {
+  public GraphQLFieldDefinition userQueryField(Database aDatabase, Schema aSchema) {
     return GraphQLFieldDefinition.newFieldDefinition()
         .name("_session")
         .type(
@@ -112,29 +117,33 @@ public class GraphqlSessionFieldFactory {
                         .type(GraphQLList.list(Scalars.GraphQLString))))
         .dataFetcher(
             dataFetchingEnvironment -> {
+              Database database = getDatabase(dataFetchingEnvironment, aDatabase);
               Map<String, Object> result = new LinkedHashMap<>();
               result.put(
                   EMAIL, database.getActiveUser() != null ? database.getActiveUser() : "anonymous");
-              if (schema != null) {
-                result.put(ROLES, schema.getInheritedRolesForActiveUser());
+              if (aSchema != null) {
+                result.put(
+                    ROLES,
+                    getSchema(dataFetchingEnvironment, aSchema).getInheritedRolesForActiveUser());
               }
               return result;
             })
         .build();
   }
 
-  public GraphQLFieldDefinition changePasswordField(Database database) {
+  public GraphQLFieldDefinition changePasswordField(Database aDatabase) {
     GraphQLFieldDefinition.Builder builder =
         GraphQLFieldDefinition.newFieldDefinition()
             .name("changePassword")
             .type(typeForMutationResult);
-    if (ADMIN.equals(database.getActiveUser())) {
+    if (ADMIN.equals(aDatabase.getActiveUser())) {
       builder.argument(GraphQLArgument.newArgument().name(USERNAME).type(Scalars.GraphQLString));
     }
     return builder
         .argument(GraphQLArgument.newArgument().name(PASSWORD).type(Scalars.GraphQLString))
         .dataFetcher(
             dataFetchingEnvironment -> {
+              Database database = getDatabase(dataFetchingEnvironment, aDatabase);
               String password = dataFetchingEnvironment.getArgument(PASSWORD);
               String username = dataFetchingEnvironment.getArgument(USERNAME);
               if (username == null) {
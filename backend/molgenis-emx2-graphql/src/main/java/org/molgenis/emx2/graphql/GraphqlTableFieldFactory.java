@@ -1,7 +1,10 @@
 package org.molgenis.emx2.graphql;
 
 import static org.molgenis.emx2.ColumnType.REF;
+import static org.molgenis.emx2.Constants.MG_CURSOR;
 import static org.molgenis.emx2.FilterBean.*;
+import static org.molgenis.emx2.graphql.GraphqlApiFactory.getSchema;
+import static org.molgenis.emx2.graphql.GraphqlApiFactory.getTable;
 import static org.molgenis.emx2.graphql.GraphqlApiFactory.transform;
 import static org.molgenis.emx2.graphql.GraphqlApiMutationResult.Status.SUCCESS;
 import static org.molgenis.emx2.graphql.GraphqlApiMutationResult.typeForMutationResult;
@@ -64,6 +67,16 @@ public class GraphqlTableFieldFactory {
                 .name(GraphqlConstants.OFFSET)
                 .type(Scalars.GraphQLInt)
                 .build())
+        .argument(
+            GraphQLArgument.newArgument()
+                .name(GraphqlConstants.AFTER)
+                .type(Scalars.GraphQLString)
+                .build())
+        .argument(
+            GraphQLArgument.newArgument()
+                .name(GraphqlConstants.BEFORE)
+                .type(Scalars.GraphQLString)
+                .build())
         .argument(
             GraphQLArgument.newArgument()
                 .name(GraphqlConstants.ORDERBY)
@@ -178,6 +191,16 @@ public class GraphqlTableFieldFactory {
                           .name(GraphqlConstants.OFFSET)
                           .type(Scalars.GraphQLInt)
                           .build())
+                  .argument(
+                      GraphQLArgument.newArgument()
+                          .name(GraphqlConstants.AFTER)
+                          .type(Scalars.GraphQLString)
+                          .build())
+                  .argument(
+                      GraphQLArgument.newArgument()
+                          .name(GraphqlConstants.BEFORE)
+                          .type(Scalars.GraphQLString)
+                          .build())
                   .argument(
                       GraphQLArgument.newArgument()
                           .name(GraphqlConstants.ORDERBY)
@@ -194,6 +217,9 @@ public class GraphqlTableFieldFactory {
           throw new UnsupportedOperationException(
               "Not yet implemented type " + col.getColumnType());
       }
+    // for paging using 'after' and 'before'
+    tableBuilder.field(
+        GraphQLFieldDefinition.newFieldDefinition().name(MG_CURSOR).type(Scalars.GraphQLString));
     return tableBuilder.build();
   }
 
@@ -353,7 +379,8 @@ public class GraphqlTableFieldFactory {
     }
   }
 
-  private FilterBean[] convertMapToFilterArray(Table table, Map<String, Object> filter) {
+  /** converts a graphql filter, e.g. {name:{equals:"pooky"}}, to filters for a query */
+  public static FilterBean[] convertMapToFilterArray(Table table, Map<String, Object> filter) {
     List<Filter> subFilters = new ArrayList<>();
     for (Map.Entry<String, Object> entry : filter.entrySet()) {
       if (entry.getKey().equals(FILTER_OR) || entry.getKey().equals(FILTER_AND)) {
@@ -406,7 +433,7 @@ public class GraphqlTableFieldFactory {
     return subFilters.toArray(new FilterBean[subFilters.size()]);
   }
 
-  private Filter createKeyFilter(Map<String, Object> map) {
+  private static Filter createKeyFilter(Map<String, Object> map) {
     List<Filter> result = new ArrayList<>();
     for (Map.Entry<String, Object> entry : map.entrySet()) {
       if (entry.getValue() instanceof Map) {
@@ -418,7 +445,7 @@ public class GraphqlTableFieldFactory {
     return and(result);
   }
 
-  private Filter convertMapToFilter(String name, Map<String, Object> subFilter) {
+  private static Filter convertMapToFilter(String name, Map<String, Object> subFilter) {
     int count = 0;
     for (Map.Entry<String, Object> entry2 : subFilter.entrySet()) {
       count++;
@@ -451,6 +478,12 @@ public class GraphqlTableFieldFactory {
           if (args.containsKey(GraphqlConstants.OFFSET)) {
             sc.setOffset((int) args.get(GraphqlConstants.OFFSET));
           }
+          if (args.containsKey(GraphqlConstants.AFTER)) {
+            sc.setAfter((String) args.get(GraphqlConstants.AFTER));
+          }
+          if (args.containsKey(GraphqlConstants.BEFORE)) {
+            sc.setBefore((String) args.get(GraphqlConstants.BEFORE));
+          }
           if (args.containsKey(GraphqlConstants.ORDERBY)) {
             sc.setOrderBy((Map<String, Order>) args.get(GraphqlConstants.ORDERBY));
           }
@@ -462,7 +495,7 @@ public class GraphqlTableFieldFactory {
 
   private DataFetcher fetcherForTableQueryField(Table aTable) {
     return dataFetchingEnvironment -> {
-      Table table = aTable;
+      Table table = getTable(dataFetchingEnvironment, aTable);
       Query q = table.query();
       String fieldName = dataFetchingEnvironment.getField().getName();
       if (fieldName.endsWith("_agg")) {
@@ -481,6 +514,12 @@ public class GraphqlTableFieldFactory {
       if (args.containsKey(GraphqlConstants.OFFSET)) {
         q.offset((int) args.get(GraphqlConstants.OFFSET));
       }
+      if (args.containsKey(GraphqlConstants.AFTER)) {
+        q.after((String) args.get(GraphqlConstants.AFTER));
+      }
+      if (args.containsKey(GraphqlConstants.BEFORE)) {
+        q.before((String) args.get(GraphqlConstants.BEFORE));
+      }
       if (args.containsKey(GraphqlConstants.ORDERBY)) {
         q.orderBy((Map<String, Order>) args.get(GraphqlConstants.ORDERBY));
       }
@@ -490,13 +529,32 @@ public class GraphqlTableFieldFactory {
         q.search(search);
       }
 
-      Object result = transform(q.retrieveJSON());
+      String json = q.retrieveJSON();
+      // fast path, pass json from database as is
+      if (GraphqlApiFactory.RAW_JSON.equals(dataFetchingEnvironment.getLocalContext())
+          && isRawJsonCompatible(dataFetchingEnvironment.getSelectionSet())) {
+        GraphqlRawJson raw = GraphqlRawJson.ofField(json, fieldName);
+        if (raw != null) {
+          return raw;
+        }
+      }
+      Object result = transform(json);
       // bit silly, we have to remove root field here. Some refactoring makes this look nicer
       if (result != null) return ((Map<String, Object>) result).get(fieldName);
       return null;
     };
   }
 
+  /** json from database uses field names, so aliases and meta fields need the normal path */
+  private static boolean isRawJsonCompatible(DataFetchingFieldSelectionSet selection) {
+    for (SelectedField field : selection.getFields()) {
+      if (field.getAlias() != null || field.getName().startsWith("__")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private GraphQLFieldDefinition getMutationDefinition(Schema schema, MutationType type) {
     GraphQLFieldDefinition.Builder fieldBuilder =
         GraphQLFieldDefinition.newFieldDefinition()
@@ -550,7 +608,8 @@ public class GraphqlTableFieldFactory {
     return dataFetchingEnvironment -> {
       StringBuilder result = new StringBuilder();
       boolean any = false;
-      for (TableMetadata tableMetadata : schema.getMetadata().getTablesIncludingExternal()) {
+      Schema s = getSchema(dataFetchingEnvironment, schema);
+      for (TableMetadata tableMetadata : s.getMetadata().getTablesIncludingExternal()) {
         List<Map<String, Object>> rowsAslistOfMaps =
             dataFetchingEnvironment.getArgument(tableMetadata.getTableName());
         if (rowsAslistOfMaps != null) {
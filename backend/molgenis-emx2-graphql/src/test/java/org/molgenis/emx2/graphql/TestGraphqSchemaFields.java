@@ -205,6 +205,30 @@ public class TestGraphqSchemaFields {
     // limit
     TestCase.assertEquals(1, execute("{Pet(limit:1){name}}").at("/Pet").size());
 
+    // cursor pagination, cursor is json so quote it
+    String cursor =
+        new ObjectMapper()
+            .writeValueAsString(
+                execute("{Pet(limit:1,orderby:{name:ASC}){name,mg_cursor}}")
+                    .at("/Pet/0/mg_cursor")
+                    .textValue());
+    TestCase.assertEquals(
+        "spike",
+        execute("{Pet(limit:1,after:" + cursor + ",orderby:{name:ASC}){name}}")
+            .at("/Pet/0/name")
+            .textValue());
+    cursor =
+        new ObjectMapper()
+            .writeValueAsString(
+                execute("{Pet(offset:1,limit:1,orderby:{name:ASC}){mg_cursor}}")
+                    .at("/Pet/0/mg_cursor")
+                    .textValue());
+    TestCase.assertEquals(
+        "pooky",
+        execute("{Pet(limit:1,before:" + cursor + ",orderby:{name:ASC}){name}}")
+            .at("/Pet/0/name")
+            .textValue());
+
     // orderby asc
     TestCase.assertEquals(
         "pooky", execute("{Pet(orderby:{name:ASC}){name}}").at("/Pet/0/name").textValue());
@@ -0,0 +1,85 @@
+package org.molgenis.emx2.graphql;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.graphql.GraphqlApiFactory.convertExecutionResultToJson;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Map;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.examples.PetStoreExample;
+import org.molgenis.emx2.sql.TestDatabaseFactory;
+
+public class TestGraphqlRawJson {
+  private static GraphQL graphql;
+  private static Schema schema;
+
+  @BeforeClass
+  public static void setup() {
+    Database database = TestDatabaseFactory.getTestDatabase();
+    schema = database.dropCreateSchema(TestGraphqlRawJson.class.getSimpleName());
+    PetStoreExample.create(schema.getMetadata());
+    PetStoreExample.populate(schema);
+    graphql = new GraphqlApiFactory().createGraphqlForSchema(schema);
+  }
+
+  @Test
+  public void testRawJsonEqualsNormalResult() throws IOException {
+    assertSameResult("{Pet{name,status,weight,category{name},tags{name}}}");
+    assertSameResult("{Pet(limit:2,orderby:{name:DESC}){name,orders{quantity,price}}}");
+    assertSameResult(
+        "{Pet(filter:{category:{name:{equals:\"cat\"}}}){name},Pet_agg{count},Order{orderId,complete,pet{name}},User{username,pets{name}}}");
+    assertSameResult("query($s:String){Pet(search:$s){name}}");
+    assertSameResult("{Pet{name,...f}} fragment f on Pet{weight,category{name}}");
+    assertSameResult("{Pet{name,weight @skip(if:true),category @include(if:true){name}}}");
+
+    // database json is passed on without parsing
+    Map<String, Object> data =
+        graphql
+            .execute(
+                ExecutionInput.newExecutionInput("{Pet{name}}")
+                    .context(schema)
+                    .localContext(GraphqlApiFactory.RAW_JSON))
+            .getData();
+    assertTrue(data.get("Pet") instanceof GraphqlRawJson);
+
+    // aliases need normal path, which also still works
+    assertSameResult("{p:Pet{n:name,weight}}");
+    assertTrue(execute("{p:Pet{n:name}}", true).contains("\"n\""));
+    // top level alias is handled by graphql
+    assertSameResult("{p:Pet{name},q:Pet{weight}}");
+    assertTrue(execute("{p:Pet{name},q:Pet{weight}}", true).contains("\"q\""));
+  }
+
+  private void assertSameResult(String query) throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    JsonNode normal = mapper.readTree(execute(query, false));
+    JsonNode raw = mapper.readTree(execute(query, true));
+    assertFalse(normal.at("/data").isMissingNode());
+    // graphql serializes floats as 1.0 where postgres writes 1
+    Comparator<JsonNode> numbersByValue =
+        (a, b) ->
+            a.isNumber() && b.isNumber()
+                ? Double.compare(a.doubleValue(), b.doubleValue())
+                : a.equals(b) ? 0 : 1;
+    assertTrue(query + "\n" + normal + "\n" + raw, normal.equals(numbersByValue, raw));
+  }
+
+  private String execute(String query, boolean raw) throws IOException {
+    ExecutionInput.Builder input = ExecutionInput.newExecutionInput(query).context(schema);
+    if (raw) {
+      input.localContext(GraphqlApiFactory.RAW_JSON);
+    }
+    ExecutionResult result = graphql.execute(input);
+    assertTrue(result.getErrors().toString(), result.getErrors().isEmpty());
+    return convertExecutionResultToJson(result);
+  }
+}
@@ -0,0 +1,83 @@
+package org.molgenis.emx2.graphql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.molgenis.emx2.graphql.GraphqlApiFactory.convertExecutionResultToJson;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionInput;
+import graphql.GraphQL;
+import java.io.IOException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.Privileges;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.examples.PetStoreExample;
+import org.molgenis.emx2.sql.SqlDatabase;
+import org.molgenis.emx2.sql.TestDatabaseFactory;
+
+public class TestGraphqlSchemaCache {
+  private static final String schemaName = "TestGraphqlSchemaCache";
+  private static final String VIEWER1 = "graphql_cache_viewer1";
+  private static final String VIEWER2 = "graphql_cache_viewer2";
+  private static final String EDITOR = "graphql_cache_editor";
+
+  @BeforeClass
+  public static void setup() {
+    Database database = TestDatabaseFactory.getTestDatabase();
+    Schema schema = database.dropCreateSchema(schemaName);
+    PetStoreExample.create(schema.getMetadata());
+    PetStoreExample.populate(schema);
+    schema.addMember(VIEWER1, Privileges.VIEWER.toString());
+    schema.addMember(VIEWER2, Privileges.VIEWER.toString());
+    schema.addMember(EDITOR, Privileges.EDITOR.toString());
+  }
+
+  @Test
+  public void testSharedBetweenSessionsWithSameRole() throws IOException {
+    GraphqlSchemaCache cache = new GraphqlSchemaCache();
+
+    // each session has its own database instance
+    Schema schema1 = getSchemaForUser(VIEWER1);
+    Schema schema2 = getSchemaForUser(VIEWER2);
+    Schema schema3 = getSchemaForUser(EDITOR);
+
+    GraphQL graphql1 = cache.getGraphqlForSchema(schema1);
+    assertSame(graphql1, cache.getGraphqlForSchema(schema2));
+    assertNotSame(graphql1, cache.getGraphqlForSchema(schema3));
+    assertEquals(2, cache.size());
+
+    // shared graphql should execute as the user of the session passed as context
+    assertEquals(
+        VIEWER2, execute(graphql1, schema2, "{_session{email}}").at("/_session/email").asText());
+    assertEquals(
+        "pooky",
+        execute(graphql1, schema2, "{Pet(filter:{name:{equals:\"pooky\"}}){name}}")
+            .at("/Pet/0/name")
+            .asText());
+
+    // invalidate drops all instances for the schema
+    cache.invalidate(schemaName);
+    assertEquals(0, cache.size());
+    GraphQL graphql2 = cache.getGraphqlForSchema(schema2);
+    assertNotSame(graphql1, graphql2);
+    assertSame(graphql2, cache.getGraphqlForSchema(schema1));
+  }
+
+  private Schema getSchemaForUser(String user) {
+    Database database = new SqlDatabase(false);
+    database.setActiveUser(user);
+    return database.getSchema(schemaName);
+  }
+
+  private JsonNode execute(GraphQL graphql, Schema context, String query) throws IOException {
+    return new ObjectMapper()
+        .readTree(
+            convertExecutionResultToJson(
+                graphql.execute(ExecutionInput.newExecutionInput(query).context(context))))
+        .get("data");
+  }
+}
@@ -0,0 +1,178 @@
+package org.molgenis.emx2.io;
+
+import java.util.*;
+import org.jooq.Field;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.TableMetadata;
+import org.molgenis.emx2.io.tablestore.TableStore;
+
+/**
+ * Detects duplicate primary keys while rows stream by, without keeping all keys in memory. Only a
+ * 64-bit hash of each key is kept, in an open addressing set of primitive longs. When a hash was
+ * seen before, the key is verified exactly: directly if the earlier row is in the current batch,
+ * otherwise the suspect keys are counted by reading the source once more in verify. Different keys
+ * with the same hash are very unlikely, so in practice the source is only read again when it really
+ * contains duplicates.
+ *
+ * <p>The reader thread adds the keys while the writer thread may verify the suspects so far, e.g.
+ * before each commit, therefore these methods are synchronized.
+ */
+class DuplicateKeyDetector {
+  private static final long EMPTY = 0;
+  private final TableMetadata metadata;
+  private final List<String> keyFields = new ArrayList<>();
+  private long[] hashes = new long[1 << 16];
+  private int size = 0;
+  // exact keys of current batch, to verify hash collisions within the batch
+  private final Set<String> batchKeys = new HashSet<>();
+  // keys found twice within a batch
+  private final Set<String> duplicates = new LinkedHashSet<>();
+  // keys of which hash was seen in an earlier batch, with number of their batch; need verification
+  private final Map<String, Integer> suspects = new LinkedHashMap<>();
+  private int batch = 0;
+
+  DuplicateKeyDetector(TableMetadata metadata) {
+    this.metadata = metadata;
+    for (Field<?> f : metadata.getPrimaryKeyFields()) {
+      keyFields.add(f.getName());
+    }
+  }
+
+  /** returns false if row has same key as an earlier row in the batch, so should be skipped */
+  synchronized boolean add(Row row) {
+    String key = getKey(row);
+    if (addHash(hash(key))) {
+      batchKeys.add(key);
+      return true;
+    }
+    if (batchKeys.contains(key)) {
+      duplicates.add(key);
+      return false;
+    }
+    batchKeys.add(key);
+    suspects.putIfAbsent(key, batch);
+    return true;
+  }
+
+  /** call when batch is complete, so keys of the batch can be released */
+  synchronized void newBatch() {
+    batchKeys.clear();
+    batch++;
+  }
+
+  /** returns keys that were found more than once, reading source again only if hashes collided */
+  Set<String> verify(TableStore source, String tableName) {
+    Set<String> result;
+    synchronized (this) {
+      result = new LinkedHashSet<>(duplicates);
+    }
+    result.addAll(verifySuspects(source, tableName, Integer.MAX_VALUE));
+    return result;
+  }
+
+  /**
+   * returns the suspect keys of the first n batches that are found more than once in the source,
+   * reading the source again only if there are any. Suspects that are verified are not verified
+   * again.
+   */
+  Set<String> verifySuspects(TableStore source, String tableName, int batches) {
+    Set<String> toVerify = new LinkedHashSet<>();
+    synchronized (this) {
+      Iterator<Map.Entry<String, Integer>> iterator = suspects.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, Integer> suspect = iterator.next();
+        if (suspect.getValue() < batches) {
+          toVerify.add(suspect.getKey());
+          iterator.remove();
+        }
+      }
+    }
+    Set<String> result = new LinkedHashSet<>();
+    if (!toVerify.isEmpty()) {
+      Map<String, Integer> counts = new HashMap<>();
+      // same typing as the import, so keys are formatted the same
+      source.processTable(
+          tableName,
+          metadata,
+          iterator -> {
+            while (iterator.hasNext()) {
+              String key = getKey(iterator.next());
+              if (toVerify.contains(key)) {
+                counts.merge(key, 1, Integer::sum);
+              }
+            }
+          });
+      for (String key : toVerify) {
+        if (counts.getOrDefault(key, 0) > 1) {
+          result.add(key);
+        }
+      }
+    }
+    return result;
+  }
+
+  String getKeyFields() {
+    return String.join(",", keyFields);
+  }
+
+  String getKey(Row row) {
+    StringBuilder key = new StringBuilder();
+    for (String field : keyFields) {
+      if (key.length() > 0) {
+        key.append(',');
+      }
+      key.append(row.getString(field));
+    }
+    return key.toString();
+  }
+
+  /** returns false if hash was already present */
+  private boolean addHash(long hash) {
+    int mask = hashes.length - 1;
+    int slot = (int) hash & mask;
+    while (hashes[slot] != EMPTY) {
+      if (hashes[slot] == hash) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    hashes[slot] = hash;
+    size++;
+    // keep load below 0.75
+    if (size * 4L > hashes.length * 3L) {
+      resize();
+    }
+    return true;
+  }
+
+  private void resize() {
+    long[] old = hashes;
+    hashes = new long[old.length * 2];
+    int mask = hashes.length - 1;
+    for (long hash : old) {
+      if (hash != EMPTY) {
+        int slot = (int) hash & mask;
+        while (hashes[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+      }
+    }
+  }
+
+  /** 64-bit FNV-1a, with the murmur3 finalizer to spread the bits used for the slot */
+  static long hash(String key) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      h ^= key.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb93fe53ec4cbL;
+    h ^= h >>> 33;
+    // zero marks an empty slot
+    return h == EMPTY ? 1 : h;
+  }
+}
@@ -0,0 +1,335 @@
+package org.molgenis.emx2.io;
+
+import static org.molgenis.emx2.ColumnType.FILE;
+import static org.molgenis.emx2.Constants.MG_TABLECLASS;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import org.molgenis.emx2.Column;
+import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.Table;
+import org.molgenis.emx2.TableMetadata;
+import org.molgenis.emx2.io.tablestore.TableStore;
+import org.molgenis.emx2.tasks.Task;
+
+/**
+ * Imports the rows of one table in three stages connected by bounded queues, so memory use stays
+ * flat:
+ *
+ * <ol>
+ *   <li>a reader thread streams rows from the TableStore, checks for duplicate keys, and cuts them
+ *       into batches
+ *   <li>worker threads convert the values of each batch into the column types, if not already typed
+ *       by the store, check required columns, and run the computed value and validation scripts
+ *   <li>the writer, i.e. the calling thread that owns the transaction, saves the prepared batches
+ *       in the order they were read
+ * </ol>
+ *
+ * Errors are raised by the writer when it reaches the failed batch, so the batches before it are
+ * written first, same as when importing on a single thread. Rows of subclasses are left to the
+ * writer, because their columns are not known here.
+ *
+ * <p>By default the writer saves in the transaction of the caller. With commitEvery the writer
+ * commits every n batches in a transaction of its own instead, so an import can be stopped and
+ * resumed later by skipping the rows that were committed. Because committed rows cannot be rolled
+ * back, duplicate keys then fail the import before they are committed: a key found twice within a
+ * batch fails at that batch, and keys that may duplicate a row of an earlier batch are verified
+ * before each commit. The writer stops before the next batch when the task is cancelled.
+ */
+class ImportRowPipeline {
+  static final int BATCH_SIZE = 1000;
+  static final int WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+  // signals the reader is done
+  private static final Future<List<Row>> END = CompletableFuture.completedFuture(null);
+
+  private final Table table;
+  private final Task task;
+  private final DuplicateKeyDetector keys;
+  private final int workers;
+  private final int batchSize;
+  private int skip;
+  private int commitEvery;
+  private IntConsumer onCommit;
+
+  ImportRowPipeline(Table table, Task task, DuplicateKeyDetector keys) {
+    this(table, task, keys, WORKERS, BATCH_SIZE);
+  }
+
+  ImportRowPipeline(Table table, Task task, DuplicateKeyDetector keys, int workers, int batchSize) {
+    this.table = table;
+    this.task = task;
+    this.keys = keys;
+    this.workers = workers;
+    this.batchSize = batchSize;
+  }
+
+  /** skips the first rows of the source, e.g. because these were committed before */
+  ImportRowPipeline setSkip(int rows) {
+    this.skip = rows;
+    return this;
+  }
+
+  /**
+   * commits every n batches, calling onCommit with the number of rows of the source that are
+   * committed, including the skipped rows
+   */
+  ImportRowPipeline setCommitEvery(int batches, IntConsumer onCommit) {
+    this.commitEvery = batches;
+    this.onCommit = onCommit;
+    return this;
+  }
+
+  /** returns number of rows imported */
+  int run(TableStore source) {
+    // metadata is read here because its views are not safe to initialize from multiple threads
+    List<Column> columns =
+        table.getMetadata().getMutationColumns().stream()
+            .filter(c -> c.getComputed() == null && !FILE.equals(c.getColumnType()))
+            .collect(Collectors.toList());
+    List<Column> scriptColumns = getScriptColumns(table.getMetadata());
+    String tableClass = table.getSchema().getName() + "." + table.getName();
+
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            workers,
+            runnable -> {
+              Thread thread =
+                  new Thread(
+                      runnable, "import-" + table.getName() + "-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    // batches in progress, in order read; a few per worker to keep all workers busy
+    BlockingQueue<Future<List<Row>>> queue = new ArrayBlockingQueue<>(2 * workers);
+    Thread reader =
+        new Thread(
+            () -> read(source, queue, executor, columns, scriptColumns, tableClass),
+            "import-" + table.getName() + "-reader");
+    reader.setDaemon(true);
+    reader.start();
+
+    task.setIndex(0);
+    try {
+      if (commitEvery > 0) {
+        return writeInTransactions(queue, source);
+      }
+      int index = 0;
+      while (true) {
+        List<Row> batch = next(queue);
+        if (batch == null) {
+          return index;
+        }
+        table.save(batch);
+        index = progress(index, batch);
+      }
+    } finally {
+      // stops the reader if still running, e.g. because of an error
+      reader.interrupt();
+      queue.clear();
+      executor.shutdownNow();
+      try {
+        reader.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** columns with computed value or validation, including those of the inherited tables */
+  private static List<Column> getScriptColumns(TableMetadata metadata) {
+    Map<String, Column> result = new LinkedHashMap<>();
+    if (metadata.getInherit() != null) {
+      for (Column c : getScriptColumns(metadata.getInheritedTable())) {
+        result.put(c.getName(), c);
+      }
+    }
+    for (Column c : metadata.getMutationColumns()) {
+      if (c.getComputed() != null || c.getValidation() != null) {
+        result.put(c.getName(), c);
+      }
+    }
+    return new ArrayList<>(result.values());
+  }
+
+  /** saves the batches in transactions of commitEvery batches, returns number of rows imported */
+  private int writeInTransactions(BlockingQueue<Future<List<Row>>> queue, TableStore source) {
+    // updated from within the transactions
+    int[] index = {0};
+    int[] batches = {0};
+    boolean[] done = {false};
+    while (!done[0]) {
+      table
+          .getSchema()
+          .tx(
+              db -> {
+                Table t = db.getSchema(table.getSchema().getName()).getTable(table.getName());
+                for (int i = 0; i < commitEvery; i++) {
+                  List<Row> batch = next(queue);
+                  if (batch == null) {
+                    done[0] = true;
+                    break;
+                  }
+                  t.save(batch);
+                  index[0] = progress(index[0], batch);
+                  batches[0]++;
+                }
+                Set<String> duplicates = keys.verifySuspects(source, table.getName(), batches[0]);
+                if (!duplicates.isEmpty()) {
+                  throw duplicateKeys(duplicates);
+                }
+              });
+      // rows that were left out as duplicate are not counted, so this never skips too much
+      if (onCommit != null) {
+        onCommit.accept(skip + index[0]);
+      }
+    }
+    return index[0];
+  }
+
+  private MolgenisException duplicateKeys(Set<String> duplicates) {
+    return new MolgenisException(
+        "Duplicate keys found in table " + table.getName() + ": " + duplicates);
+  }
+
+  private int progress(int index, List<Row> batch) {
+    index += batch.size();
+    task.setIndex(index);
+    task.setDescription("Imported " + index + " rows into " + table.getName());
+    return index;
+  }
+
+  /** next batch to save, null when done */
+  private List<Row> next(BlockingQueue<Future<List<Row>>> queue) {
+    if (task.isCancelled()) {
+      throw new MolgenisException("Import of table " + table.getName() + " cancelled");
+    }
+    return take(queue);
+  }
+
+  private void read(
+      TableStore source,
+      BlockingQueue<Future<List<Row>>> queue,
+      ExecutorService executor,
+      List<Column> columns,
+      List<Column> scriptColumns,
+      String tableClass) {
+    try {
+      source.processTable(
+          table.getName(),
+          table.getMetadata(),
+          (Iterator<Row> iterator) -> {
+            List<Row> batch = new ArrayList<>(batchSize);
+            int skipped = 0;
+            while (iterator.hasNext()) {
+              Row row = iterator.next();
+              if (skipped < skip) {
+                skipped++;
+                continue;
+              }
+              // duplicates within a batch would fail the save, so are left out
+              if (keys.add(row)) {
+                batch.add(row);
+              } else if (commitEvery > 0) {
+                throw duplicateKeys(Set.of(keys.getKey(row)));
+              }
+              if (batch.size() >= batchSize) {
+                submit(queue, executor, batch, columns, scriptColumns, tableClass);
+                keys.newBatch();
+                batch = new ArrayList<>(batchSize);
+              }
+            }
+            // remaining
+            if (!batch.isEmpty()) {
+              submit(queue, executor, batch, columns, scriptColumns, tableClass);
+            }
+          });
+      queue.put(END);
+    } catch (InterruptedException e) {
+      // writer stopped
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      CompletableFuture<List<Row>> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      try {
+        queue.put(failed);
+      } catch (InterruptedException ie) {
+        // writer stopped
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static void submit(
+      BlockingQueue<Future<List<Row>>> queue,
+      ExecutorService executor,
+      List<Row> batch,
+      List<Column> columns,
+      List<Column> scriptColumns,
+      String tableClass) {
+    try {
+      queue.put(executor.submit(() -> prepare(batch, columns, scriptColumns, tableClass)));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MolgenisException("Import interrupted", e);
+    }
+  }
+
+  /**
+   * converts values read as string into the type of their column, checks required, and computes and
+   * validates the values so the writer only has to save them
+   */
+  static List<Row> prepare(
+      List<Row> batch, List<Column> columns, List<Column> scriptColumns, String tableClass) {
+    // rows of subclasses are checked by the writer
+    List<Row> toPrepare = new ArrayList<>(batch.size());
+    for (Row row : batch) {
+      for (Column c : columns) {
+        if (row.getValueMap().get(c.getName()) instanceof String) {
+          row.set(c.getName(), row.get(c.getName(), c.getPrimitiveColumnType()));
+        }
+      }
+      String rowTableClass = row.getString(MG_TABLECLASS);
+      if (rowTableClass == null || tableClass.equals(rowTableClass)) {
+        if (!row.isDraft()) {
+          for (Column c : columns) {
+            if (c.isRequired() && row.isNull(c.getName(), c.getColumnType())) {
+              throw new MolgenisException("column '" + c.getName() + "' is required in " + row);
+            }
+          }
+        }
+        toPrepare.add(row);
+      }
+    }
+    Row.prepare(toPrepare, scriptColumns);
+    return batch;
+  }
+
+  private List<Row> take(BlockingQueue<Future<List<Row>>> queue) {
+    try {
+      return queue.take().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MolgenisException("Import of table " + table.getName() + " interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof MolgenisException) {
+        throw (MolgenisException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new MolgenisException(
+          "Import of table " + table.getName() + " failed: " + cause.getMessage(),
+          (Exception) cause);
+    }
+  }
+}
@@ -3,15 +3,28 @@ package org.molgenis.emx2.io;
 import static org.molgenis.emx2.tasks.StepStatus.*;
 
 import java.util.Collection;
+import org.molgenis.emx2.MolgenisException;
 import org.molgenis.emx2.Schema;
 import org.molgenis.emx2.Table;
 import org.molgenis.emx2.io.tablestore.TableStore;
 import org.molgenis.emx2.tasks.Step;
 import org.molgenis.emx2.tasks.Task;
 
+/**
+ * Imports metadata and data of a schema. By default everything is imported in one transaction, so a
+ * failed or cancelled import leaves the schema unchanged. For large imports, setCommitEvery commits
+ * per n batches instead, recording a checkpoint after each commit; an import that failed or was
+ * cancelled can then be resumed from its checkpoint by importing the same data again with
+ * setResumeFrom.
+ */
 public class ImportSchemaTask extends Task {
+  /** for setCommitEvery, commits once per table */
+  public static final int COMMIT_PER_TABLE = Integer.MAX_VALUE;
+
   private TableStore store;
   private Schema schema;
+  private int commitEvery;
+  private String resumeFrom;
 
   public ImportSchemaTask(String description, TableStore store, Schema schema) {
     super(description);
@@ -25,7 +38,35 @@ public class ImportSchemaTask extends Task {
     this.schema = schema;
   }
 
+  /** commit every n batches of rows, instead of all in one transaction; 0 is off */
+  public ImportSchemaTask setCommitEvery(int batches) {
+    this.commitEvery = batches;
+    return this;
+  }
+
+  /**
+   * resume from the checkpoint of an earlier import of the same data, skipping the metadata, the
+   * tables before the checkpoint and the rows committed of the checkpoint table. Requires
+   * setCommitEvery.
+   */
+  public ImportSchemaTask setResumeFrom(String checkpoint) {
+    this.resumeFrom = checkpoint;
+    return this;
+  }
+
+  /** checkpoint is 'table:rows', rows being the number of rows of the table that are committed */
+  static String checkpoint(String tableName, int rows) {
+    return tableName + ":" + rows;
+  }
+
   public void run() {
+    if (commitEvery > 0) {
+      runWithCheckpoints();
+      return;
+    }
+    if (resumeFrom != null) {
+      throw new MolgenisException("Import failed: resume requires commit every n batches");
+    }
     this.start();
     try {
       schema.tx(
@@ -52,20 +93,7 @@ public class ImportSchemaTask extends Task {
                 }
               }
 
-              // warn for unknown sheet names
-              Collection<String> tableNames = s.getTableNames();
-              for (String sheet : store.tableNames()) {
-                if (!"molgenis".equals(sheet)
-                    && !"molgenis_settings".equals(sheet)
-                    && !"molgenis_members".equals(sheet)
-                    && !tableNames.contains(sheet)) {
-                  this.step(
-                          "Sheet with name '"
-                              + sheet
-                              + "' was skipped: no table with that name found")
-                      .skipped();
-                }
-              }
+              warnUnknownSheets(s);
             }
 
             // execute the import tasks
@@ -78,6 +106,11 @@ public class ImportSchemaTask extends Task {
           });
       this.getSteps().get(this.getSteps().size() - 1).setDescription("Committed data").complete();
     } catch (Exception e) {
+      if (isCancelled()) {
+        this.rollback(this);
+        this.cancelled("Import cancelled, nothing was imported");
+        return;
+      }
       this.getSteps().get(this.getSteps().size() - 1).error("Commit failed: " + e.getMessage());
       this.rollback(this);
       this.error("Import failed: " + e.getMessage());
@@ -86,6 +119,94 @@ public class ImportSchemaTask extends Task {
     this.complete();
   }
 
+  private void runWithCheckpoints() {
+    this.start();
+    String resumeTable = null;
+    int resumeRows = 0;
+    if (resumeFrom != null) {
+      int split = resumeFrom.lastIndexOf(':');
+      try {
+        resumeTable = resumeFrom.substring(0, split);
+        resumeRows = Integer.parseInt(resumeFrom.substring(split + 1));
+      } catch (Exception e) {
+        this.error("Import failed: invalid checkpoint '" + resumeFrom + "'");
+        throw new MolgenisException("Import failed: invalid checkpoint '" + resumeFrom + "'", e);
+      }
+    }
+    try {
+      // metadata first, so tables exist when their data is committed
+      if (resumeTable == null) {
+        schema.tx(
+            db -> {
+              Task metadataTask = new ImportMetadataTask(db.getSchema(schema.getName()), store);
+              this.add(metadataTask);
+              metadataTask.run();
+            });
+      } else {
+        this.step("Skipped metadata: resuming from checkpoint " + resumeFrom).skipped();
+      }
+
+      Schema s = schema.getDatabase().getSchema(schema.getName());
+      if (resumeTable != null
+          && (s.getTable(resumeTable) == null || !store.containsTable(resumeTable))) {
+        throw new MolgenisException(
+            "Import failed: table '" + resumeTable + "' of checkpoint not found");
+      }
+      boolean skipped = true;
+      boolean resumed = resumeTable == null;
+      for (Table table : s.getTablesSorted()) {
+        if (!store.containsTable(table.getName())) continue;
+        String tableName = table.getName();
+        if (!resumed && !tableName.equals(resumeTable)) {
+          this.step("Skipped table " + tableName + ": imported before checkpoint").skipped();
+          continue;
+        }
+        resumed = true;
+        if (isCancelled()) {
+          throw new MolgenisException("Import cancelled");
+        }
+        int skip = tableName.equals(resumeTable) ? resumeRows : 0;
+        this.setCheckpoint(checkpoint(tableName, skip));
+        ImportTableTask importTableTask =
+            new ImportTableTask(store, table)
+                .setSkip(skip)
+                .setCommitEvery(
+                    commitEvery, rows -> this.setCheckpoint(checkpoint(tableName, rows)));
+        this.add(importTableTask);
+        importTableTask.run();
+        skipped = false;
+      }
+      warnUnknownSheets(s);
+      if (skipped) {
+        this.step("Import data skipped: No data sheet included").skipped();
+      }
+    } catch (Exception e) {
+      String resume = getCheckpoint() != null ? ", resume from checkpoint " + getCheckpoint() : "";
+      if (isCancelled()) {
+        this.cancelled("Import cancelled" + resume);
+        return;
+      }
+      this.error("Import failed: " + e.getMessage() + resume);
+      throw e;
+    }
+    // nothing left to resume
+    this.setCheckpoint(null);
+    this.complete();
+  }
+
+  private void warnUnknownSheets(Schema s) {
+    Collection<String> tableNames = s.getTableNames();
+    for (String sheet : store.tableNames()) {
+      if (!"molgenis".equals(sheet)
+          && !"molgenis_settings".equals(sheet)
+          && !"molgenis_members".equals(sheet)
+          && !tableNames.contains(sheet)) {
+        this.step("Sheet with name '" + sheet + "' was skipped: no table with that name found")
+            .skipped();
+      }
+    }
+  }
+
   private void rollback(Task task) {
     for (Step step : task.getSteps()) {
       if (step.getStatus().equals(COMPLETED)) {
@@ -1,18 +1,17 @@
 package org.molgenis.emx2.io;
 
-import java.util.*;
-import java.util.stream.Collectors;
-import org.jooq.Field;
-import org.molgenis.emx2.Row;
+import java.util.Set;
+import java.util.function.IntConsumer;
 import org.molgenis.emx2.Table;
-import org.molgenis.emx2.TableMetadata;
-import org.molgenis.emx2.io.tablestore.RowProcessor;
 import org.molgenis.emx2.io.tablestore.TableStore;
 import org.molgenis.emx2.tasks.Task;
 
 public class ImportTableTask extends Task {
   private Table table;
   private TableStore source;
+  private int skip;
+  private int commitEvery;
+  private IntConsumer onCommit;
 
   public ImportTableTask(TableStore source, Table table) {
     super("Import table " + table.getName());
@@ -20,104 +19,56 @@ public class ImportTableTask extends Task {
     this.source = source;
   }
 
-  public void run() {
-    this.start();
-
-    // validate column names, provide warning if some columns will be ignored
-
-    // validate uniqueness of the keys in the set
-    this.setDescription(
-        "Table " + table.getName() + ": Counting rows & checking that all key columns are unique");
-    source.processTable(table.getName(), new ValidatePkeyProcessor(table.getMetadata(), this));
-
-    // execute the actual loading
-    this.setTotal(this.getIndex());
-    this.setDescription("Importing rows into " + table.getName());
-    source.processTable(table.getName(), new ImportRowProcesssor(table, this));
-
-    // done
-    if (getIndex() > 0) {
-      this.complete("Imported " + getIndex() + " " + table.getName());
-    } else {
-      this.skipped("Skipped table " + table.getName() + ": sheet was empty");
-    }
+  /** skip rows committed by an earlier import */
+  ImportTableTask setSkip(int rows) {
+    this.skip = rows;
+    return this;
   }
 
-  public static class ValidatePkeyProcessor implements RowProcessor {
-
-    Set<String> duplicates = new HashSet<>();
-    Set<String> keys = new HashSet<>();
-    TableMetadata metadata;
-    Task task;
-
-    public ValidatePkeyProcessor(TableMetadata metadata, Task task) {
-      this.metadata = metadata;
-      this.task = task;
-    }
-
-    @Override
-    public void process(Iterator<Row> iterator) {
+  /** commit every n batches instead of in the transaction of the caller, see ImportRowPipeline */
+  ImportTableTask setCommitEvery(int batches, IntConsumer onCommit) {
+    this.commitEvery = batches;
+    this.onCommit = onCommit;
+    return this;
+  }
 
-      task.setIndex(0);
+  public void run() {
+    this.start();
 
-      while (iterator.hasNext()) {
-        Row row = iterator.next();
-        String keyValue = "";
-        for (Field f : metadata.getPrimaryKeyFields()) {
-          keyValue += row.getString(f.getName()) + ",";
-        }
-        keyValue = keyValue.substring(0, keyValue.length() - 1);
-        if (keys.contains(keyValue)) {
-          duplicates.add(keyValue);
-          String keyFields =
-              metadata.getPrimaryKeyFields().stream()
-                  .map(f -> f.getName())
-                  .collect(Collectors.joining(","));
-          task.step("Found duplicate Key (" + keyFields + ")=(" + keyValue + ")").error();
-        } else {
-          keys.add(keyValue);
-        }
-        task.setIndex(task.getIndex());
-      }
-      if (duplicates.size() > 0) {
-        task.completeWithError(
-            "Duplicate keys found in table " + metadata.getTableName() + ": " + duplicates);
+    // single pass that also checks that all key columns are unique
+    this.setDescription("Importing rows into " + table.getName());
+    DuplicateKeyDetector keys = new DuplicateKeyDetector(table.getMetadata());
+    int count;
+    try {
+      count =
+          new ImportRowPipeline(table, this, keys)
+              .setSkip(skip)
+              .setCommitEvery(commitEvery, onCommit)
+              .run(source);
+    } catch (Exception e) {
+      if (isCancelled()) {
+        this.cancelled("Cancelled import of " + table.getName() + " after " + getIndex() + " rows");
       }
+      throw e;
     }
-  }
-
-  /** executes the import */
-  private static class ImportRowProcesssor implements RowProcessor {
-    private final Table table;
-    private final Task task;
 
-    public ImportRowProcesssor(Table table, Task task) {
-      this.table = table;
-      this.task = task;
+    // with commitEvery the pipeline already failed on duplicates, before committing them
+    Set<String> duplicates = keys.verify(source, table.getName());
+    if (!duplicates.isEmpty()) {
+      for (String keyValue : duplicates) {
+        this.step("Found duplicate Key (" + keys.getKeyFields() + ")=(" + keyValue + ")").error();
+      }
+      this.completeWithError(
+          "Duplicate keys found in table " + table.getName() + ": " + duplicates);
     }
 
-    @Override
-    public void process(Iterator<Row> iterator) {
-
-      task.setIndex(0);
-      int index = 0;
-      List<Row> batch = new ArrayList<>();
-      while (iterator.hasNext()) {
-        batch.add(iterator.next());
-        index++;
-        if (batch.size() >= 1000) {
-          table.save(batch);
-          task.setIndex(index);
-          task.setDescription("Imported " + task.getIndex() + " rows into " + table.getName());
-          batch.clear();
-        }
-      }
-      // remaining
-      if (!batch.isEmpty()) {
-        table.save(batch);
-        task.setIndex(index);
-        task.setDescription("Imported " + task.getIndex() + " rows into " + table.getName());
-      }
+    // done
+    if (count > 0) {
+      this.complete("Imported " + count + " " + table.getName());
+    } else if (skip > 0) {
+      this.skipped("Skipped table " + table.getName() + ": already imported");
+    } else {
+      this.skipped("Skipped table " + table.getName() + ": sheet was empty");
     }
   }
 }
@@ -5,6 +5,7 @@ import static org.molgenis.emx2.io.emx2.Emx2Members.outputRoles;
 import static org.molgenis.emx2.io.emx2.Emx2Settings.outputSettings;
 import static org.molgenis.emx2.io.emx2.Emx2Tables.outputTable;
 
+import java.io.OutputStream;
 import java.nio.file.Path;
 import org.molgenis.emx2.Schema;
 import org.molgenis.emx2.Table;
@@ -47,6 +48,24 @@ public class MolgenisIO {
     executeEmx1Export(new TableStoreForXlsxFile(excelFile), schema);
   }
 
+  public static void toZipStream(OutputStream outputStream, Schema schema) {
+    try (TableStoreForCsvInZipStream store = new TableStoreForCsvInZipStream(outputStream)) {
+      outputAll(store, schema);
+    }
+  }
+
+  public static void toExcelStream(OutputStream outputStream, Schema schema) {
+    try (TableStoreForXlsxStream store = new TableStoreForXlsxStream(outputStream)) {
+      outputAll(store, schema);
+    }
+  }
+
+  public static void toEmx1ExcelStream(OutputStream outputStream, Schema schema) {
+    try (TableStoreForXlsxStream store = new TableStoreForXlsxStream(outputStream)) {
+      executeEmx1Export(store, schema);
+    }
+  }
+
   private static void executeEmx1Export(TableStore store, Schema schema) {
     // write metadata
     store.writeTable("entities", Emx1.getEmx1Entities(schema.getMetadata()));
@@ -65,6 +84,18 @@ public class MolgenisIO {
     outputTable(new TableStoreForXlsxFile(excelFile), table);
   }
 
+  public static void toZipStream(OutputStream outputStream, Table table) {
+    try (TableStoreForCsvInZipStream store = new TableStoreForCsvInZipStream(outputStream)) {
+      outputTable(store, table);
+    }
+  }
+
+  public static void toExcelStream(OutputStream outputStream, Table table) {
+    try (TableStoreForXlsxStream store = new TableStoreForXlsxStream(outputStream)) {
+      outputTable(store, table);
+    }
+  }
+
   public static void toCsvFile(Path csvFile, Table table) {
     outputTable(new TableStoreForCsvFile(csvFile), table);
   }
@@ -8,33 +8,36 @@ import java.util.List;
 import org.molgenis.emx2.Column;
 import org.molgenis.emx2.Operator;
 import org.molgenis.emx2.Row;
+import org.molgenis.emx2.RowIterator;
 import org.molgenis.emx2.Table;
-import org.molgenis.emx2.io.tablestore.TableStoreForCsvInZipFile;
+import org.molgenis.emx2.io.tablestore.TableAndFileStore;
 
 public class Emx2Files {
-  public static void outputFiles(TableStoreForCsvInZipFile store, Table table) {
+  public static void outputFiles(TableAndFileStore store, Table table) {
     for (Column c : table.getMetadata().getColumns()) {
       if (c.getColumnType().equals(FILE)) {
         // query the identifiers of this, and then retrieve (slow, but scalable) and write
-        List<Row> rows = table.select(s(c.getName())).retrieveRows();
-        for (Row r : rows) {
-          if (r.notNull(c.getName())) {
+        try (RowIterator rows = table.select(s(c.getName())).retrieveRowsIterator()) {
+          while (rows.hasNext()) {
+            Row r = rows.next();
+            if (r.notNull(c.getName())) {
 
-            // get the files one by one
-            List<Row> fileRows =
-                table
-                    .select(s(c.getName(), s("id"), s("contents"), s("mimetype"), s("extension")))
-                    .where(f(c.getName(), Operator.EQUALS, r.getString(c.getName())))
-                    .retrieveRows();
+              // get the files one by one
+              List<Row> fileRows =
+                  table
+                      .select(s(c.getName(), s("id"), s("contents"), s("mimetype"), s("extension")))
+                      .where(f(c.getName(), Operator.EQUALS, r.getString(c.getName())))
+                      .retrieveRows();
 
-            // only one row
-            for (Row f : fileRows) {
-              store.writeFile(
-                  "_files/"
-                      + f.getString(c.getName())
-                      + "."
-                      + f.getString(c.getName() + "_extension"),
-                  f.getBinary(c.getName() + "_contents"));
+              // only one row
+              for (Row f : fileRows) {
+                store.writeFile(
+                    "_files/"
+                        + f.getString(c.getName())
+                        + "."
+                        + f.getString(c.getName() + "_extension"),
+                    f.getBinary(c.getName() + "_contents"));
+              }
             }
           }
         }
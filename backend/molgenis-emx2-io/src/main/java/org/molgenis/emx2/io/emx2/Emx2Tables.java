@@ -5,9 +5,10 @@ import static org.molgenis.emx2.FilterBean.f;
 import static org.molgenis.emx2.SelectColumn.s;
 
 import java.util.*;
+import java.util.stream.Collectors;
 import org.molgenis.emx2.*;
+import org.molgenis.emx2.io.tablestore.TableAndFileStore;
 import org.molgenis.emx2.io.tablestore.TableStore;
-import org.molgenis.emx2.io.tablestore.TableStoreForCsvInZipFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,32 +20,26 @@ public class Emx2Tables {
   }
 
   public static void outputTable(TableStore store, Table table) {
-    SelectColumn[] select =
+    List<String> columnNames =
         table.getMetadata().getDownloadColumnNames().stream()
             .map(c -> c.getName())
             .filter(n -> !n.startsWith("mg_"))
-            .map(c -> s(c))
-            .toArray(SelectColumn[]::new);
+            .collect(Collectors.toList());
+    SelectColumn[] select = columnNames.stream().map(c -> s(c)).toArray(SelectColumn[]::new);
 
+    Query query = table.query().select(select);
     if (table.getMetadata().getColumnNames().contains(MG_TABLECLASS)) {
-      store.writeTable(
-          table.getName(),
-          table
-              .query()
-              .select(select)
-              .where(
-                  f(
-                      MG_TABLECLASS,
-                      Operator.EQUALS,
-                      table.getSchema().getName() + "." + table.getName()))
-              .retrieveRows());
-    } else {
-      store.writeTable(table.getName(), table.select(select).retrieveRows());
+      query.where(
+          f(MG_TABLECLASS, Operator.EQUALS, table.getSchema().getName() + "." + table.getName()));
+    }
+    // stream the rows from a database cursor, so large tables don't need to fit in memory
+    try (RowIterator rows = query.retrieveRowsIterator()) {
+      store.writeTable(table.getName(), columnNames, () -> rows);
     }
 
     // in case of zip file we include the attached files
-    if (store instanceof TableStoreForCsvInZipFile) {
-      Emx2Files.outputFiles((TableStoreForCsvInZipFile) store, table);
+    if (store instanceof TableAndFileStore) {
+      Emx2Files.outputFiles((TableAndFileStore) store, table);
     }
   }
 
@@ -0,0 +1,258 @@
+package org.molgenis.emx2.io.readers;
+
+import java.util.*;
+import org.molgenis.emx2.Column;
+import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.RowLayout;
+
+/**
+ * Batch of csv lines stored per column. INT, DECIMAL and BOOL values are parsed into primitive
+ * arrays, all other values are kept as strings, dictionary encoded so repeated values are stored
+ * once. Empty values are null.
+ */
+public class CsvColumnBatch {
+  private final List<String> columnNames;
+  private final RowLayout layout;
+  private final ColumnBuffer[] buffers;
+  private final int capacity;
+  private int size = 0;
+  // line number of first row, for error messages
+  private int firstLine;
+
+  CsvColumnBatch(List<String> columnNames, List<Column> columns, int capacity) {
+    this.columnNames = columnNames;
+    this.layout = RowLayout.of(columnNames);
+    this.capacity = capacity;
+    this.buffers = new ColumnBuffer[columnNames.size()];
+    for (int i = 0; i < buffers.length; i++) {
+      Column column = columns.get(i);
+      if (column == null) {
+        buffers[i] = new DictionaryBuffer(capacity);
+      } else {
+        switch (column.getPrimitiveColumnType()) {
+          case INT:
+            buffers[i] = new IntBuffer(capacity);
+            break;
+          case DECIMAL:
+            buffers[i] = new DecimalBuffer(capacity);
+            break;
+          case BOOL:
+            buffers[i] = new BoolBuffer(capacity);
+            break;
+          default:
+            buffers[i] = new DictionaryBuffer(capacity);
+        }
+      }
+    }
+  }
+
+  /** adds the values of a line, parsing them into the column buffers */
+  void add(String[] values, int line) {
+    if (size == 0) {
+      firstLine = line;
+    }
+    for (int i = 0; i < buffers.length; i++) {
+      String value = i < values.length ? values[i] : null;
+      if (value != null && value.trim().isEmpty()) {
+        value = null;
+      }
+      try {
+        buffers[i].add(size, value);
+      } catch (IllegalArgumentException e) {
+        throw new MolgenisException(
+            "Import failed: value '"
+                + value
+                + "' of column '"
+                + columnNames.get(i)
+                + "' on line "
+                + line
+                + " is not a valid "
+                + buffers[i].getTypeName()
+                + ".");
+      }
+    }
+    size++;
+  }
+
+  void clear() {
+    size = 0;
+    for (ColumnBuffer buffer : buffers) {
+      buffer.clear();
+    }
+  }
+
+  boolean isFull() {
+    return size >= capacity;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  /** line number of the row in the csv, where the header is line 1 */
+  public int getLine(int index) {
+    return firstLine + index;
+  }
+
+  /** returns typed value, or null */
+  public Object get(int index, int column) {
+    return buffers[column].get(index);
+  }
+
+  /** returns the row as compact Row, sharing the layout of the batch */
+  public Row getRow(int index) {
+    Object[] values = new Object[layout.size()];
+    for (int i = 0; i < buffers.length; i++) {
+      // duplicate column names share a slot, last value wins
+      values[layout.indexOf(columnNames.get(i))] = buffers[i].get(index);
+    }
+    return new Row(layout, values);
+  }
+
+  private abstract static class ColumnBuffer {
+    final BitSet nulls = new BitSet();
+
+    void add(int index, String value) {
+      if (value == null) {
+        nulls.set(index);
+      } else {
+        nulls.clear(index);
+        parse(index, value.trim());
+      }
+    }
+
+    Object get(int index) {
+      return nulls.get(index) ? null : value(index);
+    }
+
+    void clear() {
+      nulls.clear();
+    }
+
+    /** throws IllegalArgumentException if value cannot be parsed */
+    abstract void parse(int index, String value);
+
+    abstract Object value(int index);
+
+    abstract String getTypeName();
+  }
+
+  private static class IntBuffer extends ColumnBuffer {
+    private final int[] values;
+
+    IntBuffer(int capacity) {
+      values = new int[capacity];
+    }
+
+    @Override
+    void parse(int index, String value) {
+      values[index] = Integer.parseInt(value);
+    }
+
+    @Override
+    Object value(int index) {
+      return values[index];
+    }
+
+    @Override
+    String getTypeName() {
+      return "int";
+    }
+  }
+
+  private static class DecimalBuffer extends ColumnBuffer {
+    private final double[] values;
+
+    DecimalBuffer(int capacity) {
+      values = new double[capacity];
+    }
+
+    @Override
+    void parse(int index, String value) {
+      values[index] = Double.parseDouble(value);
+    }
+
+    @Override
+    Object value(int index) {
+      return values[index];
+    }
+
+    @Override
+    String getTypeName() {
+      return "decimal";
+    }
+  }
+
+  private static class BoolBuffer extends ColumnBuffer {
+    private final boolean[] values;
+
+    BoolBuffer(int capacity) {
+      values = new boolean[capacity];
+    }
+
+    @Override
+    void parse(int index, String value) {
+      if ("true".equalsIgnoreCase(value)) {
+        values[index] = true;
+      } else if ("false".equalsIgnoreCase(value)) {
+        values[index] = false;
+      } else {
+        throw new IllegalArgumentException(value);
+      }
+    }
+
+    @Override
+    Object value(int index) {
+      return values[index];
+    }
+
+    @Override
+    String getTypeName() {
+      return "bool";
+    }
+  }
+
+  /** values that need further conversion, such as dates and arrays, are kept as string here */
+  private static class DictionaryBuffer extends ColumnBuffer {
+    private final int[] codes;
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> index = new HashMap<>();
+
+    DictionaryBuffer(int capacity) {
+      codes = new int[capacity];
+    }
+
+    @Override
+    void parse(int i, String value) {
+      Integer code = index.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add(value);
+        index.put(value, code);
+      }
+      codes[i] = code;
+    }
+
+    @Override
+    Object value(int i) {
+      return dictionary.get(codes[i]);
+    }
+
+    @Override
+    void clear() {
+      super.clear();
+      dictionary.clear();
+      index.clear();
+    }
+
+    @Override
+    String getTypeName() {
+      return "string";
+    }
+  }
+}
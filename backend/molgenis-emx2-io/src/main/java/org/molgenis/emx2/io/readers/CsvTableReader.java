@@ -1,14 +1,17 @@
 package org.molgenis.emx2.io.readers;
 
 import java.io.*;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.molgenis.emx2.Column;
 import org.molgenis.emx2.MolgenisException;
 import org.molgenis.emx2.Row;
+import org.molgenis.emx2.RowLayout;
+import org.molgenis.emx2.TableMetadata;
 import org.simpleflatmapper.csv.CsvParser;
 
 public class CsvTableReader {
+  private static final int BATCH_SIZE = 1000;
 
   private CsvTableReader() {
     // to prevent new CsvRowReader()
@@ -21,30 +24,24 @@ public class CsvTableReader {
   public static Iterable<Row> read(Reader in) {
     try {
       BufferedReader bufferedReader = new BufferedReader(in);
-      bufferedReader.mark(2000000);
-      String firstLine = bufferedReader.readLine();
-      char separator = ',';
-      if (firstLine.contains("\t")) {
-        separator = '\t';
-      }
-      if (firstLine.contains(";")) {
-        separator = ';';
-      }
-
-      // push back in
-      bufferedReader.reset();
+      char separator = detectSeparator(bufferedReader);
 
       // don't use buffered, it is slower
-      Iterator<LinkedHashMap> iterator =
-          CsvParser.dsl()
-              .separator(separator)
-              .trimSpaces()
-              .mapTo(LinkedHashMap.class)
-              .iterator(bufferedReader);
+      Iterator<String[]> iterator =
+          CsvParser.dsl().separator(separator).trimSpaces().iterator(bufferedReader);
+
+      // header becomes a layout shared by all rows, so rows only hold their values
+      String[] header = iterator.hasNext() ? iterator.next() : new String[0];
+      RowLayout layout = RowLayout.of(header);
+      // duplicate names in header share a slot, last value wins
+      int[] slots = new int[header.length];
+      for (int i = 0; i < header.length; i++) {
+        slots[i] = layout.indexOf(header[i]);
+      }
 
       return () ->
           new Iterator<>() {
-            final Iterator<LinkedHashMap> it = iterator;
+            final Iterator<String[]> it = iterator;
             final AtomicInteger line = new AtomicInteger(1);
 
             public boolean hasNext() {
@@ -56,7 +53,7 @@ public class CsvTableReader {
                         + e.getClass().getName()
                         + ": "
                         + e.getMessage()
-                        + ". Error at line "
+                        + ". Error after line "
                         + line.get()
                         + ".",
                     e);
@@ -64,7 +61,14 @@ public class CsvTableReader {
             }
 
             public Row next() {
-              return new Row(it.next());
+              String[] strings = it.next();
+              line.incrementAndGet();
+              Object[] values = new Object[layout.size()];
+              // missing values are null, values without header are ignored
+              for (int i = 0; i < Math.min(strings.length, slots.length); i++) {
+                values[slots[i]] = strings[i].isEmpty() ? null : strings[i];
+              }
+              return new Row(layout, values);
             }
 
             @Override
@@ -76,4 +80,116 @@ public class CsvTableReader {
       throw new MolgenisException("Import failed", ioe);
     }
   }
+
+  /**
+   * reads rows with values already typed for the columns of the table, see CsvColumnBatch. Header
+   * names are resolved to columns once; unknown columns are read as string.
+   */
+  public static Iterable<Row> read(Reader in, TableMetadata metadata) {
+    return () ->
+        new Iterator<>() {
+          final Iterator<CsvColumnBatch> batches = readBatches(in, metadata, BATCH_SIZE);
+          CsvColumnBatch batch;
+          int index;
+
+          @Override
+          public boolean hasNext() {
+            if (batch != null && index < batch.size()) {
+              return true;
+            }
+            if (batches.hasNext()) {
+              batch = batches.next();
+              index = 0;
+              return batch.size() > 0;
+            }
+            return false;
+          }
+
+          @Override
+          public Row next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            return batch.getRow(index++);
+          }
+        };
+  }
+
+  /** reads batches of at most batchSize lines; the batch instance is reused for each next() */
+  public static Iterator<CsvColumnBatch> readBatches(
+      Reader in, TableMetadata metadata, int batchSize) {
+    try {
+      BufferedReader bufferedReader = new BufferedReader(in);
+      char separator = detectSeparator(bufferedReader);
+      Iterator<String[]> lines =
+          CsvParser.dsl().separator(separator).trimSpaces().iterator(bufferedReader);
+      if (!lines.hasNext()) {
+        return Collections.emptyIterator();
+      }
+
+      // resolve header to columns once
+      List<String> columnNames = new ArrayList<>();
+      List<Column> columns = new ArrayList<>();
+      Map<String, Column> columnsByName = new HashMap<>();
+      for (Column c : metadata.getMutationColumns()) {
+        columnsByName.put(c.getName(), c);
+      }
+      for (String name : lines.next()) {
+        columnNames.add(name);
+        columns.add(columnsByName.get(name));
+      }
+      CsvColumnBatch batch = new CsvColumnBatch(columnNames, columns, batchSize);
+
+      return new Iterator<>() {
+        // header is line 1
+        int line = 1;
+
+        @Override
+        public boolean hasNext() {
+          try {
+            return lines.hasNext();
+          } catch (Exception e) {
+            throw new MolgenisException(
+                "Import failed: "
+                    + e.getClass().getName()
+                    + ": "
+                    + e.getMessage()
+                    + ". Error after line "
+                    + line
+                    + ".",
+                e);
+          }
+        }
+
+        @Override
+        public CsvColumnBatch next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          batch.clear();
+          while (!batch.isFull() && hasNext()) {
+            batch.add(lines.next(), ++line);
+          }
+          return batch;
+        }
+      };
+    } catch (IOException ioe) {
+      throw new MolgenisException("Import failed", ioe);
+    }
+  }
+
+  private static char detectSeparator(BufferedReader bufferedReader) throws IOException {
+    bufferedReader.mark(2000000);
+    String firstLine = bufferedReader.readLine();
+    char separator = ',';
+    if (firstLine != null && firstLine.contains("\t")) {
+      separator = '\t';
+    }
+    if (firstLine != null && firstLine.contains(";")) {
+      separator = ';';
+    }
+    // push back in
+    bufferedReader.reset();
+    return separator;
+  }
 }
@@ -15,8 +15,11 @@ public class CsvTableWriter {
 
   public static void write(Iterable<Row> rows, Writer writer, Character seperator)
       throws IOException {
+    write(rows, getColumnNames(rows), writer, seperator);
+  }
 
-    // get most extensive headers
+  /** returns the most extensive header of the rows, without the mg_ columns */
+  public static List<String> getColumnNames(Iterable<Row> rows) {
     Set<String> columnNames = new LinkedHashSet<>();
     for (Row r : rows) {
       columnNames.addAll(r.getColumnNames());
@@ -24,7 +27,13 @@ public class CsvTableWriter {
     // we filter mg_ columns. TODO make option to choose
     columnNames =
         columnNames.stream().filter(name -> !name.startsWith("mg_")).collect(Collectors.toSet());
+    return new ArrayList<>(columnNames);
+  }
 
+  /** writes rows in one pass, using given column names as header */
+  public static void write(
+      Iterable<Row> rows, List<String> columnNames, Writer writer, Character seperator)
+      throws IOException {
     CsvWriter.CsvWriterDSL<Map> writerDsl =
         CsvWriter.from(Map.class).columns(columnNames.toArray(new String[columnNames.size()]));
 
@@ -0,0 +1,7 @@
+package org.molgenis.emx2.io.tablestore;
+
+/** TableStore that can also contain attached files, e.g. zip */
+public interface TableAndFileStore extends TableStore {
+
+  void writeFile(String filePath, byte[] contents);
+}
@@ -1,16 +1,32 @@
 package org.molgenis.emx2.io.tablestore;
 
 import java.util.Collection;
+import java.util.List;
 import org.molgenis.emx2.Row;
+import org.molgenis.emx2.TableMetadata;
 
 public interface TableStore {
 
   void writeTable(String name, Iterable<Row> rows);
 
+  /**
+   * writes rows using known column names, iterating the rows only once, so they can be streamed
+   * from a database cursor
+   */
+  void writeTable(String name, List<String> columnNames, Iterable<Row> rows);
+
   Iterable<Row> readTable(String name);
 
   void processTable(String name, RowProcessor processor);
 
+  /**
+   * processes rows knowing the table they are for, so stores can parse values into the column types
+   * while reading. By default values are read untyped.
+   */
+  default void processTable(String name, TableMetadata metadata, RowProcessor processor) {
+    processTable(name, processor);
+  }
+
   boolean containsTable(String name);
 
   Collection<String> tableNames();
@@ -3,9 +3,11 @@ package org.molgenis.emx2.io.tablestore;
 import java.io.*;
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.molgenis.emx2.MolgenisException;
 import org.molgenis.emx2.Row;
+import org.molgenis.emx2.TableMetadata;
 import org.molgenis.emx2.io.readers.CsvTableReader;
 import org.molgenis.emx2.io.readers.CsvTableWriter;
 
@@ -33,6 +35,21 @@ public class TableStoreForCsvInMemory implements TableStore {
     }
   }
 
+  @Override
+  public void writeTable(String name, List<String> columnNames, Iterable<Row> rows) {
+    try {
+      Writer writer = new StringWriter();
+      Writer bufferedWriter = new BufferedWriter(writer);
+      String existing = "";
+      if (store.containsKey(name)) existing = store.get(name);
+      CsvTableWriter.write(rows, columnNames, bufferedWriter, separator);
+      bufferedWriter.close();
+      store.put(name, existing + writer.toString());
+    } catch (IOException ioe) {
+      throw new MolgenisException("export failed", ioe);
+    }
+  }
+
   @Override
   public Iterable<Row> readTable(String name) {
     if (!store.containsKey(name))
@@ -48,6 +65,16 @@ public class TableStoreForCsvInMemory implements TableStore {
     processor.process(readTable(name).iterator());
   }
 
+  @Override
+  public void processTable(String name, TableMetadata metadata, RowProcessor processor) {
+    if (!store.containsKey(name))
+      throw new MolgenisException(
+          "Import failed: Table not found. File with name " + name + " doesn't exist");
+    processor.process(
+        CsvTableReader.read(new BufferedReader(new StringReader(store.get(name))), metadata)
+            .iterator());
+  }
+
   @Override
   public boolean containsTable(String name) {
     return store.containsKey(name);
@@ -13,10 +13,11 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.molgenis.emx2.MolgenisException;
 import org.molgenis.emx2.Row;
+import org.molgenis.emx2.TableMetadata;
 import org.molgenis.emx2.io.readers.CsvTableReader;
 import org.molgenis.emx2.io.readers.CsvTableWriter;
 
-public class TableStoreForCsvInZipFile implements TableStore {
+public class TableStoreForCsvInZipFile implements TableAndFileStore {
   static final String CSV_EXTENSION = ".csv";
   static final String TSV_EXTENSION = ".tsv";
   private final Path zipFilePath;
@@ -46,6 +47,7 @@ public class TableStoreForCsvInZipFile implements TableStore {
     return FileSystems.newFileSystem(zipUri, env, null);
   }
 
+  @Override
   public void writeFile(String filePath, byte[] contents) {
     if (contents != null && contents.length > 0) {
       try (FileSystem zipfs = open()) {
@@ -80,15 +82,36 @@ public class TableStoreForCsvInZipFile implements TableStore {
     }
   }
 
+  @Override
+  public void writeTable(String name, List<String> columnNames, Iterable<Row> rows) {
+    if (!Files.exists(zipFilePath)) {
+      create();
+    }
+    try (FileSystem zipfs = open()) {
+      Path pathInZipfile = zipfs.getPath(File.separator + name + CSV_EXTENSION);
+      try (Writer writer = Files.newBufferedWriter(pathInZipfile)) {
+        CsvTableWriter.write(rows, columnNames, writer, comma);
+      }
+    } catch (IOException ioe) {
+      throw new MolgenisException("Export failed", ioe);
+    }
+  }
+
   @Override
   public void processTable(String name, RowProcessor processor) {
+    processTable(name, null, processor);
+  }
+
+  @Override
+  public void processTable(String name, TableMetadata metadata, RowProcessor processor) {
     try (ZipFile zf = new ZipFile(zipFilePath.toFile())) {
       ZipEntry entry = getEntry(zf, name);
       Reader reader = new BufferedReader(new InputStreamReader(zf.getInputStream(entry)));
-      if (entry != null && entry.getName().endsWith(CSV_EXTENSION)) {
-        processor.process(CsvTableReader.read(reader).iterator());
-      } else if (entry != null && entry.getName().endsWith(TSV_EXTENSION)) {
-        processor.process(CsvTableReader.read(reader).iterator());
+      if (entry != null
+          && (entry.getName().endsWith(CSV_EXTENSION) || entry.getName().endsWith(TSV_EXTENSION))) {
+        Iterable<Row> rows =
+            metadata != null ? CsvTableReader.read(reader, metadata) : CsvTableReader.read(reader);
+        processor.process(rows.iterator());
       } else {
         throw new MolgenisException(
             "Import failed: Table '"
@@ -0,0 +1,95 @@
+package org.molgenis.emx2.io.tablestore;
+
+import static org.molgenis.emx2.io.tablestore.TableStoreForCsvInZipFile.CSV_EXTENSION;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.io.readers.CsvTableWriter;
+
+/**
+ * Write-only store that writes csv files into a zip, directly to an output stream such as a http
+ * response. Tables are written one by one, so nothing is buffered other than by the zip itself.
+ * Must be closed to complete the zip, this does not close the output stream.
+ */
+public class TableStoreForCsvInZipStream implements TableAndFileStore, AutoCloseable {
+  private static final String FILES_DIR = "_files/";
+  private static final Character comma = ',';
+  private final ZipOutputStream zip;
+  private boolean hasFilesDir = false;
+
+  public TableStoreForCsvInZipStream(OutputStream outputStream) {
+    this.zip = new ZipOutputStream(new BufferedOutputStream(outputStream));
+  }
+
+  @Override
+  public void writeTable(String name, Iterable<Row> rows) {
+    writeTable(name, CsvTableWriter.getColumnNames(rows), rows);
+  }
+
+  @Override
+  public void writeTable(String name, List<String> columnNames, Iterable<Row> rows) {
+    try {
+      zip.putNextEntry(new ZipEntry(name + CSV_EXTENSION));
+      // don't close the writer, that would close the zip
+      Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+      CsvTableWriter.write(rows, columnNames, writer, comma);
+      writer.flush();
+      zip.closeEntry();
+    } catch (IOException ioe) {
+      throw new MolgenisException("Export failed", ioe);
+    }
+  }
+
+  @Override
+  public void writeFile(String filePath, byte[] contents) {
+    if (contents != null && contents.length > 0) {
+      try {
+        if (!hasFilesDir && filePath.startsWith(FILES_DIR)) {
+          zip.putNextEntry(new ZipEntry(FILES_DIR));
+          zip.closeEntry();
+          hasFilesDir = true;
+        }
+        zip.putNextEntry(new ZipEntry(filePath));
+        zip.write(contents);
+        zip.closeEntry();
+      } catch (IOException ioe) {
+        throw new MolgenisException("File export failed", ioe);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      zip.finish();
+      zip.flush();
+    } catch (IOException ioe) {
+      throw new MolgenisException("Export failed", ioe);
+    }
+  }
+
+  @Override
+  public Iterable<Row> readTable(String name) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void processTable(String name, RowProcessor processor) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean containsTable(String name) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Collection<String> tableNames() {
+    throw new UnsupportedOperationException();
+  }
+}
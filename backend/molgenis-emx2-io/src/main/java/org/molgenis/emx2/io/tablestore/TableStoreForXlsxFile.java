@@ -8,17 +8,27 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.molgenis.emx2.MolgenisException;
 import org.molgenis.emx2.Row;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Now caches all data. Might want to change to SAX parser for XLSX. */
+/**
+ * Reads the sheets of the workbook one at a time, streaming their rows to the processor, so the
+ * workbook doesn't need to fit in memory. Sheet names are indexed from the workbook part, without
+ * reading any sheet data.
+ */
 public class TableStoreForXlsxFile implements TableStore {
+  private static final int ROW_CACHE_SIZE = 100;
+  private static final int BUFFER_SIZE = 4096;
   private Path excelFilePath;
-  private Map<String, List<Row>> cache;
+  private List<String> sheetNames;
   private static Logger logger = LoggerFactory.getLogger(TableStoreForXlsxFile.class);
 
   public TableStoreForXlsxFile(Path excelFilePath) {
@@ -27,14 +37,39 @@ public class TableStoreForXlsxFile implements TableStore {
 
   @Override
   public Collection<String> tableNames() {
-    if (this.cache == null) {
-      this.cache();
+    if (this.sheetNames == null) {
+      this.sheetNames = readSheetNames();
     }
-    return this.cache.keySet();
+    return this.sheetNames;
   }
 
   @Override
   public void writeTable(String name, Iterable<Row> rows) {
+    List<Row> buffered = buffer(rows);
+    writeTable(name, getColumnNames(buffered), buffered);
+  }
+
+  /** collects the rows, so they can be read for the header and again for the data */
+  static List<Row> buffer(Iterable<Row> rows) {
+    if (rows instanceof List) {
+      return (List<Row>) rows;
+    }
+    List<Row> result = new ArrayList<>();
+    rows.forEach(result::add);
+    return result;
+  }
+
+  /** returns the columns of all rows, in order of appearance */
+  static List<String> getColumnNames(Iterable<Row> rows) {
+    Set<String> columnNames = new LinkedHashSet<>();
+    for (Row row : rows) {
+      columnNames.addAll(row.getColumnNames());
+    }
+    return new ArrayList<>(columnNames);
+  }
+
+  @Override
+  public void writeTable(String name, List<String> columnNames, Iterable<Row> rows) {
     try {
       if (name.length() > 30)
         throw new IOException("Excel sheet name '" + name + "' is too long. Maximum 30 characters");
@@ -42,34 +77,29 @@ public class TableStoreForXlsxFile implements TableStore {
       if (!Files.exists(excelFilePath)) {
         try (FileOutputStream out = new FileOutputStream(excelFilePath.toFile());
             Workbook wb = new SXSSFWorkbook(100)) {
-          writeRowsToSheet(name, rows, wb);
+          writeRowsToSheet(name, columnNames, rows, wb);
           wb.write(out);
         }
       } else {
         Workbook wb;
         try (FileInputStream inputStream = new FileInputStream(excelFilePath.toFile())) {
           wb = WorkbookFactory.create(inputStream);
-          writeRowsToSheet(name, rows, wb);
+          writeRowsToSheet(name, columnNames, rows, wb);
         }
         try (FileOutputStream outputStream = new FileOutputStream(excelFilePath.toFile())) {
           wb.write(outputStream);
         } finally {
-          this.cache = null;
           wb.close();
         }
       }
+      this.sheetNames = null;
     } catch (IOException ioe) {
       throw new MolgenisException("Import failed", ioe);
     }
   }
 
-  private void writeRowsToSheet(String name, Iterable<Row> rows, Workbook wb) {
-
-    // get the row columns
-    Set<String> columnNames = new LinkedHashSet<>();
-    for (Row row : rows) {
-      columnNames.addAll(row.getColumnNames());
-    }
+  static void writeRowsToSheet(
+      String name, List<String> columnNames, Iterable<Row> rows, Workbook wb) {
 
     // create the sheet
     Sheet sheet = wb.createSheet(name);
@@ -101,45 +131,27 @@ public class TableStoreForXlsxFile implements TableStore {
     }
   }
 
-  private void cache() {
-    long start = System.currentTimeMillis();
-    try (InputStream is = new FileInputStream(excelFilePath.toFile());
-        Workbook workbook = StreamingReader.builder().rowCacheSize(100).bufferSize(4096).open(is)) {
-      this.cache = new LinkedHashMap<>();
-      for (Sheet sheet : workbook) {
-        String sheetName = sheet.getSheetName();
-        List<Row> result = new ArrayList<>();
-        Map<Integer, String> columnNames = null;
-        for (org.apache.poi.ss.usermodel.Row excelRow : sheet) {
-          // first non-empty row is column names
-          if (columnNames == null) {
-            columnNames = new LinkedHashMap<>();
-            for (Cell cell : excelRow) {
-              if (!BLANK.equals(cell.getCellType())) {
-                String value = cell.getStringCellValue();
-                if (value != null) {
-                  value = value.trim();
-                }
-                columnNames.put(cell.getColumnIndex(), value);
-              }
-            }
-          }
-          // otherwise it is a normal row to be added to result
-          else {
-            Row row = convertRow(sheetName, columnNames, excelRow);
-            // ignore empty lines
-            if (notEmptyLine(row)) {
-              result.add(row);
-            }
-          }
-          this.cache.put(sheetName, result);
-        }
+  private List<String> readSheetNames() {
+    OPCPackage excelPackage = null;
+    try {
+      // only parses the workbook part, not the sheets nor the shared strings
+      excelPackage = OPCPackage.open(excelFilePath.toFile(), PackageAccess.READ);
+      XSSFReader.SheetIterator sheets =
+          (XSSFReader.SheetIterator) new XSSFReader(excelPackage).getSheetsData();
+      List<String> result = new ArrayList<>();
+      while (sheets.hasNext()) {
+        // the name is known once the sheet is opened, its data is not read
+        sheets.next().close();
+        result.add(sheets.getSheetName());
+      }
+      return result;
+    } catch (IOException | OpenXML4JException e) {
+      throw new MolgenisException("Import failed", e);
+    } finally {
+      if (excelPackage != null) {
+        // read only, so nothing to save
+        excelPackage.revert();
       }
-    } catch (IOException ioe) {
-      throw new MolgenisException("Import failed", ioe);
-    }
-    if (logger.isInfoEnabled()) {
-      logger.info("Excel file loaded into memory in {}ms", (System.currentTimeMillis() - start));
     }
   }
 
@@ -150,24 +162,90 @@ public class TableStoreForXlsxFile implements TableStore {
     return false;
   }
 
+  /** reads all rows of the sheet into memory; use processTable for large sheets */
   @Override
   public List<Row> readTable(String name) {
-    if (this.cache == null) {
-      this.cache();
-    }
-    if (!this.cache.containsKey(name)) {
+    List<Row> result = new ArrayList<>();
+    processTable(name, iterator -> iterator.forEachRemaining(result::add));
+    return result;
+  }
+
+  @Override
+  public void processTable(String name, RowProcessor processor) {
+    if (!containsTable(name)) {
       throw new MolgenisException(
           "Import failed: Table with name " + name + " not found in Excel file");
     }
-    return this.cache.get(name);
+    long start = System.currentTimeMillis();
+    try (Workbook workbook =
+        StreamingReader.builder()
+            .rowCacheSize(ROW_CACHE_SIZE)
+            .bufferSize(BUFFER_SIZE)
+            .open(excelFilePath.toFile())) {
+      Sheet sheet = workbook.getSheet(name);
+      processor.process(new SheetRowIterator(name, sheet.iterator()));
+    } catch (IOException ioe) {
+      throw new MolgenisException("Import failed", ioe);
+    }
+    if (logger.isInfoEnabled()) {
+      logger.info("Excel sheet {} processed in {}ms", name, (System.currentTimeMillis() - start));
+    }
   }
 
-  @Override
-  public void processTable(String name, RowProcessor processor) {
-    processor.process(readTable(name).iterator());
+  /** first non-empty row has the column names, empty lines are skipped */
+  private static class SheetRowIterator implements Iterator<Row> {
+    private final String sheetName;
+    private final Iterator<org.apache.poi.ss.usermodel.Row> excelRows;
+    private Map<Integer, String> columnNames;
+    private Row next;
+
+    SheetRowIterator(String sheetName, Iterator<org.apache.poi.ss.usermodel.Row> excelRows) {
+      this.sheetName = sheetName;
+      this.excelRows = excelRows;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && excelRows.hasNext()) {
+        org.apache.poi.ss.usermodel.Row excelRow = excelRows.next();
+        if (columnNames == null) {
+          columnNames = new LinkedHashMap<>();
+          for (Cell cell : excelRow) {
+            if (!BLANK.equals(cell.getCellType())) {
+              String value = cell.getStringCellValue();
+              if (value != null) {
+                value = value.trim();
+              }
+              columnNames.put(cell.getColumnIndex(), value);
+            }
+          }
+        } else {
+          try {
+            Row row = convertRow(sheetName, columnNames, excelRow);
+            // ignore empty lines
+            if (notEmptyLine(row)) {
+              next = row;
+            }
+          } catch (IOException ioe) {
+            throw new MolgenisException("Import failed", ioe);
+          }
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public Row next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Row result = next;
+      next = null;
+      return result;
+    }
   }
 
-  private Row convertRow(
+  private static Row convertRow(
       String name, Map<Integer, String> columnNames, org.apache.poi.ss.usermodel.Row excelRow)
       throws IOException {
     Row row = new Row();
@@ -193,7 +271,7 @@ public class TableStoreForXlsxFile implements TableStore {
     return row;
   }
 
-  private void convertCellToRowValue(Row row, Cell cell, CellType cellType, String colName) {
+  private static void convertCellToRowValue(Row row, Cell cell, CellType cellType, String colName) {
     switch (cellType) {
       case BLANK:
         row.set(colName, null);
@@ -219,9 +297,6 @@ public class TableStoreForXlsxFile implements TableStore {
 
   @Override
   public boolean containsTable(String name) {
-    if (this.cache == null) {
-      this.cache();
-    }
-    return this.cache.containsKey(name);
+    return tableNames().contains(name);
   }
 }
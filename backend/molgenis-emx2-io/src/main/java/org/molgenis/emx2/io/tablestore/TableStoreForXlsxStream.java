@@ -0,0 +1,72 @@
+package org.molgenis.emx2.io.tablestore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.Row;
+
+/**
+ * Write-only store that writes sheets into one Excel workbook that is written to an output stream
+ * such as a http response when closed, so nothing is sent before all sheets are complete. Uses a
+ * streaming workbook that keeps only a window of rows in memory and the rest in temporary files,
+ * which avoids building the whole workbook in memory. Closing does not close the output stream.
+ */
+public class TableStoreForXlsxStream implements TableStore, AutoCloseable {
+  private final OutputStream outputStream;
+  private final SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+
+  public TableStoreForXlsxStream(OutputStream outputStream) {
+    this.outputStream = outputStream;
+  }
+
+  /** rows are buffered to find the header; pass the column names to avoid that */
+  @Override
+  public void writeTable(String name, Iterable<Row> rows) {
+    List<Row> buffered = TableStoreForXlsxFile.buffer(rows);
+    writeTable(name, TableStoreForXlsxFile.getColumnNames(buffered), buffered);
+  }
+
+  @Override
+  public void writeTable(String name, List<String> columnNames, Iterable<Row> rows) {
+    if (name.length() > 30) {
+      throw new MolgenisException(
+          "Export failed: Excel sheet name '" + name + "' is too long. Maximum 30 characters");
+    }
+    TableStoreForXlsxFile.writeRowsToSheet(name, columnNames, rows, workbook);
+  }
+
+  @Override
+  public void close() {
+    try {
+      workbook.write(outputStream);
+      outputStream.flush();
+    } catch (IOException ioe) {
+      throw new MolgenisException("Export failed", ioe);
+    } finally {
+      // removes the temporary files backing the sheets
+      workbook.dispose();
+    }
+  }
+
+  @Override
+  public Iterable<Row> readTable(String name) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void processTable(String name, RowProcessor processor) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean containsTable(String name) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Collection<String> tableNames() {
+    throw new UnsupportedOperationException();
+  }
+}
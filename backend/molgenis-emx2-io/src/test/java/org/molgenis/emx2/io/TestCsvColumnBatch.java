@@ -0,0 +1,86 @@
+package org.molgenis.emx2.io;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.*;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.SchemaMetadata;
+import org.molgenis.emx2.TableMetadata;
+import org.molgenis.emx2.io.readers.CsvColumnBatch;
+import org.molgenis.emx2.io.readers.CsvTableReader;
+
+public class TestCsvColumnBatch {
+  private static final TableMetadata TABLE =
+      new SchemaMetadata("TestCsvColumnBatch")
+          .create(
+              table(
+                  "Measurement",
+                  column("id").setType(INT).setPkey(),
+                  column("value").setType(DECIMAL),
+                  column("valid").setType(BOOL),
+                  column("unit"),
+                  column("date").setType(DATE)));
+
+  @Test
+  public void testTypedBatches() {
+    String csv =
+        "id,value,valid,unit,date,other\n"
+            + "1,0.5,true,kg,2020-01-01,a\n"
+            + "2,,FALSE,kg,,\n"
+            + "3,1e2,,g\n";
+    Iterator<CsvColumnBatch> batches = CsvTableReader.readBatches(new StringReader(csv), TABLE, 2);
+
+    CsvColumnBatch batch = batches.next();
+    assertEquals(List.of("id", "value", "valid", "unit", "date", "other"), batch.getColumnNames());
+    assertEquals(2, batch.size());
+    assertEquals(1, batch.get(0, 0));
+    assertEquals(0.5, batch.get(0, 1));
+    assertEquals(true, batch.get(0, 2));
+    assertNull(batch.get(1, 1));
+    assertEquals(false, batch.get(1, 2));
+    // repeated strings are stored once
+    assertSame(batch.get(0, 3), batch.get(1, 3));
+    // other types are converted later
+    assertEquals("2020-01-01", batch.get(0, 4));
+    assertEquals(3, batch.getLine(1));
+
+    batch = batches.next();
+    assertEquals(1, batch.size());
+    assertEquals(100.0, batch.get(0, 1));
+    // missing values at end of line
+    assertNull(batch.get(0, 4));
+    assertFalse(batches.hasNext());
+  }
+
+  @Test
+  public void testRows() {
+    String csv = "id;value;unit\n1;2.5;kg\n2;;g\n";
+    int count = 0;
+    for (Row row : CsvTableReader.read(new StringReader(csv), TABLE)) {
+      assertTrue(row.getValueMap().get("id") instanceof Integer);
+      assertEquals(List.of("id", "value", "unit"), List.copyOf(row.getColumnNames()));
+      count++;
+    }
+    assertEquals(2, count);
+  }
+
+  @Test
+  public void testBadValueReportsLine() {
+    String csv = "id,value\n1,1.0\n2,2.0\nthree,3.0\n";
+    try {
+      for (Row row : CsvTableReader.read(new StringReader(csv), TABLE)) {
+        // iterate
+      }
+      fail("should fail on line 4");
+    } catch (MolgenisException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("'three' of column 'id' on line 4"));
+    }
+  }
+}
@@ -1,15 +1,19 @@
 package org.molgenis.emx2.io;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import org.molgenis.emx2.Row;
 import org.molgenis.emx2.io.tablestore.TableStoreForXlsxFile;
+import org.molgenis.emx2.io.tablestore.TableStoreForXlsxStream;
 
 public class TestExcelStore {
 
@@ -37,4 +41,61 @@ public class TestExcelStore {
 
     assertEquals(10, rows2.size());
   }
+
+  @Test
+  public void testStreamingSheets() throws IOException {
+    Path tmp = Files.createTempDirectory("TestExcelStore");
+    tmp.toFile().deleteOnExit();
+    Path excelFile = tmp.resolve("test.xlsx");
+    TableStoreForXlsxFile store = new TableStoreForXlsxFile(excelFile);
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      rows.add(new Row().set("id", i).set("name", i % 10 == 0 ? null : "name" + i));
+    }
+    store.writeTable("large", rows);
+    store.writeTable("small", rows.subList(0, 3));
+
+    store = new TableStoreForXlsxFile(excelFile);
+    assertEquals(List.of("large", "small"), new ArrayList<>(store.tableNames()));
+    assertFalse(store.containsTable("other"));
+
+    // rows are streamed in order
+    AtomicInteger count = new AtomicInteger();
+    store.processTable(
+        "large",
+        iterator -> {
+          while (iterator.hasNext()) {
+            Row row = iterator.next();
+            assertEquals(count.getAndIncrement(), row.getInteger("id").intValue());
+          }
+        });
+    assertEquals(5000, count.get());
+    assertEquals("name2", store.readTable("small").get(2).getString("name"));
+  }
+
+  @Test
+  public void testRowsReadOnce() throws IOException {
+    List<Row> rows = List.of(new Row().set("id", 1), new Row().set("id", 2).set("name", "b"));
+
+    // an iterable that can only be iterated once, like a query result
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (TableStoreForXlsxStream stream = new TableStoreForXlsxStream(out)) {
+      stream.writeTable("test", rows.stream()::iterator);
+    }
+    Path tmp = Files.createTempDirectory("TestExcelStore");
+    tmp.toFile().deleteOnExit();
+    Path streamed = tmp.resolve("streamed.xlsx");
+    Files.write(streamed, out.toByteArray());
+    assertRows(new TableStoreForXlsxFile(streamed).readTable("test"));
+
+    Path excelFile = tmp.resolve("test.xlsx");
+    new TableStoreForXlsxFile(excelFile).writeTable("test", rows.stream()::iterator);
+    assertRows(new TableStoreForXlsxFile(excelFile).readTable("test"));
+  }
+
+  private void assertRows(List<Row> rows) {
+    assertEquals(2, rows.size());
+    assertEquals(List.of("id", "name"), new ArrayList<>(rows.get(1).getColumnNames()));
+    assertEquals("b", rows.get(1).getString("name"));
+  }
 }
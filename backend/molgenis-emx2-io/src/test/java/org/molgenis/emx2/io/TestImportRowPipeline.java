@@ -0,0 +1,336 @@
+package org.molgenis.emx2.io;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.*;
+import static org.molgenis.emx2.Constants.MG_TABLECLASS;
+import static org.molgenis.emx2.FilterBean.f;
+import static org.molgenis.emx2.Operator.EQUALS;
+import static org.molgenis.emx2.SelectColumn.s;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.*;
+import org.molgenis.emx2.io.tablestore.RowProcessor;
+import org.molgenis.emx2.io.tablestore.TableStoreForCsvInMemory;
+import org.molgenis.emx2.sql.TestDatabaseFactory;
+import org.molgenis.emx2.tasks.StepStatus;
+import org.molgenis.emx2.tasks.Task;
+
+public class TestImportRowPipeline {
+  private static final int SIZE = 2550;
+  private static Database db;
+
+  @BeforeClass
+  public static void setup() {
+    db = TestDatabaseFactory.getTestDatabase();
+  }
+
+  @Test
+  public void testImportInOrderOnMultipleThreads() {
+    Schema schema = db.dropCreateSchema(TestImportRowPipeline.class.getSimpleName() + "1");
+    Table table = createTable(schema);
+    TableStoreForCsvInMemory store = new TableStoreForCsvInMemory();
+    store.writeTable("Measurement", createRows(null));
+
+    int count = new ImportRowPipeline(table, new Task("test"), keys(table), 4, 100).run(store);
+    assertEquals(SIZE, count);
+
+    List<Row> rows = table.select(s("id"), s("value"), s("date")).orderBy("id").retrieveRows();
+    assertEquals(SIZE, rows.size());
+    assertEquals(Integer.valueOf(SIZE - 1), rows.get(SIZE - 1).getInteger("id"));
+    assertEquals(Double.valueOf(0.5), rows.get(1).getDecimal("value"));
+    assertEquals(LocalDate.of(2020, 1, 2), rows.get(1).getDate("date"));
+
+    // same rows again, updates in order
+    count = new ImportRowPipeline(table, new Task("test"), keys(table), 2, 1000).run(store);
+    assertEquals(SIZE, count);
+  }
+
+  @Test
+  public void testErrorStopsPipeline() {
+    Schema schema = db.dropCreateSchema(TestImportRowPipeline.class.getSimpleName() + "2");
+    Table table = createTable(schema);
+    TableStoreForCsvInMemory store = new TableStoreForCsvInMemory();
+    store.writeTable("Measurement", createRows(1510));
+
+    try {
+      new ImportRowPipeline(table, new Task("test"), keys(table), 4, 100).run(store);
+      fail("missing required value should fail");
+    } catch (MolgenisException e) {
+      assertTrue(e.getMessage().contains("required"));
+    }
+    // batches before the error are written, not running in a transaction
+    assertEquals(1500, table.query().retrieveRows().size());
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      assertFalse(thread.getName().equals("import-Measurement-reader"));
+    }
+  }
+
+  @Test
+  public void testDuplicateKeysInSinglePass() {
+    Schema schema = db.dropCreateSchema(TestImportRowPipeline.class.getSimpleName() + "3");
+    Table table = createTable(schema);
+    List<Row> rows = createRows(null);
+    // duplicate within the same batch, and in a later batch
+    rows.add(5, new Row().setString("id", "3").setString("value", "1"));
+    rows.add(new Row().setString("id", "1001").setString("value", "1"));
+    CountingStore store = new CountingStore();
+    store.writeTable("Measurement", rows);
+
+    DuplicateKeyDetector keys = keys(table);
+    new ImportRowPipeline(table, new Task("test"), keys, 4, 100).run(store);
+    assertEquals(Set.of("3", "1001"), keys.verify(store, "Measurement"));
+    // read once more to verify the duplicate in the later batch
+    assertEquals(2, store.count);
+
+    // no duplicates, single pass
+    store = new CountingStore();
+    store.writeTable("Measurement", createRows(null));
+    keys = keys(table);
+    new ImportRowPipeline(table, new Task("test"), keys, 4, 100).run(store);
+    assertTrue(keys.verify(store, "Measurement").isEmpty());
+    assertEquals(1, store.count);
+
+    // as part of the import task
+    store = new CountingStore();
+    store.writeTable("Measurement", rows);
+    ImportTableTask task = new ImportTableTask(store, table);
+    try {
+      task.run();
+      fail("duplicate keys should fail");
+    } catch (MolgenisException e) {
+      assertTrue(e.getMessage().contains("Duplicate keys found in table Measurement: [3, 1001]"));
+    }
+  }
+
+  @Test
+  public void testCommitEveryAndSkip() {
+    Schema schema = db.dropCreateSchema(TestImportRowPipeline.class.getSimpleName() + "4");
+    Table table = createTable(schema);
+    TableStoreForCsvInMemory store = new TableStoreForCsvInMemory();
+    store.writeTable("Measurement", createRows(1510));
+
+    // commits every 5 batches, so the error only rolls back the batches since the last commit
+    List<Integer> commits = new ArrayList<>();
+    try {
+      new ImportRowPipeline(table, new Task("test"), keys(table), 4, 100)
+          .setSkip(200)
+          .setCommitEvery(5, commits::add)
+          .run(store);
+      fail("missing required value should fail");
+    } catch (MolgenisException e) {
+      assertTrue(e.getMessage().contains("required"));
+    }
+    assertEquals(List.of(700, 1200), commits);
+    List<Row> rows = table.select(s("id")).orderBy("id").retrieveRows();
+    assertEquals(1000, rows.size());
+    assertEquals(Integer.valueOf(200), rows.get(0).getInteger("id"));
+  }
+
+  @Test
+  public void testDuplicateKeysWithCommitEvery() {
+    Schema schema = db.dropCreateSchema(TestImportRowPipeline.class.getSimpleName() + "7");
+    Table table = createTable(schema);
+
+    // duplicate within a batch fails at that batch
+    List<Row> rows = createRows(null);
+    rows.add(1215, new Row().setString("id", "1210").setString("value", "1"));
+    assertDuplicateFailsBeforeCommit(table, rows, "[1210]");
+
+    // duplicate of a row in a committed batch fails before the commit that contains it
+    rows = createRows(null);
+    rows.add(1250, new Row().setString("id", "3").setString("value", "1"));
+    assertDuplicateFailsBeforeCommit(table, rows, "[3]");
+  }
+
+  private static void assertDuplicateFailsBeforeCommit(
+      Table table, List<Row> rows, String duplicates) {
+    table.truncate();
+    TableStoreForCsvInMemory store = new TableStoreForCsvInMemory();
+    store.writeTable("Measurement", rows);
+    List<Integer> commits = new ArrayList<>();
+    try {
+      new ImportRowPipeline(table, new Task("test"), keys(table), 4, 100)
+          .setCommitEvery(5, commits::add)
+          .run(store);
+      fail("duplicate keys should fail");
+    } catch (MolgenisException e) {
+      assertTrue(
+          e.getMessage(),
+          e.getMessage().contains("Duplicate keys found in table Measurement: " + duplicates));
+    }
+    assertEquals(List.of(500, 1000), commits);
+    assertEquals(1000, table.query().retrieveRows().size());
+  }
+
+  @Test
+  public void testCancelAndResume() {
+    Schema schema = db.dropCreateSchema(TestImportRowPipeline.class.getSimpleName() + "5");
+    Table table = createTable(schema);
+    CancellingStore store = new CancellingStore();
+    store.writeTable("Measurement", createRows(null));
+
+    // cancelled halfway, keeps what was committed
+    ImportSchemaTask task = new ImportSchemaTask(store, schema).setCommitEvery(1);
+    store.task = task;
+    task.run();
+    assertEquals(StepStatus.CANCELLED, task.getStatus());
+    String checkpoint = task.getCheckpoint();
+    int committed = Integer.parseInt(checkpoint.substring("Measurement:".length()));
+    assertEquals(0, committed % ImportRowPipeline.BATCH_SIZE);
+    assertEquals(committed, table.query().retrieveRows().size());
+
+    // resume imports the rest
+    store.task = null;
+    task = new ImportSchemaTask(store, schema).setCommitEvery(1).setResumeFrom(checkpoint);
+    task.run();
+    assertEquals(StepStatus.COMPLETED, task.getStatus());
+    assertNull(task.getCheckpoint());
+    assertEquals(SIZE, table.query().retrieveRows().size());
+
+    // cancel without commits rolls back
+    schema.getTable("Measurement").truncate();
+    store.task = task = new ImportSchemaTask(store, schema);
+    task.run();
+    assertEquals(StepStatus.CANCELLED, task.getStatus());
+    assertEquals(0, table.query().retrieveRows().size());
+  }
+
+  @Test
+  public void testComputeAndValidateInWorkers() {
+    Schema schema = db.dropCreateSchema(TestImportRowPipeline.class.getSimpleName() + "6");
+    Table table =
+        schema.create(
+            table(
+                "Measurement",
+                column("id").setType(INT).setPkey(),
+                column("value")
+                    .setType(DECIMAL)
+                    .setRequired(true)
+                    .setValidation("if(value<0)'Must not be negative'"),
+                column("doubled").setType(DECIMAL).setComputed("value*2")));
+    List<Column> columns = table.getMetadata().getMutationColumns();
+    String tableClass = schema.getName() + ".Measurement";
+
+    // workers set the computed values and mark the rows, so save doesn't run the scripts again
+    List<Row> batch = List.of(new Row().setString("id", "1").setString("value", "2.5"));
+    ImportRowPipeline.prepare(batch, List.of(columns.get(0), columns.get(1)), columns, tableClass);
+    assertTrue(batch.get(0).isPrepared());
+    assertEquals(Double.valueOf(5), batch.get(0).getDecimal("doubled"));
+
+    // rows of subclasses are left to the writer
+    Row subclassRow = new Row().setString("id", "2").setString(MG_TABLECLASS, "Other.Measurement");
+    ImportRowPipeline.prepare(List.of(subclassRow), List.of(), columns, tableClass);
+    assertFalse(subclassRow.isPrepared());
+
+    TableStoreForCsvInMemory store = new TableStoreForCsvInMemory();
+    store.writeTable("Measurement", createRows(null));
+    new ImportRowPipeline(table, new Task("test"), keys(table), 4, 100).run(store);
+    Row row = table.query().where(f("id", EQUALS, 7)).retrieveRows().get(0);
+    assertEquals(Double.valueOf(7), row.getDecimal("doubled"));
+
+    // validation fails in the worker, batches before it are written
+    List<Row> rows = createRows(null);
+    rows.get(1520).setString("value", "-1");
+    store = new TableStoreForCsvInMemory();
+    store.writeTable("Measurement", rows);
+    table.truncate();
+    try {
+      new ImportRowPipeline(table, new Task("test"), keys(table), 4, 100).run(store);
+      fail("negative value should fail");
+    } catch (MolgenisException e) {
+      assertTrue(e.getMessage().contains("Must not be negative"));
+    }
+    assertEquals(1500, table.query().retrieveRows().size());
+  }
+
+  @Test
+  public void testHashDistinguishesKeys() {
+    Set<Long> hashes = new HashSet<>();
+    for (int i = 0; i < 100000; i++) {
+      hashes.add(DuplicateKeyDetector.hash("key" + i));
+      hashes.add(DuplicateKeyDetector.hash(i + ",null"));
+    }
+    assertEquals(200000, hashes.size());
+  }
+
+  private static class CountingStore extends TableStoreForCsvInMemory {
+    int count = 0;
+
+    @Override
+    public void processTable(String name, RowProcessor processor) {
+      count++;
+      super.processTable(name, processor);
+    }
+
+    @Override
+    public void processTable(String name, TableMetadata metadata, RowProcessor processor) {
+      count++;
+      super.processTable(name, metadata, processor);
+    }
+  }
+
+  /** cancels task halfway reading the rows */
+  private static class CancellingStore extends TableStoreForCsvInMemory {
+    Task task;
+
+    @Override
+    public void processTable(String name, TableMetadata metadata, RowProcessor processor) {
+      super.processTable(
+          name,
+          metadata,
+          iterator ->
+              processor.process(
+                  new Iterator<>() {
+                    int count = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                      return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Row next() {
+                      if (++count == SIZE / 2 && task != null) {
+                        task.cancel();
+                      }
+                      return iterator.next();
+                    }
+                  }));
+    }
+  }
+
+  private static DuplicateKeyDetector keys(Table table) {
+    return new DuplicateKeyDetector(table.getMetadata());
+  }
+
+  private static Table createTable(Schema schema) {
+    return schema.create(
+        table(
+            "Measurement",
+            column("id").setType(INT).setPkey(),
+            column("value").setType(DECIMAL).setRequired(true),
+            column("date").setType(DATE)));
+  }
+
+  private static List<Row> createRows(Integer missingValue) {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < SIZE; i++) {
+      Row row =
+          new Row()
+              .setString("id", "" + i)
+              .setString("value", missingValue != null && i == missingValue ? null : "" + i / 2.0)
+              .setString("date", LocalDate.of(2020, 1, 1).plusDays(i % 300).toString());
+      rows.add(row);
+    }
+    return rows;
+  }
+}
@@ -4,6 +4,7 @@ import static junit.framework.TestCase.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
@@ -77,13 +78,49 @@ public class TestReadWriteStores {
           "TMP directory " + tmp + " not deleted. This should never happen.");
   }
 
+  @Test
+  public void testZipAndExcelStreamStores() throws IOException {
+    Path tmp = Files.createTempDirectory(null);
+    try {
+      List<Row> rows = createRows();
+
+      // write to streams, then read back using the file based stores
+      Path zipFile = tmp.resolve("test.zip");
+      try (OutputStream out = Files.newOutputStream(zipFile);
+          TableStoreForCsvInZipStream store = new TableStoreForCsvInZipStream(out)) {
+        store.writeTable("test", rows);
+        store.writeTable("test2", new ArrayList<>(rows.get(0).getColumnNames()), rows);
+        store.writeFile("_files/test.txt", "test".getBytes());
+      }
+      executeReadTest(new TableStoreForCsvInZipFile(zipFile), rows);
+
+      Path excelFile = tmp.resolve("test.xlsx");
+      try (OutputStream out = Files.newOutputStream(excelFile);
+          TableStoreForXlsxStream store = new TableStoreForXlsxStream(out)) {
+        store.writeTable("test", rows);
+        store.writeTable("test2", new ArrayList<>(rows.get(0).getColumnNames()), rows);
+      }
+      executeReadTest(new TableStoreForXlsxFile(excelFile), rows);
+    } finally {
+      Files.walk(tmp).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  private static void executeReadTest(TableStore store, List<Row> rows) {
+    for (String name : List.of("test", "test2")) {
+      CompareTools.assertEquals(
+          rows,
+          StreamSupport.stream(store.readTable(name).spliterator(), false)
+              .collect(Collectors.toList()));
+    }
+  }
+
   @Test
   public void testCsvStringStore() throws IOException, MolgenisException {
     executeTest(new TableStoreForCsvInMemory());
   }
 
-  public static void executeTest(TableStore store) throws IOException, MolgenisException {
-
+  private static List<Row> createRows() {
     List<Row> rows = new ArrayList<>();
     int count = 10;
     for (int i = 1; i <= count; i++) {
@@ -108,6 +145,12 @@ public class TestReadWriteStores {
                   new LocalDateTime[] {LocalDateTime.now(), LocalDateTime.now()})
               .setBoolArray("booleanArrayCol", new Boolean[] {true, false}));
     }
+    return rows;
+  }
+
+  public static void executeTest(TableStore store) throws IOException, MolgenisException {
+    List<Row> rows = createRows();
+    int count = rows.size();
     StopWatch.start("created some rows");
 
     // write them
@@ -123,6 +123,11 @@ public class Step {
     }
   }
 
+  /** changes when description, status or progress change, but not when only time passes */
+  String getState() {
+    return status + "|" + index + "|" + total + "|" + description;
+  }
+
   public void setStatus(StepStatus status) {
     this.status = status;
   }
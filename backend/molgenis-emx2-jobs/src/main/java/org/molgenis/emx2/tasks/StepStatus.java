@@ -6,5 +6,6 @@ public enum StepStatus {
   COMPLETED,
   SKIPPED,
   WARN,
-  ERROR
+  ERROR,
+  CANCELLED
 }
@@ -2,14 +2,21 @@ package org.molgenis.emx2.tasks;
 
 import static org.molgenis.emx2.tasks.StepStatus.*;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class Task extends Step implements Runnable, Iterable<Task> {
   private Logger logger = LoggerFactory.getLogger(getClass().getName());
-  private List<Step> steps = new ArrayList<>();
+  // steps are read by other threads, e.g. to stream progress, while the task adds steps
+  private List<Step> steps = new CopyOnWriteArrayList<>();
+  private volatile boolean cancelled;
+  // where to resume, if task supports it
+  private volatile String checkpoint;
 
   public Task(String message) {
     super(message);
@@ -17,13 +24,13 @@ public class Task extends Step implements Runnable, Iterable<Task> {
 
   public Step step(String message) {
     Step step = new Step(message);
-    this.steps.add(step);
+    this.add(step);
     return step;
   }
 
   public Step step(String message, StepStatus status) {
     Step step = new Step(message, status);
-    this.steps.add(step);
+    this.add(step);
     return step;
   }
 
@@ -36,20 +43,62 @@ public class Task extends Step implements Runnable, Iterable<Task> {
 
   public void add(Step task) {
     this.steps.add(task);
+    // subtasks started after cancel should stop too
+    if (cancelled && task instanceof Task) {
+      ((Task) task).cancel();
+    }
   }
 
+  /**
+   * asks task and its subtasks to stop. Tasks that support this check isCancelled at safe points,
+   * e.g. between batches, and then end with status CANCELLED.
+   */
+  public void cancel() {
+    this.cancelled = true;
+    for (Step step : steps) {
+      if (step instanceof Task) {
+        ((Task) step).cancel();
+      }
+    }
+  }
+
+  @JsonIgnore
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /** marks task as cancelled, to be called by the task when it stopped because of cancel */
+  public void cancelled(String description) {
+    this.complete();
+    this.setStatus(CANCELLED);
+    this.setDescription(description);
+  }
+
+  public String getCheckpoint() {
+    return checkpoint;
+  }
+
+  public void setCheckpoint(String checkpoint) {
+    this.checkpoint = checkpoint;
+  }
+
+  /** iterates the subtasks, steps that are not a task are skipped */
   @Override
-  public Iterator iterator() {
-    return this.steps.iterator();
+  public Iterator<Task> iterator() {
+    return subtasks().iterator();
   }
 
   @Override
-  public void forEach(Consumer action) {
-    this.steps.forEach(action);
+  public void forEach(Consumer<? super Task> action) {
+    subtasks().forEach(action);
   }
 
   @Override
-  public Spliterator spliterator() {
-    return this.steps.spliterator();
+  public Spliterator<Task> spliterator() {
+    return subtasks().spliterator();
+  }
+
+  private Stream<Task> subtasks() {
+    return this.steps.stream().filter(Task.class::isInstance).map(Task.class::cast);
   }
 }
@@ -5,6 +5,14 @@ import java.util.Set;
 public interface TaskService {
   String submit(Task task);
 
+  /**
+   * submit task for a schema, so the number of tasks running per schema can be limited. Tasks with
+   * higher priority are started first.
+   */
+  default String submit(Task task, String schemaName, int priority) {
+    return submit(task);
+  }
+
   Set<String> getJobIds();
 
   Task getTask(String id);
@@ -15,5 +23,11 @@ public interface TaskService {
 
   void removeTask(String id);
 
+  /**
+   * asks task to stop; a waiting task won't start and a running task stops at the next point where
+   * it checks Task.isCancelled. Running tasks can only be removed after that.
+   */
+  void cancelTask(String id);
+
   void clear();
 }
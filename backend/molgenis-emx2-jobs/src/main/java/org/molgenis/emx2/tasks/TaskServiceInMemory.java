@@ -2,10 +2,7 @@ package org.molgenis.emx2.tasks;
 
 import static org.molgenis.emx2.tasks.StepStatus.RUNNING;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -17,7 +14,8 @@ import org.slf4j.LoggerFactory;
 public class TaskServiceInMemory implements TaskService {
   Logger logger = LoggerFactory.getLogger(TaskServiceInMemory.class.getSimpleName());
   private ExecutorService executorService;
-  private Map<String, Task> tasks = new LinkedHashMap<>();
+  // tasks are submitted and removed by concurrent requests
+  private Map<String, Task> tasks = Collections.synchronizedMap(new LinkedHashMap<>());
 
   public TaskServiceInMemory() {
     executorService =
@@ -28,13 +26,22 @@ public class TaskServiceInMemory implements TaskService {
   public String submit(Task task) {
     String id = UUID.randomUUID().toString();
     tasks.put(id, task);
-    executorService.submit(task);
+    executorService.submit(
+        () -> {
+          if (task.isCancelled()) {
+            task.cancelled("Cancelled before it started");
+          } else {
+            task.run();
+          }
+        });
     return id;
   }
 
   @Override
   public Set<String> getJobIds() {
-    return tasks.keySet();
+    synchronized (tasks) {
+      return new LinkedHashSet<>(tasks.keySet());
+    }
   }
 
   @Override
@@ -46,16 +53,10 @@ public class TaskServiceInMemory implements TaskService {
 
   @Override
   public void removeOlderThan(long milliseconds) {
-    Set<String> keys = tasks.keySet();
-    for (String key : keys) {
-      if (tasks.get(key).end != 0
-          && tasks.get(key).end <= System.currentTimeMillis() - milliseconds) {
-        try {
-          tasks.remove(key);
-        } catch (Exception e) {
-          // no problem, we only delete what we can
-        }
-      }
+    synchronized (tasks) {
+      tasks
+          .values()
+          .removeIf(task -> task.end != 0 && task.end <= System.currentTimeMillis() - milliseconds);
     }
   }
 
@@ -78,13 +79,23 @@ public class TaskServiceInMemory implements TaskService {
     }
     if (task.getStatus().equals(StepStatus.RUNNING)) {
       logger.info("skipped delete task " + id + "because still running");
-      throw new MolgenisException("Cannot yet cancel running tasks");
+      throw new MolgenisException("Cannot remove running task, cancel it first");
     }
     logger.info("deleted task " + id);
 
     this.tasks.remove(id);
   }
 
+  @Override
+  public void cancelTask(String id) {
+    Task task = getTask(id);
+    if (task == null) {
+      throw new MolgenisException("Task with id '" + id + "' not found");
+    }
+    logger.info("cancel task " + id);
+    task.cancel();
+  }
+
   @Override
   public void clear() {
     for (String id : getJobIds()) {
@@ -0,0 +1,87 @@
+package org.molgenis.emx2.tasks;
+
+import static org.molgenis.emx2.tasks.StepStatus.*;
+
+import java.util.function.Supplier;
+
+/**
+ * Progress of a task as json snapshots, for pushing to clients. The task is looked at once per
+ * interval and a snapshot is only produced when it changed, so many updates of the task within an
+ * interval result in one snapshot, and a task that updates on every batch doesn't flood clients.
+ * Durations are ignored when checking for changes, these change all the time.
+ */
+public class TaskSnapshots {
+  private final Supplier<Task> task;
+  private final long intervalMs;
+  private String last;
+  private String lastState;
+  private long lastTime;
+  private boolean finished;
+
+  /** task is supplied each time, so it can also be a fresh copy of a task running elsewhere */
+  public TaskSnapshots(Supplier<Task> task, long intervalMs) {
+    this.task = task;
+    this.intervalMs = intervalMs;
+  }
+
+  /**
+   * waits for a snapshot that differs from the previous one; returns null if nothing changed within
+   * timeout or when task is finished
+   */
+  public String poll(long timeoutMs) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (!finished) {
+      // at most one snapshot per interval
+      long wait = lastTime + intervalMs - System.currentTimeMillis();
+      if (wait > 0) {
+        if (System.currentTimeMillis() + wait > deadline) {
+          Thread.sleep(Math.max(0, deadline - System.currentTimeMillis()));
+          return null;
+        }
+        Thread.sleep(wait);
+      }
+      lastTime = System.currentTimeMillis();
+      Task current = task.get();
+      if (current == null) {
+        // removed
+        finished = true;
+        return null;
+      }
+      // status before snapshot, so the snapshot of a finished task is final
+      StepStatus status = current.getStatus();
+      String state = getState(current, new StringBuilder()).toString();
+      if (!WAITING.equals(status) && !RUNNING.equals(status)) {
+        finished = true;
+      }
+      if (!state.equals(lastState)) {
+        lastState = state;
+        last = current.toString();
+        return last;
+      }
+      if (lastTime >= deadline) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private static StringBuilder getState(Step step, StringBuilder result) {
+    result.append(step.getState()).append('\n');
+    if (step instanceof Task) {
+      for (Step child : ((Task) step).getSteps()) {
+        getState(child, result);
+      }
+    }
+    return result;
+  }
+
+  /** last snapshot returned, or null */
+  public String getLast() {
+    return last;
+  }
+
+  /** true when the task completed or failed, or was removed */
+  public boolean isFinished() {
+    return finished;
+  }
+}
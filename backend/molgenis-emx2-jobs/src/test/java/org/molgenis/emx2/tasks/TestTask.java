@@ -2,6 +2,7 @@ package org.molgenis.emx2.tasks;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.molgenis.emx2.MolgenisException;
 
 public class TestTask {
 
@@ -31,4 +32,51 @@ public class TestTask {
 
     taskService.shutdown();
   }
+
+  @Test
+  public void testCancel() throws InterruptedException {
+    TaskService taskService = new TaskServiceInMemory();
+    Task running =
+        new Task("until cancelled") {
+          @Override
+          public void run() {
+            start();
+            while (!isCancelled()) {
+              step("working").complete();
+              try {
+                Thread.sleep(10);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+              }
+            }
+            cancelled("stopped");
+          }
+        };
+    String id = taskService.submit(running);
+    // single worker, so this waits
+    String waiting = taskService.submit(new DummyTask());
+    taskService.cancelTask(waiting);
+    while (!StepStatus.RUNNING.equals(running.getStatus())) {
+      Thread.sleep(10);
+    }
+    try {
+      taskService.removeTask(id);
+      Assert.fail("running task cannot be removed");
+    } catch (MolgenisException e) {
+      Assert.assertTrue(e.getMessage().contains("cancel it first"));
+    }
+
+    taskService.cancelTask(id);
+    while (!StepStatus.CANCELLED.equals(taskService.getTask(waiting).getStatus())) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(StepStatus.CANCELLED, running.getStatus());
+    // subtasks added after cancel are cancelled too
+    Task sub = new Task("sub");
+    running.add(sub);
+    Assert.assertTrue(sub.isCancelled());
+    taskService.removeTask(id);
+    taskService.shutdown();
+  }
 }
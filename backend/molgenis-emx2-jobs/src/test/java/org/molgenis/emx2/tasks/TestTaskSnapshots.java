@@ -0,0 +1,64 @@
+package org.molgenis.emx2.tasks;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TestTaskSnapshots {
+
+  @Test
+  public void testCoalesced() throws InterruptedException {
+    Task task = new Task("import");
+    Thread thread =
+        new Thread(
+            () -> {
+              task.start();
+              // many updates, like one per batch
+              for (int i = 1; i <= 400; i++) {
+                task.setIndex(i);
+                try {
+                  Thread.sleep(1);
+                } catch (InterruptedException e) {
+                  return;
+                }
+              }
+              task.step("imported").complete();
+              task.complete();
+            });
+    thread.start();
+
+    TaskSnapshots snapshots = new TaskSnapshots(() -> task, 100);
+    List<String> events = new ArrayList<>();
+    while (!snapshots.isFinished()) {
+      String snapshot = snapshots.poll(1000);
+      if (snapshot != null) {
+        events.add(snapshot);
+      }
+    }
+    thread.join();
+
+    // at most one snapshot per interval, far less than the number of updates
+    assertTrue(events.size() < 20);
+    assertTrue(events.get(events.size() - 1).contains("COMPLETED"));
+    assertEquals(events.get(events.size() - 1), snapshots.getLast());
+    assertNull(snapshots.poll(100));
+  }
+
+  @Test
+  public void testUnchangedAndRemoved() throws InterruptedException {
+    Task task = new Task("waiting");
+    List<Task> tasks = new ArrayList<>(List.of(task));
+    TaskSnapshots snapshots = new TaskSnapshots(() -> tasks.isEmpty() ? null : tasks.get(0), 10);
+
+    assertNotNull(snapshots.poll(100));
+    // nothing changed within timeout
+    assertNull(snapshots.poll(50));
+    assertFalse(snapshots.isFinished());
+
+    tasks.clear();
+    assertNull(snapshots.poll(50));
+    assertTrue(snapshots.isFinished());
+  }
+}
@@ -1,14 +1,21 @@
 package org.molgenis.emx2.semantics;
 
+import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 import static org.molgenis.emx2.ColumnType.REF;
+import static org.molgenis.emx2.FilterBean.f;
+import static org.molgenis.emx2.Operator.EQUALS;
 import static org.molgenis.emx2.SelectColumn.s;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 import org.eclipse.rdf4j.model.Model;
@@ -17,7 +24,9 @@ import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFParser;
 import org.eclipse.rdf4j.rio.Rio;
 import org.eclipse.rdf4j.rio.helpers.StatementCollector;
+import org.jooq.JSONB;
 import org.molgenis.emx2.*;
+import org.molgenis.emx2.utils.TypeUtils;
 
 public class LinkedDataService {
   private static ObjectMapper jsonMapper =
@@ -25,6 +34,9 @@ public class LinkedDataService {
           .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
           .setDateFormat(new StdDateFormat().withColonInTimeZone(true));
 
+  // rows are written in batches, so ids of references are looked up for one batch at a time
+  private static final int BATCH_SIZE = 1000;
+
   private LinkedDataService() {
     // hidden
   }
@@ -49,39 +61,25 @@ public class LinkedDataService {
     try {
 
       String path = "http://localhost/" + table.getSchema().getName() + "/";
+      TableMetadata metadata = table.getMetadata();
 
       // define the selection
       // in particular, for references we check if there are columns tagged with 'id'
       // because then 'id' will be used as the @id of the reference, otherwise we will use primary
-      // key
+      // key. We select the key of references and map it to the 'id' if needed.
       Query q = table.query();
-      for (Column c : table.getMetadata().getColumns()) {
+      Map<String, String> refPrefixes = new LinkedHashMap<>();
+      Map<Column, Column> refIdColumns = new LinkedHashMap<>();
+      for (Column c : metadata.getColumns()) {
+        q.select(s(c.getName()));
         if (c.isReference()) {
-          // check ref columns for id
-          List<Column> refId =
-              c.getRefTable().getColumns().stream()
-                  .filter(
-                      r ->
-                          r.getSemantics() != null
-                              && Arrays.asList(r.getSemantics()).contains("id"))
-                  .collect(Collectors.toList());
-          // if no with id, we use primary key
-          if (refId.size() == 0) {
-            refId =
-                c.getRefTable().getColumns().stream()
-                    .filter(r -> r.getKey() == 1)
-                    .collect(Collectors.toList());
-          }
-          // check if only one
-          if (refId.size() > 1) {
-            throw new MolgenisException(
-                "Generation of jsonLd failed: more than one column marked with 'id' or primary key in table "
-                    + table.getName());
+          Column refId = getRefIdColumn(c, table);
+          if (refId.getKey() == 1) {
+            refPrefixes.put(c.getName(), path + c.getRefTableName() + "/");
+          } else {
+            refPrefixes.put(c.getName(), "");
+            refIdColumns.put(c, refId);
           }
-          // add to select
-          q.select(s(c.getName(), s(refId.get(0).getName())));
-        } else {
-          q.select(s(c.getName()));
         }
       }
 
@@ -90,7 +88,7 @@ public class LinkedDataService {
       context.put(table.getName(), path + table.getName());
 
       // is composition of type specific context elements
-      for (Column c : table.getMetadata().getColumns()) {
+      for (Column c : metadata.getColumns()) {
         if (c.getSemantics() != null) {
           List<String> type =
               Arrays.stream(c.getSemantics())
@@ -107,78 +105,168 @@ public class LinkedDataService {
         }
       }
 
-      // we use the query here
-      String json = q.retrieveJSON();
-      Map<String, List<Map<String, Object>>> jsonMap = jsonMapper.readValue(json, Map.class);
-      List<Map<String, Object>> data = jsonMap.get(table.getName());
-
-      // enhance json
-      for (Map row : data) {
-        if (table.getMetadata().getSemantics() != null) {
-          List<String> type =
-              Arrays.stream(table.getMetadata().getSemantics()).collect(Collectors.toList());
-          if (type.size() > 1) {
-            row.put("@type", type);
-          } else if (type.size() == 1) {
-            row.put("@type", type.get(0));
-          }
-        }
-        for (Column c : table.getMetadata().getColumns()) {
-          // check id
-          if (c.getSemantics() != null && Arrays.asList(c.getSemantics()).contains("id")) {
-            row.put("@id", row.get(c.getName()));
-          }
-          // flatten references
-          if (c.isReference()) {
-            Column temp = null;
-            String prefixTemp = "";
-            for (Column r : c.getRefTable().getColumns()) {
-              if (r.getSemantics() != null && Arrays.asList(r.getSemantics()).contains("id")) {
-                temp = r;
-              }
+      // assemble the json-ld for this table, streaming the rows from a database cursor
+      JsonGenerator generator = jsonMapper.getFactory().createGenerator(writer);
+      generator.useDefaultPrettyPrinter();
+      generator.writeStartObject();
+      generator.writeObjectField("@context", context);
+      generator.writeStringField("@id", path + table.getName());
+      generator.writeArrayFieldStart(table.getName());
+      try (RowIterator rows = q.retrieveRowsIterator()) {
+        List<Row> batch = new ArrayList<>();
+        while (rows.hasNext()) {
+          batch.add(rows.next());
+          if (batch.size() == BATCH_SIZE || !rows.hasNext()) {
+            Map<String, Map<String, Object>> refIds = new LinkedHashMap<>();
+            for (Map.Entry<Column, Column> refId : refIdColumns.entrySet()) {
+              refIds.put(
+                  refId.getKey().getName(), getRefIds(refId.getKey(), refId.getValue(), batch));
             }
-            if (temp == null) {
-              temp = c.getRefTable().getPrimaryKeyColumns().get(0);
-              prefixTemp = path + c.getRefTableName() + "/";
-            }
-            final Column ref = temp;
-            final String prefix = prefixTemp;
-            if (REF.equals(c.getColumnType())) {
-              row.put(c.getName(), ((Map<String, Object>) row.get(c.getName())).get(ref.getName()));
-            } else {
-              // list of maps
-              List<Map<String, Object>> listOfObjects =
-                  (List<Map<String, Object>>) row.get(c.getName());
-              if (listOfObjects != null) {
-                row.put(
-                    c.getName(),
-                    listOfObjects.stream()
-                        .map(o -> prefix + o.get(ref.getName()))
-                        .collect(Collectors.toList()));
-              } else {
-                row.put(c.getName(), null);
-              }
+            for (Row row : batch) {
+              generator.writeObject(toJsonLd(table, path, row, refPrefixes, refIds));
             }
+            batch.clear();
           }
         }
-        // check if _molgenisid has been set via @id
-        if (row.get("@id") == null) {
-          row.put(
-              "@id",
-              path + table.getName() + "/" + row.get(table.getMetadata().getPrimaryKeys().get(0)));
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+      generator.flush();
+    } catch (Exception e) {
+      throw new MolgenisException("jsonld export failed", e);
+    }
+  }
+
+  private static Map<String, Object> toJsonLd(
+      Table table,
+      String path,
+      Row row,
+      Map<String, String> refPrefixes,
+      Map<String, Map<String, Object>> refIds) {
+    TableMetadata metadata = table.getMetadata();
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (Column c : metadata.getColumns()) {
+      if (c.isReference()) {
+        // flatten references
+        String prefix = refPrefixes.get(c.getName());
+        Map<String, Object> ids = refIds.get(c.getName());
+        if (REF.equals(c.getColumnType())) {
+          String key = row.getString(c.getName());
+          result.put(c.getName(), ids != null && key != null ? ids.get(key) : key);
+        } else {
+          String[] keys = row.getStringArray(c.getName());
+          result.put(
+              c.getName(),
+              keys == null
+                  ? null
+                  : Arrays.stream(keys)
+                      .map(key -> prefix + (ids != null ? ids.get(key) : key))
+                      .collect(Collectors.toList()));
         }
+      } else {
+        result.put(c.getName(), toJsonValue(row.getValueMap().get(c.getName())));
+      }
+    }
+    if (metadata.getSemantics() != null) {
+      List<String> type = Arrays.stream(metadata.getSemantics()).collect(Collectors.toList());
+      if (type.size() > 1) {
+        result.put("@type", type);
+      } else if (type.size() == 1) {
+        result.put("@type", type.get(0));
       }
+    }
+    for (Column c : metadata.getColumns()) {
+      // check id
+      if (c.getSemantics() != null && Arrays.asList(c.getSemantics()).contains("id")) {
+        result.put("@id", result.get(c.getName()));
+      }
+    }
+    // check if _molgenisid has been set via @id
+    if (result.get("@id") == null) {
+      result.put(
+          "@id", path + table.getName() + "/" + row.getString(metadata.getPrimaryKeys().get(0)));
+    }
+    // leave out nulls, like json_strip_nulls in the previous json query based export
+    result.values().removeIf(Objects::isNull);
+    return result;
+  }
 
-      // assemble the json-ld for this table
-      Map<String, Object> result = new LinkedHashMap<>();
-      result.put("@context", context);
-      result.put("@id", path + table.getName());
-      result.put(table.getName(), data);
+  private static Column getRefIdColumn(Column c, Table table) {
+    // check ref columns for id
+    List<Column> refId =
+        c.getRefTable().getColumns().stream()
+            .filter(r -> r.getSemantics() != null && Arrays.asList(r.getSemantics()).contains("id"))
+            .collect(Collectors.toList());
+    // if no with id, we use primary key
+    if (refId.isEmpty()) {
+      refId =
+          c.getRefTable().getColumns().stream()
+              .filter(r -> r.getKey() == 1)
+              .collect(Collectors.toList());
+    }
+    // check if only one
+    if (refId.size() != 1) {
+      throw new MolgenisException(
+          "Generation of jsonLd failed: more than one column marked with 'id' or primary key in table "
+              + table.getName());
+    }
+    return refId.get(0);
+  }
 
-      writer.append(jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsString(result));
-    } catch (Exception e) {
-      throw new MolgenisException("jsonld export failed", e);
+  /** maps the primary keys referred to by the rows to the 'id' column of the referenced table */
+  private static Map<String, Object> getRefIds(Column c, Column refId, List<Row> rows) {
+    Set<String> keys = new LinkedHashSet<>();
+    for (Row row : rows) {
+      if (REF.equals(c.getColumnType())) {
+        String key = row.getString(c.getName());
+        if (key != null) keys.add(key);
+      } else {
+        String[] refKeys = row.getStringArray(c.getName());
+        if (refKeys != null) keys.addAll(Arrays.asList(refKeys));
+      }
+    }
+    Map<String, Object> result = new HashMap<>();
+    if (keys.isEmpty()) {
+      return result;
+    }
+    Table refTable = c.getRefTable().getTable();
+    String key = c.getRefTable().getPrimaryKeys().get(0);
+    for (Row row :
+        refTable
+            .select(s(key), s(refId.getName()))
+            .where(f(key, EQUALS, keys.toArray()))
+            .retrieveRows()) {
+      result.put(row.getString(key), toJsonValue(row.getValueMap().get(refId.getName())));
+    }
+    return result;
+  }
+
+  /** formats values like postgres does in json, as the previous json query based export did */
+  private static Object toJsonValue(Object value) {
+    if (value == null
+        || value instanceof String
+        || value instanceof Number
+        || value instanceof Boolean) {
+      return value;
+    }
+    if (value instanceof Object[]) {
+      return Arrays.stream((Object[]) value)
+          .map(LinkedDataService::toJsonValue)
+          .collect(Collectors.toList());
+    }
+    if (value instanceof LocalDateTime || value instanceof Timestamp) {
+      // always with seconds and 'T', unlike LocalDateTime.toString and Timestamp.toString
+      return TypeUtils.toDateTime(value).format(ISO_LOCAL_DATE_TIME);
+    }
+    if (value instanceof JSONB) {
+      // embedded as json, not as string
+      try {
+        return jsonMapper.readTree(((JSONB) value).data());
+      } catch (JsonProcessingException e) {
+        throw new MolgenisException("jsonld export failed: invalid json value", e);
+      }
     }
+    return value.toString();
   }
 
   public static void getTtlForSchema(Schema schema, PrintWriter printWriter) {
@@ -1,13 +1,22 @@
 package org.molgenis.emx2.semantics;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.DATETIME;
+import static org.molgenis.emx2.ColumnType.JSONB;
+import static org.molgenis.emx2.ColumnType.REF;
+import static org.molgenis.emx2.Row.row;
+import static org.molgenis.emx2.TableMetadata.table;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.time.LocalDateTime;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.molgenis.emx2.Database;
 import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.Table;
 import org.molgenis.emx2.examples.JsonLdExample;
 import org.molgenis.emx2.sql.TestDatabaseFactory;
 
@@ -37,4 +46,41 @@ public class TestJsonld {
     LinkedDataService.getTtlForSchema(schema, new PrintWriter(sw));
     System.out.println(sw.toString());
   }
+
+  @Test
+  public void testValuesFormattedAsJson() {
+    Schema values = db.dropCreateSchema(TestJsonld.class.getSimpleName() + "Values");
+    Table thing =
+        values.create(table("Thing", column("name").setPkey(), column("uri").setSemantics("id")));
+    Table event =
+        values.create(
+            table(
+                "Event",
+                column("id").setPkey(),
+                column("time").setType(DATETIME),
+                column("data").setType(JSONB),
+                column("thing", REF).setRefTable("Thing")));
+    thing.insert(
+        row("name", "a", "uri", "http://example.org/a"),
+        row("name", "b", "uri", "http://example.org/b"));
+    event.insert(
+        row(
+            "id",
+            "1",
+            "time",
+            LocalDateTime.of(2021, 6, 1, 12, 30),
+            "data",
+            "{\"a\":1}",
+            "thing",
+            "a"));
+
+    StringWriter sw = new StringWriter();
+    LinkedDataService.getJsonLdForTable(event, new PrintWriter(sw));
+    String result = sw.toString();
+    System.out.println(result);
+    // like postgres json: seconds included, json embedded and not as string
+    assertTrue(result.contains("\"time\" : \"2021-06-01T12:30:00\""));
+    assertTrue(result.contains("\"a\" : 1"));
+    assertTrue(result.contains("\"thing\" : \"http://example.org/a\""));
+  }
 }
@@ -0,0 +1,113 @@
+package org.molgenis.emx2.sql;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.*;
+import static org.molgenis.emx2.FilterBean.f;
+import static org.molgenis.emx2.Operator.EQUALS;
+import static org.molgenis.emx2.Row.row;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.Table;
+
+public class TestBatchDelete {
+  static Database db;
+  static Schema schema;
+
+  @BeforeClass
+  public static void setup() {
+    db = TestDatabaseFactory.getTestDatabase();
+    schema = db.dropCreateSchema(TestBatchDelete.class.getSimpleName());
+  }
+
+  @Test
+  public void testManyRows() {
+    Table table = schema.create(table("Numbers", column("id").setType(INT).setPkey()));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 50000; i++) {
+      rows.add(row("id", i));
+    }
+    table.insert(rows);
+
+    // every other row, also rows that don't exist
+    List<Row> delete = new ArrayList<>();
+    for (int i = 0; i < 60000; i += 2) {
+      delete.add(row("id", i));
+    }
+    table.delete(delete);
+    assertEquals(25000, table.retrieveRows().size());
+    assertEquals(0, table.query().where(f("id", EQUALS, 10)).retrieveRows().size());
+    assertEquals(1, table.query().where(f("id", EQUALS, 11)).retrieveRows().size());
+  }
+
+  @Test
+  public void testLongKey() {
+    String prefix = "a".repeat(255);
+
+    // a longer key must not be truncated onto the key of another row
+    Table words = schema.create(table("Words", column("word").setPkey()));
+    words.insert(row("word", prefix));
+    words.delete(row("word", prefix + "b"));
+    assertEquals(1, words.retrieveRows().size());
+
+    Table texts = schema.create(table("Texts", column("text").setType(TEXT).setPkey()));
+    texts.insert(row("text", prefix), row("text", prefix + "b"));
+    texts.delete(row("text", prefix + "b"));
+    List<Row> result = texts.retrieveRows();
+    assertEquals(1, result.size());
+    assertEquals(prefix, result.get(0).getString("text"));
+  }
+
+  @Test
+  public void testCompositeKey() {
+    schema.create(table("Visitor", column("name").setPkey()));
+    Table visit =
+        schema.create(
+            table(
+                "Visit",
+                column("visitor", REF).setRefTable("Visitor").setPkey(),
+                column("date").setType(DATE).setPkey(),
+                column("notes")));
+    schema.getTable("Visitor").insert(row("name", "a"), row("name", "b"));
+    visit.insert(
+        row("visitor", "a", "date", LocalDate.of(2021, 1, 1)),
+        row("visitor", "a", "date", LocalDate.of(2021, 1, 2)),
+        row("visitor", "b", "date", LocalDate.of(2021, 1, 1)));
+
+    visit.delete(
+        row("visitor", "a", "date", LocalDate.of(2021, 1, 1)),
+        row("visitor", "b", "date", LocalDate.of(2021, 1, 1)));
+    List<Row> result = visit.retrieveRows();
+    assertEquals(1, result.size());
+    assertEquals(LocalDate.of(2021, 1, 2), result.get(0).getDate("date"));
+  }
+
+  @Test
+  public void testInheritance() {
+    Table animal = schema.create(table("Animal", column("name").setPkey()));
+    Table mammal = schema.create(table("Mammal").setInherit("Animal").add(column("legs")));
+    Table cat = schema.create(table("Cat").setInherit("Mammal").add(column("lives").setType(INT)));
+    animal.insert(row("name", "fish"));
+    mammal.insert(row("name", "cow", "legs", "4"));
+    cat.insert(row("name", "tom", "legs", "4", "lives", 9), row("name", "felix", "lives", 7));
+
+    // removed from all levels, rows can only be iterated once
+    Iterable<Row> once = List.of(row("name", "tom"), row("name", "felix")).stream()::iterator;
+    assertEquals(2, cat.delete(once));
+    assertEquals(0, cat.retrieveRows().size());
+    assertEquals(1, mammal.retrieveRows().size());
+    assertEquals(2, animal.retrieveRows().size());
+
+    mammal.delete(row("name", "cow"));
+    assertEquals(0, mammal.retrieveRows().size());
+    assertEquals(List.of("fish"), List.of(animal.retrieveRows().get(0).getString("name")));
+  }
+}
@@ -0,0 +1,183 @@
+package org.molgenis.emx2.sql;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.*;
+import static org.molgenis.emx2.Constants.MG_INSERTEDON;
+import static org.molgenis.emx2.Constants.MG_UPDATEDON;
+import static org.molgenis.emx2.FilterBean.f;
+import static org.molgenis.emx2.Operator.EQUALS;
+import static org.molgenis.emx2.Row.row;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.Table;
+
+public class TestBatchUpdate {
+  static Database db;
+  static Schema schema;
+
+  @BeforeClass
+  public static void setup() {
+    db = TestDatabaseFactory.getTestDatabase();
+    schema = db.dropCreateSchema(TestBatchUpdate.class.getSimpleName());
+  }
+
+  @Test
+  public void testTypes() {
+    Table table =
+        schema.create(
+            table(
+                "Types",
+                column("id").setType(INT).setPkey(),
+                column("name").setRequired(true),
+                column("amount").setType(DECIMAL),
+                column("active").setType(BOOL),
+                column("birth").setType(DATE),
+                column("seen").setType(DATETIME),
+                column("code").setType(UUID),
+                column("tags").setType(STRING_ARRAY),
+                column("numbers").setType(INT_ARRAY),
+                column("doubled").setType(INT).setComputed("id*2")));
+
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 2500; i++) {
+      rows.add(row("id", i, "name", "name" + i, "amount", 1.5, "active", true));
+    }
+    table.insert(rows);
+    LocalDateTime inserted =
+        table.query().where(f("id", EQUALS, 7)).retrieveRows().get(0).getDateTime(MG_INSERTEDON);
+
+    // more rows than one batch, with all types and nulls
+    java.util.UUID code = java.util.UUID.randomUUID();
+    rows.clear();
+    for (int i = 0; i < 2500; i++) {
+      rows.add(
+          row(
+              "id",
+              i,
+              "name",
+              "updated" + i,
+              "amount",
+              i % 2 == 0 ? i / 7.0 : null,
+              "active",
+              i % 3 == 0,
+              "birth",
+              LocalDate.of(1980, 1, 1).plusDays(i),
+              "seen",
+              LocalDateTime.of(2021, 6, 1, 12, 30, 15).plusSeconds(i),
+              "code",
+              code,
+              "tags",
+              new String[] {"a,\"" + i, null},
+              "numbers",
+              new Integer[] {i, -i}));
+    }
+    assertEquals(2500, table.update(rows));
+
+    Row result = table.query().where(f("id", EQUALS, 7)).retrieveRows().get(0);
+    assertEquals("updated7", result.getString("name"));
+    assertNull(result.getDecimal("amount"));
+    assertEquals(false, result.getBoolean("active"));
+    assertEquals(LocalDate.of(1980, 1, 8), result.getDate("birth"));
+    assertEquals(LocalDateTime.of(2021, 6, 1, 12, 30, 22), result.getDateTime("seen"));
+    assertEquals(code, result.getUuid("code"));
+    assertEquals("a,\"7", result.getStringArray("tags")[0]);
+    assertEquals(-7, (int) result.getIntegerArray("numbers")[1]);
+    assertEquals(14, (int) result.getInteger("doubled"));
+    assertTrue(inserted.compareTo(result.getDateTime(MG_UPDATEDON)) < 0);
+
+    // columns not provided are kept, later row of same key wins, missing rows are not counted
+    assertEquals(
+        1,
+        table.update(
+            row("id", 1, "name", "first"),
+            row("id", 1, "name", "second"),
+            row("id", 99999, "name", "missing")));
+    result = table.query().where(f("id", EQUALS, 1)).retrieveRows().get(0);
+    assertEquals("second", result.getString("name"));
+    assertEquals(-1, (int) result.getIntegerArray("numbers")[1]);
+    assertEquals(2500, table.retrieveRows().size());
+
+    // values are not silently truncated to the length of the column
+    try {
+      table.update(row("id", 1, "name", "long".repeat(100)));
+      fail("should fail on value too long");
+    } catch (Exception e) {
+      assertTrue(e.getMessage().contains("too long"));
+    }
+  }
+
+  @Test
+  public void testInheritanceAndCompositeKey() {
+    schema.create(table("Person", column("firstName").setPkey(), column("lastName").setPkey()));
+    schema.create(
+        table("Employee")
+            .setInherit("Person")
+            .add(column("boss", REF).setRefTable("Person"), column("salary").setType(INT)));
+    schema.create(
+        table(
+            "Pet",
+            column("owner", REF).setRefTable("Person").setPkey(),
+            column("name").setPkey(),
+            column("age").setType(INT)));
+
+    Table person = schema.getTable("Person");
+    Table employee = schema.getTable("Employee");
+    Table pet = schema.getTable("Pet");
+    person.insert(row("firstName", "Donald", "lastName", "Duck"));
+    employee.insert(
+        row("firstName", "Kwik", "lastName", "Duck", "salary", 1),
+        row("firstName", "Kwek", "lastName", "Duck", "salary", 2));
+    pet.insert(row("owner.firstName", "Kwik", "owner.lastName", "Duck", "name", "Pluto"));
+
+    // columns of subclass and ref to parent in one batch
+    assertEquals(
+        2,
+        employee.update(
+            row(
+                "firstName",
+                "Kwik",
+                "lastName",
+                "Duck",
+                "salary",
+                10,
+                "boss.firstName",
+                "Donald",
+                "boss.lastName",
+                "Duck"),
+            row(
+                "firstName",
+                "Kwek",
+                "lastName",
+                "Duck",
+                "salary",
+                20,
+                "boss.firstName",
+                "Donald",
+                "boss.lastName",
+                "Duck")));
+    Row kwek = employee.query().where(f("firstName", EQUALS, "Kwek")).retrieveRows().get(0);
+    assertEquals(20, (int) kwek.getInteger("salary"));
+    assertEquals("Donald", kwek.getString("boss.firstName"));
+
+    // only key columns of parent table
+    assertEquals(1, employee.update(row("firstName", "Kwik", "lastName", "Duck", "salary", 11)));
+    assertEquals(2, employee.retrieveRows().size());
+
+    // composite key including a reference
+    assertEquals(
+        1,
+        pet.update(
+            row("owner.firstName", "Kwik", "owner.lastName", "Duck", "name", "Pluto", "age", 3)));
+    assertEquals(3, (int) pet.retrieveRows().get(0).getInteger("age"));
+  }
+}
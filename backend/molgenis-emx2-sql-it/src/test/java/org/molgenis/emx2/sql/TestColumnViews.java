@@ -0,0 +1,40 @@
+package org.molgenis.emx2.sql;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.Row.row;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import java.util.List;
+import org.junit.Test;
+import org.molgenis.emx2.Column;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.Table;
+
+public class TestColumnViews {
+
+  @Test
+  public void testWritesKeepViews() {
+    Database db = TestDatabaseFactory.getTestDatabase();
+    Schema schema = db.dropCreateSchema(TestColumnViews.class.getSimpleName());
+    Table table = schema.create(table("Person", column("name").setPkey(), column("age")));
+    table.insert(row("name", "a"));
+
+    // metadata is synced after each transaction, without changes the views stay
+    List<Column> columns = table.getMetadata().getMutationColumns();
+    long version = table.getMetadata().getMetadataVersion();
+    for (int i = 0; i < 5; i++) {
+      table.insert(row("name", "b" + i));
+    }
+    table.update(row("name", "a", "age", "1"));
+    assertEquals(version, table.getMetadata().getMetadataVersion());
+    assertSame(columns, table.getMetadata().getMutationColumns());
+
+    table.getMetadata().add(column("email"));
+    assertNotEquals(version, table.getMetadata().getMetadataVersion());
+    assertTrue(
+        table.getMetadata().getMutationColumns().stream()
+            .anyMatch(c -> c.getName().equals("email")));
+  }
+}
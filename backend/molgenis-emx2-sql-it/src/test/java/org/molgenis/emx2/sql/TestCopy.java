@@ -1,11 +1,18 @@
 package org.molgenis.emx2.sql;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.Constants.MG_INSERTEDBY;
+import static org.molgenis.emx2.FilterBean.f;
+import static org.molgenis.emx2.Operator.EQUALS;
 import static org.molgenis.emx2.Row.row;
 import static org.molgenis.emx2.TableMetadata.table;
 
 import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -13,6 +20,7 @@ import org.molgenis.emx2.ColumnType;
 import org.molgenis.emx2.Database;
 import org.molgenis.emx2.Row;
 import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.Table;
 
 public class TestCopy {
 
@@ -57,6 +65,132 @@ public class TestCopy {
     assertEquals(2, schema.getTable("test2").retrieveRows().size());
   }
 
+  @Test
+  public void testBulkInsertAndSave() {
+    Table table =
+        schema.create(
+            table(
+                "bulk",
+                column("id").setType(ColumnType.INT).setPkey(),
+                column("name").setRequired(true),
+                column("amount").setType(ColumnType.DECIMAL),
+                column("active").setType(ColumnType.BOOL),
+                column("birth").setType(ColumnType.DATE),
+                column("seen").setType(ColumnType.DATETIME),
+                column("tags").setType(ColumnType.STRING_ARRAY),
+                column("numbers").setType(ColumnType.INT_ARRAY),
+                column("doubled").setType(ColumnType.INT).setComputed("id*2")));
+
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 25000; i++) {
+      rows.add(
+          row(
+              "id",
+              i,
+              "name",
+              "name\t" + i,
+              "amount",
+              i / 7.0,
+              "active",
+              i % 2 == 0,
+              "birth",
+              LocalDate.of(1980, 1, 1).plusDays(i),
+              "seen",
+              LocalDateTime.of(2021, 6, 1, 12, 30, 15).plusSeconds(i),
+              "tags",
+              new String[] {"a,\"" + i, null},
+              "numbers",
+              new Integer[] {i, -i}));
+    }
+    assertEquals(25000, table.bulkInsert(rows));
+
+    Row result = table.query().where(f("id", EQUALS, 12345)).retrieveRows().get(0);
+    assertEquals("name\t12345", result.getString("name"));
+    assertEquals(12345 / 7.0, result.getDecimal("amount"), 0.0000001);
+    assertEquals(false, result.getBoolean("active"));
+    assertEquals(LocalDate.of(1980, 1, 1).plusDays(12345), result.getDate("birth"));
+    assertEquals(
+        LocalDateTime.of(2021, 6, 1, 12, 30, 15).plusSeconds(12345), result.getDateTime("seen"));
+    assertEquals("a,\"12345", result.getStringArray("tags")[0]);
+    assertEquals(-12345, (int) result.getIntegerArray("numbers")[1]);
+    assertEquals(24690, (int) result.getInteger("doubled"));
+    assertEquals("admin", result.getString(MG_INSERTEDBY));
+
+    // save updates existing rows and adds new ones via staging table
+    List<Row> update = List.of(row("id", 1, "name", "updated"), row("id", 25000, "name", "new"));
+    assertEquals(2, table.bulkSave(update));
+    assertEquals(25001, table.retrieveRows().size());
+    assertEquals(
+        "updated", table.query().where(f("id", EQUALS, 1)).retrieveRows().get(0).getString("name"));
+
+    // required check still applies
+    try {
+      table.bulkInsert(List.of(row("id", 30000)));
+      fail("should fail on missing required column");
+    } catch (Exception e) {
+      // correct
+    }
+  }
+
+  @Test
+  public void testBulkInsertWithInheritance() {
+    schema.create(
+        table("Animal", column("name").setPkey(), column("weight").setType(ColumnType.DECIMAL)));
+    Table dog = schema.create(table("Dog", column("breed")).setInherit("Animal"));
+
+    dog.bulkInsert(
+        List.of(row("name", "pooky", "weight", 12.5, "breed", "poodle"), row("name", "rex")));
+    dog.bulkSave(List.of(row("name", "pooky", "weight", 13.0, "breed", "poodle")));
+
+    assertEquals(2, dog.retrieveRows().size());
+    assertEquals(2, schema.getTable("Animal").retrieveRows().size());
+    assertEquals(
+        13.0,
+        dog.query().where(f("name", EQUALS, "pooky")).retrieveRows().get(0).getDecimal("weight"),
+        0.0001);
+  }
+
+  @Test
+  public void testBulkInsertWithInheritanceAndUnsupportedType() {
+    schema.create(table("Plant", column("name").setPkey()));
+    Table tree = schema.create(table("Tree", column("leaf")).setInherit("Plant"));
+    // a column type the binary copy cannot encode, so Tree falls back to a normal insert
+    SqlDatabase database = (SqlDatabase) db;
+    database.getJooq().execute("CREATE DOMAIN \"TestCopy\".\"leaf_type\" AS varchar");
+    database
+        .getJooq()
+        .execute(
+            "ALTER TABLE \"TestCopy\".\"Tree\" ALTER COLUMN \"leaf\" TYPE \"TestCopy\".\"leaf_type\"");
+
+    // parent rows are written only once, otherwise insert fails on duplicate key
+    assertEquals(
+        2, tree.bulkInsert(List.of(row("name", "oak", "leaf", "lobed"), row("name", "pine"))));
+    assertEquals(1, tree.bulkSave(List.of(row("name", "pine", "leaf", "needle"))));
+    assertEquals(2, schema.getTable("Plant").retrieveRows().size());
+    assertEquals(
+        "needle",
+        tree.query().where(f("name", EQUALS, "pine")).retrieveRows().get(0).getString("leaf"));
+  }
+
+  @Test
+  public void testBulkInsertIntoBigintAndNumeric() {
+    Table table =
+        schema.create(table("Measurement", column("id").setPkey(), column("big"), column("exact")));
+    SqlDatabase database = (SqlDatabase) db;
+    database
+        .getJooq()
+        .execute(
+            "ALTER TABLE \"TestCopy\".\"Measurement\" ALTER COLUMN \"big\" TYPE bigint USING \"big\"::bigint,"
+                + " ALTER COLUMN \"exact\" TYPE numeric USING \"exact\"::numeric");
+
+    // string values are converted like in a normal insert, numeric keeps all digits
+    table.bulkInsert(
+        List.of(row("id", "a", "big", "12345678901", "exact", "0.12345678901234567890123")));
+    Row result = table.retrieveRows().get(0);
+    assertEquals("12345678901", result.getString("big"));
+    assertEquals("0.12345678901234567890123", result.getString("exact"));
+  }
+
   //  @Test
   //  public void test2() {
   //    schema.create(table("speed1", column("A")));
@@ -0,0 +1,263 @@
+package org.molgenis.emx2.sql;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.*;
+import static org.molgenis.emx2.Constants.MG_CURSOR;
+import static org.molgenis.emx2.FilterBean.f;
+import static org.molgenis.emx2.Operator.EQUALS;
+import static org.molgenis.emx2.SelectColumn.s;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+import org.jooq.DSLContext;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.*;
+
+public class TestCursorPagination {
+  private static final int SIZE = 50;
+  private static Schema schema;
+
+  @BeforeClass
+  public static void setup() {
+    Database db = TestDatabaseFactory.getTestDatabase();
+    schema = db.dropCreateSchema(TestCursorPagination.class.getSimpleName());
+    Table table =
+        schema.create(
+            table(
+                "Player",
+                column("id").setType(INT).setPkey(),
+                column("name"),
+                column("score").setType(INT).setRequired(true)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < SIZE; i++) {
+      // duplicate scores and names, and some names missing
+      rows.add(
+          new Row()
+              .setInt("id", i)
+              .setString("name", i % 7 == 0 ? null : "name" + (i % 5))
+              .setInt("score", i % 4));
+    }
+    table.insert(rows);
+  }
+
+  @Test
+  public void testPageForward() {
+    // row value comparison on required columns
+    assertPages(Map.of("score", Order.ASC), null);
+    // nullable column, and mixed directions
+    assertPages(Map.of("name", Order.ASC), null);
+    assertPages(Map.of("name", Order.DESC), null);
+    Map<String, Order> mixed = new LinkedHashMap<>();
+    mixed.put("score", Order.DESC);
+    mixed.put("name", Order.ASC);
+    assertPages(mixed, null);
+    // with filter
+    assertPages(mixed, f("score", EQUALS, 1, 2));
+  }
+
+  @Test
+  public void testPageBackward() {
+    Map<String, Order> mixed = new LinkedHashMap<>();
+    mixed.put("name", Order.DESC);
+    mixed.put("score", Order.ASC);
+    List<Integer> expected = ids(query(mixed, null).retrieveRows());
+
+    // from the last row back to the start, pages are in requested order
+    List<Integer> result = new ArrayList<>();
+    String cursor = query(mixed, null).retrieveRows().get(SIZE - 1).getString(MG_CURSOR);
+    result.add(expected.get(SIZE - 1));
+    while (true) {
+      List<Row> page = query(mixed, null).before(cursor).limit(6).retrieveRows();
+      if (page.isEmpty()) break;
+      result.addAll(0, ids(page));
+      cursor = page.get(0).getString(MG_CURSOR);
+    }
+    assertEquals(expected, result);
+  }
+
+  @Test
+  public void testJson() throws IOException {
+    Map<String, Order> order = Map.of("name", Order.ASC);
+    List<Integer> expected = ids(query(order, null).retrieveRows());
+    ObjectMapper mapper = new ObjectMapper();
+
+    List<Integer> result = new ArrayList<>();
+    String cursor = null;
+    do {
+      Query query = schema.getTable("Player").query();
+      query.select(s("id"), s(MG_CURSOR)).orderBy(order).limit(9);
+      if (cursor != null) query.after(cursor);
+      JsonNode page = mapper.readTree(query.retrieveJSON()).get("Player");
+      cursor = null;
+      if (page != null) {
+        for (JsonNode row : page) {
+          result.add(row.get("id").intValue());
+          cursor = row.get(MG_CURSOR).textValue();
+        }
+      }
+    } while (cursor != null);
+    assertEquals(expected, result);
+  }
+
+  @Test
+  public void testDecimalCursor() {
+    Table table =
+        schema.create(
+            table(
+                "Measurement",
+                column("id").setType(INT).setPkey(),
+                column("value").setType(DECIMAL).setRequired(true)));
+    // numeric values that only differ beyond the precision of a double
+    DSLContext jooq = ((SqlDatabase) schema.getDatabase()).getJooq();
+    jooq.execute(
+        "ALTER TABLE \"TestCursorPagination\".\"Measurement\" ALTER COLUMN value TYPE numeric");
+    jooq.execute(
+        "INSERT INTO \"TestCursorPagination\".\"Measurement\" (id, value)"
+            + " SELECT i, 0.1 + (9 - i) * 1e-20 FROM generate_series(0, 9) i");
+
+    Map<String, Order> order = Map.of("value", Order.ASC);
+    List<Integer> result = new ArrayList<>();
+    String cursor = null;
+    while (true) {
+      Query query = table.select(s("id"), s(MG_CURSOR)).orderBy(order).limit(3);
+      if (cursor != null) query.after(cursor);
+      List<Row> page = query.retrieveRows();
+      if (page.isEmpty()) break;
+      result.addAll(ids(page));
+      cursor = page.get(page.size() - 1).getString(MG_CURSOR);
+    }
+    assertEquals(List.of(9, 8, 7, 6, 5, 4, 3, 2, 1, 0), result);
+  }
+
+  @Test
+  public void testNestedLists() throws IOException {
+    schema.create(table("Owner", column("name").setPkey()));
+    schema.create(
+        table(
+            "Pet", column("id").setType(INT).setPkey(), column("owner", REF).setRefTable("Owner")));
+    schema
+        .getTable("Owner")
+        .getMetadata()
+        .add(
+            column("pets", REFBACK).setRefTable("Pet").setRefBack("owner"),
+            column("favorites", REF_ARRAY).setRefTable("Pet"));
+    Table owner = schema.getTable("Owner");
+    owner.insert(new Row().setString("name", "a"), new Row().setString("name", "b"));
+    List<Row> pets = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      pets.add(new Row().setInt("id", i).setString("owner", i % 2 == 0 ? "a" : "b"));
+    }
+    schema.getTable("Pet").insert(pets);
+    Integer[] favorites = new Integer[15];
+    for (int i = 0; i < favorites.length; i++) {
+      favorites[i] = i;
+    }
+    owner.update(new Row().setString("name", "a").setIntArray("favorites", favorites));
+
+    assertNestedPages(owner, "pets", List.of(18, 16, 14, 12, 10, 8, 6, 4, 2, 0));
+    assertNestedPages(
+        owner, "favorites", List.of(14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1, 0));
+  }
+
+  /** pages forward with after, then back from the end with before, through a nested list */
+  private static void assertNestedPages(Table owner, String list, List<Integer> expected)
+      throws IOException {
+    List<Integer> result = new ArrayList<>();
+    String cursor = null;
+    String last = null;
+    while (true) {
+      JsonNode page = nestedPage(owner, list, cursor, null);
+      if (page == null || page.size() == 0) break;
+      for (JsonNode row : page) {
+        result.add(row.get("id").intValue());
+      }
+      cursor = page.get(page.size() - 1).get(MG_CURSOR).textValue();
+      last = cursor;
+    }
+    assertEquals(expected, result);
+
+    result = new ArrayList<>();
+    result.add(expected.get(expected.size() - 1));
+    cursor = last;
+    while (true) {
+      JsonNode page = nestedPage(owner, list, null, cursor);
+      if (page == null || page.size() == 0) break;
+      List<Integer> ids = new ArrayList<>();
+      for (JsonNode row : page) {
+        ids.add(row.get("id").intValue());
+      }
+      result.addAll(0, ids);
+      cursor = page.get(0).get(MG_CURSOR).textValue();
+    }
+    assertEquals(expected, result);
+  }
+
+  private static JsonNode nestedPage(Table owner, String list, String after, String before)
+      throws IOException {
+    SelectColumn select = s(list, s("id"), s(MG_CURSOR));
+    select.setOrderBy(Map.of("id", Order.DESC));
+    select.setLimit(4);
+    if (after != null) select.setAfter(after);
+    if (before != null) select.setBefore(before);
+    String json = owner.select(s("name"), select).where(f("name", EQUALS, "a")).retrieveJSON();
+    return new ObjectMapper().readTree(json).get("Owner").get(0).get(list);
+  }
+
+  @Test
+  public void testInvalidCursor() {
+    try {
+      query(Map.of("score", Order.ASC), null).after("[1]").retrieveRows();
+      fail("cursor should have value for each orderBy column and the primary key");
+    } catch (MolgenisException e) {
+      assertTrue(e.getMessage().contains("doesn't match orderBy"));
+    }
+  }
+
+  /** pages through all rows using after, and checks these are the same as ordered in one go */
+  private static void assertPages(Map<String, Order> order, Filter filter) {
+    List<Row> all = query(order, filter).retrieveRows();
+    Comparator<Row> expectedOrder = null;
+    for (Map.Entry<String, Order> entry : order.entrySet()) {
+      // postgres sorts nulls last, or first when descending
+      Comparator<String> values = Comparator.nullsLast(Comparator.<String>naturalOrder());
+      if (Order.DESC.equals(entry.getValue())) values = values.reversed();
+      Comparator<Row> byColumn = Comparator.comparing(row -> row.getString(entry.getKey()), values);
+      expectedOrder = expectedOrder == null ? byColumn : expectedOrder.thenComparing(byColumn);
+    }
+    List<Row> sorted = new ArrayList<>(all);
+    sorted.sort(expectedOrder.thenComparing(row -> row.getInteger("id")));
+    assertEquals(ids(sorted), ids(all));
+
+    List<Integer> result = new ArrayList<>();
+    String cursor = null;
+    while (true) {
+      Query query = query(order, filter).limit(4);
+      if (cursor != null) query.after(cursor);
+      List<Row> page = query.retrieveRows();
+      if (page.isEmpty()) break;
+      result.addAll(ids(page));
+      cursor = page.get(page.size() - 1).getString(MG_CURSOR);
+    }
+    assertEquals(ids(all), result);
+  }
+
+  private static Query query(Map<String, Order> order, Filter filter) {
+    Query query =
+        schema
+            .getTable("Player")
+            .select(s("id"), s("name"), s("score"), s(MG_CURSOR))
+            .orderBy(order);
+    if (filter != null) query.where(filter);
+    return query;
+  }
+
+  private static List<Integer> ids(List<Row> rows) {
+    return rows.stream().map(row -> row.getInteger("id")).collect(Collectors.toList());
+  }
+}
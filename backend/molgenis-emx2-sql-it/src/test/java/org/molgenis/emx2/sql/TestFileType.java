@@ -6,7 +6,10 @@ import static org.molgenis.emx2.ColumnType.FILE;
 import static org.molgenis.emx2.SelectColumn.s;
 import static org.molgenis.emx2.TableMetadata.table;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.molgenis.emx2.*;
@@ -37,6 +40,67 @@ public class TestFileType {
     assertTrue(result.contains("37458"));
   }
 
+  @Test
+  public void testWriteFileContentsInChunks() {
+    Table t = schema.create(table("test2", column("id").setPkey(), column("data").setType(FILE)));
+    byte[] contents = new byte[2 * SqlFileContents.CHUNK_SIZE + 123];
+    new Random(42).nextBytes(contents);
+    Row row =
+        new Row()
+            .setString("id", "1")
+            .setBinary(
+                "data", new BinaryFileWrapper("application/octet-stream", "data.bin", contents));
+    t.insert(row);
+    String fileId = row.getString("data");
+
+    // complete file
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(contents.length, t.writeFileContents("data", fileId, 0, contents.length, out));
+    assertArrayEquals(contents, out.toByteArray());
+
+    // range spanning chunks
+    out = new ByteArrayOutputStream();
+    int offset = SqlFileContents.CHUNK_SIZE - 10;
+    assertEquals(20, t.writeFileContents("data", fileId, offset, 20, out));
+    assertArrayEquals(Arrays.copyOfRange(contents, offset, offset + 20), out.toByteArray());
+
+    // length beyond end of file
+    out = new ByteArrayOutputStream();
+    assertEquals(
+        123,
+        t.writeFileContents("data", fileId, 2 * SqlFileContents.CHUNK_SIZE, Long.MAX_VALUE, out));
+
+    // unknown file
+    assertEquals(0, t.writeFileContents("data", "unknown", 0, 10, new ByteArrayOutputStream()));
+
+    // compressible file is stored uncompressed so chunks are sliced without decompressing
+    byte[] text = "molgenis ".repeat(SqlFileContents.CHUNK_SIZE / 3).getBytes();
+    row =
+        new Row()
+            .setString("id", "2")
+            .setBinary("data", new BinaryFileWrapper("text/plain", "data.txt", text));
+    t.insert(row);
+    out = new ByteArrayOutputStream();
+    assertEquals(
+        text.length, t.writeFileContents("data", row.getString("data"), 0, Long.MAX_VALUE, out));
+    assertArrayEquals(text, out.toByteArray());
+    assertEquals(
+        "e",
+        ((SqlDatabase) db)
+            .getJooq()
+            .fetchValue(
+                "SELECT attstorage FROM pg_attribute WHERE attrelid = '\"TestFileType\".\"test2\"'::regclass AND attname = 'data_contents'")
+            .toString());
+    assertEquals(
+        text.length,
+        ((Number)
+                ((SqlDatabase) db)
+                    .getJooq()
+                    .fetchValue(
+                        "SELECT pg_column_size(data_contents) FROM \"TestFileType\".\"test2\" WHERE id = '2'"))
+            .intValue());
+  }
+
   @Test
   public void testBinaryFileWrapper() {
     BinaryFileWrapper w = new BinaryFileWrapper(getFile());
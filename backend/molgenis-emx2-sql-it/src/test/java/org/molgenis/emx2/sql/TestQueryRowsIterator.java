@@ -0,0 +1,85 @@
+package org.molgenis.emx2.sql;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.INT;
+import static org.molgenis.emx2.FilterBean.f;
+import static org.molgenis.emx2.Operator.EQUALS;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.*;
+
+public class TestQueryRowsIterator {
+  private static final int SIZE = 2 * SqlRowIterator.FETCH_SIZE + 10;
+  private static Database db;
+  private static Schema schema;
+
+  @BeforeClass
+  public static void setup() {
+    db = TestDatabaseFactory.getTestDatabase();
+    schema = db.dropCreateSchema(TestQueryRowsIterator.class.getSimpleName());
+    Table table =
+        schema.create(table("Number", column("id").setType(INT).setPkey(), column("label")));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < SIZE; i++) {
+      rows.add(new Row().setInt("id", i).setString("label", "label" + i));
+    }
+    table.insert(rows);
+  }
+
+  @Test
+  public void testIteratorRetrievesAllRows() {
+    int count = 0;
+    try (RowIterator rows = schema.getTable("Number").query().retrieveRowsIterator()) {
+      while (rows.hasNext()) {
+        Row row = rows.next();
+        assertEquals("label" + row.getInteger("id"), row.getString("label"));
+        count++;
+      }
+    }
+    assertEquals(SIZE, count);
+
+    // filter, and stream
+    try (Stream<Row> stream =
+        schema.getTable("Number").query().where(f("id", EQUALS, 1, 3)).stream()) {
+      assertEquals(2, stream.count());
+    }
+  }
+
+  @Test
+  public void testIteratorReleasesConnection() {
+    // more iterations than the connection pool has connections
+    for (int i = 0; i < 100; i++) {
+      try (RowIterator rows = schema.getTable("Number").query().retrieveRowsIterator()) {
+        assertTrue(rows.hasNext());
+        rows.next();
+      }
+    }
+    // exhausted iterators are closed automatically
+    for (int i = 0; i < 100; i++) {
+      RowIterator rows =
+          schema.getTable("Number").query().where(f("id", EQUALS, 1)).retrieveRowsIterator();
+      assertEquals(1, rows.next().getInteger("id").intValue());
+      assertFalse(rows.hasNext());
+    }
+  }
+
+  @Test
+  public void testIteratorWithinTransaction() {
+    db.tx(
+        tdb -> {
+          Table table = tdb.getSchema(schema.getName()).getTable("Number");
+          table.insert(new Row().setInt("id", SIZE).setString("label", "label" + SIZE));
+          try (Stream<Row> stream = table.query().stream()) {
+            // includes uncommitted row
+            assertEquals(SIZE + 1, stream.count());
+          }
+          table.delete(new Row().setInt("id", SIZE));
+        });
+  }
+}
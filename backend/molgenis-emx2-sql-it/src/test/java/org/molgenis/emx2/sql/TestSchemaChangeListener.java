@@ -0,0 +1,47 @@
+package org.molgenis.emx2.sql;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import java.util.function.BooleanSupplier;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.Schema;
+
+public class TestSchemaChangeListener {
+  private static Database db;
+
+  @BeforeClass
+  public static void setup() {
+    db = TestDatabaseFactory.getTestDatabase();
+  }
+
+  @Test
+  public void testChangeIsNotified() throws InterruptedException {
+    Schema schema = db.dropCreateSchema("TestSchemaChangeListener");
+    waitFor(() -> SqlSchemaChangeListener.isListening());
+
+    // other server, or session, loads the schema
+    Database other = new SqlDatabase(false);
+    assertNull(other.getSchema(schema.getName()).getMetadata().getTableMetadata("Pet"));
+    other.checkSchemaVersions();
+
+    long generation = SqlSchemaChangeListener.getGeneration();
+    schema.create(table("Pet", column("name").setPkey()));
+
+    // notification arrives after commit, then other reloads the changed schema
+    waitFor(() -> SqlSchemaChangeListener.getGeneration() > generation);
+    other.checkSchemaVersions();
+    waitFor(() -> other.getSchema(schema.getName()).getMetadata().getTableMetadata("Pet") != null);
+    assertNotNull(other.getSchema(schema.getName()).getMetadata().getTableMetadata("Pet"));
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+      Thread.sleep(50);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+}
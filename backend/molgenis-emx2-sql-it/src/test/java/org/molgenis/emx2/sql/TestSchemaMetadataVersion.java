@@ -0,0 +1,90 @@
+package org.molgenis.emx2.sql;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.Schema;
+
+public class TestSchemaMetadataVersion {
+  private static Database db;
+
+  @BeforeClass
+  public static void setup() {
+    db = TestDatabaseFactory.getTestDatabase();
+  }
+
+  @Test
+  public void testVersionIsBumpedOncePerTransaction() {
+    Schema schema = db.dropCreateSchema("TestSchemaMetadataVersion1");
+    long version = getVersion(schema);
+
+    schema.create(table("Pet", column("name").setPkey(), column("species"), column("weight")));
+    assertEquals(version + 1, getVersion(schema));
+    assertEquals(version + 1, getVersionInDatabase(schema.getName()));
+
+    db.tx(
+        tdb -> {
+          Schema s = tdb.getSchema("TestSchemaMetadataVersion1");
+          s.getTable("Pet").getMetadata().add(column("color"));
+          s.getMetadata().setSetting("key", "value");
+        });
+    assertEquals(version + 2, getVersion(db.getSchema(schema.getName())));
+    assertEquals(version + 2, getVersionInDatabase(schema.getName()));
+  }
+
+  @Test
+  public void testOnlyChangedSchemaIsReloaded() throws InterruptedException {
+    Schema changed = db.dropCreateSchema("TestSchemaMetadataVersion2");
+    Schema unchanged = db.dropCreateSchema("TestSchemaMetadataVersion3");
+    changed.create(table("Pet", column("name").setPkey()));
+
+    // other session
+    Database other = new SqlDatabase(false);
+    SqlSchemaMetadata otherChanged =
+        (SqlSchemaMetadata) other.getSchema(changed.getName()).getMetadata();
+    SqlSchemaMetadata otherUnchanged =
+        (SqlSchemaMetadata) other.getSchema(unchanged.getName()).getMetadata();
+    assertNull(otherChanged.getTableMetadata("Order"));
+
+    changed.create(table("Order", column("id").setPkey()));
+
+    // nothing changed yet because the other session didn't check
+    other.checkSchemaVersions();
+    assertSame(otherUnchanged, other.getSchema(unchanged.getName()).getMetadata());
+
+    // changed schema is reloaded in the background
+    for (int i = 0; i < 100; i++) {
+      if (other.getSchema(changed.getName()).getMetadata().getTableMetadata("Order") != null) {
+        break;
+      }
+      Thread.sleep(50);
+    }
+    assertNotNull(other.getSchema(changed.getName()).getMetadata().getTableMetadata("Order"));
+    assertEquals(
+        getVersion(changed),
+        ((SqlSchemaMetadata) other.getSchema(changed.getName()).getMetadata()).getVersion());
+    assertSame(otherUnchanged, other.getSchema(unchanged.getName()).getMetadata());
+
+    // dropped schema is removed
+    db.dropSchema(unchanged.getName());
+    // notification of the change might arrive a bit later
+    for (int i = 0; i < 100 && other.getSchema(unchanged.getName()) != null; i++) {
+      Thread.sleep(50);
+      other.checkSchemaVersions();
+    }
+    assertNull(other.getSchema(unchanged.getName()));
+    assertFalse(other.getSchemaNames().contains(unchanged.getName()));
+  }
+
+  private static long getVersion(Schema schema) {
+    return ((SqlSchemaMetadata) schema.getMetadata()).getVersion();
+  }
+
+  private static long getVersionInDatabase(String schemaName) {
+    return MetadataUtils.loadSchemaVersion(((SqlDatabase) db).getJooq(), schemaName);
+  }
+}
@@ -0,0 +1,112 @@
+package org.molgenis.emx2.sql;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.INT;
+import static org.molgenis.emx2.ColumnType.REF;
+import static org.molgenis.emx2.FilterBean.f;
+import static org.molgenis.emx2.Operator.*;
+import static org.molgenis.emx2.SelectColumn.s;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.*;
+
+public class TestSqlQueryCache {
+  private static Schema schema;
+
+  @BeforeClass
+  public static void setup() {
+    Database db = TestDatabaseFactory.getTestDatabase();
+    schema = db.dropCreateSchema(TestSqlQueryCache.class.getSimpleName());
+    Table table =
+        schema.create(table("Number", column("id").setType(INT).setPkey(), column("label")));
+    for (int i = 0; i < 10; i++) {
+      table.insert(new Row().setInt("id", i).setString("label", "label" + i));
+    }
+  }
+
+  @Test
+  public void testSameShapeReusesSql() {
+    Table table = schema.getTable("Number");
+    String result = table.select(s("id")).where(f("id", EQUALS, 1)).retrieveJSON();
+    int size = SqlQueryCache.size();
+
+    // same shape, other values, should give other results but use cached sql
+    for (int i = 2; i < 5; i++) {
+      result = table.select(s("id")).where(f("id", EQUALS, i)).retrieveJSON();
+      assertTrue(result.contains("\"id\":" + i));
+      assertFalse(result.contains("\"id\":1"));
+    }
+    result = table.select(s("id")).where(f("id", BETWEEN, 7, 8)).retrieveJSON();
+    assertTrue(result.contains("\"id\":7") && result.contains("\"id\":8"));
+    result = table.select(s("id")).where(f("id", BETWEEN, 2, 3)).retrieveJSON();
+    assertTrue(result.contains("\"id\":2") && result.contains("\"id\":3"));
+    assertFalse(result.contains("\"id\":7"));
+    // only one more for the between
+    assertEquals(size + 1, SqlQueryCache.size());
+
+    // different sql for different number of values, or nulls in between
+    result = table.select(s("id")).where(f("id", EQUALS, 1, 2)).retrieveJSON();
+    assertTrue(result.contains("\"id\":1") && result.contains("\"id\":2"));
+    result = table.select(s("id")).where(f("id", BETWEEN, 8, null)).retrieveJSON();
+    assertTrue(result.contains("\"id\":8") && result.contains("\"id\":9"));
+    assertFalse(result.contains("\"id\":7"));
+
+    // short search terms use 'like', longer ones text search
+    result = table.select(s("label")).where(f("label", TEXT_SEARCH, "l")).retrieveJSON();
+    assertTrue(result.contains("label1"));
+    result = table.select(s("label")).where(f("label", TEXT_SEARCH, "label1")).retrieveJSON();
+    assertTrue(result.contains("label1"));
+    assertFalse(result.contains("label2"));
+  }
+
+  @Test
+  public void testMetadataChangeInvalidates() {
+    Table table = schema.create(table("Changed", column("id").setPkey()));
+    table.insert(new Row().setString("id", "a"));
+    assertFalse(table.query().retrieveJSON().contains("extra"));
+
+    table.getMetadata().add(column("extra"));
+    table.update(new Row().setString("id", "a").setString("extra", "value"));
+    assertTrue(table.query().retrieveJSON().contains("\"extra\":\"value\""));
+  }
+
+  @Test
+  public void testOtherSchemaChangeInvalidates() {
+    Schema other =
+        schema.getDatabase().dropCreateSchema(TestSqlQueryCache.class.getSimpleName() + "Other");
+    Table country = other.create(table("Country", column("code").setPkey()));
+    country.insert(new Row().setString("code", "nl"));
+    Table person =
+        schema.create(
+            table(
+                "Person",
+                column("name").setPkey(),
+                column("country", REF).setRefSchema(other.getName()).setRefTable("Country")));
+    person.insert(new Row().setString("name", "a").setString("country", "nl"));
+    SelectColumn select = s("country", s("code"));
+    String key = SqlQueryCache.key((SqlSchemaMetadata) schema.getMetadata(), select, null, null);
+    assertTrue(person.select(select).retrieveJSON().contains("\"code\":\"nl\""));
+
+    // the sql joins the table in the other schema, so changes there result in new sql
+    country.getMetadata().add(column("label"));
+    assertNotEquals(
+        key, SqlQueryCache.key((SqlSchemaMetadata) schema.getMetadata(), select, null, null));
+    assertTrue(person.select(select).retrieveJSON().contains("\"code\":\"nl\""));
+  }
+
+  @Test
+  public void testWritesKeepCachedSql() {
+    Table table = schema.getTable("Number");
+    table.select(s("id"), s("label")).retrieveJSON();
+    int size = SqlQueryCache.size();
+    for (int i = 100; i < 105; i++) {
+      table.insert(new Row().setInt("id", i).setString("label", "label" + i));
+      assertTrue(table.select(s("id"), s("label")).retrieveJSON().contains("label" + i));
+    }
+    assertEquals(size, SqlQueryCache.size());
+    table.delete(new Row().setInt("id", 100), new Row().setInt("id", 101));
+  }
+}
@@ -0,0 +1,274 @@
+package org.molgenis.emx2.sql;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.tasks.StepStatus.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.tasks.StepStatus;
+import org.molgenis.emx2.tasks.Task;
+import org.molgenis.emx2.tasks.TaskService;
+
+public class TestSqlTaskService {
+  static Database db;
+
+  @BeforeClass
+  public static void setup() {
+    db = TestDatabaseFactory.getTestDatabase();
+  }
+
+  @Test
+  public void testLimitPerSchema() throws InterruptedException {
+    TaskService service = new SqlTaskService(db, 3, 1, 100);
+    try {
+      AtomicInteger runningA = new AtomicInteger();
+      AtomicInteger maxRunningA = new AtomicInteger();
+      List<String> ids = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        ids.add(service.submit(new SleepTask(runningA, maxRunningA), "TestTaskServiceA", 0));
+      }
+      // other schema is not blocked by schema A
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      String other = service.submit(new LatchTask(started, release), "TestTaskServiceB", 0);
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      release.countDown();
+
+      waitFor(service, other);
+      for (String id : ids) {
+        waitFor(service, id);
+      }
+      assertEquals(1, maxRunningA.get());
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  public void testPriorityAndRestart() throws InterruptedException {
+    TaskService service = new SqlTaskService(db, 1, 1, 100);
+    String schema = "TestTaskServicePriority";
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    String low, high;
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      String blocking = service.submit(new LatchTask(started, release), schema, 0);
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      low = service.submit(new NamedTask("low", order), schema, 0);
+      high = service.submit(new NamedTask("high", order), schema, 10);
+      release.countDown();
+      waitFor(service, blocking);
+      waitFor(service, low);
+      waitFor(service, high);
+      assertEquals(List.of("high", "low"), order);
+    } finally {
+      service.shutdown();
+    }
+
+    // another server, or the same server after restart, sees the finished tasks
+    TaskService service2 = new SqlTaskService(db, 1, 1, 100);
+    try {
+      assertTrue(service2.getJobIds().contains(low));
+      Task task = service2.getTask(high);
+      assertEquals(COMPLETED, task.getStatus());
+      assertTrue(task.getDescription().startsWith("high"));
+      assertTrue(task.toString().contains("\"COMPLETED\""));
+
+      service2.removeTask(low);
+      assertFalse(service2.getJobIds().contains(low));
+    } finally {
+      service2.shutdown();
+    }
+  }
+
+  @Test
+  public void testMaxWaiting() throws InterruptedException {
+    TaskService service = new SqlTaskService(db, 1, 1, 2);
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      String first = service.submit(new LatchTask(started, release), "TestTaskServiceMax", 0);
+      String second = service.submit(new Task("waiting"), "TestTaskServiceMax", 0);
+      try {
+        service.submit(new Task("too many"), "TestTaskServiceMax", 0);
+        fail("should fail because too many tasks waiting");
+      } catch (MolgenisException e) {
+        assertTrue(e.getMessage().contains("too many tasks waiting"));
+      }
+      release.countDown();
+      waitFor(service, first);
+      waitFor(service, second);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  public void testInterruptedByStop() {
+    // job of server that stopped an hour ago
+    ((SqlDatabase) db)
+        .getJooq()
+        .execute("DELETE FROM \"MOLGENIS\".\"jobs\" WHERE \"id\" = 'stopped-job'");
+    ((SqlDatabase) db)
+        .getJooq()
+        .execute(
+            "INSERT INTO \"MOLGENIS\".\"jobs\" (\"id\",\"schema\",\"description\",\"status\","
+                + "\"node\",\"heartbeat\",\"task\") VALUES ('stopped-job','TestTaskServiceStop',"
+                + "'import','RUNNING','gone',now() - interval '1 hour','{\"status\":\"RUNNING\"}')");
+    TaskService service = new SqlTaskService(db, 1, 1, 100);
+    try {
+      Task task = service.getTask("stopped-job");
+      assertEquals(ERROR, task.getStatus());
+      assertTrue(task.getDescription().contains("interrupted"));
+      assertTrue(task.toString().contains("\"ERROR\""));
+      service.removeTask("stopped-job");
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  public void testCancel() throws InterruptedException {
+    TaskService service = new SqlTaskService(db, 1, 1, 100);
+    TaskService other = new SqlTaskService(db, 1, 1, 100);
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      String running = service.submit(new UntilCancelledTask(started), "TestTaskServiceCancel", 0);
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      String waiting = service.submit(new Task("waiting"), "TestTaskServiceCancel", 0);
+
+      // waiting job ends right away, also when cancelled via other server
+      other.cancelTask(waiting);
+      assertEquals(CANCELLED, service.getTask(waiting).getStatus());
+      try {
+        service.removeTask(running);
+        fail("running task cannot be removed");
+      } catch (MolgenisException e) {
+        assertTrue(e.getMessage().contains("cancel it first"));
+      }
+
+      // running job stops on next heartbeat of its server
+      other.cancelTask(running);
+      waitFor(service, running);
+      Task task = other.getTask(running);
+      assertEquals(CANCELLED, task.getStatus());
+      assertEquals("step 3", task.getCheckpoint());
+      service.removeTask(running);
+      service.removeTask(waiting);
+    } finally {
+      service.shutdown();
+      other.shutdown();
+    }
+  }
+
+  private static void waitFor(TaskService service, String id) throws InterruptedException {
+    for (int i = 0; i < 200; i++) {
+      StepStatus status = service.getTask(id).getStatus();
+      if (!WAITING.equals(status) && !RUNNING.equals(status)) {
+        return;
+      }
+      Thread.sleep(50);
+    }
+    fail("task " + id + " did not finish");
+  }
+
+  private static class SleepTask extends Task {
+    private final AtomicInteger running;
+    private final AtomicInteger maxRunning;
+
+    SleepTask(AtomicInteger running, AtomicInteger maxRunning) {
+      super("sleep");
+      this.running = running;
+      this.maxRunning = maxRunning;
+    }
+
+    @Override
+    public void run() {
+      start();
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        running.decrementAndGet();
+      }
+      complete();
+    }
+  }
+
+  private static class LatchTask extends Task {
+    private final CountDownLatch started;
+    private final CountDownLatch release;
+
+    LatchTask(CountDownLatch started, CountDownLatch release) {
+      super("latch");
+      this.started = started;
+      this.release = release;
+    }
+
+    @Override
+    public void run() {
+      start();
+      started.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      complete();
+    }
+  }
+
+  private static class NamedTask extends Task {
+    private final String name;
+    private final List<String> order;
+
+    NamedTask(String name, List<String> order) {
+      super(name);
+      this.name = name;
+      this.order = order;
+    }
+
+    @Override
+    public void run() {
+      start();
+      order.add(name);
+      complete();
+    }
+  }
+
+  private static class UntilCancelledTask extends Task {
+    private final CountDownLatch started;
+
+    UntilCancelledTask(CountDownLatch started) {
+      super("until cancelled");
+      this.started = started;
+    }
+
+    @Override
+    public void run() {
+      start();
+      setCheckpoint("step 3");
+      started.countDown();
+      while (!isCancelled()) {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+      cancelled("stopped at checkpoint");
+    }
+  }
+}
@@ -30,6 +30,30 @@ public class TestUsersAndPermissions {
     assertEquals(count - 2, users.size());
   }
 
+  @Test
+  public void testActiveUserIsTrackedInMemory() {
+    String user = "Test Tracked User";
+    database.addUser(user);
+    long avoided = SqlDatabase.getActiveUserRoundTripsAvoided();
+
+    database.tx(
+        db -> {
+          db.setActiveUser(user);
+          assertEquals(user, db.getActiveUser());
+          assertEquals(
+              Constants.MG_USER_PREFIX + user,
+              ((SqlDatabase) db).getJooq().fetchOne("SELECT SESSION_USER").get(0, String.class));
+          db.clearActiveUser();
+          assertNull(db.getActiveUser());
+        });
+
+    database.setActiveUser(user);
+    assertEquals(user, database.getActiveUser());
+    database.clearActiveUser();
+    assertNull(database.getActiveUser());
+    assertTrue(SqlDatabase.getActiveUserRoundTripsAvoided() >= avoided + 4);
+  }
+
   @Test
   public void testActiveUser() {
     try {
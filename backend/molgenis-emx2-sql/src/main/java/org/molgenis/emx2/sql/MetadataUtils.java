@@ -29,6 +29,10 @@ public class MetadataUtils {
   private static final org.jooq.Field VERSION_ID = field(name("id"), INTEGER.nullable(false));
   private static final org.jooq.Field VERSION = field(name("version"), INTEGER.nullable(false));
 
+  // schema
+  private static final org.jooq.Field SCHEMA_VERSION =
+      field(name("version"), BIGINT.nullable(false));
+
   // table
   private static final org.jooq.Field TABLE_SCHEMA =
       field(name("table_schema"), VARCHAR.nullable(false));
@@ -261,6 +265,53 @@ public class MetadataUtils {
     return db.getJooq().selectFrom(SCHEMA_METADATA).fetch().getValues(TABLE_SCHEMA, String.class);
   }
 
+  /** returns metadata version of a schema, or 0 if not found */
+  protected static long loadSchemaVersion(DSLContext jooq, String schemaName) {
+    org.jooq.Record r =
+        jooq.select(SCHEMA_VERSION)
+            .from(SCHEMA_METADATA)
+            .where(TABLE_SCHEMA.eq(schemaName))
+            .fetchOne();
+    return r != null ? r.get(SCHEMA_VERSION, Long.class) : 0L;
+  }
+
+  /** returns metadata version of all schemas visible to current user in one query */
+  protected static Map<String, Long> loadSchemaVersions(DSLContext jooq) {
+    Map<String, Long> result = new LinkedHashMap<>();
+    Result<org.jooq.Record> records = jooq.selectFrom(SCHEMA_METADATA).fetch();
+    for (org.jooq.Record r : records) {
+      result.put(r.get(TABLE_SCHEMA, String.class), r.get(SCHEMA_VERSION, Long.class));
+    }
+    return result;
+  }
+
+  /** increments metadata version of a schema, returns new version or null if not found */
+  protected static Long bumpSchemaVersion(DSLContext jooq, String schemaName) {
+    org.jooq.Record r =
+        jooq.update(SCHEMA_METADATA)
+            .set(SCHEMA_VERSION, SCHEMA_VERSION.plus(1))
+            .where(TABLE_SCHEMA.eq(schemaName))
+            .returning(SCHEMA_VERSION)
+            .fetchOne();
+    if (r == null) {
+      return null;
+    }
+    SqlSchemaChangeListener.executeNotify(jooq, schemaName);
+    return r.get(SCHEMA_VERSION, Long.class);
+  }
+
+  /**
+   * Bumps metadata version of the schema so other sessions know to reload. Within a transaction
+   * this is done only once, on commit, see SqlDatabase.tx
+   */
+  protected static void metadataChanged(DSLContext jooq, SchemaMetadata schema) {
+    if (schema.getDatabase() instanceof SqlDatabase && schema.getDatabase().inTx()) {
+      ((SqlDatabase) schema.getDatabase()).metadataChanged(schema.getName());
+    } else {
+      bumpSchemaVersion(jooq, schema.getName());
+    }
+  }
+
   protected static SchemaMetadata loadSchemaMetadata(DSLContext jooq, SchemaMetadata schema) {
     org.jooq.Record tableRecord =
         jooq.selectFrom(SCHEMA_METADATA).where(TABLE_SCHEMA.eq(schema.getName())).fetchOne();
@@ -299,6 +350,7 @@ public class MetadataUtils {
           .set(TABLE_DESCRIPTION, table.getDescription())
           .set(TALBE_SEMANTICS, table.getSemantics())
           .execute();
+      metadataChanged(jooq, table.getSchema());
     } catch (Exception e) {
       throw new MolgenisException("save of table metadata failed", e);
     }
@@ -309,6 +361,7 @@ public class MetadataUtils {
         .set(TABLE_NAME, newName)
         .where(TABLE_SCHEMA.eq(table.getSchemaName()), TABLE_NAME.eq(table.getTableName()))
         .execute();
+    metadataChanged(jooq, table.getSchema());
   }
 
   protected static List<User> loadUsers(DSLContext jooq, int limit, int offset) {
@@ -416,6 +469,7 @@ public class MetadataUtils {
             TABLE_SCHEMA.eq(table.getSchema().getName()),
             SETTINGS_TABLE_NAME.eq(table.getTableName()))
         .execute();
+    metadataChanged(jooq, table.getSchema());
   }
 
   protected static void saveColumnMetadata(DSLContext jooq, Column column) {
@@ -484,6 +538,7 @@ public class MetadataUtils {
         .set(COLUMN_VISIBLE, column.getVisible())
         .set(COLUMN_FORMAT, column.getColumnFormat())
         .execute();
+    metadataChanged(jooq, column.getTable().getSchema());
   }
 
   protected static void deleteColumn(DSLContext jooq, Column column) {
@@ -493,6 +548,7 @@ public class MetadataUtils {
             TABLE_NAME.eq(column.getTableName()),
             COLUMN_NAME.eq(column.getName()))
         .execute();
+    metadataChanged(jooq, column.getTable().getSchema());
   }
 
   protected static List<Setting> loadSettings(DSLContext jooq, SchemaMetadata schema) {
@@ -523,6 +579,7 @@ public class MetadataUtils {
           .doUpdate()
           .set(SETTINGS_VALUE, setting.getValue())
           .execute();
+      metadataChanged(jooq, schema);
     } catch (Exception e) {
       throw new MolgenisException("save of settings failed", e);
     }
@@ -536,6 +593,7 @@ public class MetadataUtils {
             table != null ? TABLE_NAME.eq(table.getTableName()) : TABLE_NAME.eq(NOT_PROVIDED),
             SETTINGS_NAME.eq(setting.getKey()))
         .execute();
+    metadataChanged(jooq, schema);
   }
 
   protected static boolean schemaExists(DSLContext jooq, String name) {
@@ -8,7 +8,7 @@ import org.slf4j.LoggerFactory;
 
 public class Migrations {
   // version the current software needs to work
-  private static final int SOFTWARE_DATABASE_VERSION = 1;
+  private static final int SOFTWARE_DATABASE_VERSION = 5;
   private static Logger logger = LoggerFactory.getLogger(Migrations.class);
 
   public static synchronized void initOrMigrate(SqlDatabase db) {
@@ -27,6 +27,20 @@ public class Migrations {
           if (version < 1)
             executeMigrationFile(tdb, "migration1.sql", "upgraded MOLGENIS.version_metadata");
 
+          if (version < 2)
+            executeMigrationFile(
+                tdb, "migration2.sql", "added metadata version to MOLGENIS.schema_metadata");
+
+          if (version < 3) executeMigrationFile(tdb, "migration3.sql", "added MOLGENIS.jobs");
+
+          if (version < 4)
+            executeMigrationFile(
+                tdb, "migration4.sql", "added checkpoint and cancel to MOLGENIS.jobs");
+
+          if (version < 5)
+            executeMigrationFile(
+                tdb, "migration5.sql", "store contents of FILE columns uncompressed");
+
           // if cannot migrate then throw a MolgenisException. This happens in case of breaking
           // change for database backend.
 
@@ -0,0 +1,276 @@
+package org.molgenis.emx2.sql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.jooq.JSONB;
+import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.utils.TypeUtils;
+
+/**
+ * Writes tuples in the PostgreSQL 'COPY ... FROM STDIN (FORMAT BINARY)' wire format. Values are
+ * encoded based on the type oid of the target column as found in pg_catalog, so we don't depend on
+ * how a column was created or altered.
+ */
+class SqlBinaryCopyWriter {
+  private static final byte[] SIGNATURE = {
+    'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0
+  };
+  private static final LocalDate PG_EPOCH_DATE = LocalDate.of(2000, 1, 1);
+  private static final LocalDateTime PG_EPOCH = PG_EPOCH_DATE.atStartOfDay();
+
+  // type oids, see pg_type
+  static final int BOOL = 16;
+  static final int BYTEA = 17;
+  static final int INT8 = 20;
+  static final int INT2 = 21;
+  static final int INT4 = 23;
+  static final int TEXT = 25;
+  static final int JSON = 114;
+  static final int FLOAT4 = 700;
+  static final int FLOAT8 = 701;
+  static final int BPCHAR = 1042;
+  static final int VARCHAR = 1043;
+  static final int DATE = 1082;
+  static final int TIMESTAMP = 1114;
+  static final int NUMERIC = 1700;
+  static final int UUID_OID = 2950;
+  static final int JSONB_OID = 3802;
+
+  private final DataOutputStream out;
+  // scratch buffer to compute the length prefix of each field
+  private final ByteArrayOutputStream fieldBuffer = new ByteArrayOutputStream(256);
+  private final DataOutputStream field = new DataOutputStream(fieldBuffer);
+
+  SqlBinaryCopyWriter(OutputStream out) throws IOException {
+    this.out = new DataOutputStream(out);
+    this.out.write(SIGNATURE);
+    this.out.writeInt(0); // flags
+    this.out.writeInt(0); // header extension length
+  }
+
+  static boolean isSupported(int typeOid, int elementOid) {
+    return elementOid != 0 ? isSupported(elementOid, 0) : isSupportedScalar(typeOid);
+  }
+
+  private static boolean isSupportedScalar(int typeOid) {
+    switch (typeOid) {
+      case BOOL:
+      case BYTEA:
+      case INT8:
+      case INT2:
+      case INT4:
+      case TEXT:
+      case JSON:
+      case FLOAT4:
+      case FLOAT8:
+      case BPCHAR:
+      case VARCHAR:
+      case DATE:
+      case TIMESTAMP:
+      case NUMERIC:
+      case UUID_OID:
+      case JSONB_OID:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  void startTuple(int fieldCount) throws IOException {
+    out.writeShort(fieldCount);
+  }
+
+  void writeValue(Object value, int typeOid, int elementOid) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    fieldBuffer.reset();
+    if (elementOid != 0) {
+      writeArray(value, elementOid);
+    } else {
+      writeScalar(value, typeOid);
+    }
+    out.writeInt(fieldBuffer.size());
+    fieldBuffer.writeTo(out);
+  }
+
+  void finish() throws IOException {
+    out.writeShort(-1);
+    out.flush();
+  }
+
+  private void writeArray(Object value, int elementOid) throws IOException {
+    Object[] elements = toArray(value);
+    boolean hasNull = false;
+    for (Object e : elements) {
+      if (e == null) hasNull = true;
+    }
+    if (elements.length == 0) {
+      field.writeInt(0); // dimensions
+      field.writeInt(0); // has null
+      field.writeInt(elementOid);
+      return;
+    }
+    field.writeInt(1); // dimensions
+    field.writeInt(hasNull ? 1 : 0);
+    field.writeInt(elementOid);
+    field.writeInt(elements.length);
+    field.writeInt(1); // lower bound
+    // elements need their own length prefix so encode them into a nested buffer
+    ByteArrayOutputStream elementBuffer = new ByteArrayOutputStream(32);
+    DataOutputStream element = new DataOutputStream(elementBuffer);
+    for (Object e : elements) {
+      if (e == null) {
+        field.writeInt(-1);
+      } else {
+        elementBuffer.reset();
+        writeScalar(e, elementOid, element);
+        field.writeInt(elementBuffer.size());
+        elementBuffer.writeTo(field);
+      }
+    }
+  }
+
+  private void writeScalar(Object value, int typeOid) throws IOException {
+    writeScalar(value, typeOid, field);
+  }
+
+  private static void writeScalar(Object value, int typeOid, DataOutputStream target)
+      throws IOException {
+    switch (typeOid) {
+      case BOOL:
+        target.writeByte(TypeUtils.toBool(value) ? 1 : 0);
+        break;
+      case BYTEA:
+        target.write(TypeUtils.toBinary(value));
+        break;
+      case INT2:
+        target.writeShort(TypeUtils.toInt(value));
+        break;
+      case INT4:
+        target.writeInt(TypeUtils.toInt(value));
+        break;
+      case INT8:
+        target.writeLong(TypeUtils.toLong(value));
+        break;
+      case FLOAT4:
+        target.writeFloat(TypeUtils.toDecimal(value).floatValue());
+        break;
+      case FLOAT8:
+        target.writeDouble(TypeUtils.toDecimal(value));
+        break;
+      case NUMERIC:
+        writeNumeric(value, target);
+        break;
+      case DATE:
+        target.writeInt((int) ChronoUnit.DAYS.between(PG_EPOCH_DATE, TypeUtils.toDate(value)));
+        break;
+      case TIMESTAMP:
+        target.writeLong(ChronoUnit.MICROS.between(PG_EPOCH, TypeUtils.toDateTime(value)));
+        break;
+      case UUID_OID:
+        UUID uuid = TypeUtils.toUuid(value);
+        target.writeLong(uuid.getMostSignificantBits());
+        target.writeLong(uuid.getLeastSignificantBits());
+        break;
+      case JSONB_OID:
+        target.writeByte(1); // jsonb binary format version
+        target.write(toJsonString(value).getBytes(StandardCharsets.UTF_8));
+        break;
+      case JSON:
+        target.write(toJsonString(value).getBytes(StandardCharsets.UTF_8));
+        break;
+      case TEXT:
+      case VARCHAR:
+      case BPCHAR:
+        target.write(TypeUtils.toString(value).getBytes(StandardCharsets.UTF_8));
+        break;
+      default:
+        throw new MolgenisException(
+            "Binary copy failed: unsupported postgresql type oid " + typeOid);
+    }
+  }
+
+  private static String toJsonString(Object value) {
+    if (value instanceof JSONB) {
+      return ((JSONB) value).data();
+    }
+    return TypeUtils.toString(value);
+  }
+
+  /** numeric is sent as base 10000 digits, see postgresql numeric_send */
+  private static void writeNumeric(Object value, DataOutputStream target) throws IOException {
+    if (value instanceof Double && ((Double) value).isNaN() || "NaN".equals(value)) {
+      target.writeShort(0); // ndigits
+      target.writeShort(0); // weight
+      target.writeShort(0xC000); // sign NaN
+      target.writeShort(0); // dscale
+      return;
+    }
+    if (value instanceof Double && ((Double) value).isInfinite()) {
+      throw new MolgenisException("Binary copy failed: cannot store infinite value as numeric");
+    }
+    BigDecimal decimal = TypeUtils.toBigDecimal(value);
+    boolean negative = decimal.signum() < 0;
+    decimal = decimal.abs();
+    if (decimal.scale() < 0) {
+      decimal = decimal.setScale(0);
+    }
+    int dscale = decimal.scale();
+    String plain = decimal.toPlainString();
+    int dot = plain.indexOf('.');
+    String intPart = dot < 0 ? plain : plain.substring(0, dot);
+    String fracPart = dot < 0 ? "" : plain.substring(dot + 1);
+    // pad to groups of 4 decimal digits
+    intPart = "0".repeat((4 - intPart.length() % 4) % 4) + intPart;
+    fracPart = fracPart + "0".repeat((4 - fracPart.length() % 4) % 4);
+
+    List<Short> digits = new ArrayList<>();
+    for (int i = 0; i < intPart.length(); i += 4) {
+      digits.add(Short.parseShort(intPart.substring(i, i + 4)));
+    }
+    for (int i = 0; i < fracPart.length(); i += 4) {
+      digits.add(Short.parseShort(fracPart.substring(i, i + 4)));
+    }
+    int weight = intPart.length() / 4 - 1;
+    // strip leading and trailing zero groups
+    while (!digits.isEmpty() && digits.get(0) == 0) {
+      digits.remove(0);
+      weight--;
+    }
+    while (!digits.isEmpty() && digits.get(digits.size() - 1) == 0) {
+      digits.remove(digits.size() - 1);
+    }
+    if (digits.isEmpty()) {
+      weight = 0;
+    }
+    target.writeShort(digits.size());
+    target.writeShort(weight);
+    target.writeShort(negative ? 0x4000 : 0x0000);
+    target.writeShort(dscale);
+    for (Short digit : digits) {
+      target.writeShort(digit);
+    }
+  }
+
+  private static Object[] toArray(Object value) {
+    if (value instanceof Object[]) {
+      return (Object[]) value;
+    }
+    if (value instanceof List) {
+      return ((List<?>) value).toArray();
+    }
+    return new Object[] {value};
+  }
+}
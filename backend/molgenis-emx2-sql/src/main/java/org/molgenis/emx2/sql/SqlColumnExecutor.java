@@ -213,6 +213,10 @@ public class SqlColumnExecutor {
         for (Field f : column.getJooqFileFields()) {
           jooq.alterTable(column.getJooqTable()).addColumn(f).execute();
         }
+        // uncompressed, so downloads can read slices without decompressing the whole file
+        jooq.execute(
+            "ALTER TABLE {0} ALTER COLUMN {1} SET STORAGE EXTERNAL",
+            column.getJooqTable(), name(column.getName() + "_contents"));
       } else {
         jooq.alterTable(column.getJooqTable()).addColumn(column.getJooqField()).execute();
         executeSetDefaultValue(jooq, column);
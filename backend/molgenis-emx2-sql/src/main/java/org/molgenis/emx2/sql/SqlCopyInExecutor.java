@@ -0,0 +1,233 @@
+package org.molgenis.emx2.sql;
+
+import static org.jooq.impl.DSL.*;
+import static org.molgenis.emx2.Constants.*;
+import static org.molgenis.emx2.sql.SqlDatabase.ADMIN;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.molgenis.emx2.Column;
+import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.Row;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.postgresql.core.BaseConnection;
+
+/**
+ * Bulk load of rows using 'COPY ... FROM STDIN (FORMAT BINARY)'. Rows are encoded one by one into a
+ * fixed size copy buffer so memory use does not depend on batch size. Upserts, and inserts into
+ * tables with row level security (which doesn't allow COPY), are loaded into a temporary staging
+ * table that is then merged into the target table.
+ */
+class SqlCopyInExecutor {
+  private static final int COPY_BUFFER_SIZE = 65536;
+  private static final int VALUES_CHUNK_SIZE = 1000;
+  private static final AtomicInteger stagingCounter = new AtomicInteger();
+
+  private SqlCopyInExecutor() {
+    // hide
+  }
+
+  static int executeCopyIn(
+      SqlTable table, List<Row> rows, boolean updateOnConflict, Set<String> updateColumns) {
+    boolean inherit = table.getMetadata().getInherit() != null;
+    if (inherit) {
+      SqlTable inheritedTable = table.getInheritedTable();
+      executeCopyIn(inheritedTable, rows, updateOnConflict, updateColumns);
+    }
+
+    // get metadata
+    List<Column> columns = new ArrayList<>(table.getColumnsToBeUpdated(updateColumns));
+    List<Column> allColumns = table.getMetadata().getMutationColumns();
+    List<String> fieldNames = columns.stream().map(Column::getName).collect(Collectors.toList());
+    if (!inherit) {
+      fieldNames.addAll(List.of(MG_INSERTEDBY, MG_INSERTEDON, MG_UPDATEDBY, MG_UPDATEDON));
+    }
+
+    DSLContext jooq = table.getJooq();
+    CopyTarget target = getCopyTarget(jooq, table, fieldNames);
+    if (target == null) {
+      // some column type we cannot encode, use the normal path for this table only because the
+      // inherited tables were already loaded above
+      return SqlTable.insertBatchIntoTable(table, rows, updateOnConflict, updateColumns);
+    }
+
+    String user = table.getSchema().getDatabase().getActiveUser();
+    if (user == null) {
+      user = ADMIN;
+    }
+    LocalDateTime now = LocalDateTime.now();
+    boolean useStaging = updateOnConflict || target.rowLevelSecurity;
+    String tableName = quotedTableName(table);
+    String copyInto = tableName;
+    if (useStaging) {
+      copyInto = name("mg_copy_" + stagingCounter.incrementAndGet()).toString();
+      jooq.execute(
+          "CREATE TEMP TABLE "
+              + copyInto
+              + " ON COMMIT DROP AS SELECT "
+              + quotedList(fieldNames)
+              + " FROM "
+              + tableName
+              + " WITH NO DATA");
+    }
+
+    final String user2 = user;
+    final String copyInto2 = copyInto;
+    jooq.connection(
+        connection -> {
+          CopyManager cm = new CopyManager(connection.unwrap(BaseConnection.class));
+          PGCopyOutputStream stream =
+              new PGCopyOutputStream(
+                  cm.copyIn(
+                      "COPY "
+                          + copyInto2
+                          + " ("
+                          + quotedList(fieldNames)
+                          + ") FROM STDIN (FORMAT BINARY)"),
+                  COPY_BUFFER_SIZE);
+          try {
+            SqlBinaryCopyWriter writer = new SqlBinaryCopyWriter(stream);
+            // values are computed per chunk, so scripts run on many rows at once
+            for (int from = 0; from < rows.size(); from += VALUES_CHUNK_SIZE) {
+              List<Row> chunk = rows.subList(from, Math.min(rows.size(), from + VALUES_CHUNK_SIZE));
+              for (Row row : chunk) {
+                if (!row.isDraft()) {
+                  SqlTable.checkRequired(row, allColumns);
+                }
+              }
+              for (Map<String, Object> values : SqlTypeUtils.getValuesAsMaps(chunk, columns)) {
+                if (!inherit) {
+                  values.put(MG_INSERTEDBY, user2);
+                  values.put(MG_INSERTEDON, now);
+                  values.put(MG_UPDATEDBY, user2);
+                  values.put(MG_UPDATEDON, now);
+                }
+                writer.startTuple(fieldNames.size());
+                for (int i = 0; i < fieldNames.size(); i++) {
+                  writer.writeValue(
+                      values.get(fieldNames.get(i)), target.typeOids[i], target.elementOids[i]);
+                }
+              }
+            }
+            writer.finish();
+            stream.endCopy();
+          } catch (IOException | SQLException | RuntimeException e) {
+            if (stream.isActive()) {
+              stream.cancelCopy();
+            }
+            throw e;
+          }
+        });
+
+    if (!useStaging) {
+      return rows.size();
+    }
+    return mergeStaging(jooq, table, copyInto, columns, fieldNames, updateOnConflict, user, now);
+  }
+
+  private static int mergeStaging(
+      DSLContext jooq,
+      SqlTable table,
+      String staging,
+      List<Column> columns,
+      List<String> fieldNames,
+      boolean updateOnConflict,
+      String user,
+      LocalDateTime now) {
+    StringBuilder sql =
+        new StringBuilder("INSERT INTO ")
+            .append(quotedTableName(table))
+            .append(" (")
+            .append(quotedList(fieldNames))
+            .append(") SELECT ")
+            .append(quotedList(fieldNames))
+            .append(" FROM ")
+            .append(staging);
+    List<Object> bindings = new ArrayList<>();
+    if (updateOnConflict) {
+      List<String> keyNames =
+          table.getMetadata().getPrimaryKeyFields().stream()
+              .map(f -> f.getName())
+              .collect(Collectors.toList());
+      sql.append(" ON CONFLICT (").append(quotedList(keyNames)).append(") DO UPDATE SET ");
+      List<String> updates = new ArrayList<>();
+      for (Column column : columns) {
+        String col = name(column.getName()).toString();
+        updates.add(col + " = excluded." + col);
+      }
+      if (table.getMetadata().getInherit() == null) {
+        updates.add(name(MG_UPDATEDBY) + " = ?");
+        updates.add(name(MG_UPDATEDON) + " = cast(? as timestamp)");
+        bindings.add(user);
+        bindings.add(now);
+      }
+      sql.append(String.join(", ", updates));
+    }
+    int count = jooq.execute(sql.toString(), bindings.toArray());
+    jooq.execute("DROP TABLE " + staging);
+    return count;
+  }
+
+  /** looks up the actual column types in pg_catalog, returns null if any is not supported */
+  private static CopyTarget getCopyTarget(
+      DSLContext jooq, SqlTable table, List<String> fieldNames) {
+    Map<String, int[]> types = new HashMap<>();
+    boolean rowLevelSecurity = false;
+    for (Record r :
+        jooq.fetch(
+            "SELECT a.attname, a.atttypid::int, t.typelem::int, c.relrowsecurity"
+                + " FROM pg_attribute a JOIN pg_class c ON a.attrelid = c.oid"
+                + " JOIN pg_type t ON a.atttypid = t.oid"
+                + " WHERE a.attrelid = {0}::regclass AND a.attnum > 0 AND NOT a.attisdropped",
+            inline(quotedTableName(table)))) {
+      types.put(
+          r.get(0, String.class), new int[] {r.get(1, Integer.class), r.get(2, Integer.class)});
+      rowLevelSecurity = r.get(3, Boolean.class);
+    }
+    CopyTarget target = new CopyTarget(fieldNames.size(), rowLevelSecurity);
+    for (int i = 0; i < fieldNames.size(); i++) {
+      int[] type = types.get(fieldNames.get(i));
+      if (type == null) {
+        throw new MolgenisException(
+            "Copy into table '"
+                + table.getName()
+                + "' failed: column '"
+                + fieldNames.get(i)
+                + "' not found");
+      }
+      if (!SqlBinaryCopyWriter.isSupported(type[0], type[1])) {
+        return null;
+      }
+      target.typeOids[i] = type[0];
+      target.elementOids[i] = type[1];
+    }
+    return target;
+  }
+
+  private static String quotedTableName(SqlTable table) {
+    return name(table.getMetadata().getSchemaName(), table.getName()).toString();
+  }
+
+  private static String quotedList(List<String> names) {
+    return names.stream().map(n -> name(n).toString()).collect(Collectors.joining(","));
+  }
+
+  private static class CopyTarget {
+    final int[] typeOids;
+    final int[] elementOids;
+    final boolean rowLevelSecurity;
+
+    CopyTarget(int size, boolean rowLevelSecurity) {
+      this.typeOids = new int[size];
+      this.elementOids = new int[size];
+      this.rowLevelSecurity = rowLevelSecurity;
+    }
+  }
+}
@@ -8,6 +8,10 @@ import static org.molgenis.emx2.sql.SqlSchemaMetadataExecutor.executeCreateSchem
 
 import com.zaxxer.hikari.HikariDataSource;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import javax.sql.DataSource;
 import org.jooq.DSLContext;
@@ -26,25 +30,34 @@ public class SqlDatabase implements Database {
 
   // shared between all instances
   private static DataSource source;
+  private static final ExecutorService schemaReloader =
+      Executors.newFixedThreadPool(
+          2,
+          runnable -> {
+            Thread thread = new Thread(runnable, "molgenis-schema-reload");
+            thread.setDaemon(true);
+            return thread;
+          });
 
   private Integer databaseVersion;
   private DSLContext jooq;
   private SqlUserAwareConnectionProvider connectionProvider;
-  private Map<String, SqlSchemaMetadata> schemaCache = new LinkedHashMap<>(); // cache
+  // cache, might be updated from background reloads
+  private Map<String, SqlSchemaMetadata> schemaCache = new ConcurrentHashMap<>();
   private Collection<String> schemaNames = new ArrayList<>();
+  // schemas being reloaded in the background
+  private Set<String> schemaReloads = ConcurrentHashMap.newKeySet();
+  // generation of SqlSchemaChangeListener when schema versions were last checked
+  private long checkedGeneration = -1;
+  // schemas of which metadata changed during transaction, version is bumped on commit
+  private Set<String> metadataChanged = new LinkedHashSet<>();
   private boolean inTx;
   private static Logger logger = LoggerFactory.getLogger(SqlDatabase.class);
+  private static final AtomicLong activeUserRoundTripsAvoided = new AtomicLong();
   private String INITIAL_ADMIN_PW =
       (String) EnvironmentProperty.getParameter(Constants.MOLGENIS_ADMIN_PW, ADMIN, STRING);
-  private DatabaseListener listener =
-      new DatabaseListener() {
-        @Override
-        public void afterCommit() {
-          clearCache();
-          super.afterCommit();
-          logger.info("cleared caches after commit that includes changes on schema(s)");
-        }
-      };
+  // caches are kept in sync on commit, and other instances check the metadata versions
+  private DatabaseListener listener = new DatabaseListener();
 
   // copy constructor for transactions; only with its own jooq instance that contains tx
   private SqlDatabase(DSLContext jooq, SqlDatabase copy) {
@@ -112,6 +125,7 @@ public class SqlDatabase implements Database {
       dataSource.setPassword(pass);
 
       source = dataSource;
+      SqlSchemaChangeListener.start(url, user, pass);
     }
   }
 
@@ -332,11 +346,21 @@ public class SqlDatabase implements Database {
     this.connectionProvider.setActiveUser(username);
   }
 
+  /**
+   * The active user is tracked in memory: outside transactions the connection provider sets it on
+   * each acquired connection, inside transactions setActiveUser/clearActiveUser run 'SET/RESET
+   * SESSION AUTHORIZATION' and update the connection provider as well. Therefore there is no need
+   * to ask postgresql for SESSION_USER.
+   */
   @Override
   public String getActiveUser() {
-    String user = jooq.fetchOne("SELECT SESSION_USER").get(0, String.class);
-    if (user.contains(MG_USER_PREFIX)) return user.substring(MG_USER_PREFIX.length());
-    return null;
+    activeUserRoundTripsAvoided.incrementAndGet();
+    return connectionProvider.getActiveUser();
+  }
+
+  /** counts how many 'SELECT SESSION_USER' round trips were avoided by tracking the active user */
+  public static long getActiveUserRoundTripsAvoided() {
+    return activeUserRoundTripsAvoided.get();
   }
 
   @Override
@@ -368,10 +392,14 @@ public class SqlDatabase implements Database {
               ctx.execute("SET CONSTRAINTS ALL DEFERRED");
               db.setJooq(ctx);
               transaction.run(db);
+              db.bumpSchemaVersions();
             });
         // only when commit succeeds we copy state to 'this'
         this.sync(db);
-        if (db.getListener().isDirty()) {
+        DatabaseListener txListener = db.getListener();
+        if (txListener.isDirty()) {
+          txListener.getSchemaChanged().forEach(getListener()::schemaChanged);
+          txListener.getSchemaRemoved().forEach(getListener()::schemaRemoved);
           this.getListener().afterCommit();
         }
       } catch (DataAccessException e) {
@@ -414,6 +442,78 @@ public class SqlDatabase implements Database {
     return inTx;
   }
 
+  /** metadata version of changed schemas is bumped once when transaction commits */
+  void metadataChanged(String schemaName) {
+    metadataChanged.add(schemaName);
+  }
+
+  private void bumpSchemaVersions() {
+    for (String schemaName : metadataChanged) {
+      Long version = MetadataUtils.bumpSchemaVersion(jooq, schemaName);
+      SqlSchemaMetadata metadata = schemaCache.get(schemaName);
+      if (version != null && metadata != null) {
+        metadata.setVersion(version);
+      }
+    }
+    metadataChanged.clear();
+  }
+
+  /**
+   * Compares, in one query, the metadata versions of the cached schemas with the versions in the
+   * database. Schemas that changed are reloaded in the background while the current version is
+   * still served; schemas that were dropped, or are no longer visible, are removed. While
+   * SqlSchemaChangeListener is listening the query is skipped if no schema change was notified.
+   */
+  @Override
+  public void checkSchemaVersions() {
+    if (inTx || schemaCache.isEmpty() && schemaNames.isEmpty()) {
+      return;
+    }
+    // if listening, we only need to check when some schema was changed; otherwise always check
+    if (SqlSchemaChangeListener.isListening()) {
+      long generation = SqlSchemaChangeListener.getGeneration();
+      if (generation == checkedGeneration) {
+        return;
+      }
+      checkedGeneration = generation;
+    }
+    Map<String, Long> versions = MetadataUtils.loadSchemaVersions(jooq);
+    if (!versions.keySet().equals(new HashSet<>(schemaNames))) {
+      // schemas were added or removed, or permissions changed
+      schemaNames = new ArrayList<>();
+    }
+    for (Map.Entry<String, SqlSchemaMetadata> entry : schemaCache.entrySet()) {
+      Long version = versions.get(entry.getKey());
+      if (version == null) {
+        schemaCache.remove(entry.getKey());
+      } else if (version > entry.getValue().getVersion()) {
+        reloadInBackground(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private void reloadInBackground(String schemaName, SqlSchemaMetadata current) {
+    if (!schemaReloads.add(schemaName)) {
+      return;
+    }
+    String user = getActiveUser();
+    schemaReloader.execute(
+        () -> {
+          try {
+            SqlSchemaMetadata reloaded = new SqlSchemaMetadata(this, schemaName);
+            // only replace if user didn't change and nobody else replaced it meanwhile
+            if (Objects.equals(user, connectionProvider.getActiveUser())) {
+              schemaCache.replace(schemaName, current, reloaded);
+            }
+          } catch (Exception e) {
+            logger.error("background reload of schema '{}' failed", schemaName, e);
+            schemaCache.remove(schemaName, current);
+          } finally {
+            schemaReloads.remove(schemaName);
+          }
+        });
+  }
+
   @Override
   public void clearCache() {
     this.schemaCache.clear();
@@ -424,6 +524,10 @@ public class SqlDatabase implements Database {
     return jooq;
   }
 
+  protected SqlUserAwareConnectionProvider getConnectionProvider() {
+    return connectionProvider;
+  }
+
   @Override
   public Integer getDatabaseVersion() {
     return databaseVersion;
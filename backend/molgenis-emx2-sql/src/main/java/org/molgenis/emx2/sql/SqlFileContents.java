@@ -0,0 +1,101 @@
+package org.molgenis.emx2.sql;
+
+import static org.jooq.impl.DSL.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.molgenis.emx2.Column;
+import org.molgenis.emx2.MolgenisException;
+
+/**
+ * Streams contents of FILE columns using substring on the bytea, so only CHUNK_SIZE bytes are in
+ * memory at a time. Postgresql jdbc reads a bytea value completely, also when using
+ * getBinaryStream, therefore we fetch the chunks ourselves. The contents columns have storage
+ * EXTERNAL, i.e. are not compressed, so postgres reads only the toast chunks of the slice instead
+ * of decompressing the whole file for each chunk. Chunks are read within one repeatable read
+ * transaction so they all come from the same version of the file.
+ */
+class SqlFileContents {
+  static final int CHUNK_SIZE = 1024 * 1024;
+
+  private SqlFileContents() {
+    // hide
+  }
+
+  static long write(
+      SqlDatabase db, Column column, String fileId, long offset, long length, OutputStream output) {
+    if (db.inTx()) {
+      return writeChunks(db.getJooq(), column, fileId, offset, length, output);
+    }
+    SqlUserAwareConnectionProvider connectionProvider = db.getConnectionProvider();
+    Connection connection = connectionProvider.acquire();
+    try {
+      connection.setAutoCommit(false);
+      connection.setReadOnly(true);
+      connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+      try {
+        return writeChunks(
+            DSL.using(connection, SQLDialect.POSTGRES), column, fileId, offset, length, output);
+      } finally {
+        // read only, so nothing to commit
+        connection.rollback();
+        connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        connection.setReadOnly(false);
+        connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      throw new SqlMolgenisException("Download of file '" + fileId + "' failed", e);
+    } finally {
+      connectionProvider.release(connection);
+    }
+  }
+
+  private static long writeChunks(
+      DSLContext jooq,
+      Column column,
+      String fileId,
+      long offset,
+      long length,
+      OutputStream output) {
+    long written = 0;
+    try {
+      while (written < length) {
+        int chunkSize = (int) Math.min(CHUNK_SIZE, length - written);
+        // substring is 1-based, bytea (and _size) is limited to int anyway
+        Field<byte[]> chunk =
+            field(
+                "substring({0} from {1} for {2})",
+                SQLDataType.BLOB,
+                field(name(column.getName() + "_contents")),
+                val(Math.toIntExact(offset + written + 1)),
+                val(chunkSize));
+        byte[] contents =
+            jooq.select(chunk)
+                .from(column.getTable().getJooqTable())
+                .where(field(name(column.getName())).eq(fileId))
+                .fetchOne(chunk);
+        if (contents == null || contents.length == 0) {
+          break;
+        }
+        output.write(contents);
+        written += contents.length;
+        if (contents.length < chunkSize) {
+          break;
+        }
+      }
+    } catch (DataAccessException e) {
+      throw new SqlMolgenisException("Download of file '" + fileId + "' failed", e);
+    } catch (IOException e) {
+      throw new MolgenisException("Download of file '" + fileId + "' failed", e);
+    }
+    return written;
+  }
+}
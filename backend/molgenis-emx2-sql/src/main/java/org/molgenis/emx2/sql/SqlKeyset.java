@@ -0,0 +1,234 @@
+package org.molgenis.emx2.sql;
+
+import static org.jooq.impl.DSL.*;
+import static org.molgenis.emx2.ColumnType.DECIMAL;
+import static org.molgenis.emx2.ColumnType.FILE;
+import static org.molgenis.emx2.ColumnType.REF;
+import static org.molgenis.emx2.Constants.MG_CURSOR;
+import static org.molgenis.emx2.Order.ASC;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.jooq.Condition;
+import org.jooq.Field;
+import org.jooq.SortField;
+import org.jooq.impl.SQLDataType;
+import org.molgenis.emx2.*;
+import org.molgenis.emx2.utils.TypeUtils;
+
+/**
+ * Keyset (cursor) pagination. The cursor of a row is a json array of its values of the orderBy
+ * columns followed by its primary key, e.g. ["Smith",42], selected as field 'mg_cursor'. The
+ * primary key makes the order unique, so 'after' and 'before' a cursor are the rows following or
+ * preceding that row. These are selected by comparing on the orderBy and key columns, e.g.
+ * (name,id) &gt; ('Smith',42), which an index on these columns can satisfy, instead of reading and
+ * skipping all rows before an offset.
+ *
+ * <p>Row value comparison requires all columns sorted in the same direction and without nulls. For
+ * other orders the comparison is expanded per column, taking into account that postgres sorts nulls
+ * last when ascending and first when descending.
+ */
+class SqlKeyset {
+  // decimals as BigDecimal, as doubles these might skip or repeat rows at page boundaries
+  private static final ObjectMapper json =
+      new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+  private static final TypeReference<List<Object>> VALUES = new TypeReference<>() {};
+
+  private final List<Field<Object>> fields = new ArrayList<>();
+  private final List<Field<Object>> primaryKeyFields = new ArrayList<>();
+  private final List<ColumnType> types = new ArrayList<>();
+  private final List<Order> orders = new ArrayList<>();
+  private final List<Boolean> nullable = new ArrayList<>();
+  private final String cursor;
+  private final boolean backward;
+
+  /** tableAlias qualifies the fields, null for none */
+  SqlKeyset(TableMetadata table, String tableAlias, SelectColumn select) {
+    if (select.getAfter() != null && select.getBefore() != null) {
+      throw new MolgenisException(
+          "Query failed: cannot use both 'after' and 'before' on " + select.getColumn());
+    }
+    this.backward = select.getBefore() != null;
+    this.cursor = backward ? select.getBefore() : select.getAfter();
+
+    for (Map.Entry<String, Order> order : select.getOrderBy().entrySet()) {
+      Column column = table.getColumn(order.getKey());
+      if (column == null) {
+        throw new MolgenisException(
+            "Query failed: orderBy column '"
+                + order.getKey()
+                + "' unknown in "
+                + table.getTableName());
+      }
+      if (REF.equals(column.getColumnType()) && column.getReferences().size() == 1) {
+        Reference ref = column.getReferences().get(0);
+        add(
+            tableAlias,
+            ref.getName(),
+            ref.getPrimitiveType(),
+            order.getValue(),
+            !column.isRequired());
+      } else if (column.isReference()
+          || column.getColumnType().isArray()
+          || FILE.equals(column.getColumnType())) {
+        throw new MolgenisException(
+            "Query failed: cursor pagination not supported for orderBy column '"
+                + column.getName()
+                + "' of type "
+                + column.getColumnType());
+      } else {
+        add(
+            tableAlias,
+            column.getName(),
+            column.getPrimitiveColumnType(),
+            order.getValue(),
+            !column.isRequired());
+      }
+    }
+
+    // primary key makes the order unique
+    for (Column key : table.getPrimaryKeyColumns()) {
+      if (key.isReference()) {
+        for (Reference ref : key.getReferences()) {
+          addKey(tableAlias, ref.getName(), ref.getPrimitiveType());
+        }
+      } else {
+        addKey(tableAlias, key.getName(), key.getPrimitiveColumnType());
+      }
+    }
+  }
+
+  /** true if select needs keyset ordering, i.e. uses a cursor or selects the cursor field */
+  static boolean isKeyset(SelectColumn select) {
+    return select.getAfter() != null || select.getBefore() != null || select.has(MG_CURSOR);
+  }
+
+  private void add(
+      String tableAlias, String fieldName, ColumnType type, Order order, boolean canBeNull) {
+    for (Field<Object> f : fields) {
+      if (f.getName().equals(fieldName)) return;
+    }
+    fields.add(typedField(tableAlias, fieldName, type));
+    types.add(type);
+    orders.add(order);
+    nullable.add(canBeNull);
+  }
+
+  private void addKey(String tableAlias, String fieldName, ColumnType type) {
+    primaryKeyFields.add(typedField(tableAlias, fieldName, type));
+    add(tableAlias, fieldName, type, ASC, false);
+  }
+
+  private static Field<Object> typedField(String tableAlias, String fieldName, ColumnType type) {
+    return field(
+        tableAlias != null ? name(tableAlias, fieldName) : name(fieldName),
+        DECIMAL.equals(type) ? SQLDataType.NUMERIC : TypeUtils.toJooqType(type));
+  }
+
+  List<Field<Object>> getPrimaryKeyFields() {
+    return primaryKeyFields;
+  }
+
+  /** true when selecting the rows before the cursor */
+  boolean isBackward() {
+    return backward;
+  }
+
+  /** order of the keyset, reversed to select the rows before the cursor */
+  List<SortField<Object>> sortFields(boolean reverse) {
+    List<SortField<Object>> result = new ArrayList<>();
+    for (int i = 0; i < fields.size(); i++) {
+      result.add(ASC.equals(orders.get(i)) != reverse ? fields.get(i).asc() : fields.get(i).desc());
+    }
+    return result;
+  }
+
+  /** the cursor of each row */
+  Field<String> cursorField() {
+    StringBuilder sql = new StringBuilder("json_build_array(");
+    for (int i = 0; i < fields.size(); i++) {
+      sql.append(i > 0 ? "," : "").append('{').append(i).append('}');
+    }
+    return field(sql.append(")::text").toString(), String.class, fields.toArray());
+  }
+
+  /** condition for rows after, or before, the cursor; null if no cursor */
+  Condition condition() {
+    if (cursor == null) return null;
+    List<Object> values = parse(cursor);
+    if (values.size() != fields.size()) {
+      throw new MolgenisException(
+          "Query failed: cursor "
+              + cursor
+              + " doesn't match orderBy, expected "
+              + fields.size()
+              + " values");
+    }
+    List<Field<Object>> valueFields = new ArrayList<>();
+    boolean rowComparison = true;
+    for (int i = 0; i < fields.size(); i++) {
+      Object value =
+          DECIMAL.equals(types.get(i))
+              ? TypeUtils.toBigDecimal(values.get(i))
+              : TypeUtils.getTypedValue(values.get(i), types.get(i));
+      valueFields.add(value != null ? val(value, fields.get(i)) : null);
+      rowComparison =
+          rowComparison && value != null && !nullable.get(i) && orders.get(i).equals(orders.get(0));
+    }
+    if (rowComparison) {
+      return greater(0)
+          ? row(fields).gt(row(valueFields.toArray(new Field[0])))
+          : row(fields).lt(row(valueFields.toArray(new Field[0])));
+    }
+
+    // (a > x) OR (a = x AND b > y) OR ...
+    List<Condition> any = new ArrayList<>();
+    for (int i = 0; i < fields.size(); i++) {
+      List<Condition> all = new ArrayList<>();
+      for (int j = 0; j < i; j++) {
+        Field<Object> value = valueFields.get(j);
+        all.add(value == null ? fields.get(j).isNull() : fields.get(j).eq(value));
+      }
+      Field<Object> f = fields.get(i);
+      Field<Object> value = valueFields.get(i);
+      if (greater(i)) {
+        // nulls sort after all values
+        if (value == null) continue;
+        all.add(nullable.get(i) ? f.gt(value).or(f.isNull()) : f.gt(value));
+      } else {
+        all.add(value == null ? f.isNotNull() : f.lt(value));
+      }
+      any.add(and(all));
+    }
+    return any.isEmpty() ? falseCondition() : or(any);
+  }
+
+  /** true if the next rows have greater values for field i */
+  private boolean greater(int i) {
+    return ASC.equals(orders.get(i)) != backward;
+  }
+
+  /** which values of the cursor are null, because these render different sql */
+  static String shape(String cursor) {
+    StringBuilder result = new StringBuilder();
+    for (Object value : parse(cursor)) {
+      result.append(value == null ? 'n' : 'v');
+    }
+    return result.toString();
+  }
+
+  private static List<Object> parse(String cursor) {
+    try {
+      List<Object> values = json.readValue(cursor, VALUES);
+      if (values == null) throw new MolgenisException("Query failed: cursor is empty");
+      return values;
+    } catch (JsonProcessingException e) {
+      throw new MolgenisException("Query failed: invalid cursor " + cursor, e);
+    }
+  }
+}
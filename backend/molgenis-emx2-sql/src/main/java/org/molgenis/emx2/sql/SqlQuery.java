@@ -2,6 +2,7 @@ package org.molgenis.emx2.sql;
 
 import static org.jooq.impl.DSL.*;
 import static org.molgenis.emx2.ColumnType.*;
+import static org.molgenis.emx2.Constants.MG_CURSOR;
 import static org.molgenis.emx2.Constants.MG_TABLECLASS;
 import static org.molgenis.emx2.Constants.TEXT_SEARCH_COLUMN_NAME;
 import static org.molgenis.emx2.Operator.*;
@@ -13,6 +14,7 @@ import static org.molgenis.emx2.utils.TypeUtils.*;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +67,26 @@ public class SqlQuery extends QueryBean {
 
   @Override
   public List<Row> retrieveRows() {
+    Select<org.jooq.Record> query = getRowsQuery();
+    try {
+      List<Row> result = new ArrayList<>();
+      Result<org.jooq.Record> fetch = query.fetch();
+      RowLayout layout = SqlRow.getLayout(fetch.fields());
+      for (org.jooq.Record r : fetch) {
+        result.add(new SqlRow(layout, r));
+      }
+      return result;
+    } catch (DataAccessException | SQLException e) {
+      throw new MolgenisException(QUERY_FAILED, e);
+    }
+  }
+
+  @Override
+  public RowIterator retrieveRowsIterator() {
+    return new SqlRowIterator(schema.getDatabase(), getRowsQuery());
+  }
+
+  private Select<org.jooq.Record> getRowsQuery() {
     SelectColumn select = getSelect();
     Filter filter = getFilter();
     String[] searchTerms = getSearchTerms();
@@ -110,23 +132,51 @@ public class SqlQuery extends QueryBean {
 
     // where
     Condition condition = whereConditions(table, tableAlias, filter, searchTerms);
-    SelectConnectByStep<org.jooq.Record> where = condition != null ? from.where(condition) : from;
-    SelectConnectByStep<org.jooq.Record> query = limitOffsetOrderBy(select, where);
+    Select<org.jooq.Record> query;
+    if (SqlKeyset.isKeyset(select)) {
+      query = keysetRowsQuery(table, tableAlias, select, filter, condition, from);
+    } else {
+      query = limitOffsetOrderBy(select, condition != null ? from.where(condition) : from);
+    }
+    if (logger.isInfoEnabled()) {
+      logger.info(query.getSQL(ParamType.INLINED));
+    }
+    return query;
+  }
 
-    // execute
-    try {
-      List<Row> result = new ArrayList<>();
-      if (logger.isInfoEnabled()) {
-        logger.info(query.getSQL(ParamType.INLINED));
-      }
-      Result<org.jooq.Record> fetch = query.fetch();
-      for (org.jooq.Record r : fetch) {
-        result.add(new SqlRow(r));
-      }
-      return result;
-    } catch (DataAccessException | SQLException e) {
-      throw new MolgenisException(QUERY_FAILED, e);
+  private static Select<org.jooq.Record> keysetRowsQuery(
+      SqlTableMetadata table,
+      String tableAlias,
+      SelectColumn select,
+      Filter filter,
+      Condition condition,
+      SelectJoinStep<org.jooq.Record> from) {
+    SqlKeyset keyset = new SqlKeyset(table, tableAlias, select);
+    List<Condition> conditions = new ArrayList<>();
+    if (condition != null) {
+      conditions.add(condition);
+    }
+    if (keyset.condition() != null) {
+      conditions.add(keyset.condition());
     }
+    if (!keyset.isBackward()) {
+      return limitOffset(select, from.where(conditions).orderBy(keyset.sortFields(false)));
+    }
+    // the rows just before the cursor, so select their keys in reverse order
+    SelectJoinStep<org.jooq.Record> keys =
+        refJoins(
+            table,
+            tableAlias,
+            table
+                .getJooq()
+                .select(keyset.getPrimaryKeyFields())
+                .from(tableWithInheritanceJoin(table).as(tableAlias)),
+            filter,
+            null,
+            new ArrayList<>());
+    Select<org.jooq.Record> page =
+        limitOffset(select, keys.where(conditions).orderBy(keyset.sortFields(true)));
+    return from.where(row(keyset.getPrimaryKeyFields()).in(page)).orderBy(keyset.sortFields(false));
   }
 
   // todo: allow query expansion accross tables?
@@ -135,6 +185,13 @@ public class SqlQuery extends QueryBean {
 
     List<Field<?>> fields = new ArrayList<>();
     for (SelectColumn select : selection.getSubselect()) {
+      if (MG_CURSOR.equals(select.getColumn())) {
+        fields.add(
+            new SqlKeyset(table, tableAlias, selection)
+                .cursorField()
+                .as(prefix.equals("") ? MG_CURSOR : prefix + "-" + MG_CURSOR));
+        continue;
+      }
       Column column = isValidColumn(table, select.getColumn());
       String columnAlias = prefix.equals("") ? column.getName() : prefix + "-" + column.getName();
       if (FILE.equals(column.getColumnType())) {
@@ -275,15 +332,33 @@ public class SqlQuery extends QueryBean {
           jsonSubselect(table, null, table.getTableName(), select, getFilter(), getSearchTerms()));
     }
 
-    // asemble final query
+    // asemble final query, leaving out null values like the graphql serializer does, so the json
+    // can be passed on as is
     SelectJoinStep<Record1<Object>> query =
-        sql.select(field(ROW_TO_JSON_SQL)).from(table(sql.select(fields)).as(ITEM));
+        sql.select(field("json_strip_nulls(" + ROW_TO_JSON_SQL + ")"))
+            .from(table(sql.select(fields)).as(ITEM));
+
+    // reuse the sql rendered for earlier queries of the same shape, only binding the values
+    Object[] params = query.getParams().values().toArray();
+    String cacheKey =
+        schema.getDatabase().inTx()
+            ? null
+            : SqlQueryCache.key(schema, select, getFilter(), getSearchTerms());
+    String querySql = cacheKey != null ? SqlQueryCache.get(cacheKey, params.length) : null;
+    if (querySql == null) {
+      querySql = query.getSQL();
+      if (cacheKey != null) {
+        SqlQueryCache.put(cacheKey, querySql, params.length);
+      }
+    }
 
     long start = System.currentTimeMillis();
-    String result = query.fetchOne().get(0, String.class);
+    String result = sql.resultQuery(querySql, params).fetchOne().get(0, String.class);
     if (logger.isInfoEnabled()) {
-      logger.info(
-          "query in {}ms: {}", System.currentTimeMillis() - start, query.getSQL(ParamType.INLINED));
+      logger.info("query in {}ms: {}", System.currentTimeMillis() - start, querySql);
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("query parameters: {}", Arrays.toString(params));
     }
     return result;
   }
@@ -305,13 +380,27 @@ public class SqlQuery extends QueryBean {
             .from(tableWithInheritanceJoin(table).as(subAlias));
 
     List<Condition> conditions = new ArrayList<>();
-    Select<org.jooq.Record> filterQuery =
-        limitOffsetOrderBy(
-            select, jsonFilterQuery(table, column, tableAlias, subAlias, filters, searchTerms));
+    SqlKeyset keyset = SqlKeyset.isKeyset(select) ? new SqlKeyset(table, null, select) : null;
+    // pages of nested lists are per parent row
+    SelectConditionStep<org.jooq.Record> keys =
+        column != null && (keyset != null || select.getLimit() > 0 || select.getOffset() > 0)
+            ? jsonPageQuery(table, column, tableAlias, subAlias, filters, searchTerms)
+            : jsonFilterQuery(table, column, tableAlias, subAlias, filters, searchTerms);
+    Select<org.jooq.Record> filterQuery;
+    if (keyset != null) {
+      if (keyset.condition() != null) {
+        keys.getQuery().addConditions(keyset.condition());
+      }
+      // before the cursor are the last rows in reverse order; the result is ordered below
+      filterQuery = limitOffset(select, keys.orderBy(keyset.sortFields(keyset.isBackward())));
+    } else {
+      filterQuery = limitOffsetOrderBy(select, keys);
+    }
     if (filters != null
         || searchTerms.length > 0
         || select.getLimit() > 0
-        || select.getOffset() > 0) {
+        || select.getOffset() > 0
+        || keyset != null) {
       List<Field> pkeyFields = table.getPrimaryKeyFields();
       if (pkeyFields.size() == 0) throw new MolgenisException("primary key not set");
       conditions.add(row(pkeyFields).in(filterQuery));
@@ -326,8 +415,11 @@ public class SqlQuery extends QueryBean {
     String agg =
         column != null && REF.equals(column.getColumnType()) ? ROW_TO_JSON_SQL : JSON_AGG_SQL;
 
-    return field(jooq.select(field(agg)).from(orderBy(select, from).asTable(ITEM)))
-        .as(select.getColumn());
+    Select<org.jooq.Record> ordered =
+        keyset != null
+            ? from.orderBy(new SqlKeyset(table, subAlias, select).sortFields(false))
+            : orderBy(select, from);
+    return field(jooq.select(field(agg)).from(ordered.asTable(ITEM))).as(select.getColumn());
   }
 
   private static SelectConditionStep<org.jooq.Record> jsonFilterQuery(
@@ -360,6 +452,31 @@ public class SqlQuery extends QueryBean {
     }
   }
 
+  /** keys of the items of the parent row that match the filters, to page per parent row */
+  private static SelectConditionStep<org.jooq.Record> jsonPageQuery(
+      SqlTableMetadata table,
+      Column column,
+      String tableAlias,
+      String subAlias,
+      Filter filters,
+      String[] searchTerms) {
+    String pageAlias = subAlias + "-page";
+    List<Field> pkeyFields = table.getPrimaryKeyFields();
+    List<Condition> conditions = new ArrayList<>();
+    conditions.add(refJoinCondition(column, tableAlias, pageAlias));
+    if (filters != null || searchTerms.length > 0) {
+      // search conditions use the table names, so can't be used on the alias
+      conditions.add(
+          row(pkeyFields)
+              .in(jsonFilterQuery(table, column, tableAlias, subAlias, filters, searchTerms)));
+    }
+    return table
+        .getJooq()
+        .select(pkeyFields)
+        .from(tableWithInheritanceJoin(table).as(pageAlias))
+        .where(conditions);
+  }
+
   private static List<Condition> jsonFilterQueryConditions(
       SqlTableMetadata table,
       Column column,
@@ -510,6 +627,10 @@ public class SqlQuery extends QueryBean {
     }
 
     for (SelectColumn select : selection.getSubselect()) {
+      if (MG_CURSOR.equals(select.getColumn())) {
+        fields.add(new SqlKeyset(table, tableAlias, selection).cursorField().as(MG_CURSOR));
+        continue;
+      }
       Column column =
           select.getColumn().endsWith("_agg")
               ? isValidColumn(table, select.getColumn().replace("_agg", ""))
@@ -770,7 +891,7 @@ public class SqlQuery extends QueryBean {
     // root and intermediate levels have mg_tableclass column
     Column mg_tableclass = table.getLocalColumn(MG_TABLECLASS);
     while (inheritedTable != null) {
-      List<Field> using = inheritedTable.getPrimaryKeyFields();
+      List<Field> using = new ArrayList<>(inheritedTable.getPrimaryKeyFields());
       if (mg_tableclass != null) {
         using.add(mg_tableclass.getJooqField());
       }
@@ -823,6 +944,7 @@ public class SqlQuery extends QueryBean {
     // add missing selection joins, only used for row based queries
     if (selection != null) {
       for (SelectColumn select : selection.getSubselect()) {
+        if (MG_CURSOR.equals(select.getColumn())) continue;
         // then do same as above
         Column column = isValidColumn(table, select.getColumn());
         if (column.isReference()) {
@@ -1285,6 +1407,18 @@ public class SqlQuery extends QueryBean {
     return (SelectJoinStep<org.jooq.Record>) query;
   }
 
+  private static Select<org.jooq.Record> limitOffset(
+      SelectColumn select, SelectLimitStep<org.jooq.Record> query) {
+    if (select.getLimit() > 0 && select.getOffset() > 0) {
+      return query.limit(select.getLimit()).offset(select.getOffset());
+    } else if (select.getLimit() > 0) {
+      return query.limit(select.getLimit());
+    } else if (select.getOffset() > 0) {
+      return query.offset(select.getOffset());
+    }
+    return query;
+  }
+
   private static SelectJoinStep<org.jooq.Record> orderBy(
       SelectColumn select, SelectJoinStep<org.jooq.Record> query) {
     for (Map.Entry<String, Order> col : select.getOrderBy().entrySet()) {
@@ -0,0 +1,174 @@
+package org.molgenis.emx2.sql;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.molgenis.emx2.Filter;
+import org.molgenis.emx2.Order;
+import org.molgenis.emx2.SelectColumn;
+
+/**
+ * Least recently used cache of rendered, parameterised sql, keyed on the shape of a query. Only
+ * values differ between queries with the same key, so they can be bound to the cached sql instead
+ * of rendering it again. Using the same sql also allows the jdbc driver to use server side prepared
+ * statements.
+ *
+ * <p>The key includes the schema version, and the versions of other schemas its tables refer to, so
+ * changes of the tables result in new sql. It includes the role of the user, not the user itself,
+ * so users with the same role share the sql.
+ *
+ * <p>Some sql depends on values, e.g. nulls in 'between' or short search terms, so the key includes
+ * these aspects of the values too. As safety check the number of bind values must also match.
+ */
+class SqlQueryCache {
+  static final int MAX_SIZE = 1000;
+
+  private static final Map<String, CachedQuery> cache =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedQuery> eldest) {
+          return size() > MAX_SIZE;
+        }
+      };
+
+  private SqlQueryCache() {
+    // hide
+  }
+
+  /** returns cached sql, or null if not cached or bind values don't match */
+  static String get(String key, int bindCount) {
+    CachedQuery cached;
+    synchronized (cache) {
+      cached = cache.get(key);
+    }
+    return cached != null && cached.bindCount == bindCount ? cached.sql : null;
+  }
+
+  static void put(String key, String sql, int bindCount) {
+    synchronized (cache) {
+      cache.put(key, new CachedQuery(sql, bindCount));
+    }
+  }
+
+  static void clear() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  static int size() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  static String key(
+      SqlSchemaMetadata schema, SelectColumn select, Filter filter, String[] searchTerms) {
+    StringBuilder key = new StringBuilder();
+    key.append(schema.getName()).append('|');
+    appendVersions(key, schema, new HashSet<>());
+    key.append('|').append(schema.getActiveUserRoles()).append('|');
+    appendSelect(key, select);
+    key.append('|');
+    appendFilter(key, filter);
+    key.append('|');
+    if (searchTerms != null) {
+      for (String term : searchTerms) {
+        // search terms are split into separate conditions
+        key.append(term.split(" ").length).append(',');
+      }
+    }
+    return key.toString();
+  }
+
+  /** nested selects may join tables of other schemas, and these of yet other schemas */
+  private static void appendVersions(
+      StringBuilder key, SqlSchemaMetadata schema, Set<String> visited) {
+    visited.add(schema.getName());
+    key.append(schema.getVersion()).append(',');
+    for (String name : schema.getReferencedSchemas()) {
+      if (!visited.contains(name)) {
+        SqlSchema other = (SqlSchema) schema.getDatabase().getSchema(name);
+        if (other == null) {
+          key.append(name).append(":-,");
+          visited.add(name);
+        } else {
+          key.append(name).append(':');
+          appendVersions(key, other.getMetadata(), visited);
+        }
+      }
+    }
+  }
+
+  private static void appendSelect(StringBuilder key, SelectColumn select) {
+    key.append(select.getColumn());
+    if (select.getLimit() > 0) key.append("#l");
+    if (select.getOffset() > 0) key.append("#o");
+    if (select.getAfter() != null) key.append("#a").append(SqlKeyset.shape(select.getAfter()));
+    if (select.getBefore() != null) key.append("#b").append(SqlKeyset.shape(select.getBefore()));
+    for (Map.Entry<String, Order> order : select.getOrderBy().entrySet()) {
+      key.append('#').append(order.getKey()).append(':').append(order.getValue());
+    }
+    if (!select.getSubselect().isEmpty()) {
+      key.append('(');
+      for (SelectColumn sub : select.getSubselect()) {
+        appendSelect(key, sub);
+        key.append(',');
+      }
+      key.append(')');
+    }
+  }
+
+  private static void appendFilter(StringBuilder key, Filter filter) {
+    if (filter == null) return;
+    key.append(filter.getColumn()).append(':').append(filter.getOperator());
+    if (filter.getValues() != null) {
+      key.append('[');
+      for (Object value : filter.getValues()) {
+        appendValue(key, value);
+      }
+      key.append(']');
+    }
+    if (!filter.getSubfilters().isEmpty()) {
+      key.append('(');
+      for (Filter sub : filter.getSubfilters()) {
+        appendFilter(key, sub);
+        key.append(',');
+      }
+      key.append(')');
+    }
+  }
+
+  private static void appendValue(StringBuilder key, Object value) {
+    if (value == null) {
+      key.append('n');
+    } else if (value instanceof String) {
+      // short strings use 'like' instead of text search
+      key.append(((String) value).length() > 2 ? 'S' : 's');
+    } else if (value instanceof Object[]) {
+      key.append('a');
+      Arrays.stream((Object[]) value).forEach(v -> appendValue(key, v));
+      key.append(';');
+    } else if (value instanceof Collection) {
+      key.append('c');
+      ((Collection<?>) value).forEach(v -> appendValue(key, v));
+      key.append(';');
+    } else {
+      key.append(value.getClass().getSimpleName());
+    }
+    key.append(',');
+  }
+
+  private static class CachedQuery {
+    private final String sql;
+    private final int bindCount;
+
+    private CachedQuery(String sql, int bindCount) {
+      this.sql = sql;
+      this.bindCount = bindCount;
+    }
+  }
+}
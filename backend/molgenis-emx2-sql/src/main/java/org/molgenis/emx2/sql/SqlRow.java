@@ -2,24 +2,39 @@ package org.molgenis.emx2.sql;
 
 import java.sql.Array;
 import java.sql.SQLException;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import org.jooq.Field;
 import org.jooq.Record;
 import org.molgenis.emx2.Row;
+import org.molgenis.emx2.RowLayout;
 
 public class SqlRow extends Row {
 
   public SqlRow(Record record) throws SQLException {
-    Map<String, Object> values = new LinkedHashMap<>();
+    this(getLayout(record.fields()), record);
+  }
+
+  /** use when creating many rows from the same query, so the layout is only resolved once */
+  SqlRow(RowLayout layout, Record record) throws SQLException {
+    super(layout, getValues(layout, record));
+  }
+
+  static RowLayout getLayout(Field<?>[] fields) {
+    RowLayout layout = RowLayout.EMPTY;
+    for (Field<?> f : fields) {
+      layout = layout.with(f.getName());
+    }
+    return layout;
+  }
+
+  private static Object[] getValues(RowLayout layout, Record record) throws SQLException {
+    Object[] values = new Object[layout.size()];
     for (Field f : record.fields()) {
       Object value = record.get(f);
       if (value instanceof Array) {
-        values.put(f.getName(), ((Array) value).getArray());
-      } else {
-        values.put(f.getName(), value);
+        value = ((Array) value).getArray();
       }
+      values[layout.indexOf(f.getName())] = value;
     }
-    this.set(values);
+    return values;
   }
 }
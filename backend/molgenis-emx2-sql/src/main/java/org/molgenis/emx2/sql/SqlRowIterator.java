@@ -0,0 +1,95 @@
+package org.molgenis.emx2.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import org.jooq.Cursor;
+import org.jooq.ResultQuery;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.molgenis.emx2.Row;
+import org.molgenis.emx2.RowIterator;
+import org.molgenis.emx2.RowLayout;
+
+/**
+ * Iterates query results using a server side cursor, so only FETCH_SIZE rows are in memory at a
+ * time. Postgresql only uses a cursor within a transaction, therefore outside transactions this
+ * acquires its own connection with a read-only transaction, released on close or when exhausted.
+ */
+class SqlRowIterator implements RowIterator {
+  static final int FETCH_SIZE = 1000;
+  private final SqlUserAwareConnectionProvider connectionProvider;
+  // null if running within the transaction of the database
+  private Connection connection;
+  private Cursor<org.jooq.Record> cursor;
+  private RowLayout layout;
+
+  SqlRowIterator(SqlDatabase db, ResultQuery<org.jooq.Record> query) {
+    this.connectionProvider = db.getConnectionProvider();
+    try {
+      if (!db.inTx()) {
+        connection = connectionProvider.acquire();
+        connection.setAutoCommit(false);
+        connection.setReadOnly(true);
+        query.attach(DSL.using(connection, SQLDialect.POSTGRES).configuration());
+      }
+      cursor = query.fetchSize(FETCH_SIZE).fetchLazy();
+      layout = SqlRow.getLayout(cursor.fields());
+    } catch (DataAccessException | SQLException e) {
+      close();
+      throw new SqlMolgenisException("Query failed", e);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (cursor == null) {
+      return false;
+    }
+    try {
+      if (cursor.hasNext()) {
+        return true;
+      }
+    } catch (DataAccessException e) {
+      close();
+      throw new SqlMolgenisException("Query failed", e);
+    }
+    close();
+    return false;
+  }
+
+  @Override
+  public Row next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    try {
+      return new SqlRow(layout, cursor.fetchNext());
+    } catch (DataAccessException | SQLException e) {
+      close();
+      throw new SqlMolgenisException("Query failed", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (cursor != null) {
+      cursor.close();
+      cursor = null;
+    }
+    if (connection != null) {
+      try {
+        // read only, so nothing to commit
+        connection.rollback();
+        connection.setReadOnly(false);
+        connection.setAutoCommit(true);
+      } catch (SQLException e) {
+        throw new SqlMolgenisException("Closing query failed", e);
+      } finally {
+        connectionProvider.release(connection);
+        connection = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package org.molgenis.emx2.sql;
+
+import static org.jooq.impl.DSL.inline;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jooq.DSLContext;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listens, on one dedicated connection per server, for 'NOTIFY' of schema changes. The connection
+ * is not taken from the pool, so it doesn't occupy a pool slot and isn't subject to its lifetime.
+ * Because postgres only delivers notifications on commit this includes changes made by other
+ * servers sharing the same database. Each notification increments a generation counter, so
+ * SqlDatabase instances only need to check the schema versions when the generation changed, see
+ * SqlDatabase.checkSchemaVersions.
+ */
+class SqlSchemaChangeListener {
+  static final String CHANNEL = "molgenis_schema_changed";
+  private static final int POLL_TIMEOUT_MS = 10000;
+  private static final int RECONNECT_DELAY_MS = 5000;
+  private static Logger logger = LoggerFactory.getLogger(SqlSchemaChangeListener.class);
+  private static final AtomicLong generation = new AtomicLong();
+  private static volatile boolean listening = false;
+  private static Thread thread;
+
+  private SqlSchemaChangeListener() {
+    // hide
+  }
+
+  static synchronized void start(String url, String user, String password) {
+    if (thread == null) {
+      thread = new Thread(() -> listen(url, user, password), "molgenis-schema-change-listener");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /** notifies all servers, will be delivered when the current transaction commits */
+  static void executeNotify(DSLContext jooq, String schemaName) {
+    jooq.execute("SELECT pg_notify({0}, {1})", inline(CHANNEL), schemaName);
+  }
+
+  /** false if not (yet) connected, then notifications might be missed */
+  static boolean isListening() {
+    return listening;
+  }
+
+  static long getGeneration() {
+    return generation.get();
+  }
+
+  private static void listen(String url, String user, String password) {
+    while (!Thread.currentThread().isInterrupted()) {
+      try (Connection connection = DriverManager.getConnection(url, user, password)) {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("LISTEN " + CHANNEL);
+        }
+        // notifications might have been missed while not listening
+        generation.incrementAndGet();
+        listening = true;
+        logger.info("listening for schema changes on channel '{}'", CHANNEL);
+        while (!Thread.currentThread().isInterrupted()) {
+          PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+          if (notifications != null && notifications.length > 0) {
+            generation.incrementAndGet();
+            if (logger.isDebugEnabled()) {
+              for (PGNotification notification : notifications) {
+                logger.debug("notified of change in schema '{}'", notification.getParameter());
+              }
+            }
+          }
+        }
+      } catch (SQLException e) {
+        logger.warn("listening for schema changes failed, will retry", e);
+      } finally {
+        listening = false;
+      }
+      try {
+        Thread.sleep(RECONNECT_DELAY_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package org.molgenis.emx2.sql;
 
+import static org.molgenis.emx2.sql.SqlDatabase.ADMIN;
 import static org.molgenis.emx2.sql.SqlTableMetadataExecutor.executeCreateTable;
 import static org.molgenis.emx2.utils.TableSort.sortTableByDependency;
 
@@ -7,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import org.javers.common.collections.Lists;
 import org.jooq.DSLContext;
@@ -18,6 +20,11 @@ public class SqlSchemaMetadata extends SchemaMetadata {
   private static Logger logger = LoggerFactory.getLogger(SqlSchemaMetadata.class);
   // cache for retrieved roles
   private List<String> rolesCache = null;
+  // version of the metadata as loaded, bumped on each change, see MetadataUtils
+  private long version;
+  // other schemas referred to by the tables, computed for referencedSchemasVersion
+  private List<String> referencedSchemas = null;
+  private long referencedSchemasVersion;
 
   // copy constructor
   protected SqlSchemaMetadata(Database db, SqlSchemaMetadata copy) {
@@ -29,6 +36,8 @@ public class SqlSchemaMetadata extends SchemaMetadata {
   public synchronized void sync(SqlSchemaMetadata from) {
     if (from != this) {
       // database is excluded from sync
+      this.version = from.version;
+      this.rolesCache = null;
 
       // remove tables not available anymore
       Set<String> remove =
@@ -80,6 +89,8 @@ public class SqlSchemaMetadata extends SchemaMetadata {
     this.tables.clear();
     this.settings.clear();
     this.rolesCache = null;
+    // load version first so concurrent changes result in another reload
+    this.version = MetadataUtils.loadSchemaVersion(getDatabase().getJooq(), getName());
     for (TableMetadata table : MetadataUtils.loadTables(getDatabase().getJooq(), this)) {
       super.create(new SqlTableMetadata(this, table));
     }
@@ -92,6 +103,14 @@ public class SqlSchemaMetadata extends SchemaMetadata {
     }
   }
 
+  public long getVersion() {
+    return version;
+  }
+
+  void setVersion(long version) {
+    this.version = version;
+  }
+
   public boolean exists() {
     return MetadataUtils.schemaExists(getDatabase().getJooq(), this.getName());
   }
@@ -234,6 +253,39 @@ public class SqlSchemaMetadata extends SchemaMetadata {
     return sm;
   }
 
+  /**
+   * roles of the active user, to share cached items between users with the same permissions; admin
+   * can see all
+   */
+  public String getActiveUserRoles() {
+    String user = getDatabase().getActiveUser();
+    if (ADMIN.equals(user)) {
+      return ADMIN;
+    }
+    return String.join(",", getIneritedRolesForUser(user));
+  }
+
+  /** names of the other schemas the tables of this schema refer to or inherit from */
+  public synchronized List<String> getReferencedSchemas() {
+    if (referencedSchemas == null || referencedSchemasVersion != version) {
+      Set<String> result = new TreeSet<>();
+      for (TableMetadata table : tables.values()) {
+        if (table.getImportSchema() != null) {
+          result.add(table.getImportSchema());
+        }
+        for (Column column : table.getLocalColumns()) {
+          if (column.isReference() && column.getRefSchema() != null) {
+            result.add(column.getRefSchema());
+          }
+        }
+      }
+      result.remove(getName());
+      referencedSchemas = List.copyOf(result);
+      referencedSchemasVersion = version;
+    }
+    return referencedSchemas;
+  }
+
   public List<String> getIneritedRolesForUser(String user) {
     if (user == null) return new ArrayList<>();
     // add cache because this function is called often
@@ -58,6 +58,7 @@ class SqlSchemaMetadataExecutor {
       throw new SqlMolgenisException("Schema create failed", e);
     }
     MetadataUtils.saveSchemaMetadata(db.getJooq(), schema);
+    SqlSchemaChangeListener.executeNotify(db.getJooq(), schema.getName());
   }
 
   static void executeAddMembers(DSLContext jooq, Schema schema, Member member) {
@@ -86,6 +87,8 @@ class SqlSchemaMetadataExecutor {
         member,
         username,
         rolename);
+    // roles of users change, so sessions must reload
+    MetadataUtils.metadataChanged(jooq, schema.getMetadata());
   }
 
   private static void updateMembershipForUser(
@@ -180,6 +183,7 @@ class SqlSchemaMetadataExecutor {
                   name(roleprefix + m.getRole()), name(userprefix + m.getUser()));
         }
       }
+      MetadataUtils.metadataChanged(db.getJooq(), schema.getMetadata());
     } catch (DataAccessException dae) {
       throw new SqlMolgenisException("Remove of member failed", dae);
     }
@@ -205,6 +209,7 @@ class SqlSchemaMetadataExecutor {
         db.getJooq().execute("DROP ROLE {0}", name(getRolePrefix(schemaName) + role));
       }
       MetadataUtils.deleteSchema(db.getJooq(), schemaName);
+      SqlSchemaChangeListener.executeNotify(db.getJooq(), schemaName);
     } catch (MolgenisException me) {
       throw new MolgenisException("Drop schema failed", me);
     } catch (DataAccessException dae) {
@@ -5,9 +5,8 @@ import static org.molgenis.emx2.ColumnType.*;
 import static org.molgenis.emx2.Constants.*;
 import static org.molgenis.emx2.MutationType.*;
 import static org.molgenis.emx2.sql.SqlDatabase.ADMIN;
-import static org.molgenis.emx2.sql.SqlTypeUtils.getTypedValue;
 
-import java.io.StringReader;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -27,6 +26,13 @@ class SqlTable implements Table {
   private SqlDatabase db;
   private SqlTableMetadata metadata;
   private static Logger logger = LoggerFactory.getLogger(SqlTable.class);
+  private static final int BATCH_SIZE = 1000;
+  private static final int BULK_BATCH_SIZE = 10000;
+  // the protocol allows 65535 bind values per statement, but jdbc driver 42.2 sends their count as
+  // a signed short
+  private static final int MAX_PARAMETERS = Short.MAX_VALUE;
+  private static final String VALUES_ALIAS = "mg_values";
+  private static final String KEYS_ALIAS = "mg_keys";
 
   SqlTable(SqlDatabase db, SqlTableMetadata metadata) {
     this.db = db;
@@ -67,48 +73,27 @@ class SqlTable implements Table {
             });
   }
 
-  public void copyIn(Iterable<Row> rows) {
-    db.getJooq()
-        .connection(
-            connection -> {
-              try {
-                CopyManager cm = new CopyManager(connection.unwrap(BaseConnection.class));
-
-                // must be batched
-                StringBuilder tmp = new StringBuilder();
-                tmp.append(
-                    this.getMetadata().getLocalColumnNames().stream()
-                            .map(c -> "\"" + c + "\"")
-                            .collect(Collectors.joining(","))
-                        + "\n");
-                for (Row row : rows) {
-                  StringBuilder line = new StringBuilder();
-                  for (Column c : this.getMetadata().getStoredColumns()) {
-                    if (!row.containsName(c.getName())) {
-                      line.append(",");
-                    } else {
-                      Object value = getTypedValue(row, c);
-                      line.append(value + ",");
-                    }
-                  }
-                  tmp.append(line.substring(0, line.length() - 1) + "\n");
-                }
-
-                String tableName =
-                    "\"" + getSchema().getMetadata().getName() + "\".\"" + getName() + "\"";
-
-                String columnNames =
-                    "("
-                        + this.getMetadata().getLocalColumnNames().stream()
-                            .map(c -> "\"" + c + "\"")
-                            .collect(Collectors.joining(","))
-                        + ")";
-                String sql = "COPY " + tableName + columnNames + " FROM STDIN (FORMAT CSV,HEADER )";
-                cm.copyIn(sql, new StringReader(tmp.toString()));
-              } catch (Exception e) {
-                throw new MolgenisException("copyOut failed: ", e);
-              }
-            });
+  /**
+   * copy rows into this table only, i.e. without routing rows to subclasses based on mg_tableclass
+   */
+  public int copyIn(Iterable<Row> rows) {
+    AtomicInteger count = new AtomicInteger(0);
+    db.tx(
+        db2 -> {
+          SqlTable table = (SqlTable) db2.getSchema(getSchema().getName()).getTable(getName());
+          List<Row> batch = new ArrayList<>();
+          for (Row row : rows) {
+            batch.add(row);
+            if (batch.size() >= BULK_BATCH_SIZE) {
+              count.addAndGet(SqlCopyInExecutor.executeCopyIn(table, batch, false, Set.of()));
+              batch.clear();
+            }
+          }
+          if (!batch.isEmpty()) {
+            count.addAndGet(SqlCopyInExecutor.executeCopyIn(table, batch, false, Set.of()));
+          }
+        });
+    return count.get();
   }
 
   @Override
@@ -119,12 +104,21 @@ class SqlTable implements Table {
   @Override
   public int insert(Iterable<Row> rows) {
     try {
-      return executeTransaction(db, getSchema().getName(), getName(), rows, INSERT);
+      return executeTransaction(db, getSchema().getName(), getName(), rows, INSERT, false);
     } catch (Exception e) {
       throw new SqlMolgenisException("Update into table '" + getName() + "' failed.", e);
     }
   }
 
+  @Override
+  public int bulkInsert(Iterable<Row> rows) {
+    try {
+      return executeTransaction(db, getSchema().getName(), getName(), rows, INSERT, true);
+    } catch (Exception e) {
+      throw new SqlMolgenisException("Bulk insert into table '" + getName() + "' failed.", e);
+    }
+  }
+
   @Override
   public int update(Row... rows) {
     return update(Arrays.asList(rows));
@@ -133,7 +127,7 @@ class SqlTable implements Table {
   @Override
   public int update(Iterable<Row> rows) {
     try {
-      return this.executeTransaction(db, getSchema().getName(), getName(), rows, UPDATE);
+      return this.executeTransaction(db, getSchema().getName(), getName(), rows, UPDATE, false);
     } catch (Exception e) {
       throw new SqlMolgenisException("Update into table '" + getName() + "' failed.", e);
     }
@@ -147,12 +141,21 @@ class SqlTable implements Table {
   @Override
   public int save(Iterable<Row> rows) {
     try {
-      return this.executeTransaction(db, getSchema().getName(), getName(), rows, SAVE);
+      return this.executeTransaction(db, getSchema().getName(), getName(), rows, SAVE, false);
     } catch (Exception e) {
       throw new SqlMolgenisException("Upsert into table '" + getName() + "' failed.", e);
     }
   }
 
+  @Override
+  public int bulkSave(Iterable<Row> rows) {
+    try {
+      return this.executeTransaction(db, getSchema().getName(), getName(), rows, SAVE, true);
+    } catch (Exception e) {
+      throw new SqlMolgenisException("Bulk upsert into table '" + getName() + "' failed.", e);
+    }
+  }
+
   @Override
   public void truncate() {
     db.tx(
@@ -195,15 +198,20 @@ class SqlTable implements Table {
       String schemaName,
       String tableName,
       Iterable<Row> rows,
-      MutationType transactionType) {
+      MutationType transactionType,
+      boolean bulk) {
     long start = System.currentTimeMillis();
     final AtomicInteger count = new AtomicInteger(0);
     final Map<String, List<Row>> subclassRows = new LinkedHashMap<>();
     final Map<String, Set<String>> columnsProvided = new LinkedHashMap<>();
+    // layout of last row per subclass; rows sharing a layout have the same columns
+    final Map<String, RowLayout> layoutsProvided = new HashMap<>();
 
     SqlSchema schema = (SqlSchema) db.getSchema(schemaName);
     SqlTable table = schema.getTable(tableName);
     String tableClass = getMgTableClass(table.getMetadata());
+    // copy is only worth it for large batches
+    int batchSize = bulk ? BULK_BATCH_SIZE : BATCH_SIZE;
 
     // validate
     if (table.getMetadata().getPrimaryKeys().isEmpty())
@@ -264,16 +272,18 @@ class SqlTable implements Table {
               columnsProvided.put(subclassName, new LinkedHashSet<>(row.getColumnNames()));
             }
 
-            // execute batch if 1000 rows, or columns provided changes
-            if (columnsProvidedAreDifferent(columnsProvided.get(subclassName), row)
-                || subclassRows.get(subclassName).size() >= 1000) {
+            // execute batch if batch size reached, or columns provided changes
+            if (columnsProvidedAreDifferent(
+                    columnsProvided.get(subclassName), layoutsProvided.get(subclassName), row)
+                || subclassRows.get(subclassName).size() >= batchSize) {
               executeBatch(
                   (SqlSchema) db2.getSchema(subclassName.split("\\.")[0]),
                   transactionType,
                   count,
                   subclassRows,
                   subclassName,
-                  columnsProvided.get(subclassName));
+                  columnsProvided.get(subclassName),
+                  bulk);
               // reset columns provided
               columnsProvided.get(subclassName).clear();
               columnsProvided.get(subclassName).addAll(row.getColumnNames());
@@ -281,6 +291,7 @@ class SqlTable implements Table {
 
             // add to batch list, and execute if batch is large enough
             subclassRows.get(subclassName).add(row);
+            layoutsProvided.put(subclassName, row.getLayout());
           }
 
           // execute any remaining batches
@@ -292,7 +303,8 @@ class SqlTable implements Table {
                   count,
                   subclassRows,
                   batch.getKey(),
-                  columnsProvided.get(batch.getKey()));
+                  columnsProvided.get(batch.getKey()),
+                  bulk);
             }
           }
         });
@@ -306,7 +318,7 @@ class SqlTable implements Table {
     return count.get();
   }
 
-  private static void checkRequired(Row row, Collection<Column> columns) {
+  static void checkRequired(Row row, Collection<Column> columns) {
     for (Column c : columns) {
       if (c.isRequired() && row.isNull(c.getName(), c.getColumnType())) {
         throw new MolgenisException("column '" + c.getName() + "' is required in " + row);
@@ -314,7 +326,12 @@ class SqlTable implements Table {
     }
   }
 
-  private static boolean columnsProvidedAreDifferent(Set<String> columnsProvided, Row row) {
+  private static boolean columnsProvidedAreDifferent(
+      Set<String> columnsProvided, RowLayout layoutProvided, Row row) {
+    // interned layouts are equal only if identical, so no need to compare the columns
+    if (layoutProvided != null && layoutProvided == row.getLayout()) {
+      return false;
+    }
     if (columnsProvided.size() == 0 || columnsProvided.equals(row.getColumnNames())) {
       return false;
     } else {
@@ -328,11 +345,20 @@ class SqlTable implements Table {
       AtomicInteger count,
       Map<String, List<Row>> subclassRows,
       String subclassName,
-      Set<String> columnsProvided) {
+      Set<String> columnsProvided,
+      boolean bulk) {
 
     // execute
     SqlTable table = schema.getTable(subclassName.split("\\.")[1]);
-    if (UPDATE.equals(transactionType)) {
+    if (bulk && (SAVE.equals(transactionType) || INSERT.equals(transactionType))) {
+      count.set(
+          count.get()
+              + SqlCopyInExecutor.executeCopyIn(
+                  table,
+                  subclassRows.get(subclassName),
+                  SAVE.equals(transactionType),
+                  columnsProvided));
+    } else if (UPDATE.equals(transactionType)) {
       count.set(
           count.get() + table.updateBatch(table, subclassRows.get(subclassName), columnsProvided));
     } else if (SAVE.equals(transactionType)) {
@@ -353,13 +379,19 @@ class SqlTable implements Table {
     subclassRows.get(subclassName).clear();
   }
 
-  private static int insertBatch(
+  static int insertBatch(
       SqlTable table, List<Row> rows, boolean updateOnConflict, Set<String> updateColumns) {
-    boolean inherit = table.getMetadata().getInherit() != null;
-    if (inherit) {
+    if (table.getMetadata().getInherit() != null) {
       SqlTable inheritedTable = table.getInheritedTable();
       inheritedTable.insertBatch(inheritedTable, rows, updateOnConflict, updateColumns);
     }
+    return insertBatchIntoTable(table, rows, updateOnConflict, updateColumns);
+  }
+
+  /** inserts the rows into this table only, i.e. not into the tables it inherits from */
+  static int insertBatchIntoTable(
+      SqlTable table, List<Row> rows, boolean updateOnConflict, Set<String> updateColumns) {
+    boolean inherit = table.getMetadata().getInherit() != null;
 
     // get metadata
     Set<Column> columns = table.getColumnsToBeUpdated(updateColumns);
@@ -388,8 +420,9 @@ class SqlTable implements Table {
       if (!row.isDraft()) {
         checkRequired(row, allColumns);
       }
-      // get values
-      Map values = SqlTypeUtils.getValuesAsMap(row, columns);
+    }
+    // get values
+    for (Map values : SqlTypeUtils.getValuesAsMaps(rows, columns)) {
       if (!inherit) {
         values.put(MG_INSERTEDBY, user);
         values.put(MG_INSERTEDON, now);
@@ -418,7 +451,7 @@ class SqlTable implements Table {
     return step.execute();
   }
 
-  private Set<Column> getColumnsToBeUpdated(Set<String> updateColumns) {
+  Set<Column> getColumnsToBeUpdated(Set<String> updateColumns) {
     return getMetadata().getMutationColumns().stream()
         .filter(
             c ->
@@ -432,6 +465,10 @@ class SqlTable implements Table {
         .collect(Collectors.toSet());
   }
 
+  /**
+   * updates all rows in one statement: UPDATE t SET .. FROM (VALUES ..) v WHERE t.pkey = v.pkey, so
+   * postgres parses and plans it once instead of once per row
+   */
   private static int updateBatch(SqlTable table, List<Row> rows, Set<String> updateColumns) {
     boolean inherit = table.getMetadata().getInherit() != null;
     if (inherit) {
@@ -441,49 +478,114 @@ class SqlTable implements Table {
 
     // get metadata
     Set<Column> columns = table.getColumnsToBeUpdated(updateColumns);
-    List<Column> pkeyFields = table.getMetadata().getPrimaryKeyColumns();
-
-    // create batch of updates
-    List<UpdateConditionStep> list = new ArrayList();
-    String user = table.getSchema().getDatabase().getActiveUser();
-    if (user == null) {
-      user = ADMIN;
-    }
-    LocalDateTime now = LocalDateTime.now();
-    for (Row row : rows) {
-      Map values = SqlTypeUtils.getValuesAsMap(row, columns);
-      if (!inherit) {
-        values.put(MG_UPDATEDBY, user);
-        values.put(MG_UPDATEDON, now);
-      }
-
+    List<Column> keyColumns =
+        table.getMetadata().getExpandedColumns(table.getMetadata().getPrimaryKeyColumns());
+    Set<String> keyNames =
+        keyColumns.stream().map(Column::getName).collect(Collectors.toCollection(HashSet::new));
+    List<Column> setColumns =
+        columns.stream().filter(c -> !keyNames.contains(c.getName())).collect(Collectors.toList());
+
+    // last row per key wins, like updating the rows one by one, but each key is counted once
+    Map<List<Object>, Map<String, Object>> valuesByKey = new LinkedHashMap<>();
+    List<Map<String, Object>> rowValues = SqlTypeUtils.getValuesAsMaps(rows, columns);
+    for (int i = 0; i < rows.size(); i++) {
+      Row row = rows.get(i);
       if (!row.isDraft()) {
         checkRequired(row, columns);
       }
+      List<Object> key = getKeyValues(row, keyColumns);
+      valuesByKey.remove(key);
+      valuesByKey.put(key, rowValues.get(i));
+    }
 
-      list.add(
-          table
-              .getJooq()
-              .update(table.getJooqTable())
-              .set(values)
-              .where(table.getUpdateCondition(row, pkeyFields)));
+    // values table has the key columns followed by the columns to set
+    List<Column> valueColumns = new ArrayList<>(keyColumns);
+    valueColumns.addAll(setColumns);
+    org.jooq.Table<org.jooq.Record> target = table.getJooqTable();
+    Map<Field, Object> set = new LinkedHashMap<>();
+    for (Column c : setColumns) {
+      set.put(c.getJooqField(), field(name(VALUES_ALIAS, c.getName()), c.getJooqType()));
+    }
+    List<Condition> join = new ArrayList<>();
+    for (Column key : keyColumns) {
+      join.add(
+          field(target.getQualifiedName().append(key.getName()))
+              .eq(field(name(VALUES_ALIAS, key.getName()))));
+    }
+    if (!inherit) {
+      String user = table.getSchema().getDatabase().getActiveUser();
+      set.put(field(name(MG_UPDATEDBY)), user != null ? user : ADMIN);
+      set.put(field(name(MG_UPDATEDON)), LocalDateTime.now());
+    } else if (set.isEmpty()) {
+      // nothing to change in this table, but still count the rows found
+      Column key = keyColumns.get(0);
+      set.put(key.getJooqField(), field(name(VALUES_ALIAS, key.getName()), key.getJooqType()));
     }
 
-    return Arrays.stream(table.getJooq().batch(list).execute()).reduce(Integer::sum).getAsInt();
+    // split so the bind values fit in one statement
+    int rowsPerStatement = Math.max(1, (MAX_PARAMETERS - set.size()) / valueColumns.size());
+    List<RowN> valueRows = new ArrayList<>();
+    int count = 0;
+    for (Map.Entry<List<Object>, Map<String, Object>> entry : valuesByKey.entrySet()) {
+      List<Object> values = new ArrayList<>(entry.getKey());
+      setColumns.forEach(c -> values.add(entry.getValue().get(c.getName())));
+      valueRows.add(row(valueRowFields(valueColumns, values, valueRows.isEmpty())));
+      if (valueRows.size() >= rowsPerStatement) {
+        count += updateValues(table, valueColumns, valueRows, set, join);
+        valueRows.clear();
+      }
+    }
+    if (!valueRows.isEmpty()) {
+      count += updateValues(table, valueColumns, valueRows, set, join);
+    }
+    return count;
+  }
+
+  private static int updateValues(
+      SqlTable table,
+      List<Column> valueColumns,
+      List<RowN> valueRows,
+      Map<Field, Object> set,
+      List<Condition> join) {
+    org.jooq.Table<org.jooq.Record> values =
+        values(valueRows.toArray(new RowN[0]))
+            .as(VALUES_ALIAS, valueColumns.stream().map(Column::getName).toArray(String[]::new));
+    return table.getJooq().update(table.getJooqTable()).set(set).from(values).where(join).execute();
+  }
+
+  /**
+   * postgres derives the types of a values list from its first row, so the first row casts each
+   * value to the type of its column
+   */
+  private static Field[] valueRowFields(List<Column> columns, List<Object> values, boolean first) {
+    Field[] result = new Field[columns.size()];
+    for (int i = 0; i < columns.size(); i++) {
+      Column c = columns.get(i);
+      result[i] = first ? cast(values.get(i), getCastType(c)) : val(values.get(i), c.getJooqType());
+    }
+    return result;
+  }
+
+  /**
+   * strings are cast without length, casting to varchar(255) would silently truncate longer values
+   */
+  private static DataType getCastType(Column c) {
+    switch (c.getPrimitiveColumnType()) {
+      case STRING:
+        return SqlTypeUtils.toJooqType(TEXT);
+      case STRING_ARRAY:
+        return SqlTypeUtils.toJooqType(TEXT_ARRAY);
+      default:
+        return c.getJooqType();
+    }
   }
 
-  private Condition getUpdateCondition(Row row, List<Column> pkeyFields) {
-    List<Condition> result = new ArrayList<>();
-    for (Column key : pkeyFields) {
-      if (key.isReference()) {
-        for (Reference ref : key.getReferences()) {
-          result.add(ref.getJooqField().eq(row.get(ref.getName(), ref.getPrimitiveType())));
-        }
-      } else {
-        result.add(key.getJooqField().eq(row.get(key)));
-      }
+  private static List<Object> getKeyValues(Row row, List<Column> keyColumns) {
+    List<Object> result = new ArrayList<>();
+    for (Column key : keyColumns) {
+      result.add(row.get(key));
     }
-    return and(result);
+    return result;
   }
 
   @Override
@@ -495,6 +597,19 @@ class SqlTable implements Table {
       db.tx(
           db2 -> {
             SqlTable table = (SqlTable) db2.getSchema(getSchema().getName()).getTable(getName());
+            List<Column> keyColumns =
+                table.getMetadata().getExpandedColumns(table.getMetadata().getPrimaryKeyColumns());
+            if (keyColumns.isEmpty()) {
+              throw new MolgenisException(
+                  "Delete on table " + table.getName() + " failed: no primary key set");
+            }
+
+            // subclass first, then the tables it inherits from, all sharing the primary key
+            List<SqlTable> tables = new ArrayList<>();
+            for (SqlTable t = table; t != null; ) {
+              tables.add(t);
+              t = t.getMetadata().getInherit() != null ? t.getInheritedTable() : null;
+            }
 
             // delete in batches
             int batchSize = 100000;
@@ -503,18 +618,13 @@ class SqlTable implements Table {
               batch.add(row);
               count.set(count.get() + 1);
               if (count.get() % batchSize == 0) {
-                deleteBatch(table, batch);
+                deleteBatch(tables, keyColumns, batch);
                 batch.clear();
               }
             }
 
             // delete remaining elements
-            deleteBatch(table, batch);
-
-            // finally delete in superclass
-            if (table.getMetadata().getInherit() != null) {
-              table.getInheritedTable().delete(rows);
-            }
+            deleteBatch(tables, keyColumns, batch);
           });
     } catch (Exception e) {
       throw new SqlMolgenisException("Delete into table " + getName() + " failed.   ", e);
@@ -549,68 +659,42 @@ class SqlTable implements Table {
     return delete(Arrays.asList(rows));
   }
 
-  private static void deleteBatch(SqlTable table, Collection<Row> rows) {
-    if (!rows.isEmpty()) {
-      List<String> keyNames =
-          table.getMetadata().getPrimaryKeyFields().stream()
-              .map(Field::getName)
-              .collect(Collectors.toList());
-
-      // in case no primary key is defined, use all columns
-      if (keyNames == null) {
-        throw new MolgenisException(
-            "Delete on table " + table.getName() + " failed: no primary key set");
+  /**
+   * deletes the rows from each table with DELETE FROM t USING unnest(?,..) k WHERE t.pkey = k.pkey,
+   * binding one array per key column, so the statement stays small however many rows
+   */
+  private static void deleteBatch(
+      List<SqlTable> tables, List<Column> keyColumns, Collection<Row> rows) {
+    if (rows.isEmpty()) return;
+    List<Field<?>> arrays = new ArrayList<>();
+    List<Name> names = new ArrayList<>();
+    for (Column key : keyColumns) {
+      List<Object> values = new ArrayList<>();
+      for (Row row : rows) {
+        values.add(row.get(key));
+      }
+      arrays.add(val(values.toArray(), getCastType(key).getArrayDataType()));
+      names.add(name(key.getName()));
+    }
+    for (SqlTable table : tables) {
+      List<Condition> join = new ArrayList<>();
+      for (Column key : keyColumns) {
+        join.add(
+            field(table.getJooqTable().getQualifiedName().append(key.getName()))
+                .eq(field(name(KEYS_ALIAS, key.getName()))));
       }
-      Condition whereCondition = table.getWhereConditionForBatchDelete(rows);
-      table.getJooq().deleteFrom(table.getJooqTable()).where(whereCondition).execute();
+      table
+          .getJooq()
+          .execute(
+              "DELETE FROM {0} USING unnest({1}) AS {2}({3}) WHERE {4}",
+              table.getJooqTable(), list(arrays), name(KEYS_ALIAS), list(names), and(join));
     }
   }
 
-  private DSLContext getJooq() {
+  DSLContext getJooq() {
     return ((SqlDatabase) getSchema().getDatabase()).getJooq();
   }
 
-  private Condition getWhereConditionForBatchDelete(Collection<Row> rows) {
-    List<Condition> conditions = new ArrayList<>();
-    for (Row r : rows) {
-      List<Condition> rowCondition = new ArrayList<>();
-      if (getMetadata().getPrimaryKeys().isEmpty()) {
-        // when no key, use all columns as id
-        for (Column keyPart : getMetadata().getStoredColumns()) {
-          rowCondition.add(getColumnCondition(r, keyPart));
-        }
-      } else {
-        for (Column keyPart : getMetadata().getPrimaryKeyColumns()) {
-          rowCondition.add(getColumnCondition(r, keyPart));
-        }
-      }
-      conditions.add(and(rowCondition));
-    }
-    return or(conditions);
-  }
-
-  private Condition getColumnCondition(Row r, Column key) {
-    List<Condition> columnCondition = new ArrayList<>();
-    if (REF.equals(key.getColumnType()) || REF_ARRAY.equals(key.getColumnType())
-    //       || MREF.equals(key.getColumnType())
-    ) {
-      for (Reference ref : key.getReferences()) {
-        if (!ref.isOverlapping()) {
-          columnCondition.add(
-              ref.getJooqField()
-                  .eq(cast(r.get(ref.getName(), ref.getPrimitiveType()), ref.getJooqField())));
-        }
-      }
-    } else if (REFBACK.equals(key.getColumnType())) {
-      // do nothing
-    } else {
-      columnCondition.add(
-          key.getJooqField()
-              .eq(cast(r.get(key.getName(), key.getColumnType()), key.getJooqField())));
-    }
-    return and(columnCondition);
-  }
-
   @Override
   public Query query() {
     return new SqlQuery((SqlSchemaMetadata) this.getMetadata().getSchema(), this.getName());
@@ -627,6 +711,18 @@ class SqlTable implements Table {
     return this.query().retrieveRows();
   }
 
+  @Override
+  public long writeFileContents(
+      String columnName, String fileId, long offset, long length, OutputStream output) {
+    Column column = getMetadata().getColumn(columnName);
+    if (column == null || !FILE.equals(column.getColumnType())) {
+      throw new MolgenisException(
+          "Download failed: File column '" + columnName + "' not found in table " + getName());
+    }
+    return SqlFileContents.write(
+        (SqlDatabase) getSchema().getDatabase(), column, fileId, offset, length, output);
+  }
+
   @Override
   public String getName() {
     return getMetadata().getTableName();
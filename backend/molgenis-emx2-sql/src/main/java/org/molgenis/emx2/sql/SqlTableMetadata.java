@@ -63,6 +63,7 @@ class SqlTableMetadata extends TableMetadata {
           updatePositions(newColumn, tm);
           executeCreateColumn(tm.getJooq(), newColumn);
           tm.columns.put(c.getName(), newColumn);
+          tm.columnsChanged();
           if (newColumn.getKey() > 0) {
             createOrReplaceKey(
                 tm.getJooq(),
@@ -73,6 +74,7 @@ class SqlTableMetadata extends TableMetadata {
           executeCreateRefConstraints(tm.getJooq(), newColumn);
         } else {
           tm.columns.put(c.getName(), newColumn);
+          tm.columnsChanged();
         }
         log(tm, start, "added column '" + newColumn.getName() + "' to table " + tm.getTableName());
       }
@@ -113,6 +115,7 @@ class SqlTableMetadata extends TableMetadata {
     // update metadata
     MetadataUtils.alterTableName(tm.getJooq(), tm, newName);
     tm.tableName = newName;
+    tm.columnsChanged();
 
     // recreate triggers for this table
     for (Column column : tm.getStoredColumns()) {
@@ -233,6 +236,7 @@ class SqlTableMetadata extends TableMetadata {
     tm.columns.remove(columnName);
     // add the new
     tm.columns.put(column.getName(), column);
+    tm.columnsChanged();
 
     // reapply ref constrainst
     executeCreateRefConstraints(tm.getJooq(), newColumn);
@@ -296,6 +300,7 @@ class SqlTableMetadata extends TableMetadata {
     DSLContext jooq = ((SqlDatabase) db).getJooq();
     SqlColumnExecutor.executeRemoveColumn(jooq, tm.getColumn(columnName));
     tm.columns.remove(columnName);
+    tm.columnsChanged();
     return tm;
   }
 
@@ -372,6 +377,7 @@ class SqlTableMetadata extends TableMetadata {
     TableMetadata om = db.getSchema(schemaName).getTable(inheritedName).getMetadata();
     executeSetInherit(jooq, tm, om);
     tm.inherit = inheritedName;
+    tm.columnsChanged();
     MetadataUtils.saveTableMetadata(jooq, tm);
     return tm;
   }
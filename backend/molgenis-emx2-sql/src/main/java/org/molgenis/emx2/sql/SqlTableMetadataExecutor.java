@@ -62,6 +62,8 @@ class SqlTableMetadataExecutor {
         executeCreateColumn(jooq, column);
       }
     }
+    // positions were changed in place
+    table.columnsChanged();
 
     // then create unique
     createOrReplaceKeys(jooq, table);
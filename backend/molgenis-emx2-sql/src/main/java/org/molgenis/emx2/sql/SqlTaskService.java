@@ -0,0 +1,439 @@
+package org.molgenis.emx2.sql;
+
+import static org.jooq.impl.DSL.*;
+import static org.molgenis.emx2.ColumnType.INT;
+import static org.molgenis.emx2.tasks.StepStatus.*;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.molgenis.emx2.Constants;
+import org.molgenis.emx2.Database;
+import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.tasks.StepStatus;
+import org.molgenis.emx2.tasks.Task;
+import org.molgenis.emx2.tasks.TaskService;
+import org.molgenis.emx2.utils.EnvironmentProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Task service that keeps its jobs in table MOLGENIS.jobs, so job state survives a restart and is
+ * shared by all servers using the same database. Workers claim the waiting job with the highest
+ * priority using 'FOR UPDATE SKIP LOCKED', skipping schemas that already run the maximum number of
+ * jobs. Claims take a transaction level advisory lock, so these limits also hold when workers of
+ * several servers claim at the same time.
+ *
+ * <p>A Task is a runnable that lives in memory of the server it was submitted to, so jobs are only
+ * claimed by workers of that server. Servers update the heartbeat of their jobs; jobs of which the
+ * heartbeat stops, because their server stopped, are marked as error by any other server.
+ *
+ * <p>Cancel of a running job is stored in the job, so its server picks it up on the next heartbeat.
+ * The checkpoint of a task, if any, is stored with each heartbeat and when the task finished.
+ */
+public class SqlTaskService implements TaskService {
+  private static Logger logger = LoggerFactory.getLogger(SqlTaskService.class);
+  private static final Table<Record> JOBS = table(name("MOLGENIS", "jobs"));
+  private static final Field<String> ID = field(name("id"), String.class);
+  private static final Field<String> SCHEMA = field(name("schema"), String.class);
+  private static final Field<String> DESCRIPTION = field(name("description"), String.class);
+  private static final Field<String> STATUS = field(name("status"), String.class);
+  private static final Field<Integer> PRIORITY = field(name("priority"), Integer.class);
+  private static final Field<String> NODE = field(name("node"), String.class);
+  private static final Field<OffsetDateTime> SUBMITTED =
+      field(name("submitted"), OffsetDateTime.class);
+  private static final Field<OffsetDateTime> ENDED = field(name("ended"), OffsetDateTime.class);
+  private static final Field<OffsetDateTime> HEARTBEAT =
+      field(name("heartbeat"), OffsetDateTime.class);
+  private static final Field<String> TASK = field(name("task"), String.class);
+  private static final Field<String> CHECKPOINT = field(name("checkpoint"), String.class);
+  private static final Field<Boolean> CANCEL = field(name("cancel"), Boolean.class);
+  // key of advisory lock that serializes claims
+  private static final long CLAIM_LOCK = 0x6d6f6c67656e6973L;
+  private static final long POLL_MS = 1000;
+  private static final long CLEANUP_MS = 60000;
+  static final long HEARTBEAT_MS = 5000;
+  // jobs that missed this many heartbeats are considered interrupted
+  private static final int MISSED_HEARTBEATS = 6;
+
+  private final DSLContext jooq;
+  private final String node = UUID.randomUUID().toString();
+  private final int maxPerSchema;
+  private final int maxWaiting;
+  // tasks submitted to this server that are waiting or running
+  private final Map<String, Task> tasks = new ConcurrentHashMap<>();
+  private final ExecutorService workers;
+  private final ScheduledExecutorService heartbeat;
+  private final Object wakeup = new Object();
+  private volatile boolean running = true;
+  private volatile long lastCleanup;
+
+  /** uses environment variables MOLGENIS_JOBS_WORKERS, _PER_SCHEMA and _MAX_WAITING */
+  public SqlTaskService(Database database) {
+    this(
+        database,
+        (Integer) EnvironmentProperty.getParameter(Constants.MOLGENIS_JOBS_WORKERS, 2, INT),
+        (Integer) EnvironmentProperty.getParameter(Constants.MOLGENIS_JOBS_PER_SCHEMA, 1, INT),
+        (Integer) EnvironmentProperty.getParameter(Constants.MOLGENIS_JOBS_MAX_WAITING, 100, INT));
+  }
+
+  public SqlTaskService(Database database, int workerCount, int maxPerSchema, int maxWaiting) {
+    if (workerCount < 1 || maxPerSchema < 1 || maxWaiting < 1) {
+      throw new MolgenisException(
+          "Job service failed: number of workers, jobs per schema and waiting jobs must be > 0");
+    }
+    this.jooq = ((SqlDatabase) database).getJooq();
+    this.maxPerSchema = maxPerSchema;
+    this.maxWaiting = maxWaiting;
+    logger.info(
+        "starting job service with {} workers, {} jobs per schema and at most {} waiting jobs",
+        workerCount,
+        maxPerSchema,
+        maxWaiting);
+
+    // jobs of servers that stopped won't finish anymore
+    expire();
+
+    this.heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("molgenis-job-heartbeat"));
+    this.heartbeat.scheduleWithFixedDelay(
+        this::heartbeat, HEARTBEAT_MS, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+    this.workers = Executors.newFixedThreadPool(workerCount, daemon("molgenis-job-worker"));
+    for (int i = 0; i < workerCount; i++) {
+      workers.submit(this::work);
+    }
+  }
+
+  @Override
+  public String submit(Task task) {
+    return submit(task, null, 0);
+  }
+
+  @Override
+  public String submit(Task task, String schemaName, int priority) {
+    if (!running) {
+      throw new MolgenisException("Submit task failed: job service is shut down");
+    }
+    // tasks are kept in memory until they finished, so limit their number
+    if (tasks.size() >= maxWaiting) {
+      throw new MolgenisException(
+          "Submit task failed: too many tasks waiting (" + maxWaiting + "), try again later");
+    }
+    String id = UUID.randomUUID().toString();
+    tasks.put(id, task);
+    try {
+      jooq.insertInto(JOBS, ID, SCHEMA, DESCRIPTION, STATUS, PRIORITY, NODE, TASK)
+          .values(
+              id,
+              schemaName,
+              task.getDescription(),
+              WAITING.name(),
+              priority,
+              node,
+              task.toString())
+          .execute();
+    } catch (Exception e) {
+      tasks.remove(id);
+      throw e;
+    }
+    synchronized (wakeup) {
+      wakeup.notifyAll();
+    }
+    return id;
+  }
+
+  @Override
+  public Set<String> getJobIds() {
+    return new LinkedHashSet<>(jooq.select(ID).from(JOBS).orderBy(SUBMITTED).fetch(ID));
+  }
+
+  @Override
+  public Task getTask(String id) {
+    // delete older than a day; not on every call, tasks are polled and streamed often
+    if (System.currentTimeMillis() - lastCleanup > CLEANUP_MS) {
+      lastCleanup = System.currentTimeMillis();
+      removeOlderThan(24L * 60 * 60 * 1000);
+    }
+    Task task = tasks.get(id);
+    // waiting tasks might have been cancelled via another server
+    if (task != null && !WAITING.equals(task.getStatus())) {
+      return task;
+    }
+    Record job =
+        jooq.select(DESCRIPTION, STATUS, TASK, CHECKPOINT).from(JOBS).where(ID.eq(id)).fetchOne();
+    if (job == null) {
+      return null;
+    }
+    StoredTask stored =
+        new StoredTask(job.get(DESCRIPTION), StepStatus.valueOf(job.get(STATUS)), job.get(TASK));
+    stored.setCheckpoint(job.get(CHECKPOINT));
+    return stored;
+  }
+
+  @Override
+  public void removeOlderThan(long milliseconds) {
+    jooq.deleteFrom(JOBS).where(ENDED.le(ago(milliseconds))).execute();
+  }
+
+  @Override
+  public void shutdown() {
+    running = false;
+    heartbeat.shutdownNow();
+    workers.shutdownNow();
+    // jobs that didn't start won't run anymore
+    end(NODE.eq(node).and(STATUS.eq(WAITING.name())), ERROR, ": cancelled because server stopped");
+  }
+
+  @Override
+  public void removeTask(String id) {
+    if (id == null) return;
+    id = id.replaceAll("[\n|\r|\t]", "_"); // sanitize
+
+    String status = jooq.select(STATUS).from(JOBS).where(ID.eq(id)).fetchOne(STATUS);
+    if (status == null) {
+      logger.info("skipped delete task " + id + "because not found");
+      throw new MolgenisException("Task with id '" + id + "' not found");
+    }
+    // check again in delete, job might have been claimed meanwhile
+    if (RUNNING.name().equals(status)
+        || jooq.deleteFrom(JOBS).where(ID.eq(id).and(STATUS.ne(RUNNING.name()))).execute() == 0) {
+      logger.info("skipped delete task " + id + "because still running");
+      throw new MolgenisException("Cannot remove running task, cancel it first");
+    }
+    tasks.remove(id);
+    logger.info("deleted task " + id);
+  }
+
+  @Override
+  public void cancelTask(String id) {
+    Task task = tasks.get(id);
+    if (task != null) {
+      // running here, or claimed before the update below, so stops itself
+      task.cancel();
+    }
+    // waiting jobs end right away; the claim locks the job, so either this or the claim wins
+    if (end(ID.eq(id).and(STATUS.eq(WAITING.name())), CANCELLED, ": cancelled") > 0) {
+      tasks.remove(id);
+    } else if (jooq.update(JOBS)
+            .set(CANCEL, true)
+            .where(ID.eq(id).and(STATUS.eq(RUNNING.name())))
+            .execute()
+        == 0) {
+      if (jooq.fetchExists(JOBS, ID.eq(id))) {
+        logger.info("skipped cancel task " + id + " because already finished");
+      } else {
+        throw new MolgenisException("Task with id '" + id + "' not found");
+      }
+    }
+    logger.info("cancel task " + id);
+  }
+
+  @Override
+  public void clear() {
+    // only finished jobs, waiting jobs can be removed one by one
+    jooq.deleteFrom(JOBS).where(STATUS.notIn(WAITING.name(), RUNNING.name())).execute();
+  }
+
+  private void work() {
+    while (running && !Thread.currentThread().isInterrupted()) {
+      try {
+        String id = claim();
+        if (id == null) {
+          synchronized (wakeup) {
+            wakeup.wait(POLL_MS);
+          }
+        } else {
+          execute(id);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Exception e) {
+        // e.g. database not available, try again later
+        logger.error("job worker failed: " + e.getMessage(), e);
+        try {
+          Thread.sleep(POLL_MS);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /** returns id of job that this worker may run, or null if none */
+  private String claim() {
+    return jooq.transactionResult(
+        config -> {
+          DSLContext j = config.dsl();
+          j.execute("SELECT pg_advisory_xact_lock({0})", inline(CLAIM_LOCK));
+          return j.resultQuery(
+                  "UPDATE \"MOLGENIS\".\"jobs\" SET \"status\" = {0}, \"started\" = now(),"
+                      + " \"heartbeat\" = now() WHERE \"id\" = ("
+                      + "SELECT w.\"id\" FROM \"MOLGENIS\".\"jobs\" w"
+                      + " WHERE w.\"status\" = {1} AND w.\"node\" = {2} AND (w.\"schema\" IS NULL"
+                      + " OR (SELECT count(*) FROM \"MOLGENIS\".\"jobs\" r"
+                      + " WHERE r.\"status\" = {0} AND r.\"schema\" = w.\"schema\") < {3})"
+                      + " ORDER BY w.\"priority\" DESC, w.\"submitted\" LIMIT 1 FOR UPDATE SKIP LOCKED)"
+                      + " RETURNING \"id\"",
+                  inline(RUNNING.name()), inline(WAITING.name()), val(node), val(maxPerSchema))
+              .fetchOne(0, String.class);
+        });
+  }
+
+  private void execute(String id) {
+    Task task = tasks.get(id);
+    if (task == null) {
+      // removed just before it was claimed
+      finish(id, ERROR, "Task was removed", null, null);
+      return;
+    }
+    try {
+      if (task.isCancelled()) {
+        task.cancelled("Cancelled before it started");
+      } else {
+        task.run();
+      }
+    } catch (Exception e) {
+      logger.error("job " + id + " failed: " + e.getMessage(), e);
+      if (!ERROR.equals(task.getStatus()) && !CANCELLED.equals(task.getStatus())) {
+        task.error("Task failed: " + e.getMessage());
+      }
+    } finally {
+      StepStatus status = task.getStatus();
+      // a task that returned without completing has nothing more to do
+      if (WAITING.equals(status) || RUNNING.equals(status)) {
+        status = task.isCancelled() ? CANCELLED : COMPLETED;
+      }
+      finish(id, status, task.getDescription(), task.toString(), task.getCheckpoint());
+      tasks.remove(id);
+    }
+  }
+
+  private void finish(
+      String id, StepStatus status, String description, String json, String checkpoint) {
+    jooq.update(JOBS)
+        .set(STATUS, status.name())
+        .set(DESCRIPTION, description)
+        .set(TASK, json)
+        .set(CHECKPOINT, checkpoint)
+        .set(ENDED, currentOffsetDateTime())
+        .where(ID.eq(id))
+        .execute();
+  }
+
+  private void heartbeat() {
+    try {
+      jooq.update(JOBS)
+          .set(HEARTBEAT, currentOffsetDateTime())
+          .where(NODE.eq(node).and(STATUS.in(WAITING.name(), RUNNING.name())))
+          .execute();
+      // store progress, so other servers can show it
+      for (Map.Entry<String, Task> entry : tasks.entrySet()) {
+        if (RUNNING.equals(entry.getValue().getStatus())) {
+          jooq.update(JOBS)
+              .set(DESCRIPTION, entry.getValue().getDescription())
+              .set(TASK, entry.getValue().toString())
+              .set(CHECKPOINT, entry.getValue().getCheckpoint())
+              .where(ID.eq(entry.getKey()).and(STATUS.eq(RUNNING.name())))
+              .execute();
+        }
+      }
+      // cancelled via another server
+      for (String id :
+          jooq.select(ID)
+              .from(JOBS)
+              .where(NODE.eq(node).and(STATUS.eq(RUNNING.name())).and(CANCEL))
+              .fetch(ID)) {
+        Task task = tasks.get(id);
+        if (task != null) {
+          task.cancel();
+        }
+      }
+      // waiting jobs cancelled via another server won't be claimed, so are not kept
+      if (!tasks.isEmpty()) {
+        tasks
+            .keySet()
+            .removeAll(
+                jooq.select(ID)
+                    .from(JOBS)
+                    .where(ID.in(tasks.keySet()).and(STATUS.eq(CANCELLED.name())))
+                    .fetch(ID));
+      }
+      expire();
+    } catch (Exception e) {
+      logger.error("job heartbeat failed: " + e.getMessage(), e);
+    }
+  }
+
+  /** marks jobs of which the server stopped as error */
+  private void expire() {
+    int count =
+        end(
+            STATUS
+                .in(WAITING.name(), RUNNING.name())
+                .and(HEARTBEAT.lt(ago(MISSED_HEARTBEATS * HEARTBEAT_MS))),
+            ERROR,
+            ": interrupted because server stopped");
+    if (count > 0) {
+      logger.warn("marked {} jobs as interrupted because their server stopped", count);
+    }
+  }
+
+  /** ends jobs with status, also in the stored task so clients polling the task see it */
+  private int end(Condition condition, StepStatus status, String reason) {
+    Field<String> description = DESCRIPTION.concat(inline(reason));
+    return jooq.update(JOBS)
+        .set(STATUS, status.name())
+        .set(ENDED, currentOffsetDateTime())
+        .set(DESCRIPTION, description)
+        .set(
+            TASK,
+            field(
+                "jsonb_set(jsonb_set(coalesce({0}::jsonb, jsonb_build_object()), ARRAY['status'],"
+                    + " to_jsonb({1}::text)), ARRAY['description'], to_jsonb({2}))::text",
+                String.class, TASK, inline(status.name()), description))
+        .where(condition)
+        .execute();
+  }
+
+  /** uses database time, so servers with different clocks agree */
+  private static Field<OffsetDateTime> ago(long milliseconds) {
+    return field(
+        "now() - {0}::interval", OffsetDateTime.class, inline(milliseconds + " milliseconds"));
+  }
+
+  private static ThreadFactory daemon(String name) {
+    return runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /** task of which only the stored state is available, e.g. because it already finished */
+  private static class StoredTask extends Task {
+    private final String description;
+    private final String json;
+
+    StoredTask(String description, StepStatus status, String json) {
+      super(description);
+      this.setStatus(status);
+      this.description = description;
+      this.json = json;
+    }
+
+    @Override
+    public String getDescription() {
+      // stored description already includes the duration
+      return description;
+    }
+
+    @Override
+    public String toString() {
+      return json != null ? json : super.toString();
+    }
+  }
+}
@@ -1,7 +1,8 @@
 package org.molgenis.emx2.sql;
 
-import static org.molgenis.emx2.utils.JavaScriptUtils.executeJavascriptOnRow;
-import static org.molgenis.emx2.utils.JavaScriptUtils.executeJavascriptOnValue;
+import static org.molgenis.emx2.utils.JavaScriptUtils.computeValues;
+import static org.molgenis.emx2.utils.JavaScriptUtils.getValidationError;
+import static org.molgenis.emx2.utils.JavaScriptUtils.validateValues;
 
 import java.util.*;
 import org.molgenis.emx2.*;
@@ -18,48 +19,87 @@ public class SqlTypeUtils extends TypeUtils {
   }
 
   static Map<String, Object> getValuesAsMap(Row row, Collection<Column> columns) {
-    try {
-      Map<String, Object> values = new LinkedHashMap<>();
-      for (Column c : columns) {
-
-        Object value;
+    return getValuesAsMaps(List.of(row), columns).get(0);
+  }
 
-        // refConstraint == computed field
-        if (c.getComputed() != null) {
-          if (row.getValueMap().containsKey(c.getComputed())) {
-            value = row.getValueMap().get(c.getComputed());
-          } else {
-            value = executeJavascriptOnRow(c.getComputed(), row);
+  /**
+   * returns the values of each row. Computed values and validations are evaluated per column for
+   * all rows at once, so the script is only prepared once per batch. Rows that are prepared, e.g.
+   * by the import, already have their computed values and passed validation.
+   */
+  static List<Map<String, Object>> getValuesAsMaps(List<Row> rows, Collection<Column> columns) {
+    List<Row> toPrepare = new ArrayList<>();
+    for (Row row : rows) {
+      if (!row.isPrepared()) {
+        toPrepare.add(row);
+      }
+    }
+    // values per column, in order of the rows
+    Map<Column, List<Object>> columnValues = new LinkedHashMap<>();
+    // validation errors per column, null if valid
+    Map<Column, List<String>> columnErrors = new LinkedHashMap<>();
+    for (Column c : columns) {
+      List<Object> values = new ArrayList<>(rows.size());
+      // refConstraint == computed field
+      if (c.getComputed() != null) {
+        Iterator<Object> computed = computeValues(c, toPrepare).iterator();
+        for (Row row : rows) {
+          values.add(row.isPrepared() ? row.getValueMap().get(c.getName()) : computed.next());
+        }
+      } else {
+        for (Row row : rows) {
+          try {
+            values.add(getTypedValue(row, c));
+          } catch (MolgenisException me) {
+            throw new MolgenisException("Parsing of row failed: " + row.toString(), me);
           }
-        } else {
-          value = getTypedValue(row, c);
         }
+      }
+      columnValues.put(c, values);
 
-        // validation
-        if (value != null && c.getValidation() != null) {
-          String error = executeJavascriptOnValue(c.getValidation(), value);
-          if (error != null)
-            throw new MolgenisException(
-                "Validation error on column '"
-                    + c.getName()
-                    + "'"
-                    + error
-                    + ". Instead found value '"
-                    + value
-                    + "'");
+      // validation
+      if (c.getValidation() != null) {
+        List<Object> toValidate = new ArrayList<>(toPrepare.size());
+        for (int i = 0; i < rows.size(); i++) {
+          if (!rows.get(i).isPrepared()) {
+            toValidate.add(values.get(i));
+          }
         }
+        Iterator<String> validated = validateValues(c, toValidate).iterator();
+        List<String> errors = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+          errors.add(row.isPrepared() ? null : validated.next());
+        }
+        columnErrors.put(c, errors);
+      }
+    }
+
+    List<Map<String, Object>> result = new ArrayList<>(rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      Row row = rows.get(i);
+      try {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Column c : columns) {
+          Object value = columnValues.get(c).get(i);
 
-        // get value
-        if (Constants.MG_EDIT_ROLE.equals(c.getName())) {
-          values.put(c.getName(), Constants.MG_USER_PREFIX + row.getString(Constants.MG_EDIT_ROLE));
-        } else {
-          values.put(c.getName(), value);
+          // validation
+          String error = columnErrors.containsKey(c) ? columnErrors.get(c).get(i) : null;
+          if (error != null) throw getValidationError(c, error, value);
+
+          // get value
+          if (Constants.MG_EDIT_ROLE.equals(c.getName())) {
+            values.put(
+                c.getName(), Constants.MG_USER_PREFIX + row.getString(Constants.MG_EDIT_ROLE));
+          } else {
+            values.put(c.getName(), value);
+          }
         }
+        result.add(values);
+      } catch (MolgenisException me) {
+        throw new MolgenisException("Parsing of row failed: " + row.toString(), me);
       }
-      return values;
-    } catch (MolgenisException me) {
-      throw new MolgenisException("Parsing of row failed: " + row.toString(), me);
     }
+    return result;
   }
 
   public static Object getTypedValue(Row row, Column c) {
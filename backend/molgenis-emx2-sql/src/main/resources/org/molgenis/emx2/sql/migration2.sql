@@ -0,0 +1,2 @@
+ALTER TABLE "MOLGENIS"."schema_metadata"
+    ADD COLUMN IF NOT EXISTS "version" BIGINT NOT NULL DEFAULT 0;
\ No newline at end of file
@@ -0,0 +1,16 @@
+CREATE TABLE IF NOT EXISTS "MOLGENIS"."jobs"
+(
+    "id"          VARCHAR PRIMARY KEY,
+    "schema"      VARCHAR,
+    "description" VARCHAR,
+    "status"      VARCHAR     NOT NULL,
+    "priority"    INTEGER     NOT NULL DEFAULT 0,
+    "node"        VARCHAR     NOT NULL,
+    "submitted"   TIMESTAMPTZ NOT NULL DEFAULT now(),
+    "started"     TIMESTAMPTZ,
+    "ended"       TIMESTAMPTZ,
+    "heartbeat"   TIMESTAMPTZ NOT NULL DEFAULT now(),
+    "task"        TEXT
+);
+CREATE INDEX IF NOT EXISTS "jobs_waiting" ON "MOLGENIS"."jobs" ("priority" DESC, "submitted")
+    WHERE "status" = 'WAITING';
@@ -0,0 +1,3 @@
+ALTER TABLE "MOLGENIS"."jobs"
+    ADD COLUMN IF NOT EXISTS "checkpoint" VARCHAR,
+    ADD COLUMN IF NOT EXISTS "cancel"     BOOLEAN NOT NULL DEFAULT false;
@@ -0,0 +1,18 @@
+-- store contents of FILE columns uncompressed, so downloads can read slices of a file without
+-- decompressing all of it; files stored before keep their compressed form until they are replaced
+DO
+$$
+    DECLARE
+        c RECORD;
+    BEGIN
+        FOR c IN SELECT table_schema, table_name, column_name
+                 FROM information_schema.columns
+                 WHERE data_type = 'bytea'
+                   AND column_name LIKE '%\_contents'
+                   AND table_schema NOT IN ('pg_catalog', 'information_schema', 'MOLGENIS')
+            LOOP
+                EXECUTE format('ALTER TABLE %I.%I ALTER COLUMN %I SET STORAGE EXTERNAL',
+                               c.table_schema, c.table_name, c.column_name);
+            END LOOP;
+    END
+$$;
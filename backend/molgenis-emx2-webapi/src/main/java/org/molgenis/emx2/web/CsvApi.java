@@ -1,13 +1,20 @@
 package org.molgenis.emx2.web;
 
+import static org.molgenis.emx2.graphql.GraphqlTableFieldFactory.convertMapToFilterArray;
 import static org.molgenis.emx2.web.Constants.ACCEPT_CSV;
 import static org.molgenis.emx2.web.MolgenisWebservice.getSchema;
 import static spark.Spark.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.jooq.Field;
 import org.molgenis.emx2.*;
 import org.molgenis.emx2.io.emx2.Emx2;
 import org.molgenis.emx2.io.readers.CsvTableReader;
@@ -22,6 +29,9 @@ public class CsvApi {
   public static final String SUCCESS_MESSAGE = "successMessageType";
   public static final String CSV_OUTPUT = "csvOutputType";
   public static final String META = "_meta";
+  private static final String LIMIT = "limit";
+  private static final String OFFSET = "offset";
+  private static final String FILTER = "filter";
 
   private CsvApi() {
     // hide constructor
@@ -69,15 +79,65 @@ public class CsvApi {
     return writer.toString();
   }
 
+  /**
+   * streams the rows straight from a database cursor to the response, so we don't need to hold the
+   * table in memory. Supports 'limit', 'offset' and 'filter' parameters, the latter using graphql
+   * filter syntax, e.g. filter={"name":{"equals":"pooky"}}. Pages of limit and offset are ordered
+   * by primary key.
+   */
   private static String tableRetrieve(Request request, Response response) throws IOException {
     Table table = MolgenisWebservice.getTable(request);
-    List<Row> rows = table.retrieveRows();
-    StringWriter writer = new StringWriter();
-    CsvTableWriter.write(rows, writer, getSeperator(request));
-    response.type(ACCEPT_CSV);
-    response.header("Content-Disposition", "attachment; filename=\"" + table.getName() + ".csv\"");
-    response.status(200);
-    return writer.toString();
+    List<String> columnNames =
+        table.getMetadata().getDownloadColumnNames().stream()
+            .map(Column::getName)
+            .filter(name -> !name.startsWith("mg_"))
+            .collect(Collectors.toList());
+    Query query =
+        table
+            .query()
+            .select(columnNames.stream().map(SelectColumn::s).toArray(SelectColumn[]::new));
+    if (request.queryParams(LIMIT) != null || request.queryParams(OFFSET) != null) {
+      // pages are only well defined in a fixed order
+      Map<String, Order> orderBy = new LinkedHashMap<>();
+      for (Field<?> key : table.getMetadata().getPrimaryKeyFields()) {
+        orderBy.put(key.getName(), Order.ASC);
+      }
+      query.orderBy(orderBy);
+    }
+    if (request.queryParams(LIMIT) != null) {
+      query.limit(getIntegerParam(request, LIMIT));
+    }
+    if (request.queryParams(OFFSET) != null) {
+      query.offset(getIntegerParam(request, OFFSET));
+    }
+    if (request.queryParams(FILTER) != null) {
+      Map<String, Object> filter =
+          new ObjectMapper().readValue(request.queryParams(FILTER), Map.class);
+      query.where(convertMapToFilterArray(table, filter));
+    }
+
+    try (RowIterator rows = query.retrieveRowsIterator()) {
+      response.type(ACCEPT_CSV);
+      response.header(
+          "Content-Disposition", "attachment; filename=\"" + table.getName() + ".csv\"");
+      response.status(200);
+      // no content length, so the servlet container uses chunked transfer encoding
+      Writer writer =
+          new BufferedWriter(
+              new OutputStreamWriter(response.raw().getOutputStream(), StandardCharsets.UTF_8));
+      CsvTableWriter.write(() -> rows, columnNames, writer, getSeperator(request));
+      writer.flush();
+    }
+    return "";
+  }
+
+  private static int getIntegerParam(Request request, String name) {
+    try {
+      return Integer.parseInt(request.queryParams(name));
+    } catch (NumberFormatException e) {
+      throw new MolgenisException(
+          "Invalid parameter '" + name + "': " + request.queryParams(name) + " is not a number");
+    }
   }
 
   private static String tableUpdate(Request request, Response response) {
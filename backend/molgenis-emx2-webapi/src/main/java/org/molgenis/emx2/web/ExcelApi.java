@@ -11,7 +11,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import javax.servlet.MultipartConfigElement;
 import javax.servlet.ServletException;
@@ -57,7 +56,8 @@ public class ExcelApi {
       Files.copy(input, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
     }
     if (request.queryParams("async") != null) {
-      String id = TaskApi.submit(new ImportExcelTask(tempFile.toPath(), schema));
+      String id =
+          TaskApi.submitImport(new ImportExcelTask(tempFile.toPath(), schema), schema, request);
       return new TaskReference(id, schema).toString();
     } else {
       MolgenisIO.importFromExcelFile(tempFile.toPath(), schema);
@@ -68,25 +68,20 @@ public class ExcelApi {
 
   static String getExcel(Request request, Response response) throws IOException {
     Schema schema = getSchema(request);
-
-    Path tempDir = Files.createTempDirectory(MolgenisWebservice.TEMPFILES_DELETE_ON_EXIT);
-    tempDir.toFile().deleteOnExit();
+    response.type("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+    response.header(
+        "Content-Disposition",
+        "attachment; filename="
+            + schema.getMetadata().getName()
+            + System.currentTimeMillis()
+            + ".xlsx");
+    // the workbook is written to the client when complete, no export file needed
     try (OutputStream outputStream = response.raw().getOutputStream()) {
-      Path excelFile = tempDir.resolve("download.xlsx");
       if (request.queryParams("emx1") != null) {
-        MolgenisIO.toEmx1ExcelFile(excelFile, schema);
+        MolgenisIO.toEmx1ExcelStream(outputStream, schema);
       } else {
-        MolgenisIO.toExcelFile(excelFile, schema);
+        MolgenisIO.toExcelStream(outputStream, schema);
       }
-
-      response.type("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-      response.header(
-          "Content-Disposition",
-          "attachment; filename="
-              + schema.getMetadata().getName()
-              + System.currentTimeMillis()
-              + ".xlsx");
-      outputStream.write(Files.readAllBytes(excelFile));
       return "Export success";
     }
   }
@@ -94,21 +89,17 @@ public class ExcelApi {
   static String getExcelTable(Request request, Response response) throws IOException {
     Table table = getTable(request);
     if (table == null) throw new MolgenisException("Table " + request.params(TABLE) + " unknown");
-    Path tempDir = Files.createTempDirectory(MolgenisWebservice.TEMPFILES_DELETE_ON_EXIT);
-    tempDir.toFile().deleteOnExit();
+    response.type("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+    response.header(
+        "Content-Disposition",
+        "attachment; filename="
+            + table.getSchema().getMetadata().getName()
+            + "_"
+            + table.getName()
+            + System.currentTimeMillis()
+            + ".xlsx");
     try (OutputStream outputStream = response.raw().getOutputStream()) {
-      Path excelFile = tempDir.resolve("download.xlsx");
-      MolgenisIO.toExcelFile(excelFile, table);
-      response.type("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-      response.header(
-          "Content-Disposition",
-          "attachment; filename="
-              + table.getSchema().getMetadata().getName()
-              + "_"
-              + table.getName()
-              + System.currentTimeMillis()
-              + ".xlsx");
-      outputStream.write(Files.readAllBytes(excelFile));
+      MolgenisIO.toExcelStream(outputStream, table);
       return "Export success";
     }
   }
@@ -15,6 +15,10 @@ import spark.Request;
 import spark.Response;
 
 public class FileApi {
+  private FileApi() {
+    // hide constructor
+  }
+
   public static void create() {
     get("/:schema/api/file/:table/:column/:id", FileApi::getFile);
   }
@@ -47,8 +51,8 @@ public class FileApi {
                 t.getMetadata().getPrimaryKeyFields().stream()
                     .map(f -> s(f.getName()))
                     .toArray(SelectColumn[]::new))
-            // select file details
-            .select(s(columnName, s("contents"), s("mimetype"), s("extension")))
+            // select file details, contents are streamed below
+            .select(s(columnName, s("id"), s("size"), s("mimetype"), s("extension")))
             .where(f(columnName, f("id", EQUALS, id)))
             .retrieveRows();
     if (result.size() != 1) {
@@ -62,17 +66,89 @@ public class FileApi {
             .collect(Collectors.joining("-"));
     String ext = result.get(0).getString(columnName + "_extension");
     String mimetype = result.get(0).getString(columnName + "_mimetype");
-    byte[] contents = result.get(0).getBinary(columnName + "_contents");
+    Integer size = result.get(0).getInteger(columnName + "_size");
+
+    // file ids are unique per upload, so can be used as etag
+    String etag = "\"" + id + "\"";
+    response.header("ETag", etag);
+    String ifNoneMatch = request.headers("If-None-Match");
+    if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+      response.status(304);
+      return "";
+    }
+
     response
         .raw()
         .setHeader(
             "Content-Disposition",
             "attachment; filename=" + t.getName() + "-" + c.getName() + "-" + fileId + "." + ext);
     response.raw().setContentType(mimetype);
+
+    long offset = 0;
+    long length = Long.MAX_VALUE;
+    if (size != null) {
+      response.header("Accept-Ranges", "bytes");
+      length = size;
+      String ifRange = request.headers("If-Range");
+      String range = request.headers("Range");
+      if (range != null && (ifRange == null || ifRange.equals(etag))) {
+        long[] startEnd = parseRange(range, size);
+        if (startEnd == null) {
+          response.header("Content-Range", "bytes */" + size);
+          response.status(416);
+          return "";
+        }
+        if (startEnd.length == 2) {
+          offset = startEnd[0];
+          length = startEnd[1] - startEnd[0] + 1;
+          response.header("Content-Range", "bytes " + startEnd[0] + "-" + startEnd[1] + "/" + size);
+          response.status(206);
+        }
+      }
+      response.raw().setContentLengthLong(length);
+    }
     try (OutputStream out = response.raw().getOutputStream()) {
-      out.write(contents); // autoclosing
+      t.writeFileContents(columnName, id, offset, length, out);
       out.flush();
     }
     return "";
   }
+
+  /**
+   * parses a single 'bytes=start-end', 'bytes=start-' or 'bytes=-suffix' range into inclusive start
+   * and end. Returns empty array if range should be ignored (e.g. multiple ranges), null if it
+   * cannot be satisfied.
+   */
+  static long[] parseRange(String range, long size) {
+    String value = range.trim();
+    if (!value.startsWith("bytes=") || value.contains(",")) {
+      return new long[0];
+    }
+    String[] parts = value.substring("bytes=".length()).split("-", -1);
+    try {
+      if (parts.length != 2) {
+        return new long[0];
+      }
+      long start;
+      long end;
+      if (parts[0].isBlank()) {
+        // last n bytes
+        long suffix = Long.parseLong(parts[1].trim());
+        if (suffix <= 0) {
+          return null;
+        }
+        start = Math.max(0, size - suffix);
+        end = size - 1;
+      } else {
+        start = Long.parseLong(parts[0].trim());
+        end = parts[1].isBlank() ? size - 1 : Math.min(Long.parseLong(parts[1].trim()), size - 1);
+      }
+      if (start >= size || start > end) {
+        return null;
+      }
+      return new long[] {start, end};
+    } catch (NumberFormatException e) {
+      return new long[0];
+    }
+  }
 }
@@ -21,6 +21,7 @@ import java.util.stream.Collectors;
 import javax.servlet.MultipartConfigElement;
 import javax.servlet.http.Part;
 import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.Schema;
 import org.molgenis.emx2.graphql.GraphqlApiFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,7 +59,7 @@ public class GraphqlApi {
       throws IOException {
     MolgenisSession session = sessionManager.getSession(request);
     response.header(CONTENT_TYPE, ACCEPT_JSON);
-    return executeQuery(session.getGraphqlForDatabase(), request);
+    return executeQuery(session.getGraphqlForDatabase(), session.getDatabase(), request);
   }
 
   public static String handleSchemaRequests(Request request, Response response) throws IOException {
@@ -74,12 +75,18 @@ public class GraphqlApi {
     if (getSchema(request) == null) {
       return handleDatabaseRequests(request, response);
     }
-    GraphQL graphqlForSchema = session.getGraphqlForSchema(schemaName);
+    Schema schema = session.getSchema(schemaName);
+    GraphQL graphqlForSchema = session.getGraphqlForSchema(schema);
     response.header(CONTENT_TYPE, ACCEPT_JSON);
-    return executeQuery(graphqlForSchema, request);
+    return executeQuery(graphqlForSchema, schema, request);
   }
 
-  private static String executeQuery(GraphQL g, Request request) throws IOException {
+  /**
+   * @param context the schema or database of the session, graphql instances may be shared between
+   *     sessions so fetchers use this instead of the schema/database they were created with.
+   */
+  private static String executeQuery(GraphQL g, Object context, Request request)
+      throws IOException {
     String query = getQueryFromRequest(request);
     Map<String, Object> variables = getVariablesFromRequest(request);
 
@@ -96,11 +103,15 @@ public class GraphqlApi {
 
     // tests show overhead of this step is about 20ms (jooq takes the rest)
     ExecutionResult executionResult = null;
+    // table queries may put json from the database in the result as is
+    ExecutionInput.Builder executionInput =
+        ExecutionInput.newExecutionInput(query)
+            .context(context)
+            .localContext(GraphqlApiFactory.RAW_JSON);
     if (variables != null) {
-      executionResult = g.execute(ExecutionInput.newExecutionInput(query).variables(variables));
-    } else {
-      executionResult = g.execute(query);
+      executionInput.variables(variables);
     }
+    executionResult = g.execute(executionInput);
 
     String result = GraphqlApiFactory.convertExecutionResultToJson(executionResult);
 
@@ -1,12 +1,11 @@
 package org.molgenis.emx2.web;
 
 import graphql.GraphQL;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import org.molgenis.emx2.Database;
 import org.molgenis.emx2.MolgenisException;
 import org.molgenis.emx2.Schema;
 import org.molgenis.emx2.graphql.GraphqlApiFactory;
+import org.molgenis.emx2.graphql.GraphqlSchemaCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,10 +13,12 @@ public class MolgenisSession {
   private static final Logger logger = LoggerFactory.getLogger(MolgenisSession.class);
   private Database database;
   private GraphQL graphqlForDatabase;
-  private Map<String, GraphQL> graphqlPerSchema = new LinkedHashMap<>();
+  // shared between sessions
+  private GraphqlSchemaCache graphqlSchemaCache;
 
-  public MolgenisSession(Database database) {
+  public MolgenisSession(Database database, GraphqlSchemaCache graphqlSchemaCache) {
     this.database = database;
+    this.graphqlSchemaCache = graphqlSchemaCache;
   }
 
   public GraphQL getGraphqlForDatabase() {
@@ -28,20 +29,23 @@ public class MolgenisSession {
     return graphqlForDatabase;
   }
 
-  public GraphQL getGraphqlForSchema(String schemaName) {
-    logger.info("getting graphql schema '{}' for user '{}'", schemaName, getSessionUser());
-    if (graphqlPerSchema.get(schemaName) == null) {
-      Schema schema = database.getSchema(schemaName);
-      if (schema == null)
-        throw new MolgenisException(
-            "Schema not found: Schema with name '"
-                + schemaName
-                + "' does not exist or permission denied");
-      graphqlPerSchema.put(schemaName, new GraphqlApiFactory().createGraphqlForSchema(schema));
-      logger.info("created graphql schema '{}' for user '{}'", schemaName, getSessionUser());
-    }
-    logger.info("return graphql schema '{}' for user '{}'", schemaName, getSessionUser());
-    return graphqlPerSchema.get(schemaName);
+  /**
+   * returns graphql for schema from the cache shared between sessions; queries must be executed
+   * with the schema of this session as context, see GraphqlApiFactory.getSchema
+   */
+  public GraphQL getGraphqlForSchema(Schema schema) {
+    logger.info("getting graphql schema '{}' for user '{}'", schema.getName(), getSessionUser());
+    return graphqlSchemaCache.getGraphqlForSchema(schema);
+  }
+
+  public Schema getSchema(String schemaName) {
+    Schema schema = database.getSchema(schemaName);
+    if (schema == null)
+      throw new MolgenisException(
+          "Schema not found: Schema with name '"
+              + schemaName
+              + "' does not exist or permission denied");
+    return schema;
   }
 
   public Database getDatabase() {
@@ -53,7 +57,6 @@ public class MolgenisSession {
   }
 
   public void clearCache() {
-    this.graphqlPerSchema.clear();
     this.graphqlForDatabase = null;
     this.database.clearCache();
     logger.info("cleared database and caches for user {}", getSessionUser());
@@ -9,6 +9,7 @@ import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.util.thread.ThreadPool;
 import org.molgenis.emx2.Database;
 import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.graphql.GraphqlSchemaCache;
 import org.molgenis.emx2.sql.SqlDatabase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,9 +25,10 @@ import spark.staticfiles.StaticFilesConfiguration;
 
 public class MolgenisSessionManager {
   private static final Logger logger = LoggerFactory.getLogger(MolgenisSessionManager.class);
-  // map so we can track the sessions, necessary for 'clearCache' in case of schema changes
-  // session id is the key
+  // map so we can track the sessions, session id is the key
   private Map<String, MolgenisSession> sessions = new ConcurrentHashMap<>();
+  // graphql per schema and role, shared between sessions
+  private GraphqlSchemaCache graphqlSchemaCache = new GraphqlSchemaCache();
 
   public MolgenisSessionManager() {
     createCustomJettyServerFactoryWithCustomSessionListener();
@@ -42,6 +44,8 @@ public class MolgenisSessionManager {
 
     // get the session
     MolgenisSession session = sessions.get(request.session().id());
+    // cheap check, only schemas changed by other sessions or servers will be reloaded
+    session.getDatabase().checkSchemaVersions();
     if (session.getSessionUser() == null) {
       throw new MolgenisException(
           "Invalid session found with user == null. This should not happen so please report as a bug");
@@ -54,13 +58,9 @@ public class MolgenisSessionManager {
     return session;
   }
 
-  /**
-   * this method is used to reset cache of all sessions, necessary when for example metadata changes
-   */
-  public void clearAllCaches() {
-    for (MolgenisSession session : sessions.values()) {
-      session.clearCache();
-    }
+  /** drops the shared graphql for a schema, necessary when its metadata or members change */
+  public void invalidateSchema(String schemaName) {
+    graphqlSchemaCache.invalidate(schemaName);
   }
 
   /**
@@ -119,11 +119,11 @@ public class MolgenisSessionManager {
         // create private database wrapper to session
         Database database = new SqlDatabase(false);
         database.setActiveUser("anonymous"); // set default use to "anonymous"
-        database.setListener(new MolgenisSessionManagerDatabaseListener(_this, database));
+        database.setListener(new MolgenisSessionManagerDatabaseListener(_this));
 
         // create session and add to sessions lists so we can also access all active
         // sessions
-        MolgenisSession molgenisSession = new MolgenisSession(database);
+        MolgenisSession molgenisSession = new MolgenisSession(database, graphqlSchemaCache);
         sessions.put(httpSessionEvent.getSession().getId(), molgenisSession);
         logger.info("session created: " + httpSessionEvent.getSession().getId());
       }
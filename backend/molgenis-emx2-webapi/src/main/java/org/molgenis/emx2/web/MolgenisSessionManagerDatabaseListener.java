@@ -1,28 +1,33 @@
 package org.molgenis.emx2.web;
 
-import org.molgenis.emx2.Database;
+import java.util.HashSet;
+import java.util.Set;
 import org.molgenis.emx2.DatabaseListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** To clear caches if schema or users change, which changes what users can see */
+/**
+ * To drop the shared graphql of schemas that changed. Other sessions don't need to be cleared, they
+ * notice changes via the schema metadata version, see MolgenisSessionManager.getSession
+ */
 public class MolgenisSessionManagerDatabaseListener extends DatabaseListener {
   private static final Logger logger =
       LoggerFactory.getLogger(MolgenisSessionManagerDatabaseListener.class);
-  private Database database;
   private MolgenisSessionManager sessionManager;
 
-  public MolgenisSessionManagerDatabaseListener(
-      MolgenisSessionManager sessionManager, Database database) {
+  public MolgenisSessionManagerDatabaseListener(MolgenisSessionManager sessionManager) {
     this.sessionManager = sessionManager;
-    this.database = database;
   }
 
   @Override
   public void afterCommit() {
+    // must be read before super clears them
+    Set<String> schemaNames = new HashSet<>(getSchemaChanged());
+    schemaNames.addAll(getSchemaRemoved());
+    for (String schemaName : schemaNames) {
+      sessionManager.invalidateSchema(schemaName);
+    }
     super.afterCommit();
-    database.clearCache();
-    sessionManager.clearAllCaches();
-    logger.info("cleared caches after commit that includes changes on schema(s)");
+    logger.info("cleared graphql caches after commit that includes changes on {}", schemaNames);
   }
 }
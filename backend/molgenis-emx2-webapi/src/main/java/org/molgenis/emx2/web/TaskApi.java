@@ -3,23 +3,45 @@ package org.molgenis.emx2.web;
 import static org.molgenis.emx2.web.MolgenisWebservice.getSchema;
 import static spark.Spark.delete;
 import static spark.Spark.get;
+import static spark.Spark.post;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import org.molgenis.emx2.MolgenisException;
+import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.io.ImportSchemaTask;
+import org.molgenis.emx2.sql.SqlDatabase;
+import org.molgenis.emx2.sql.SqlTaskService;
 import org.molgenis.emx2.tasks.Task;
 import org.molgenis.emx2.tasks.TaskService;
-import org.molgenis.emx2.tasks.TaskServiceInMemory;
+import org.molgenis.emx2.tasks.TaskSnapshots;
 import spark.Request;
 import spark.Response;
 
 // TODO make the tasks private to schema; then you need schema edit or manager to view them
 public class TaskApi {
+  // progress events are sent at most once per interval
+  private static final long EVENT_INTERVAL_MS = 500;
+  // comment sent when nothing changed, so proxies don't close the connection
+  private static final long KEEP_ALIVE_MS = 15000;
+  // streams are closed after a while so they don't keep a thread forever; browsers reconnect
+  private static final long MAX_STREAM_MS = 10L * 60 * 1000;
 
-  private static TaskService taskService = new TaskServiceInMemory();
+  private static TaskService taskService;
 
   public static void create() {
+    // jobs are stored in the database, so they survive restarts and are shared between servers
+    if (taskService == null) {
+      taskService = new SqlTaskService(new SqlDatabase(false));
+    }
+
     get("/:schema/api/tasks", TaskApi::listTasks);
     get("/:schema/api/tasks/clear", TaskApi::clearTasks);
     get("/:schema/api/task/:id", TaskApi::getTask);
+    get("/:schema/api/task/:id/events", TaskApi::streamTask);
+    post("/:schema/api/task/:id/cancel", TaskApi::cancelTask);
+    get("/:schema/api/task/:id/cancel", TaskApi::cancelTask);
 
     // convenient delete
     delete("/:schema/api/task/:id", TaskApi::deleteTask);
@@ -44,6 +66,14 @@ public class TaskApi {
     throw new MolgenisException("Schema doesn't exist or permission denied");
   }
 
+  private static String cancelTask(Request request, Response response) {
+    if (getSchema(request) != null) {
+      taskService.cancelTask(request.params("id"));
+      return "{status: 'SUCCESS'}";
+    }
+    throw new MolgenisException("Schema doesn't exist or permission denied");
+  }
+
   private static String listTasks(Request request, Response response) {
     if (getSchema(request) != null) {
 
@@ -73,7 +103,93 @@ public class TaskApi {
     throw new MolgenisException("Schema doesn't exist or permission denied");
   }
 
+  /**
+   * streams progress of task as server sent events: 'progress' events with the task json when it
+   * changed, and a 'done' event with the final task json when it completed or failed
+   */
+  private static String streamTask(Request request, Response response) throws InterruptedException {
+    if (getSchema(request) == null) {
+      throw new MolgenisException("Schema doesn't exist or permission denied");
+    }
+    String id = request.params("id");
+    if (taskService.getTask(id) == null) {
+      throw new MolgenisException("Task with id '" + id + "' not found");
+    }
+    response.type("text/event-stream");
+    response.header("Cache-Control", "no-cache");
+    // proxies like nginx should not buffer the events
+    response.header("X-Accel-Buffering", "no");
+
+    TaskSnapshots snapshots = new TaskSnapshots(() -> taskService.getTask(id), EVENT_INTERVAL_MS);
+    long end = System.currentTimeMillis() + MAX_STREAM_MS;
+    try {
+      OutputStream out = response.raw().getOutputStream();
+      // browser reconnects after this many ms when stream closes before task finished
+      sendEvent(out, "retry: 1000\n\n");
+      while (!snapshots.isFinished() && System.currentTimeMillis() < end) {
+        String snapshot = snapshots.poll(KEEP_ALIVE_MS);
+        if (snapshot != null) {
+          sendEvent(out, "event: progress\ndata: " + snapshot + "\n\n");
+        } else if (!snapshots.isFinished()) {
+          sendEvent(out, ": keep-alive\n\n");
+        }
+      }
+      if (snapshots.isFinished()) {
+        String last = snapshots.getLast();
+        sendEvent(out, "event: done\ndata: " + (last != null ? last : "{}") + "\n\n");
+      }
+    } catch (IOException e) {
+      // client went away
+    }
+    return "";
+  }
+
+  private static void sendEvent(OutputStream out, String event) throws IOException {
+    out.write(event.getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+
   public static String submit(Task task) {
     return taskService.submit(task);
   }
+
+  /**
+   * submits import of uploaded file. Query parameter 'commit' (number of batches, or 'table') makes
+   * the import commit as it goes, and 'resume' (id of an earlier import task of the same file)
+   * continues from the checkpoint of that task.
+   */
+  public static String submitImport(ImportSchemaTask task, Schema schema, Request request) {
+    String commit = request.queryParams("commit");
+    String resume = request.queryParams("resume");
+    if (commit == null && resume != null) {
+      // resume only works when committing as it goes
+      commit = "table";
+    }
+    if (commit != null) {
+      try {
+        task.setCommitEvery(
+            "table".equals(commit) ? ImportSchemaTask.COMMIT_PER_TABLE : Integer.parseInt(commit));
+      } catch (NumberFormatException e) {
+        throw new MolgenisException(
+            "Import failed: commit should be a number of batches or 'table', found " + commit);
+      }
+    }
+    if (resume != null) {
+      Task previous = taskService.getTask(resume);
+      if (previous == null) {
+        throw new MolgenisException("Import failed: task with id '" + resume + "' not found");
+      }
+      if (previous.getCheckpoint() == null) {
+        throw new MolgenisException(
+            "Import failed: task with id '" + resume + "' has no checkpoint to resume from");
+      }
+      task.setResumeFrom(previous.getCheckpoint());
+    }
+    return submit(task, schema);
+  }
+
+  /** task counts for the limit of running tasks per schema */
+  public static String submit(Task task, Schema schema) {
+    return taskService.submit(task, schema.getName(), 0);
+  }
 }
@@ -11,10 +11,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.Comparator;
-import java.util.stream.Stream;
 import javax.servlet.MultipartConfigElement;
 import javax.servlet.ServletException;
 import org.molgenis.emx2.MolgenisException;
@@ -42,26 +39,18 @@ public class ZipApi {
   }
 
   static String getZip(Request request, Response response) throws IOException {
-
-    Path tempDir = Files.createTempDirectory(MolgenisWebservice.TEMPFILES_DELETE_ON_EXIT);
-    tempDir.toFile().deleteOnExit();
+    Schema schema = getSchema(request);
+    response.type("application/zip");
+    response.header(
+        "Content-Disposition",
+        "attachment; filename="
+            + schema.getMetadata().getName()
+            + System.currentTimeMillis()
+            + ".zip");
+    // stream directly to the client, tables and files are written one by one
     try (OutputStream outputStream = response.raw().getOutputStream()) {
-      Schema schema = getSchema(request);
-      Path zipFile = tempDir.resolve("download.zip");
-      MolgenisIO.toZipFile(zipFile, schema);
-      outputStream.write(Files.readAllBytes(zipFile));
-      response.type("application/zip");
-      response.header(
-          "Content-Disposition",
-          "attachment; filename="
-              + schema.getMetadata().getName()
-              + System.currentTimeMillis()
-              + ".zip");
+      MolgenisIO.toZipStream(outputStream, schema);
       return "Export success";
-    } finally {
-      try (Stream<Path> files = Files.walk(tempDir)) {
-        files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
-      }
     }
   }
 
@@ -84,7 +73,9 @@ public class ZipApi {
 
       if (fileName.endsWith(".zip")) {
         if (request.queryParams("async") != null) {
-          String id = TaskApi.submit(new ImportCsvZipTask(tempFile.toPath(), schema));
+          String id =
+              TaskApi.submitImport(
+                  new ImportCsvZipTask(tempFile.toPath(), schema), schema, request);
           return new TaskReference(id, schema).toString();
         } else {
           MolgenisIO.fromZipFile(tempFile.toPath(), schema);
@@ -110,26 +101,18 @@ public class ZipApi {
   static String getZipTable(Request request, Response response) throws IOException {
     Table table = getTable(request);
     if (table == null) throw new MolgenisException("Table " + request.params(TABLE) + " unknown");
-    Path tempDir = Files.createTempDirectory(MolgenisWebservice.TEMPFILES_DELETE_ON_EXIT);
-    tempDir.toFile().deleteOnExit();
+    response.type("application/zip");
+    response.header(
+        "Content-Disposition",
+        "attachment; filename="
+            + table.getSchema().getMetadata().getName()
+            + "_"
+            + table.getName()
+            + System.currentTimeMillis()
+            + ".zip");
     try (OutputStream outputStream = response.raw().getOutputStream()) {
-      Path zipFile = tempDir.resolve("download.zip");
-      MolgenisIO.toZipFile(zipFile, table);
-      outputStream.write(Files.readAllBytes(zipFile));
-      response.type("application/zip");
-      response.header(
-          "Content-Disposition",
-          "attachment; filename="
-              + table.getSchema().getMetadata().getName()
-              + "_"
-              + table.getName()
-              + System.currentTimeMillis()
-              + ".zip");
+      MolgenisIO.toZipStream(outputStream, table);
       return "Export success";
-    } finally {
-      try (Stream<Path> files = Files.walk(tempDir)) {
-        files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
-      }
     }
   }
 }
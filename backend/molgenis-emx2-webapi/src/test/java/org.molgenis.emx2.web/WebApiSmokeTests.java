@@ -4,6 +4,9 @@ import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.FILE;
+import static org.molgenis.emx2.TableMetadata.table;
 import static org.molgenis.emx2.web.Constants.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -16,10 +19,13 @@ import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.molgenis.emx2.BinaryFileWrapper;
 import org.molgenis.emx2.Database;
 import org.molgenis.emx2.MolgenisException;
 import org.molgenis.emx2.Privileges;
+import org.molgenis.emx2.Row;
 import org.molgenis.emx2.Schema;
+import org.molgenis.emx2.Table;
 import org.molgenis.emx2.examples.PetStoreExample;
 import org.molgenis.emx2.sql.TestDatabaseFactory;
 
@@ -201,6 +207,23 @@ public class WebApiSmokeTests {
       Thread.sleep(500);
     }
 
+    // progress can also be streamed, stream ends when task is done
+    String events = given().sessionId(SESSION_ID).when().get(url + "/events").asString();
+    assertTrue(events.contains("event: done\ndata: {"));
+    assertTrue(events.contains("COMPLETED"));
+
+    // cancel of finished task does nothing; completed import leaves nothing to resume
+    assertTrue(
+        given().sessionId(SESSION_ID).when().post(url + "/cancel").asString().contains("SUCCESS"));
+    assertTrue(
+        given()
+            .sessionId(SESSION_ID)
+            .multiPart(excelFile)
+            .when()
+            .post("/pet store excel/api/excel?async=true&resume=" + id)
+            .asString()
+            .contains("has no checkpoint to resume from"));
+
     // check if schema equal using json representation
     String schemaCSV2 =
         given()
@@ -248,6 +271,117 @@ public class WebApiSmokeTests {
     assertEquals(exp1, result);
   }
 
+  @Test
+  public void testCsvApi_tableLimitOffsetFilter() {
+    String path = "/pet store/api/csv/Tag";
+
+    String result =
+        given()
+            .sessionId(SESSION_ID)
+            .accept(ACCEPT_CSV)
+            .queryParam("limit", 1)
+            .when()
+            .get(path)
+            .asString();
+    // ordered by primary key, not insertion order
+    assertEquals("name\r\ngreen\r\n", result);
+
+    result =
+        given()
+            .sessionId(SESSION_ID)
+            .accept(ACCEPT_CSV)
+            .queryParam("offset", 1)
+            .when()
+            .get(path)
+            .asString();
+    assertEquals("name\r\nred\r\n", result);
+
+    result =
+        given()
+            .sessionId(SESSION_ID)
+            .accept(ACCEPT_CSV)
+            .queryParam("filter", "{\"name\":{\"equals\":\"green\"}}")
+            .when()
+            .get(path)
+            .asString();
+    assertEquals("name\r\ngreen\r\n", result);
+
+    given()
+        .sessionId(SESSION_ID)
+        .accept(ACCEPT_CSV)
+        .queryParam("limit", "many")
+        .when()
+        .get(path)
+        .then()
+        .statusCode(400);
+  }
+
+  @Test
+  public void testFileApi_rangeAndEtag() {
+    Schema fileSchema = db.dropCreateSchema("fileApi");
+    Table files =
+        fileSchema.create(table("Files", column("name").setPkey(), column("data").setType(FILE)));
+    Row row =
+        new Row()
+            .setString("name", "test")
+            .setBinary(
+                "data", new BinaryFileWrapper("text/plain", "test.txt", "0123456789".getBytes()));
+    files.insert(row);
+    String path = "/fileApi/api/file/Files/data/" + row.getString("data");
+
+    // complete file, size from metadata
+    String etag =
+        given()
+            .sessionId(SESSION_ID)
+            .when()
+            .get(path)
+            .then()
+            .statusCode(200)
+            .header("Content-Length", "10")
+            .header("Accept-Ranges", "bytes")
+            .body(is("0123456789"))
+            .extract()
+            .header("ETag");
+
+    // unchanged
+    given()
+        .sessionId(SESSION_ID)
+        .header("If-None-Match", etag)
+        .when()
+        .get(path)
+        .then()
+        .statusCode(304);
+
+    // ranges
+    given()
+        .sessionId(SESSION_ID)
+        .header("Range", "bytes=2-4")
+        .when()
+        .get(path)
+        .then()
+        .statusCode(206)
+        .header("Content-Range", "bytes 2-4/10")
+        .body(is("234"));
+    given()
+        .sessionId(SESSION_ID)
+        .header("Range", "bytes=-3")
+        .when()
+        .get(path)
+        .then()
+        .statusCode(206)
+        .body(is("789"));
+    given()
+        .sessionId(SESSION_ID)
+        .header("Range", "bytes=20-")
+        .when()
+        .get(path)
+        .then()
+        .statusCode(416)
+        .header("Content-Range", "bytes */10");
+
+    db.dropSchema("fileApi");
+  }
+
   @Test
   public void testGraphqlApi() {
     db.setUserPassword("admin", "admin");
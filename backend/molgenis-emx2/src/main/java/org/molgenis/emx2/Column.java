@@ -8,8 +8,10 @@ import static org.molgenis.emx2.utils.TypeUtils.getArrayType;
 import static org.molgenis.emx2.utils.TypeUtils.toJooqType;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 import org.javers.core.metamodel.annotation.DiffIgnore;
 import org.jooq.DataType;
@@ -128,6 +130,32 @@ public class Column {
     visible = column.visible;
   }
 
+  /** true if other has the same definition, i.e. all properties except table are equal */
+  boolean isSame(Column other) {
+    return Objects.equals(columnName, other.columnName)
+        && Objects.equals(oldName, other.oldName)
+        && drop == other.drop
+        && columnType == other.columnType
+        && Objects.equals(position, other.position)
+        && required == other.required
+        && key == other.key
+        && Objects.equals(readonly, other.readonly)
+        && Objects.equals(description, other.description)
+        && Objects.equals(defaultValue, other.defaultValue)
+        && indexed == other.indexed
+        && Objects.equals(refTable, other.refTable)
+        && Objects.equals(refLink, other.refLink)
+        && Objects.equals(refSchema, other.refSchema)
+        && Objects.equals(refBack, other.refBack)
+        && Objects.equals(validation, other.validation)
+        && Objects.equals(refLabel, other.refLabel)
+        && Objects.equals(computed, other.computed)
+        && cascadeDelete == other.cascadeDelete
+        && Arrays.equals(semantics, other.semantics)
+        && Objects.equals(columnFormat, other.columnFormat)
+        && Objects.equals(visible, other.visible);
+  }
+
   public TableMetadata getTable() {
     return table;
   }
@@ -26,6 +26,8 @@ public class Constants {
   public static final String INHERITED = "inherited";
 
   public static final String MG_TABLECLASS = "mg_tableclass";
+  // cursor of a row, for keyset pagination using 'after' and 'before'
+  public static final String MG_CURSOR = "mg_cursor";
   public static final String MG_DRAFT = "mg_draft";
   public static final String MG_INSERTEDBY = "mg_insertedBy";
   public static final String MG_INSERTEDON = "mg_insertedOn";
@@ -42,6 +44,9 @@ public class Constants {
   public static final String MOLGENIS_POSTGRES_PASS = "MOLGENIS_POSTGRES_PASS";
   public static final String MOLGENIS_HTTP_PORT = "MOLGENIS_HTTP_PORT";
   public static final String MOLGENIS_ADMIN_PW = "MOLGENIS_ADMIN_PW";
+  public static final String MOLGENIS_JOBS_WORKERS = "MOLGENIS_JOBS_WORKERS";
+  public static final String MOLGENIS_JOBS_PER_SCHEMA = "MOLGENIS_JOBS_PER_SCHEMA";
+  public static final String MOLGENIS_JOBS_MAX_WAITING = "MOLGENIS_JOBS_MAX_WAITING";
   protected static final Operator[] EXISTS_OPERATIONS = {};
   protected static final Operator[] ORDINAL_OPERATORS = {EQUALS, NOT_EQUALS, BETWEEN, NOT_BETWEEN};
   protected static final Operator[] STRING_OPERATORS = {
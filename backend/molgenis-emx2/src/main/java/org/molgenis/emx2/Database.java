@@ -47,6 +47,9 @@ public interface Database {
 
   void clearCache();
 
+  /** reloads only the cached schemas of which the metadata changed, e.g. by another session */
+  void checkSchemaVersions();
+
   Integer getDatabaseVersion();
 
   int countUsers();
@@ -2,6 +2,10 @@ package org.molgenis.emx2;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface Query {
 
@@ -15,6 +19,16 @@ public interface Query {
 
   Query offset(int offset);
 
+  /**
+   * only rows after the row with this cursor, in the order of orderBy. The cursor of a row is
+   * selected as column 'mg_cursor'. Unlike offset, the rows before the cursor are not read, so deep
+   * pages are as fast as the first page, and rows inserted meanwhile don't shift the pages.
+   */
+  Query after(String cursor);
+
+  /** only rows before the row with this cursor, see after; with limit the last rows before it */
+  Query before(String cursor);
+
   Query orderBy(Map<String, Order> values);
 
   Query orderBy(String column);
@@ -23,6 +37,20 @@ public interface Query {
 
   List<Row> retrieveRows();
 
+  /**
+   * retrieves rows using a database cursor, so only a small batch of rows is in memory at a time.
+   * Must be closed after use.
+   */
+  RowIterator retrieveRowsIterator();
+
+  /** as retrieveRowsIterator, stream must be closed after use */
+  default Stream<Row> stream() {
+    RowIterator iterator = retrieveRowsIterator();
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+        .onClose(iterator::close);
+  }
+
   String retrieveJSON();
 
   Filter getFilter();
@@ -39,6 +39,11 @@ public class QueryBean implements Query {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public RowIterator retrieveRowsIterator() {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public String retrieveJSON() {
     throw new UnsupportedOperationException();
@@ -67,6 +72,18 @@ public class QueryBean implements Query {
     return this;
   }
 
+  @Override
+  public Query after(String cursor) {
+    this.select.setAfter(cursor);
+    return this;
+  }
+
+  @Override
+  public Query before(String cursor) {
+    this.select.setBefore(cursor);
+    return this;
+  }
+
   @Override
   public Filter getFilter() {
     return filter;
@@ -7,18 +7,34 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 import org.jooq.JSONB;
+import org.molgenis.emx2.utils.JavaScriptUtils;
 import org.molgenis.emx2.utils.TypeUtils;
 
 public class Row {
-  private Map<String, Object> values = new LinkedHashMap<>();
+  private Map<String, Object> values;
+  // computed values are set and validations passed, see prepare
+  private boolean prepared;
 
   public Row(Row row) {
-    for (Map.Entry<String, Object> e : row.getValueMap().entrySet()) {
-      values.put(e.getKey(), e.getValue());
+    prepared = row.prepared;
+    if (row.values instanceof RowValues) {
+      values = new RowValues((RowValues) row.values);
+    } else {
+      values = new LinkedHashMap<>(row.values);
     }
   }
 
+  /**
+   * creates a row that stores values in an array in the order of the layout, instead of in its own
+   * map; intended for readers that create many rows with the same columns. The values array is used
+   * as is, not copied.
+   */
+  public Row(RowLayout layout, Object... values) {
+    this.values = new RowValues(layout, values);
+  }
+
   public Row(Object... nameValuePairs) {
+    this();
     if (nameValuePairs == null) return;
     if (nameValuePairs.length % 2 == 1) {
       throw new MolgenisException(
@@ -43,7 +59,9 @@ public class Row {
     return new Row(nameValuePairs);
   }
 
-  public Row() {}
+  public Row() {
+    values = new LinkedHashMap<>();
+  }
 
   public Row(Map<String, ?> values) {
     this();
@@ -262,6 +280,14 @@ public class Row {
     return this.values.keySet();
   }
 
+  /**
+   * returns the shared layout of the columns of this row, or null if the row has its own map. Rows
+   * with the same layout instance have the same columns in the same order.
+   */
+  public RowLayout getLayout() {
+    return values instanceof RowValues ? ((RowValues) values).getLayout() : null;
+  }
+
   public Object get(String name, ColumnType columnType) {
     return get(name, columnType.getType());
   }
@@ -348,4 +374,20 @@ public class Row {
     this.values.put(MG_DRAFT, isDraft);
     return this;
   }
+
+  public boolean isPrepared() {
+    return prepared;
+  }
+
+  /**
+   * sets the computed values of the columns on the rows and checks their validations, then marks
+   * the rows as prepared so save doesn't run the scripts again. Rows must already have typed
+   * values, and must not be changed after.
+   */
+  public static void prepare(List<Row> rows, Collection<Column> columns) {
+    JavaScriptUtils.computeAndValidate(rows, columns);
+    for (Row row : rows) {
+      row.prepared = true;
+    }
+  }
 }
@@ -0,0 +1,13 @@
+package org.molgenis.emx2;
+
+import java.util.Iterator;
+
+/**
+ * Iterator over rows that holds on to database resources, such as a cursor and its connection,
+ * until exhausted or closed. Use try-with-resources.
+ */
+public interface RowIterator extends Iterator<Row>, AutoCloseable {
+
+  @Override
+  void close();
+}
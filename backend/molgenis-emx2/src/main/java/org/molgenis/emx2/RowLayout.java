@@ -0,0 +1,114 @@
+package org.molgenis.emx2;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ordered column names shared by all rows that have these columns, so each row only stores an array
+ * of values. Layouts are interned: adding the same names in the same order always gives the same
+ * instance, so checking whether two rows have the same columns is an identity check. Each layout
+ * caches the layouts that have one more column, like a tree starting at EMPTY. The cache refers to
+ * these weakly, so layouts of e.g. headers of imported files are released when no row uses them
+ * anymore. Each layout refers to the layout it was extended from, so the path from EMPTY to a
+ * layout in use is kept and the layout stays unique.
+ */
+public final class RowLayout {
+  public static final RowLayout EMPTY = new RowLayout(null, new String[0]);
+  private static final int MIN_EXPUNGE_SIZE = 16;
+
+  // keeps the path from EMPTY alive, see class comment
+  private final RowLayout parent;
+  private final String[] names;
+  private final Map<String, Integer> index;
+  private final List<String> nameList;
+  private final Map<String, WeakReference<RowLayout>> transitions = new ConcurrentHashMap<>();
+  // size of transitions at which released layouts are removed
+  private volatile int expungeSize = MIN_EXPUNGE_SIZE;
+
+  private RowLayout(RowLayout parent, String[] names) {
+    this.parent = parent;
+    this.names = names;
+    this.nameList = Collections.unmodifiableList(Arrays.asList(names));
+    this.index = new HashMap<>(names.length * 2);
+    for (int i = 0; i < names.length; i++) {
+      index.put(names[i], i);
+    }
+  }
+
+  /** returns the interned layout for these names, duplicate names are included once */
+  public static RowLayout of(Iterable<String> names) {
+    RowLayout layout = EMPTY;
+    for (String name : names) {
+      layout = layout.with(name);
+    }
+    return layout;
+  }
+
+  public static RowLayout of(String... names) {
+    return of(Arrays.asList(names));
+  }
+
+  /** returns layout with name added at the end, or this if it already has name */
+  public RowLayout with(String name) {
+    if (index.containsKey(name)) {
+      return this;
+    }
+    WeakReference<RowLayout> reference = transitions.get(name);
+    RowLayout existing = reference != null ? reference.get() : null;
+    if (existing != null) {
+      return existing;
+    }
+    // strong reference, so it cannot be released before it is returned
+    RowLayout[] result = new RowLayout[1];
+    transitions.compute(
+        name,
+        (n, current) -> {
+          result[0] = current != null ? current.get() : null;
+          if (result[0] != null) {
+            return current;
+          }
+          String[] extended = Arrays.copyOf(names, names.length + 1);
+          extended[names.length] = n;
+          result[0] = new RowLayout(this, extended);
+          return new WeakReference<>(result[0]);
+        });
+    if (transitions.size() >= expungeSize) {
+      transitions.values().removeIf(r -> r.get() == null);
+      expungeSize = Math.max(MIN_EXPUNGE_SIZE, 2 * transitions.size());
+    }
+    return result[0];
+  }
+
+  public RowLayout without(String name) {
+    if (!index.containsKey(name)) {
+      return this;
+    }
+    List<String> result = new ArrayList<>(nameList);
+    result.remove(name);
+    return of(result);
+  }
+
+  /** returns -1 if not in the layout */
+  public int indexOf(String name) {
+    Integer result = index.get(name);
+    return result == null ? -1 : result;
+  }
+
+  public String getName(int index) {
+    return names[index];
+  }
+
+  public List<String> getNames() {
+    return nameList;
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  @Override
+  public String toString() {
+    return "RowLayout" + nameList;
+  }
+}
@@ -0,0 +1,182 @@
+package org.molgenis.emx2;
+
+import java.util.*;
+
+/**
+ * Values of a Row stored as an array in the order of a shared RowLayout. Behaves like a
+ * LinkedHashMap: keys are in insertion order, and adding or removing a key moves the row to another
+ * layout.
+ */
+class RowValues extends AbstractMap<String, Object> {
+  private RowLayout layout;
+  private Object[] values;
+  private Set<String> keySet;
+  private Set<Map.Entry<String, Object>> entrySet;
+
+  RowValues(RowLayout layout, Object[] values) {
+    this.layout = layout;
+    this.values = values.length < layout.size() ? Arrays.copyOf(values, layout.size()) : values;
+  }
+
+  RowValues(RowValues other) {
+    this(other.layout, Arrays.copyOf(other.values, other.layout.size()));
+  }
+
+  RowLayout getLayout() {
+    return layout;
+  }
+
+  @Override
+  public int size() {
+    return layout.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof String && layout.indexOf((String) key) >= 0;
+  }
+
+  @Override
+  public Object get(Object key) {
+    int i = key instanceof String ? layout.indexOf((String) key) : -1;
+    return i >= 0 ? values[i] : null;
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    int i = layout.indexOf(key);
+    if (i < 0) {
+      layout = layout.with(key);
+      i = layout.size() - 1;
+      if (i >= values.length) {
+        values = Arrays.copyOf(values, Math.max(8, values.length * 2));
+      }
+    }
+    Object old = values[i];
+    values[i] = value;
+    return old;
+  }
+
+  @Override
+  public Object remove(Object key) {
+    int i = key instanceof String ? layout.indexOf((String) key) : -1;
+    if (i < 0) {
+      return null;
+    }
+    Object old = values[i];
+    System.arraycopy(values, i + 1, values, i, layout.size() - i - 1);
+    values[layout.size() - 1] = null;
+    layout = layout.without((String) key);
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(values, null);
+    layout = RowLayout.EMPTY;
+  }
+
+  @Override
+  public Set<String> keySet() {
+    if (keySet == null) {
+      keySet =
+          new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+              return layout.getNames().iterator();
+            }
+
+            @Override
+            public int size() {
+              return layout.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+              return containsKey(o);
+            }
+          };
+    }
+    return keySet;
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet =
+          new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+              return new Iterator<>() {
+                // layout can't change while iterating, except through setValue
+                private final RowLayout iterated = layout;
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                  return next < iterated.size();
+                }
+
+                @Override
+                public Map.Entry<String, Object> next() {
+                  if (!hasNext()) {
+                    throw new NoSuchElementException();
+                  }
+                  return new Entry(next++);
+                }
+              };
+            }
+
+            @Override
+            public int size() {
+              return layout.size();
+            }
+          };
+    }
+    return entrySet;
+  }
+
+  private class Entry implements Map.Entry<String, Object> {
+    private final int index;
+
+    Entry(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public String getKey() {
+      return layout.getName(index);
+    }
+
+    @Override
+    public Object getValue() {
+      return values[index];
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      Object old = values[index];
+      values[index] = value;
+      return old;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+      return Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
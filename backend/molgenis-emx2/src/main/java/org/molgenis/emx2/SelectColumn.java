@@ -9,6 +9,8 @@ public class SelectColumn {
   private Map<String, SelectColumn> children = new LinkedHashMap<>();
   private int limit = 0;
   private int offset = 0;
+  private String after;
+  private String before;
   private Map<String, Order> orderBy = new LinkedHashMap<>();
 
   public SelectColumn(String column) {
@@ -78,6 +80,24 @@ public class SelectColumn {
     return offset;
   }
 
+  /** only rows after the row with this cursor, see Query.after */
+  public void setAfter(String cursor) {
+    this.after = cursor;
+  }
+
+  public String getAfter() {
+    return after;
+  }
+
+  /** only rows before the row with this cursor, see Query.before */
+  public void setBefore(String cursor) {
+    this.before = cursor;
+  }
+
+  public String getBefore() {
+    return before;
+  }
+
   public void setOrderBy(Map<String, Order> values) {
     this.orderBy.putAll(values);
   }
@@ -1,5 +1,6 @@
 package org.molgenis.emx2;
 
+import java.io.OutputStream;
 import java.util.List;
 
 public interface Table {
@@ -14,6 +15,9 @@ public interface Table {
 
   int insert(Iterable<Row> rows);
 
+  /** bulk variant of insert, streams rows using postgresql COPY; intended for large imports */
+  int bulkInsert(Iterable<Row> rows);
+
   int update(Row... row);
 
   int update(Iterable<Row> rows); // wish list: update based on secondary key.
@@ -22,6 +26,9 @@ public interface Table {
 
   int save(Iterable<Row> rows);
 
+  /** bulk variant of save, copies rows into a staging table that is then merged */
+  int bulkSave(Iterable<Row> rows);
+
   int delete(Row... row);
 
   int delete(Iterable<Row> rows);
@@ -42,5 +49,13 @@ public interface Table {
 
   List<Row> retrieveRows();
 
+  /**
+   * writes 'length' bytes of the contents of file 'fileId' in column 'columnName', starting at
+   * 'offset', to output. Contents are read in chunks so files don't need to fit in memory. Returns
+   * the number of bytes written.
+   */
+  long writeFileContents(
+      String columnName, String fileId, long offset, long length, OutputStream output);
+
   Table getInheritedTable();
 }
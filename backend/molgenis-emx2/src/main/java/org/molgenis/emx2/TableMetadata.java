@@ -5,6 +5,7 @@ import static org.molgenis.emx2.Column.column;
 import static org.molgenis.emx2.ColumnType.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import org.jooq.Field;
 import org.jooq.Record;
@@ -30,6 +31,15 @@ public class TableMetadata implements Comparable {
   protected String tableName;
   // old name, useful for alter table
   private String oldName;
+  // derived column views, computed lazily, see getColumnViews
+  private transient volatile ColumnViews columnViews = null;
+  // versions are taken from one sequence, so a change in any table a view depends on results in
+  // a higher version, also when that table was replaced by a new copy
+  private static final AtomicLong metadataVersions = new AtomicLong();
+  // set on each change of the columns of this table
+  private transient volatile long version = newTableVersion();
+  // version of the last table created, a table a view depends on may have been replaced by it
+  private static final AtomicLong tablesCreated = new AtomicLong();
 
   public String[] getSemantics() {
     return semantics;
@@ -78,22 +88,48 @@ public class TableMetadata implements Comparable {
   public void sync(TableMetadata metadata) {
     // skip if same object!
     if (this != metadata) {
-      clearCache();
+      // after each transaction tables are synced with their copy, mostly without changes; then we
+      // keep our columns, so these stay the same objects as in the derived views
+      boolean changed = !sameStructure(metadata);
+      if (changed) {
+        clear();
+        for (Column c : metadata.columns.values()) {
+          this.columns.put(c.getName(), new Column(this, c));
+        }
+        this.inherit = metadata.getInherit();
+        this.importSchema = metadata.getImportSchema();
+      } else {
+        settings = new LinkedHashMap<>();
+      }
       this.tableName = metadata.getTableName();
       this.description = metadata.getDescription();
       this.oldName = metadata.getOldName();
       for (Setting setting : metadata.getSettings()) {
         this.settings.put(setting.getKey(), setting);
       }
-      for (Column c : metadata.columns.values()) {
-        this.columns.put(c.getName(), new Column(this, c));
-      }
-      this.inherit = metadata.getInherit();
-      this.importSchema = metadata.getImportSchema();
       this.semantics = metadata.getSemantics();
+      if (changed) {
+        columnsChanged();
+      }
     }
   }
 
+  private boolean sameStructure(TableMetadata other) {
+    if (!Objects.equals(tableName, other.tableName)
+        || !Objects.equals(inherit, other.inherit)
+        || !Objects.equals(importSchema, other.importSchema)
+        || columns.size() != other.columns.size()) {
+      return false;
+    }
+    Iterator<Column> otherColumns = other.columns.values().iterator();
+    for (Column c : columns.values()) {
+      if (!c.isSame(otherColumns.next())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public String getTableName() {
     return tableName;
   }
@@ -106,7 +142,16 @@ public class TableMetadata implements Comparable {
     this.schema = schemaMetadata;
   }
 
+  /** returns all columns, including inherited, as unmodifiable list */
   public List<Column> getColumns() {
+    ColumnViews views = getColumnViews();
+    if (views.columns == null) {
+      views.columns = List.copyOf(computeColumns());
+    }
+    return views.columns;
+  }
+
+  private List<Column> computeColumns() {
     Map<String, Column> result = new LinkedHashMap<>();
     Map<String, Column> meta = new LinkedHashMap<>();
     if (getInheritedTable() != null) {
@@ -158,7 +203,11 @@ public class TableMetadata implements Comparable {
   }
 
   public List<Column> getMutationColumns() {
-    return getExpandedColumns(getStoredColumns());
+    ColumnViews views = getColumnViews();
+    if (views.mutationColumns == null) {
+      views.mutationColumns = List.copyOf(getExpandedColumns(getStoredColumns()));
+    }
+    return views.mutationColumns;
   }
 
   /** returns columns including the nested composite key columns, needed to create the table */
@@ -204,12 +253,25 @@ public class TableMetadata implements Comparable {
   }
 
   public List<Column> getStoredColumns() {
-    return getLocalColumns().stream()
-        .filter(c -> !CONSTANT.equals(c.getColumnType()))
-        .collect(Collectors.toList());
+    ColumnViews views = getColumnViews();
+    if (views.storedColumns == null) {
+      views.storedColumns =
+          getLocalColumns().stream()
+              .filter(c -> !CONSTANT.equals(c.getColumnType()))
+              .collect(Collectors.toUnmodifiableList());
+    }
+    return views.storedColumns;
   }
 
   public List<Column> getLocalColumns() {
+    ColumnViews views = getColumnViews();
+    if (views.localColumns == null) {
+      views.localColumns = List.copyOf(computeLocalColumns());
+    }
+    return views.localColumns;
+  }
+
+  private List<Column> computeLocalColumns() {
     Map<String, Column> result = new LinkedHashMap<>();
     // get primary key from parent
     if (getInheritedTable() != null) {
@@ -274,6 +336,7 @@ public class TableMetadata implements Comparable {
       columns.put(c.getName(), new Column(this, c));
       c.setTable(this);
     }
+    columnsChanged();
     return this;
   }
 
@@ -291,6 +354,7 @@ public class TableMetadata implements Comparable {
     // add the new
     columns.put(column.getName(), new Column(this, column));
     column.setTable(this);
+    columnsChanged();
     return this;
   }
 
@@ -300,6 +364,7 @@ public class TableMetadata implements Comparable {
     if (columns.get(name) == null)
       throw new MolgenisException("Remove column failed: Column '" + name + "' unknown");
     columns.remove(name);
+    columnsChanged();
   }
 
   public String getInherit() {
@@ -308,6 +373,7 @@ public class TableMetadata implements Comparable {
 
   public TableMetadata setInherit(String otherTable) {
     this.inherit = otherTable;
+    columnsChanged();
     return this;
   }
 
@@ -370,6 +436,11 @@ public class TableMetadata implements Comparable {
   }
 
   public void clearCache() {
+    clear();
+    columnsChanged();
+  }
+
+  private void clear() {
     columns = new LinkedHashMap<>();
     settings = new LinkedHashMap<>();
     inherit = null;
@@ -382,6 +453,7 @@ public class TableMetadata implements Comparable {
 
   public TableMetadata removeInherit() {
     this.inherit = null;
+    columnsChanged();
     return this;
   }
 
@@ -437,6 +509,7 @@ public class TableMetadata implements Comparable {
         c.removeKey();
       }
     }
+    columnsChanged();
   }
 
   public Column getLocalColumn(String name) {
@@ -448,7 +521,11 @@ public class TableMetadata implements Comparable {
   }
 
   public List<Field> getPrimaryKeyFields() {
-    return getKeyFields(1);
+    ColumnViews views = getColumnViews();
+    if (views.primaryKeyFields == null) {
+      views.primaryKeyFields = List.copyOf(getKeyFields(1));
+    }
+    return views.primaryKeyFields;
   }
 
   public List<Setting> getSettings() {
@@ -473,6 +550,7 @@ public class TableMetadata implements Comparable {
 
   public TableMetadata setImportSchema(String importSchema) {
     this.importSchema = importSchema;
+    columnsChanged();
     return this;
   }
 
@@ -500,6 +578,7 @@ public class TableMetadata implements Comparable {
 
   public TableMetadata alterName(String name) {
     this.tableName = name;
+    columnsChanged();
     return this;
   }
 
@@ -514,4 +593,135 @@ public class TableMetadata implements Comparable {
   public Table getTable() {
     return getSchema().getDatabase().getSchema(this.getSchemaName()).getTable(getTableName());
   }
+
+  /**
+   * Must be called after columns, keys, names or inheritance of this table have been changed other
+   * than via the methods of this class. Drops the derived column views of this table and of tables
+   * inheriting or referring to it.
+   */
+  public void columnsChanged() {
+    version = metadataVersions.incrementAndGet();
+  }
+
+  /**
+   * increases on every change of the columns of this table, of the tables it inherits from, of the
+   * tables these refer to, or of the tables that define the keys of those
+   */
+  public long getMetadataVersion() {
+    return getColumnViews().version;
+  }
+
+  private ColumnViews getColumnViews() {
+    ColumnViews views = columnViews;
+    long created = tablesCreated.get();
+    if (views != null && views.tablesCreated == created) {
+      if (getVersion(views.dependencies) == views.version) {
+        return views;
+      }
+    }
+    // read versions before computing so concurrent changes result in recompute on next call
+    TableMetadata[] dependencies = getDependencies();
+    long currentVersion = getVersion(dependencies);
+    if (views != null
+        && views.version == currentVersion
+        && Arrays.equals(views.dependencies, dependencies)) {
+      views = new ColumnViews(views, created);
+    } else {
+      views = new ColumnViews(currentVersion, created, dependencies);
+    }
+    columnViews = views;
+    return views;
+  }
+
+  private static long newTableVersion() {
+    long result = metadataVersions.incrementAndGet();
+    tablesCreated.accumulateAndGet(result, Math::max);
+    return result;
+  }
+
+  private static long getVersion(TableMetadata[] tables) {
+    long result = 0;
+    for (TableMetadata t : tables) {
+      result = Math.max(result, t.version);
+    }
+    return result;
+  }
+
+  /**
+   * this table, the tables it inherits from, the tables their columns refer to, and recursively the
+   * tables the keys of those refer to, because these keys define the expanded reference columns
+   */
+  private TableMetadata[] getDependencies() {
+    Set<TableMetadata> result = Collections.newSetFromMap(new IdentityHashMap<>());
+    result.add(this);
+    addDependencies(this, false, result);
+    return result.toArray(new TableMetadata[0]);
+  }
+
+  private static void addDependencies(
+      TableMetadata table, boolean keysOnly, Set<TableMetadata> result) {
+    for (TableMetadata t = table; t != null; t = getInheritedTableIfExists(t)) {
+      result.add(t);
+      for (Column c : t.columns.values()) {
+        if (!keysOnly || c.getKey() == 1) {
+          TableMetadata ref = getRefTableIfExists(c);
+          if (ref != null && result.add(ref)) {
+            addDependencies(ref, true, result);
+          }
+        }
+      }
+    }
+  }
+
+  private static TableMetadata getInheritedTableIfExists(TableMetadata table) {
+    if (table.inherit == null) return null;
+    try {
+      return table.getInheritedTable();
+    } catch (MolgenisException e) {
+      // not (yet) available, views are recomputed when it is added
+      return null;
+    }
+  }
+
+  private static TableMetadata getRefTableIfExists(Column c) {
+    if (!c.isReference() || c.getRefTableName() == null) return null;
+    try {
+      return c.getRefTable();
+    } catch (MolgenisException e) {
+      // not (yet) available, views are recomputed when it is added
+      return null;
+    }
+  }
+
+  /**
+   * Memoized views derived from the columns. These are used per row in queries and mutations, so we
+   * don't want to copy columns on each call. Lists are immutable and valid for one metadataVersion.
+   */
+  private static class ColumnViews {
+    private final long version;
+    // dependencies are resolved again when tables were created since
+    private final long tablesCreated;
+    private final TableMetadata[] dependencies;
+    private List<Column> columns;
+    private List<Column> localColumns;
+    private List<Column> storedColumns;
+    private List<Column> mutationColumns;
+    private List<Field> primaryKeyFields;
+
+    private ColumnViews(long version, long tablesCreated, TableMetadata[] dependencies) {
+      this.version = version;
+      this.tablesCreated = tablesCreated;
+      this.dependencies = dependencies;
+    }
+
+    /** same views, with dependencies that were resolved again without changes */
+    private ColumnViews(ColumnViews views, long tablesCreated) {
+      this(views.version, tablesCreated, views.dependencies);
+      this.columns = views.columns;
+      this.localColumns = views.localColumns;
+      this.storedColumns = views.storedColumns;
+      this.mutationColumns = views.mutationColumns;
+      this.primaryKeyFields = views.primaryKeyFields;
+    }
+  }
 }
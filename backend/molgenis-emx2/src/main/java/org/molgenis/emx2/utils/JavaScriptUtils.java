@@ -1,62 +1,289 @@
 package org.molgenis.emx2.utils;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import javax.script.*;
+import static org.molgenis.emx2.ColumnType.FILE;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.molgenis.emx2.Column;
 import org.molgenis.emx2.MolgenisException;
 import org.molgenis.emx2.Row;
 
+/**
+ * Evaluates computed values and validations. Scripts are parsed once into a Source that is cached
+ * by the shared engine, and evaluated in a pool of contexts so concurrent requests don't share
+ * variables. A context is only used by one thread at a time. Scripts run in strict mode, so
+ * functions they declare stay within the script and assignments to undeclared variables fail;
+ * variables declared with 'var' are reset after each evaluation. Therefore nothing survives into
+ * later evaluations, also not of other schemas or users. Batches of values are evaluated in one
+ * context, batches larger than twice the number of cores are split over the cores.
+ */
 public class JavaScriptUtils {
-
-  private static ScriptEngine engine = new ScriptEngineManager().getEngineByName("graal.js");
-  private static Bindings valueBindings = engine.createBindings();
-  private static Map<String, CompiledScript> cache = new LinkedHashMap<>();
+  private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+  private static final Engine engine = Engine.create();
+  private static final BlockingQueue<ScriptContext> pool = new LinkedBlockingQueue<>(POOL_SIZE);
+  private static final Map<String, Source> sources = new ConcurrentHashMap<>();
 
   private JavaScriptUtils() {
     // hide constructor
   }
 
   public static String executeJavascriptOnValue(String script, Object value) {
+    return executeJavascriptOnValues(script, Collections.singletonList(value)).get(0);
+  }
+
+  /** returns result of script for each value, available in script as 'value' */
+  public static List<String> executeJavascriptOnValues(String script, List<?> values) {
     try {
-      valueBindings.put("value", value);
-      return execute(script, valueBindings);
-    } catch (ScriptException e) {
+      return execute(script, values, value -> Collections.singletonMap("value", value));
+    } catch (Exception e) {
       throw new MolgenisException("Validation system failed", e);
     }
   }
 
   public static String executeJavascriptOnMap(String script, Map<String, Object> map) {
     try {
-      // ScriptEngine engine = new NashornScriptEngineFactory().getScriptEngine("--language=es6");
-      Bindings bindings = engine.createBindings();
-      for (Map.Entry<String, Object> col : map.entrySet()) {
-        bindings.put(col.getKey(), col.getValue());
-      }
-      return engine.eval(script, bindings).toString();
+      return execute(script, Collections.singletonList(map), m -> m).get(0);
     } catch (Exception e) {
       throw new MolgenisException("Compute value failed on script [" + script + "]", e);
     }
   }
 
   public static String executeJavascriptOnRow(String script, Row row) {
+    return executeJavascriptOnRows(script, Collections.singletonList(row)).get(0);
+  }
+
+  /** returns result of script for each row, with the row values available as variables */
+  public static List<String> executeJavascriptOnRows(String script, List<Row> rows) {
     try {
-      // ScriptEngine engine = new NashornScriptEngineFactory().getScriptEngine("--language=es6");
-      Bindings bindings = engine.createBindings();
-      for (Map.Entry<String, Object> col : row.getValueMap().entrySet()) {
-        bindings.put(col.getKey().replace("-", "$"), col.getValue());
-      }
-      return engine.eval(script, bindings).toString();
+      return execute(script, rows, JavaScriptUtils::getBindings);
     } catch (Exception e) {
       throw new MolgenisException("Compute value failed on script [" + script + "]", e);
     }
   }
 
-  private static String execute(String script, Bindings bindings) throws ScriptException {
-    if (cache.get(script) == null) {
-      cache.put(script, ((Compilable) engine).compile(script));
+  /**
+   * returns the computed value of the column for each row, rows that have a value for the script
+   * keep that value
+   */
+  public static List<Object> computeValues(Column column, List<Row> rows) {
+    List<Row> toCompute = new ArrayList<>();
+    for (Row row : rows) {
+      if (!row.getValueMap().containsKey(column.getComputed())) {
+        toCompute.add(row);
+      }
+    }
+    Iterator<String> computed = executeJavascriptOnRows(column.getComputed(), toCompute).iterator();
+    List<Object> values = new ArrayList<>(rows.size());
+    for (Row row : rows) {
+      values.add(
+          row.getValueMap().containsKey(column.getComputed())
+              ? row.getValueMap().get(column.getComputed())
+              : computed.next());
+    }
+    return values;
+  }
+
+  /** returns the validation error of the column for each value, null if valid or value is null */
+  public static List<String> validateValues(Column column, List<Object> values) {
+    List<Object> toValidate = new ArrayList<>();
+    for (Object value : values) {
+      if (value != null) {
+        toValidate.add(value);
+      }
+    }
+    Iterator<String> validated =
+        executeJavascriptOnValues(column.getValidation(), toValidate).iterator();
+    List<String> errors = new ArrayList<>(values.size());
+    for (Object value : values) {
+      errors.add(value != null ? validated.next() : null);
+    }
+    return errors;
+  }
+
+  public static MolgenisException getValidationError(Column column, String error, Object value) {
+    return new MolgenisException(
+        "Validation error on column '"
+            + column.getName()
+            + "'"
+            + error
+            + ". Instead found value '"
+            + value
+            + "'");
+  }
+
+  /**
+   * sets the computed values of the columns on the rows and checks their validations. Rows must
+   * already have typed values. Use Row.prepare to also mark them, so save doesn't run the scripts
+   * again.
+   */
+  public static void computeAndValidate(List<Row> rows, Collection<Column> columns) {
+    Map<Column, List<Object>> computed = new LinkedHashMap<>();
+    Map<Column, List<Object>> validated = new LinkedHashMap<>();
+    Map<Column, List<String>> errors = new LinkedHashMap<>();
+    for (Column c : columns) {
+      if (c.getComputed() != null) {
+        computed.put(c, computeValues(c, rows));
+      }
+      if (c.getValidation() != null) {
+        List<Object> values = computed.get(c);
+        if (values == null) {
+          values = new ArrayList<>(rows.size());
+          for (Row row : rows) {
+            values.add(
+                FILE.equals(c.getColumnType())
+                    ? row.getBinary(c.getName())
+                    : row.get(c.getName(), c.getPrimitiveColumnType()));
+          }
+        }
+        validated.put(c, values);
+        errors.put(c, validateValues(c, values));
+      }
+    }
+    for (int i = 0; i < rows.size(); i++) {
+      Row row = rows.get(i);
+      for (Map.Entry<Column, List<String>> columnErrors : errors.entrySet()) {
+        String error = columnErrors.getValue().get(i);
+        if (error != null) {
+          Column c = columnErrors.getKey();
+          throw new MolgenisException(
+              "Parsing of row failed: " + row,
+              getValidationError(c, error, validated.get(c).get(i)));
+        }
+      }
+      for (Map.Entry<Column, List<Object>> values : computed.entrySet()) {
+        row.set(values.getKey().getName(), values.getValue().get(i));
+      }
+    }
+  }
+
+  private static Map<String, Object> getBindings(Row row) {
+    Map<String, Object> bindings = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> col : row.getValueMap().entrySet()) {
+      bindings.put(col.getKey().replace("-", "$"), col.getValue());
+    }
+    return bindings;
+  }
+
+  private static <T> List<String> execute(
+      String script, List<T> items, Function<T, Map<String, ?>> bindings) {
+    // 'undefined' so a script that only declares returns undefined instead of the directive
+    Source source =
+        sources.computeIfAbsent(
+            script,
+            s ->
+                Source.newBuilder("js", "'use strict'; undefined; {\n" + s + "\n}", "script")
+                    .buildLiteral());
+    String[] result = new String[items.size()];
+    if (items.size() <= 2 * POOL_SIZE) {
+      execute(source, items, bindings, result, 0, items.size());
+    } else {
+      int chunkSize = (items.size() + POOL_SIZE - 1) / POOL_SIZE;
+      IntStream.range(0, POOL_SIZE)
+          .parallel()
+          .forEach(
+              chunk ->
+                  execute(
+                      source,
+                      items,
+                      bindings,
+                      result,
+                      chunk * chunkSize,
+                      Math.min(items.size(), (chunk + 1) * chunkSize)));
+    }
+    return Arrays.asList(result);
+  }
+
+  private static <T> void execute(
+      Source source,
+      List<T> items,
+      Function<T, Map<String, ?>> bindings,
+      String[] result,
+      int from,
+      int to) {
+    if (from >= to) return;
+    ScriptContext context = pool.poll();
+    if (context == null) {
+      context = new ScriptContext();
+    }
+    try {
+      for (int i = from; i < to; i++) {
+        result[i] = context.evaluate(source, bindings.apply(items.get(i)));
+      }
+    } finally {
+      context.clearVariables();
+      // keep at most POOL_SIZE contexts
+      if (!pool.offer(context)) {
+        context.context.close();
+      }
+    }
+  }
+
+  private static class ScriptContext {
+    final Context context = Context.newBuilder("js").engine(engine).build();
+    final Value global = context.getBindings("js");
+    final Value undefined = context.eval("js", "undefined");
+    // names each script declares with 'var', these become properties of the global scope
+    final Map<Source, Set<String>> declared = new HashMap<>();
+    // variables of the last item; kept while the next item has the same names, so the global scope
+    // keeps its shape and the evaluation stays optimized
+    Set<String> variableNames = new HashSet<>();
+
+    String evaluate(Source source, Map<String, ?> variables) {
+      Set<String> names = declared.get(source);
+      Set<String> before = null;
+      if (names == null) {
+        clearVariables();
+        before = new HashSet<>(global.getMemberKeys());
+      }
+      try {
+        // so this item doesn't see variables of the previous item
+        if (!variableNames.equals(variables.keySet())) {
+          for (String name : variableNames) {
+            if (!variables.containsKey(name)) {
+              remove(name);
+            }
+          }
+          variableNames = new HashSet<>(variables.keySet());
+        }
+        for (Map.Entry<String, ?> variable : variables.entrySet()) {
+          global.putMember(variable.getKey(), variable.getValue());
+        }
+        Value value = context.eval(source);
+        return value.isNull() ? null : value.toString();
+      } finally {
+        // declarations are the same on each evaluation, so only need to be found once
+        if (names == null) {
+          names = new HashSet<>(global.getMemberKeys());
+          names.removeAll(before);
+          names.removeAll(variableNames);
+          declared.put(source, names);
+        }
+        for (String name : names) {
+          global.putMember(name, undefined);
+        }
+      }
+    }
+
+    void clearVariables() {
+      for (String name : variableNames) {
+        remove(name);
+      }
+      variableNames = new HashSet<>();
+    }
+
+    private void remove(String name) {
+      // a script may have declared a variable with the same name, that cannot be removed
+      if (!global.removeMember(name)) {
+        global.putMember(name, undefined);
+      }
     }
-    Object result = cache.get(script).eval(bindings);
-    if (result != null) return result.toString();
-    else return null;
   }
 }
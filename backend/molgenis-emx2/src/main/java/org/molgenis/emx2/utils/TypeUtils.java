@@ -77,6 +77,19 @@ public class TypeUtils {
     return (Integer) v;
   }
 
+  public static Long toLong(Object v) {
+    if (v == null) return null;
+    if (v instanceof String) {
+      if (((String) v).trim().equals("")) return null;
+      return Long.parseLong(((String) v).trim());
+    }
+    if (v instanceof Integer) {
+      return ((Integer) v).longValue();
+    }
+    if (v instanceof Double) return Math.round((Double) v);
+    return (Long) v;
+  }
+
   public static Integer[] toIntArray(Object v) {
     return (Integer[]) processArray(v, TypeUtils::toInt, Integer[]::new, Integer.class);
   }
@@ -126,6 +139,18 @@ public class TypeUtils {
     return (Double) v;
   }
 
+  /** exact value, so decimals that don't fit in a double keep their precision */
+  public static BigDecimal toBigDecimal(Object v) {
+    if (v == null) return null;
+    if (v instanceof BigDecimal) return (BigDecimal) v;
+    if (v instanceof String) {
+      if (((String) v).trim().equals("")) return null;
+      return new BigDecimal(((String) v).trim());
+    }
+    if (v instanceof Double) return BigDecimal.valueOf((Double) v);
+    return new BigDecimal(v.toString());
+  }
+
   public static Double[] toDecimalArray(Object v) {
     return (Double[]) processArray(v, TypeUtils::toDecimal, Double[]::new, Double.class);
   }
@@ -0,0 +1,88 @@
+package org.molgenis.emx2;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.utils.JavaScriptUtils.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class TestJavaScriptUtils {
+
+  @Test
+  public void testRows() {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      rows.add(new Row("id", i, "first-name", "a" + i));
+    }
+    // large batches are split over the cores, results stay in order
+    List<String> result = executeJavascriptOnRows("let x = id * 2; x + first$name", rows);
+    assertEquals(5000, result.size());
+    for (int i = 0; i < 5000; i++) {
+      assertEquals(i * 2 + "a" + i, result.get(i));
+    }
+
+    // values of earlier rows are not visible
+    assertNull(executeJavascriptOnRow("typeof id === 'undefined' ? undefined : id", new Row()));
+    assertEquals("1", executeJavascriptOnRow("1;", new Row()));
+  }
+
+  @Test
+  public void testNoStateBetweenEvaluations() {
+    // declarations and assignments of one evaluation are not visible in the next
+    String script = "var count = (typeof count === 'undefined' ? 0 : count) + 1; count";
+    assertEquals(List.of("1", "1", "1"), executeJavascriptOnValues(script, List.of(1, 2, 3)));
+    assertEquals("5", executeJavascriptOnValue("function hello() { return value }; hello()", 5));
+    assertEquals("undefined", executeJavascriptOnValue("typeof hello", 1));
+    try {
+      executeJavascriptOnValue("total = value; total", 5);
+      fail("assignment to undeclared variable should fail");
+    } catch (MolgenisException e) {
+      // correct
+    }
+    assertEquals("undefined", executeJavascriptOnValue("typeof total", 1));
+    // only declarations give undefined
+    assertNull(executeJavascriptOnValue("var x = value;", 1));
+    // globals are still available
+    assertEquals("2", executeJavascriptOnValue("Math.max(value, 2)", 1));
+  }
+
+  @Test
+  public void testValues() {
+    String script = "if(value<1)'Must be larger than 1'";
+    assertEquals(
+        List.of("Must be larger than 1", "Must be larger than 1"),
+        executeJavascriptOnValues(script, List.of(0, -1)));
+    assertNull(executeJavascriptOnValue(script, 2));
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        int value = i;
+        results.add(executor.submit(() -> executeJavascriptOnValue("value + 1", value)));
+      }
+      for (int i = 0; i < 200; i++) {
+        assertEquals(String.valueOf(i + 1), results.get(i).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testError() {
+    try {
+      executeJavascriptOnRow("this is not javascript", new Row());
+      fail("should fail on syntax error");
+    } catch (MolgenisException e) {
+      assertTrue(e.getMessage().contains("Compute value failed"));
+    }
+  }
+}
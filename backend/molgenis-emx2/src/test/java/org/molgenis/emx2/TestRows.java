@@ -1,7 +1,11 @@
 package org.molgenis.emx2;
 
-import static org.junit.Assert.fail;
+import static org.junit.Assert.*;
 
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.junit.Test;
 
 public class TestRows {
@@ -31,4 +35,57 @@ public class TestRows {
 
     new Row("col1", 1, "col2", 2);
   }
+
+  @Test
+  public void testLayoutsAreReleased() throws InterruptedException {
+    RowLayout used = RowLayout.of("used", "columns");
+    WeakReference<RowLayout> unused = new WeakReference<>(RowLayout.of("unused", "columns"));
+    for (int i = 0; i < 100 && unused.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(unused.get());
+    // layouts in use stay interned, including the layouts they were extended from
+    assertSame(used, RowLayout.of("used").with("columns"));
+  }
+
+  @Test
+  public void testLayoutRows() {
+    // layouts are interned
+    RowLayout layout = RowLayout.of("id", "name");
+    assertSame(layout, RowLayout.EMPTY.with("id").with("name"));
+    assertSame(layout, RowLayout.of("id", "name", "id"));
+    assertNotSame(layout, RowLayout.of("name", "id"));
+
+    Row row1 = new Row(layout, 1, "a");
+    Row row2 = new Row(layout, "2", null);
+    assertSame(row1.getLayout(), row2.getLayout());
+    assertEquals(List.of("id", "name"), List.copyOf(row1.getColumnNames()));
+    assertEquals(Integer.valueOf(2), row2.getInteger("id"));
+    assertNull(row2.getString("name"));
+    assertTrue(row2.containsName("name"));
+
+    Map<String, Object> expected = new LinkedHashMap<>();
+    expected.put("id", 1);
+    expected.put("name", "a");
+    assertEquals(expected, row1.getValueMap());
+
+    // new names move the row to another layout
+    row1.set("age", 3);
+    assertSame(RowLayout.of("id", "name", "age"), row1.getLayout());
+    assertEquals(Integer.valueOf(3), row1.getInteger("age"));
+    row1.clear("name");
+    assertSame(RowLayout.of("id", "age"), row1.getLayout());
+    assertEquals(Integer.valueOf(3), row1.getInteger("age"));
+
+    // copies are independent
+    Row copy = new Row(row2);
+    copy.set("id", 5);
+    assertEquals(Integer.valueOf(2), row2.getInteger("id"));
+    assertSame(row2.getLayout(), new Row(row2).getLayout());
+
+    // rows made with names are still map based
+    assertNull(new Row("id", 1).getLayout());
+    assertEquals(new Row("id", "2", "name", null).getValueMap(), row2.getValueMap());
+  }
 }
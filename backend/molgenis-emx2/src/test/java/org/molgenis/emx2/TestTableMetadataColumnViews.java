@@ -0,0 +1,109 @@
+package org.molgenis.emx2;
+
+import static org.junit.Assert.*;
+import static org.molgenis.emx2.Column.column;
+import static org.molgenis.emx2.ColumnType.CONSTANT;
+import static org.molgenis.emx2.ColumnType.FILE;
+import static org.molgenis.emx2.ColumnType.INT;
+import static org.molgenis.emx2.ColumnType.REF;
+import static org.molgenis.emx2.TableMetadata.table;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class TestTableMetadataColumnViews {
+
+  @Test
+  public void testViewsAreMemoizedAndInvalidated() {
+    SchemaMetadata schema = new SchemaMetadata("TestTableMetadataColumnViews");
+    TableMetadata person = schema.create(table("Person", column("name").setPkey(), column("age")));
+    TableMetadata employee =
+        schema.create(table("Employee", column("salary")).setInherit("Person"));
+
+    // same instance until changed
+    List<Column> columns = employee.getColumns();
+    assertSame(columns, employee.getColumns());
+    assertSame(employee.getStoredColumns(), employee.getStoredColumns());
+    assertSame(employee.getMutationColumns(), employee.getMutationColumns());
+    assertSame(employee.getPrimaryKeyFields(), employee.getPrimaryKeyFields());
+    assertEquals(List.of("name", "age", "salary"), names(columns));
+
+    // views are immutable
+    try {
+      columns.add(column("other"));
+      fail("views should be immutable");
+    } catch (UnsupportedOperationException e) {
+      // correct
+    }
+
+    // change in inherited table is visible in subclass
+    person.add(column("email"));
+    assertNotSame(columns, employee.getColumns());
+    assertEquals(List.of("name", "age", "email", "salary"), names(employee.getColumns()));
+
+    // alter, add and drop
+    employee.add(column("constant").setType(CONSTANT), column("photo").setType(FILE));
+    assertFalse(names(employee.getStoredColumns()).contains("constant"));
+    assertTrue(names(employee.getMutationColumns()).contains("photo_contents"));
+    employee.alterColumn("salary", column("income"));
+    assertTrue(names(employee.getColumns()).contains("income"));
+    employee.dropColumn("income");
+    assertFalse(names(employee.getColumns()).contains("income"));
+  }
+
+  @Test
+  public void testSyncOnlyInvalidatesOnChange() {
+    SchemaMetadata schema = new SchemaMetadata("TestTableMetadataColumnViewsSync");
+    TableMetadata person = schema.create(table("Person", column("name").setPkey()));
+    TableMetadata pet =
+        schema.create(
+            table("Pet", column("name").setPkey(), column("owner", REF).setRefTable("Person")));
+    TableMetadata other = schema.create(table("Other", column("id").setPkey()));
+    List<Column> columns = pet.getMutationColumns();
+    long version = pet.getMetadataVersion();
+
+    // syncing an equal copy, as done after each transaction, keeps the views
+    pet.sync(new TableMetadata(schema, pet));
+    assertSame(columns, pet.getMutationColumns());
+    assertEquals(version, pet.getMetadataVersion());
+
+    // changes in unrelated tables don't matter
+    other.add(column("extra"));
+    assertSame(columns, pet.getMutationColumns());
+
+    // changes in the copy, or in referenced tables, do
+    TableMetadata copy = new TableMetadata(schema, pet);
+    copy.add(column("age"));
+    pet.sync(copy);
+    assertNotSame(columns, pet.getMutationColumns());
+    columns = pet.getMutationColumns();
+    person.alterColumn("name", column("name").setPkey().setType(INT));
+    assertNotSame(columns, pet.getMutationColumns());
+  }
+
+  @Test
+  public void testKeysOfReferencedTablesInvalidate() {
+    SchemaMetadata schema = new SchemaMetadata("TestTableMetadataColumnViewsKeys");
+    TableMetadata country = schema.create(table("Country", column("code").setPkey()));
+    schema.create(
+        table(
+            "City",
+            column("name").setPkey(),
+            column("country", REF).setRefTable("Country").setPkey()));
+    TableMetadata address =
+        schema.create(
+            table("Address", column("street").setPkey(), column("city", REF).setRefTable("City")));
+    List<Column> columns = address.getMutationColumns();
+    assertSame(columns, address.getMutationColumns());
+
+    // the key of a table referred to by the key of a referenced table
+    country.alterColumn("code", column("code").setPkey().setType(INT));
+    assertNotSame(columns, address.getMutationColumns());
+    assertTrue(address.getMutationColumns().stream().anyMatch(c -> INT.equals(c.getColumnType())));
+  }
+
+  private static List<String> names(List<Column> columns) {
+    return columns.stream().map(Column::getName).collect(Collectors.toList());
+  }
+}